@@ -0,0 +1,34 @@
+package com.acme.monitor.aspect;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 按标签失效缓存，用法类似 {@code @CacheEvict}
+ *
+ * 只删除带有指定标签的缓存项，代替 {@code @CacheEvict(allEntries = true)} 的整体清空。
+ * 缓存不支持标签时退化为清空整个缓存。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CacheEvictByTag {
+
+    /**
+     * 缓存名称
+     */
+    String[] cacheNames();
+
+    /**
+     * 标签的SpEL表达式，例如 {@code "'unit:' + #unitId"}
+     */
+    String[] tags();
+
+    /**
+     * 是否在方法执行前失效，默认在方法成功返回后失效
+     */
+    boolean beforeInvocation() default false;
+}
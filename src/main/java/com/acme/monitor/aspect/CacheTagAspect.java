@@ -0,0 +1,119 @@
+package com.acme.monitor.aspect;
+
+import com.acme.monitor.config.TwoLevelCache;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存标签切面
+ *
+ * 处理 {@link CacheTags} 和 {@link CacheEvictByTag} 注解，
+ * 标签索引和按标签失效由 {@link TwoLevelCache} 实现
+ */
+@Aspect
+@Component
+public class CacheTagAspect {
+    private static final Logger logger = LoggerFactory.getLogger(CacheTagAspect.class);
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+    private final Map<String, Expression> expressionCache = new ConcurrentHashMap<>();
+
+    @AfterReturning(pointcut = "@annotation(cacheTags)", returning = "result")
+    public void tagCachedResult(JoinPoint joinPoint, CacheTags cacheTags, Object result) {
+        EvaluationContext context = createContext(joinPoint, result);
+        Object key = evaluate(cacheTags.key(), context);
+        if (key == null) {
+            return;
+        }
+        String[] tags = evaluateTags(cacheTags.tags(), context);
+        if (tags.length == 0) {
+            return;
+        }
+        for (String cacheName : cacheTags.cacheNames()) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache instanceof TwoLevelCache) {
+                ((TwoLevelCache) cache).tag(key, tags);
+            }
+        }
+    }
+
+    @Around("@annotation(cacheEvictByTag)")
+    public Object evictByTag(ProceedingJoinPoint joinPoint, CacheEvictByTag cacheEvictByTag) throws Throwable {
+        if (cacheEvictByTag.beforeInvocation()) {
+            doEvict(joinPoint, cacheEvictByTag);
+        }
+        Object result = joinPoint.proceed();
+        if (!cacheEvictByTag.beforeInvocation()) {
+            doEvict(joinPoint, cacheEvictByTag);
+        }
+        return result;
+    }
+
+    private void doEvict(JoinPoint joinPoint, CacheEvictByTag cacheEvictByTag) {
+        String[] tags = evaluateTags(cacheEvictByTag.tags(), createContext(joinPoint, null));
+        for (String cacheName : cacheEvictByTag.cacheNames()) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache == null) {
+                continue;
+            }
+            if (cache instanceof TwoLevelCache) {
+                for (String tag : tags) {
+                    ((TwoLevelCache) cache).evictByTag(tag);
+                }
+            } else {
+                // 不支持标签索引的缓存只能整体清空
+                logger.debug("Cache {} does not support tags, clearing all entries", cacheName);
+                cache.clear();
+            }
+        }
+    }
+
+    private EvaluationContext createContext(JoinPoint joinPoint, Object result) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(
+                joinPoint.getTarget(), method, joinPoint.getArgs(), parameterNameDiscoverer);
+        context.setVariable("result", result);
+        return context;
+    }
+
+    private String[] evaluateTags(String[] expressions, EvaluationContext context) {
+        List<String> tags = new ArrayList<>(expressions.length);
+        for (String expression : expressions) {
+            Object tag = evaluate(expression, context);
+            if (tag != null) {
+                tags.add(tag.toString());
+            }
+        }
+        return tags.toArray(new String[0]);
+    }
+
+    private Object evaluate(String expression, EvaluationContext context) {
+        return expressionCache.computeIfAbsent(expression, parser::parseExpression).getValue(context);
+    }
+}
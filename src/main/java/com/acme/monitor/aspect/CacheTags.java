@@ -0,0 +1,35 @@
+package com.acme.monitor.aspect;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 为方法返回后缓存中的key打上标签
+ *
+ * 与 {@code @Cacheable}/{@code @CachePut} 配合使用，key和tags均为SpEL表达式，
+ * 可以引用方法参数（如 {@code #id}）以及返回值 {@code #result}。
+ * 表达式结果为null的标签会被忽略。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CacheTags {
+
+    /**
+     * 缓存名称
+     */
+    String[] cacheNames();
+
+    /**
+     * 缓存key的SpEL表达式，需要与缓存注解中的key保持一致
+     */
+    String key();
+
+    /**
+     * 标签的SpEL表达式，例如 {@code "'tenant:' + #tenantId"}
+     */
+    String[] tags();
+}
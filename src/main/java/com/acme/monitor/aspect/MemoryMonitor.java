@@ -5,6 +5,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 
 @Component
 public class MemoryMonitor {
@@ -67,6 +71,37 @@ public class MemoryMonitor {
         }
     }
     
+    /**
+     * 获取最近一次GC后老年代的占用率（0~1）
+     * 
+     * GC后的占用率反映真实存活对象的大小，比瞬时堆使用率更适合判断内存压力。
+     * G1只在混合/Full GC后更新老年代的 CollectionUsage，年轻代GC期间一直是0，此时退化为当前老年代使用量，
+     * 需要每次GC后的准确值时监听GC通知（见 {@link com.acme.monitor.config.AdaptiveL1CacheSizer}）。
+     * 找不到老年代内存池时（如ZGC）退化为当前堆使用率。
+     */
+    public static double oldGenUsageAfterGc() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !isOldGenPool(pool.getName())) {
+                continue;
+            }
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null || usage.getUsed() == 0) {
+                usage = pool.getUsage();
+            }
+            long limit = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+            if (limit > 0) {
+                return (double) usage.getUsed() / limit;
+            }
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long limit = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        return limit > 0 ? (double) heap.getUsed() / limit : 0;
+    }
+
+    public static boolean isOldGenPool(String poolName) {
+        return poolName.contains("Old Gen") || poolName.contains("Tenured");
+    }
+    
     // 静态方法用于手动触发内存信息记录
     public static void logMemoryStatus() {
         Runtime runtime = Runtime.getRuntime();
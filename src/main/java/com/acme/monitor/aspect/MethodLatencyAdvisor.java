@@ -0,0 +1,116 @@
+package com.acme.monitor.aspect;
+
+import com.acme.monitor.config.InstrumentationConfig;
+import com.acme.monitor.service.LatencySketchService;
+import com.acme.monitor.service.SpanTracer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.aop.Advice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按配置的切点织入 {@link MethodLatencyInterceptor}
+ *
+ * 切点写在 app.instrumentation.pointcuts 中，不需要为每类组件单独写切面；
+ * 所有切点合并为一个advisor，优先级最高，记录的延迟包含其他切面（如缓存）的耗时。
+ * 表达式有误时启动失败。
+ */
+@Component
+public class MethodLatencyAdvisor extends AbstractPointcutAdvisor implements BeanFactoryAware {
+    private static final Logger logger = LoggerFactory.getLogger(MethodLatencyAdvisor.class);
+
+    @Autowired
+    private InstrumentationConfig config;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Autowired
+    private ObjectProvider<LatencySketchService> latencySketchService;
+
+    @Autowired
+    private ObjectProvider<SpanTracer> spanTracer;
+
+    private BeanFactory beanFactory;
+    private Pointcut pointcut;
+    private MethodLatencyInterceptor interceptor;
+
+    public MethodLatencyAdvisor() {
+        setOrder(Ordered.HIGHEST_PRECEDENCE);
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @PostConstruct
+    public void init() {
+        List<MethodLatencyInterceptor.NamedPointcut> pointcuts = new ArrayList<>();
+        // 从第一个切点开始合并：以 MethodMatcher.TRUE 为起点时，AspectJ切点需要运行时匹配，
+        // 合并后的三参数 matches 会调用到 TRUE 上而抛出 UnsupportedOperationException
+        ComposablePointcut union = null;
+        if (config.isEnabled()) {
+            for (InstrumentationConfig.Pointcut definition : config.getPointcuts()) {
+                AspectJExpressionPointcut expression = parse(definition, beanFactory);
+                pointcuts.add(new MethodLatencyInterceptor.NamedPointcut(definition.getName(), expression,
+                        definition.getSketchSource(), definition.getSamplesPerSecond(),
+                        definition.getAlwaysRecordAboveMs()));
+                if (union == null) {
+                    union = new ComposablePointcut((Pointcut) expression);
+                } else {
+                    union.union((Pointcut) expression);
+                }
+                logger.info("Instrumenting pointcut {}: {}{}", definition.getName(), definition.getExpression(),
+                        definition.getSamplesPerSecond() > 0
+                                ? " (sampling " + definition.getSamplesPerSecond() + "/s)" : "");
+            }
+        }
+        // 没有切点时不匹配任何类
+        pointcut = union != null ? union : new ComposablePointcut(clazz -> false);
+        // 注册表、草图服务和追踪在第一次调用时才获取，避免advisor创建时提前初始化它们
+        interceptor = new MethodLatencyInterceptor(pointcuts, meterRegistry, latencySketchService, spanTracer);
+    }
+
+    private static AspectJExpressionPointcut parse(InstrumentationConfig.Pointcut definition, BeanFactory beanFactory) {
+        if (definition.getName() == null || definition.getName().isEmpty()) {
+            throw new IllegalStateException("Instrumentation pointcut without name: " + definition.getExpression());
+        }
+        AspectJExpressionPointcut pointcut = new AspectJExpressionPointcut();
+        pointcut.setExpression(definition.getExpression());
+        // 支持 bean(...) 形式的切点
+        pointcut.setBeanFactory(beanFactory);
+        try {
+            // 提前解析，配置错误在启动时暴露
+            pointcut.getPointcutExpression();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid expression for instrumentation pointcut "
+                    + definition.getName() + ": " + e.getMessage(), e);
+        }
+        return pointcut;
+    }
+
+    @Override
+    public Pointcut getPointcut() {
+        return pointcut;
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return interceptor;
+    }
+}
@@ -0,0 +1,312 @@
+package com.acme.monitor.aspect;
+
+import com.acme.monitor.service.LatencySketchService;
+import com.acme.monitor.service.SpanTracer;
+import com.acme.monitor.util.AdaptiveSampler;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 方法级延迟埋点
+ *
+ * 每个目标类的每个被拦截方法第一次调用时确定所属切点，并创建好计时器，之后按 目标类+{@link Method} 从缓存中取出，
+ * 调用路径上不再拼接标签或查找注册表，正常返回时不分配对象。
+ * 接口方法或父类方法的 {@link Method} 被多个实现类共用，切点匹配和 class 标签都按实际的目标类确定。
+ * 计时使用 {@link System#nanoTime()}，标签为 pointcut、class、method、outcome（success/error）和 exception（异常类名）。
+ *
+ * 切点配置了每秒目标样本数时，快速返回的调用由 {@link AdaptiveSampler} 按概率采样，样本按概率的倒数加权，
+ * 导出的调用次数和总耗时仍然是无偏的；慢调用和异常调用总是记录。
+ * 因此计时器使用基于加权计数的 {@link FunctionTimer}，只导出次数和总耗时，分布由 LatencySketchService 提供。
+ *
+ * 开启追踪时每次调用同时记录为一个span（帧名称为 类名.方法名），不受采样影响。
+ */
+public class MethodLatencyInterceptor implements MethodInterceptor {
+    static final String METER_NAME = "method_latency";
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_ERROR = "error";
+    static final long SAMPLING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<NamedPointcut> pointcuts;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final ObjectProvider<LatencySketchService> latencySketchService;
+    private final ObjectProvider<SpanTracer> spanTracer;
+    // 目标对象的运行时类 -> 方法 -> 计时器
+    private final Map<Class<?>, Map<Method, Handles>> handles = new ConcurrentHashMap<>();
+    // 标签相同的计时器（如重载方法）共用一份计数，注册表对相同的标签只保留第一次注册的计时器
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public MethodLatencyInterceptor(List<NamedPointcut> pointcuts, ObjectProvider<MeterRegistry> meterRegistry,
+                                    ObjectProvider<LatencySketchService> latencySketchService,
+                                    ObjectProvider<SpanTracer> spanTracer) {
+        this.pointcuts = pointcuts;
+        this.meterRegistry = meterRegistry;
+        this.latencySketchService = latencySketchService;
+        this.spanTracer = spanTracer;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        Object target = invocation.getThis();
+        Class<?> type = target != null ? target.getClass() : method.getDeclaringClass();
+        Map<Method, Handles> methods = handles.get(type);
+        if (methods == null) {
+            methods = handles.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+        }
+        Handles handle = methods.get(method);
+        if (handle == null) {
+            handle = methods.computeIfAbsent(method, m -> resolve(m, target));
+        }
+        handle.beginSpan();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            long elapsed = System.nanoTime() - start;
+            handle.endSpan();
+            handle.recordFailure(e, elapsed);
+            throw e;
+        }
+        long end = System.nanoTime();
+        handle.endSpan();
+        handle.recordSuccess(end - start, end);
+        return result;
+    }
+
+    /**
+     * 确定方法所属的切点并创建计时器，每个目标类的每个方法只执行一次
+     */
+    private Handles resolve(Method method, Object target) {
+        Class<?> targetClass = target != null ? AopUtils.getTargetClass(target) : method.getDeclaringClass();
+        for (NamedPointcut pointcut : pointcuts) {
+            if (pointcut.matches(method, targetClass)) {
+                MeterRegistry registry = meterRegistry.getObject();
+                if (pointcut.getSampler() != null) {
+                    // 同名同标签的Gauge重复注册时返回已有的实例
+                    Gauge.builder("method_sampling_rate", pointcut.getSampler(), AdaptiveSampler::getProbability)
+                            .description("Effective sampling probability of instrumented fast method calls")
+                            .tag("pointcut", pointcut.getName())
+                            .register(registry);
+                }
+                SpanTracer tracer = spanTracer.getIfAvailable();
+                return new Handles(registry, pointcut, targetClass, method,
+                        pointcut.getSketchSource() == null ? null : latencySketchService.getObject(),
+                        tracer != null && tracer.isEnabled() ? tracer : null, stats);
+            }
+        }
+        return Handles.NONE;
+    }
+
+    int getCachedMethodCount() {
+        int count = 0;
+        for (Map<Method, Handles> methods : handles.values()) {
+            count += methods.size();
+        }
+        return count;
+    }
+
+    /**
+     * 带名称的切点
+     */
+    public static final class NamedPointcut {
+        private final String name;
+        private final Pointcut pointcut;
+        private final String sketchSource;
+        private final AdaptiveSampler sampler;
+        private final long alwaysRecordAboveNanos;
+
+        public NamedPointcut(String name, Pointcut pointcut, String sketchSource) {
+            this(name, pointcut, sketchSource, 0, 0);
+        }
+
+        /**
+         * @param samplesPerSecond    每秒的目标样本数，0表示不采样
+         * @param alwaysRecordAboveMs 耗时不低于该值的调用总是记录
+         */
+        public NamedPointcut(String name, Pointcut pointcut, String sketchSource, double samplesPerSecond,
+                             long alwaysRecordAboveMs) {
+            this.name = name;
+            this.pointcut = pointcut;
+            this.sketchSource = sketchSource == null || sketchSource.isEmpty() ? null : sketchSource;
+            this.sampler = samplesPerSecond > 0
+                    ? new AdaptiveSampler(samplesPerSecond, SAMPLING_INTERVAL_NANOS, System.nanoTime()) : null;
+            this.alwaysRecordAboveNanos = TimeUnit.MILLISECONDS.toNanos(alwaysRecordAboveMs);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Pointcut getPointcut() {
+            return pointcut;
+        }
+
+        public String getSketchSource() {
+            return sketchSource;
+        }
+
+        /**
+         * 没有开启采样时为null
+         */
+        public AdaptiveSampler getSampler() {
+            return sampler;
+        }
+
+        boolean matches(Method method, Class<?> targetClass) {
+            return pointcut.getClassFilter().matches(targetClass)
+                    && pointcut.getMethodMatcher().matches(method, targetClass);
+        }
+    }
+
+    /**
+     * 加权的调用次数和总耗时
+     */
+    static final class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        void add(long nanos, int weight) {
+            count.add(weight);
+            totalNanos.add(nanos * weight);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double totalNanos() {
+            return totalNanos.sum();
+        }
+    }
+
+    /**
+     * 一个目标类的一个方法预先创建好的计时器，异常计时器按异常类型懒加载
+     */
+    static final class Handles {
+        static final Handles NONE = new Handles();
+
+        private final MeterRegistry registry;
+        private final String pointcut;
+        private final String className;
+        private final String methodName;
+        private final AdaptiveSampler sampler;
+        private final long alwaysRecordAboveNanos;
+        private final Stats success;
+        private final Map<Class<?>, Stats> failures = new ConcurrentHashMap<>();
+        private final LatencySketchService sketches;
+        private final String sketchSource;
+        private final SpanTracer tracer;
+        private final String frame;
+        private final Map<String, Stats> shared;
+
+        private Handles() {
+            this.registry = null;
+            this.pointcut = null;
+            this.className = null;
+            this.methodName = null;
+            this.sampler = null;
+            this.alwaysRecordAboveNanos = 0;
+            this.success = null;
+            this.sketches = null;
+            this.sketchSource = null;
+            this.tracer = null;
+            this.frame = null;
+            this.shared = null;
+        }
+
+        Handles(MeterRegistry registry, NamedPointcut pointcut, Class<?> targetClass, Method method,
+                LatencySketchService sketches, SpanTracer tracer, Map<String, Stats> shared) {
+            this.registry = registry;
+            this.shared = shared;
+            this.pointcut = pointcut.getName();
+            // 匿名类没有简单类名
+            this.className = targetClass.getSimpleName().isEmpty() ? targetClass.getName() : targetClass.getSimpleName();
+            this.methodName = method.getName();
+            this.sampler = pointcut.getSampler();
+            this.alwaysRecordAboveNanos = pointcut.alwaysRecordAboveNanos;
+            this.success = register(OUTCOME_SUCCESS, "none");
+            this.sketches = sketches;
+            this.sketchSource = pointcut.getSketchSource();
+            this.tracer = tracer;
+            this.frame = className + "." + methodName;
+        }
+
+        void beginSpan() {
+            if (tracer != null) {
+                tracer.begin(frame);
+            }
+        }
+
+        void endSpan() {
+            if (tracer != null) {
+                tracer.end();
+            }
+        }
+
+        private Stats register(String outcome, String exception) {
+            String key = pointcut + '\0' + className + '\0' + methodName + '\0' + outcome + '\0' + exception;
+            return shared.computeIfAbsent(key, k -> {
+                Stats stats = new Stats();
+                FunctionTimer.builder(METER_NAME, stats, Stats::count, Stats::totalNanos, TimeUnit.NANOSECONDS)
+                        .description("Latency of instrumented method invocations, scaled up when sampled")
+                        .tags("pointcut", pointcut, "class", className, "method", methodName,
+                                "outcome", outcome, "exception", exception)
+                        .register(registry);
+                return stats;
+            });
+        }
+
+        void recordSuccess(long nanos, long now) {
+            if (success == null) {
+                return;
+            }
+            int weight = 1;
+            if (sampler != null) {
+                weight = sampler.sample(now);
+                if (nanos >= alwaysRecordAboveNanos) {
+                    // 慢调用不参与采样，按实际次数记录
+                    weight = 1;
+                } else if (weight == 0) {
+                    return;
+                }
+            }
+            success.add(nanos, weight);
+            recordSketch(nanos, weight);
+        }
+
+        void recordFailure(Throwable error, long nanos) {
+            if (registry == null) {
+                return;
+            }
+            Class<?> type = error.getClass();
+            Stats stats = failures.get(type);
+            if (stats == null) {
+                // 匿名异常类没有简单类名
+                stats = failures.computeIfAbsent(type,
+                        t -> register(OUTCOME_ERROR, t.getSimpleName().isEmpty() ? t.getName() : t.getSimpleName()));
+            }
+            stats.add(nanos, 1);
+            recordSketch(nanos, 1);
+        }
+
+        private void recordSketch(long nanos, int weight) {
+            if (sketches != null) {
+                sketches.record(sketchSource, nanos / 1e6, weight);
+            }
+        }
+    }
+}
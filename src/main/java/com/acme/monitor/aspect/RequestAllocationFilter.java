@@ -0,0 +1,47 @@
+package com.acme.monitor.aspect;
+
+import com.acme.monitor.service.RequestAllocationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 请求分配量记录过滤器
+ *
+ * 请求前后读取处理线程累计分配的字节数，差值按Spring MVC匹配到的路径模板记录，与 {@link RequestLatencyFilter} 的归类一致。
+ * 异步请求的分配发生在其他线程上，不记录；JVM不支持线程分配统计时直接放行。
+ */
+@Component
+public class RequestAllocationFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private RequestAllocationService requestAllocationService;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !requestAllocationService.isSupported();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long before = requestAllocationService.currentThreadAllocatedBytes();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!request.isAsyncStarted()) {
+                long bytes = requestAllocationService.currentThreadAllocatedBytes() - before;
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                String endpoint = pattern instanceof String ? (String) pattern : RequestLatencyFilter.UNMATCHED;
+                requestAllocationService.record(endpoint, bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.acme.monitor.aspect;
+
+import com.acme.monitor.service.LatencySketchService;
+import com.acme.monitor.service.RequestMetricsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 请求延迟记录过滤器
+ *
+ * 记录每个请求的延迟和结果，按Spring MVC匹配到的路径模板归类，同时写入可合并的延迟草图，
+ * 未匹配到处理器的请求记为UNMATCHED。长连接的异步请求不计入延迟统计。
+ */
+@Component
+public class RequestLatencyFilter extends OncePerRequestFilter {
+    static final String UNMATCHED = "UNMATCHED";
+
+    @Autowired
+    private RequestMetricsService requestMetricsService;
+
+    @Autowired
+    private LatencySketchService latencySketchService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!request.isAsyncStarted()) {
+                long micros = (System.nanoTime() - start) / 1000;
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                String endpoint = pattern instanceof String ? (String) pattern : UNMATCHED;
+                boolean success = !failed && response.getStatus() < 500;
+                requestMetricsService.record(endpoint, micros, success);
+                latencySketchService.record(LatencySketchService.SOURCE_HTTP, micros / 1000.0);
+            }
+        }
+    }
+}
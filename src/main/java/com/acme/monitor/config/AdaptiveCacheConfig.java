@@ -0,0 +1,54 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * L1缓存自适应容量配置类
+ * 根据GC后老年代占用率逐步缩小或恢复Caffeine缓存的最大容量
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.cache.adaptive")
+public class AdaptiveCacheConfig {
+    /**
+     * 是否启用自适应容量
+     */
+    private boolean enabled = true;
+
+    /**
+     * 检查间隔（毫秒）
+     */
+    private long checkIntervalMs = 5000;
+
+    /**
+     * 老年代占用率高水位，超过后每次检查按比例缩小容量
+     */
+    private double highWatermark = 0.75;
+
+    /**
+     * 老年代占用率危险水位，超过后直接缩小到最小容量
+     */
+    private double criticalWatermark = 0.90;
+
+    /**
+     * 老年代占用率低水位，低于后每次检查按比例恢复容量
+     */
+    private double lowWatermark = 0.60;
+
+    /**
+     * 每次缩小的比例，恢复时按其倒数放大
+     */
+    private double shrinkFactor = 0.5;
+
+    /**
+     * 最小容量
+     */
+    private long minimumSize = 100;
+
+    /**
+     * 最大容量，即无内存压力时的容量
+     */
+    private long maximumSize = CacheConfig.L1_MAXIMUM_SIZE;
+}
@@ -0,0 +1,206 @@
+package com.acme.monitor.config;
+
+import com.acme.monitor.aspect.MemoryMonitor;
+import com.acme.monitor.util.NamedThreadFactory;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * L1缓存自适应容量调整
+ *
+ * 监听GC通知记录每次GC后的老年代占用率，定期检查，超过水位时逐步缩小Caffeine缓存的最大容量，压力解除后逐步恢复。
+ * 还没有收到GC通知（或JVM不支持）时使用 {@link MemoryMonitor#oldGenUsageAfterGc()}
+ */
+@Component
+public class AdaptiveL1CacheSizer {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveL1CacheSizer.class);
+
+    @Autowired
+    private AdaptiveCacheConfig config;
+
+    @Autowired
+    private CaffeineCacheManager caffeineCacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile long effectiveSize;
+    private volatile double oldGenUsage;
+    /** 最近一次GC通知中的老年代占用率，尚未收到时为NaN */
+    private volatile double notifiedOldGenUsage = Double.NaN;
+    private final NotificationListener listener = (notification, handback) -> handle(notification);
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private Counter shrinkCounter;
+    private Counter growCounter;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        effectiveSize = config.getMaximumSize();
+        Gauge.builder("cache_l1_effective_max_size", this, AdaptiveL1CacheSizer::getEffectiveSize)
+                .description("Current maximum size of each Caffeine L1 cache")
+                .register(meterRegistry);
+        Gauge.builder("jvm_old_gen_usage_after_gc_ratio", this, AdaptiveL1CacheSizer::getOldGenUsage)
+                .description("Old generation occupancy after the last GC")
+                .register(meterRegistry);
+        shrinkCounter = Counter.builder("cache_l1_resize_events_total").tag("direction", "shrink").register(meterRegistry);
+        growCounter = Counter.builder("cache_l1_resize_events_total").tag("direction", "grow").register(meterRegistry);
+        // 不论是否开启自适应调整都监听，RuntimeSignals 也读取这个值
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) collector;
+                emitter.addNotificationListener(listener, notification ->
+                        GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()), null);
+                emitters.add(emitter);
+            }
+        }
+
+        if (!config.isEnabled()) {
+            logger.info("Adaptive L1 cache sizing disabled");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("L1-Cache-Sizer"));
+        scheduler.scheduleWithFixedDelay(this::adjust, config.getCheckIntervalMs(),
+                config.getCheckIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException ignored) {
+                // 已移除
+            }
+        }
+        emitters.clear();
+    }
+
+    private void handle(Notification notification) {
+        try {
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            recordAfterGc(info.getGcInfo().getMemoryUsageAfterGc());
+        } catch (Exception e) {
+            logger.error("Error handling GC notification", e);
+        }
+    }
+
+    /**
+     * 记录一次GC后各内存池的占用，只取老年代
+     */
+    public void recordAfterGc(Map<String, MemoryUsage> after) {
+        for (Map.Entry<String, MemoryUsage> entry : after.entrySet()) {
+            if (MemoryMonitor.isOldGenPool(entry.getKey())) {
+                MemoryUsage usage = entry.getValue();
+                long limit = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+                if (limit > 0) {
+                    notifiedOldGenUsage = (double) usage.getUsed() / limit;
+                }
+            }
+        }
+    }
+
+    /**
+     * 最近一次GC后老年代的占用率（0~1），优先使用GC通知中的值
+     */
+    public double oldGenUsageAfterGc() {
+        double notified = notifiedOldGenUsage;
+        return Double.isNaN(notified) ? MemoryMonitor.oldGenUsageAfterGc() : notified;
+    }
+
+    /**
+     * 根据当前老年代占用率调整一次容量
+     */
+    void adjust() {
+        try {
+            double usage = oldGenUsageAfterGc();
+            oldGenUsage = usage;
+            long current = effectiveSize;
+            long next = nextSize(current, usage, config);
+            if (next != current) {
+                effectiveSize = next;
+                (next < current ? shrinkCounter : growCounter).increment();
+                logger.warn("L1 cache resize event: {} -> {} (old gen usage after GC: {}%)",
+                        current, next, String.format("%.2f", usage * 100));
+            }
+            // 每次都应用，保证新创建的缓存也使用当前容量
+            applySize(effectiveSize);
+        } catch (Exception e) {
+            logger.error("Error adjusting L1 cache size", e);
+        }
+    }
+
+    private void applySize(long size) {
+        for (String cacheName : caffeineCacheManager.getCacheNames()) {
+            Cache cache = caffeineCacheManager.getCache(cacheName);
+            if (cache instanceof CaffeineCache) {
+                Optional<Policy.Eviction<Object, Object>> eviction =
+                        ((CaffeineCache) cache).getNativeCache().policy().eviction();
+                if (eviction.isPresent() && eviction.get().getMaximum() != size) {
+                    eviction.get().setMaximum(size);
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算下一步的缓存容量
+     *
+     * @param current 当前容量
+     * @param usage   GC后老年代占用率（0~1）
+     * @param config  水位配置
+     * @return 调整后的容量
+     */
+    public static long nextSize(long current, double usage, AdaptiveCacheConfig config) {
+        if (usage >= config.getCriticalWatermark()) {
+            return config.getMinimumSize();
+        }
+        if (usage >= config.getHighWatermark()) {
+            return Math.max(config.getMinimumSize(), (long) (current * config.getShrinkFactor()));
+        }
+        if (usage < config.getLowWatermark() && current < config.getMaximumSize()) {
+            return Math.min(config.getMaximumSize(), (long) Math.ceil(current / config.getShrinkFactor()));
+        }
+        return current;
+    }
+
+    public long getEffectiveSize() {
+        return effectiveSize;
+    }
+
+    public double getOldGenUsage() {
+        return oldGenUsage;
+    }
+}
@@ -0,0 +1,33 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地告警规则配置类
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.alert")
+public class AlertConfig {
+    /**
+     * 是否启用本地告警评估
+     */
+    private boolean enabled = true;
+
+    /**
+     * 规则文件路径，修改后自动重新加载；文件不存在时使用 classpath 中的 alert-rules.yml
+     */
+    private String rulesFile = "./config/alert-rules.yml";
+
+    /**
+     * 检查规则文件是否修改的间隔（毫秒）
+     */
+    private long reloadIntervalMs = 5000;
+
+    /**
+     * 保留的告警触发和恢复记录数量
+     */
+    private int historySize = 200;
+}
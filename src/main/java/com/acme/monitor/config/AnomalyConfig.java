@@ -0,0 +1,73 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 在线异常检测配置类
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.anomaly")
+public class AnomalyConfig {
+    /**
+     * 是否启用异常检测
+     */
+    private boolean enabled = true;
+
+    /**
+     * 水平值的平滑系数，越大越快跟上新的水平
+     */
+    private double alpha = 0.05;
+
+    /**
+     * 残差方差的平滑系数
+     */
+    private double beta = 0.05;
+
+    /**
+     * 季节偏移的平滑系数
+     */
+    private double gamma = 0.1;
+
+    /**
+     * 一个季节周期的时间槽数量，默认按一天24小时划分，1表示不考虑季节性
+     */
+    private int seasonSlots = 24;
+
+    /**
+     * 每个时间槽的长度（分钟）
+     */
+    private int slotMinutes = 60;
+
+    /**
+     * 样本数达到该值之前不判定异常（每秒一个样本）
+     */
+    private int warmupSamples = 60;
+
+    /**
+     * 异常分数（偏离预期值的标准差倍数）的绝对值达到该值时产生异常事件
+     */
+    private double threshold = 4.0;
+
+    /**
+     * 更新基线时样本截断到 预期值 ± clipScore 个标准差
+     */
+    private double clipScore = 4.0;
+
+    /**
+     * 同一条序列两次异常事件的最小间隔（毫秒）
+     */
+    private long cooldownMs = 300000;
+
+    /**
+     * 是否对每个HTTP接口的p99延迟和QPS单独检测
+     */
+    private boolean perEndpoint = true;
+
+    /**
+     * 保留的最近异常事件数量
+     */
+    private int historySize = 200;
+}
@@ -0,0 +1,333 @@
+package com.acme.monitor.config;
+
+import com.acme.monitor.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 缓存访问轨迹采集器
+ *
+ * 按key哈希采样记录 {@link TwoLevelCache} 的访问，写入紧凑的二进制文件：
+ * <pre>
+ * 文件头:   magic(int) version(short) sampleRate(double) startMillis(long)
+ * 缓存定义: type=0(byte) cacheId(unsigned byte) nameLength(short) name(UTF-8)
+ * 访问记录: type=1(byte) cacheId(unsigned byte) op(byte) tier(byte) offsetMillis(long) keyHash(long)
+ * </pre>
+ * 访问记录固定20字节，最多记录 {@link #MAX_CACHES} 个缓存。
+ * 请求线程通过原子递增在当前缓冲区中预留位置后直接写入，不加锁；
+ * 后台线程在缓冲区写过一半或每秒一次换上空闲缓冲区并落盘，来不及写时直接丢弃记录，不会阻塞缓存访问。
+ */
+@Component
+public class CacheAccessTraceRecorder {
+    private static final Logger logger = LoggerFactory.getLogger(CacheAccessTraceRecorder.class);
+
+    public static final int MAGIC = 0x43545231;
+    /**
+     * 版本1的偏移量是int，约24.8天后溢出；版本2改为long
+     */
+    public static final short VERSION = 2;
+    public static final byte RECORD_CACHE = 0;
+    public static final byte RECORD_ACCESS = 1;
+    public static final int ACCESS_RECORD_SIZE = 20;
+    public static final int MAX_CACHES = 256;
+
+    public static final byte OP_GET = 0;
+    public static final byte OP_PUT = 1;
+    public static final byte OP_EVICT = 2;
+    public static final byte OP_CLEAR = 3;
+
+    public static final byte TIER_MISS = 0;
+    public static final byte TIER_L1 = 1;
+    public static final byte TIER_L2 = 2;
+    public static final byte TIER_NONE = 3;
+
+    private static final int SAMPLE_SPACE = 1 << 16;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Autowired
+    private CacheTraceConfig config;
+
+    private final Map<String, Integer> cacheIds = new ConcurrentHashMap<>();
+    private final AtomicLong droppedRecords = new AtomicLong();
+
+    private volatile boolean enabled;
+    private int sampleThreshold;
+    private long startMillis;
+    private volatile Segment active;
+    // 只由写线程使用，关闭时写线程已退出；持有旧引用的线程可能在其中留下记录
+    private Segment spare;
+    private volatile Thread writerThread;
+    private boolean cacheLimitLogged;
+    private FileChannel channel;
+    private ExecutorService writer;
+
+    /**
+     * 写缓冲区，请求线程并发预留、写入，写线程封闭后落盘
+     */
+    private static final class Segment {
+        private final ByteBuffer buffer;
+        // 已预留的字节数，封闭后超过容量，之后的预留全部失败
+        private final AtomicLong reserved = new AtomicLong();
+        // 已写完的字节数
+        private final AtomicInteger committed = new AtomicInteger();
+        // 第一次预留失败的位置，即有效数据的结尾，未失败时为-1
+        private volatile int limit = -1;
+
+        Segment(int capacity) {
+            this.buffer = ByteBuffer.allocate(capacity);
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!config.isEnabled()) {
+            return;
+        }
+        open(new File(config.getFile()), config.getSampleRate(), config.getBufferSize());
+    }
+
+    /**
+     * 打开轨迹文件并启动后台写线程
+     */
+    public void open(File file, double sampleRate, int bufferSize) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create trace directory " + parent);
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        sampleThreshold = (int) Math.round(Math.max(0, Math.min(1, sampleRate)) * SAMPLE_SPACE);
+        startMillis = System.currentTimeMillis();
+
+        ByteBuffer header = ByteBuffer.allocate(22);
+        header.putInt(MAGIC).putShort(VERSION).putDouble(sampleRate).putLong(startMillis);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+
+        active = new Segment(bufferSize);
+        spare = new Segment(bufferSize);
+        enabled = true;
+        writer = Executors.newSingleThreadExecutor(new NamedThreadFactory("Cache-Trace-Writer"));
+        writer.execute(this::writeLoop);
+        logger.info("Cache access trace recording to {} (sample rate {})", file, sampleRate);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        LockSupport.unpark(writerThread);
+        // 不能中断写线程，FileChannel在写入时被中断会直接关闭
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+            // 关闭时封闭后不再清空，之后的记录只会预留失败
+            writeSegment(spare);
+            writeSegment(active);
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Failed to close cache trace file", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (droppedRecords.get() > 0) {
+            logger.warn("Cache trace dropped {} records because the writer fell behind", droppedRecords.get());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一次缓存访问，未被采样的key直接返回
+     */
+    public void record(String cacheName, Object key, byte op, byte tier) {
+        if (!enabled) {
+            return;
+        }
+        long keyHash = hash(key);
+        // CLEAR影响所有key，总是记录
+        if (op != OP_CLEAR && (keyHash & (SAMPLE_SPACE - 1)) >= sampleThreshold) {
+            return;
+        }
+        int cacheId = cacheId(cacheName);
+        if (cacheId < 0) {
+            droppedRecords.incrementAndGet();
+            return;
+        }
+        long offset = System.currentTimeMillis() - startMillis;
+        Segment segment = active;
+        int pos = reserve(segment, ACCESS_RECORD_SIZE);
+        if (pos < 0) {
+            droppedRecords.incrementAndGet();
+            return;
+        }
+        ByteBuffer buffer = segment.buffer;
+        buffer.put(pos, RECORD_ACCESS);
+        buffer.put(pos + 1, (byte) cacheId);
+        buffer.put(pos + 2, op);
+        buffer.put(pos + 3, tier);
+        buffer.putLong(pos + 4, offset);
+        buffer.putLong(pos + 12, keyHash);
+        segment.committed.addAndGet(ACCESS_RECORD_SIZE);
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    /**
+     * 缓存编号，第一次出现时写入缓存定义；超过 {@link #MAX_CACHES} 或缓冲区已满时返回-1
+     */
+    private int cacheId(String cacheName) {
+        Integer id = cacheIds.get(cacheName);
+        if (id != null) {
+            return id;
+        }
+        // 每个缓存只注册一次，加锁不影响访问记录
+        synchronized (cacheIds) {
+            id = cacheIds.get(cacheName);
+            if (id != null) {
+                return id;
+            }
+            if (cacheIds.size() >= MAX_CACHES) {
+                if (!cacheLimitLogged) {
+                    cacheLimitLogged = true;
+                    logger.warn("Cache trace supports at most {} caches, accesses to {} are not recorded",
+                            MAX_CACHES, cacheName);
+                }
+                return -1;
+            }
+            byte[] name = cacheName.getBytes(StandardCharsets.UTF_8);
+            Segment segment = active;
+            int pos = reserve(segment, 4 + name.length);
+            if (pos < 0) {
+                return -1;
+            }
+            int newId = cacheIds.size();
+            ByteBuffer buffer = segment.buffer;
+            buffer.put(pos, RECORD_CACHE);
+            buffer.put(pos + 1, (byte) newId);
+            buffer.putShort(pos + 2, (short) name.length);
+            for (int i = 0; i < name.length; i++) {
+                buffer.put(pos + 4 + i, name[i]);
+            }
+            segment.committed.addAndGet(4 + name.length);
+            cacheIds.put(cacheName, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * 在缓冲区中预留size字节，返回起始位置；空间不足时返回-1
+     */
+    private int reserve(Segment segment, int size) {
+        int capacity = segment.buffer.capacity();
+        long pos = segment.reserved.getAndAdd(size);
+        if (pos + size <= capacity) {
+            // 写过一半时提前唤醒写线程换缓冲区，剩下的一半用来等待写线程
+            if (pos < capacity / 2 && pos + size >= capacity / 2) {
+                LockSupport.unpark(writerThread);
+            }
+            return (int) pos;
+        }
+        if (pos <= capacity) {
+            // 第一次失败的预留，之后的预留都会失败
+            segment.limit = (int) pos;
+            LockSupport.unpark(writerThread);
+        }
+        return -1;
+    }
+
+    private void writeLoop() {
+        writerThread = Thread.currentThread();
+        while (enabled) {
+            LockSupport.parkNanos(this, FLUSH_INTERVAL_NANOS);
+            Segment full = active;
+            if (!enabled || full.reserved.get() == 0) {
+                continue;
+            }
+            active = spare;
+            try {
+                writeSegment(full);
+            } catch (IOException e) {
+                logger.error("Failed to write cache trace", e);
+            } finally {
+                reset(full);
+            }
+            spare = full;
+        }
+    }
+
+    /**
+     * 封闭缓冲区，等待已预留的记录写完后落盘
+     */
+    private void writeSegment(Segment segment) throws IOException {
+        int capacity = segment.buffer.capacity();
+        long sealed = segment.reserved.getAndAdd(capacity + 1);
+        int end;
+        if (sealed <= capacity) {
+            end = (int) sealed;
+        } else {
+            // 预留失败的线程马上会写入limit
+            while ((end = segment.limit) < 0) {
+                Thread.yield();
+            }
+        }
+        while (segment.committed.get() < end) {
+            Thread.yield();
+        }
+        ByteBuffer out = segment.buffer.duplicate();
+        out.limit(end);
+        out.position(0);
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    /**
+     * 清空已落盘的缓冲区，先清committed再清reserved，持有旧引用的线程只能在清空之后预留成功
+     */
+    private static void reset(Segment segment) {
+        segment.limit = -1;
+        segment.committed.set(0);
+        segment.reserved.set(0);
+    }
+
+    /**
+     * key的64位哈希（murmur3 fmix64），用于采样和在轨迹中标识key
+     */
+    public static long hash(Object key) {
+        long h = key == null ? 0 : key.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,6 +1,8 @@
 package com.acme.monitor.config;
 
+import com.acme.monitor.service.SpanTracer;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
@@ -10,6 +12,8 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -22,11 +26,16 @@ import java.util.Map;
 @EnableCaching
 public class CacheConfig {
 
+    /**
+     * Caffeine缓存默认最大容量，内存压力下由 {@link AdaptiveL1CacheSizer} 动态调整
+     */
+    public static final long L1_MAXIMUM_SIZE = 1000;
+
     @Bean
     public CaffeineCacheManager caffeineCacheManager() {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
         cacheManager.setCaffeine(Caffeine.newBuilder()
-                .maximumSize(1000)
+                .maximumSize(L1_MAXIMUM_SIZE)
                 .expireAfterWrite(Duration.ofMinutes(10))
                 .recordStats());
         return cacheManager;
@@ -49,12 +58,35 @@ public class CacheConfig {
                 .build();
     }
 
+    /**
+     * 接收二级缓存失效通知的监听容器，订阅由 {@link CacheInvalidationSubscriber} 在容器启动后注册
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
     @Bean
     @Primary
     public CacheManager cacheManager(CaffeineCacheManager caffeineCacheManager,
-                                     RedisCacheManager redisCacheManager) {
+                                     RedisCacheManager redisCacheManager,
+                                     StringRedisTemplate stringRedisTemplate,
+                                     CacheAccessTraceRecorder traceRecorder,
+                                     SpanTracer spanTracer,
+                                     MeterRegistry meterRegistry) {
         // 这里可以实现二级缓存逻辑
-        // 先查Caffeine，再查Redis
-        return new TwoLevelCacheManager(caffeineCacheManager, redisCacheManager);
+        // 先查Caffeine，再查Redis；标签索引保存在Redis Set中
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(caffeineCacheManager, redisCacheManager,
+                stringRedisTemplate);
+        cacheManager.setMeterRegistry(meterRegistry);
+        if (traceRecorder.isEnabled()) {
+            cacheManager.setTraceRecorder(traceRecorder);
+        }
+        if (spanTracer.isEnabled()) {
+            cacheManager.setSpanTracer(spanTracer);
+        }
+        return cacheManager;
     }
 }
\ No newline at end of file
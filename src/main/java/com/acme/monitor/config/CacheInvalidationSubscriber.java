@@ -0,0 +1,81 @@
+package com.acme.monitor.config;
+
+import com.acme.monitor.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订阅其他节点发出的二级缓存按标签失效通知
+ *
+ * 监听容器启动时如果已有订阅且Redis不可用会导致应用启动失败，因此等容器启动后再注册监听器，
+ * 订阅失败时按固定间隔重试，成功后由监听容器负责断线重连
+ */
+@Component
+public class CacheInvalidationSubscriber {
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationSubscriber.class);
+
+    static final long RETRY_INTERVAL_MS = 5000;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private volatile boolean subscribed;
+    private boolean failureLogged;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!(cacheManager instanceof TwoLevelCacheManager)) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Cache-Invalidation"));
+        scheduler.scheduleWithFixedDelay(this::subscribe, 0, RETRY_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    void subscribe() {
+        if (subscribed || !listenerContainer.isRunning()) {
+            return;
+        }
+        try {
+            listenerContainer.addMessageListener((TwoLevelCacheManager) cacheManager,
+                    new ChannelTopic(TwoLevelCache.INVALIDATION_CHANNEL));
+            subscribed = true;
+            scheduler.shutdown();
+            logger.info("Subscribed to cache invalidation channel {}", TwoLevelCache.INVALIDATION_CHANNEL);
+        } catch (RuntimeException e) {
+            // Redis不可用时每次重试都会失败，只记录第一次
+            if (!failureLogged) {
+                failureLogged = true;
+                logger.warn("Cannot subscribe to cache invalidation channel, retrying every {} ms: {}",
+                        RETRY_INTERVAL_MS, e.toString());
+            } else {
+                logger.debug("Cache invalidation subscription failed: {}", e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 缓存访问轨迹采集配置类
+ * 采集结果可以用 {@link CacheTraceSimulator} 离线回放，评估不同的缓存容量和过期时间
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.cache.trace")
+public class CacheTraceConfig {
+    /**
+     * 是否启用访问轨迹采集
+     */
+    private boolean enabled = false;
+
+    /**
+     * 采样率（0~1），按key哈希采样，同一个key的访问要么全部记录要么全部忽略
+     */
+    private double sampleRate = 0.01;
+
+    /**
+     * 轨迹文件路径
+     */
+    private String file = "./logs/cache-trace.bin";
+
+    /**
+     * 写缓冲区大小（字节）
+     */
+    private int bufferSize = 64 * 1024;
+}
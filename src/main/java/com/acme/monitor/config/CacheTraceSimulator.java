@@ -0,0 +1,435 @@
+package com.acme.monitor.config;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存轨迹离线模拟器
+ *
+ * 回放 {@link CacheAccessTraceRecorder} 采集的轨迹，评估不同的L1容量、过期时间和准入策略，
+ * 输出命中率和预计的Redis QPS。
+ *
+ * 轨迹是按key哈希采样的，模拟时容量按采样率等比缩小（SHARDS方法），
+ * Redis QPS按采样率放大还原。
+ *
+ * 用法：
+ * <pre>
+ * java -cp target/classes com.acme.monitor.config.CacheTraceSimulator ./logs/cache-trace.bin 250,500,1000,5000 5m,10m,30m
+ * </pre>
+ */
+public class CacheTraceSimulator {
+
+    /**
+     * L1准入策略
+     */
+    public enum AdmissionPolicy {
+        /**
+         * 总是准入，即普通LRU
+         */
+        ALWAYS,
+        /**
+         * TinyLFU：新key的访问频率高于被淘汰key时才准入（Caffeine使用的策略）
+         */
+        TINY_LFU
+    }
+
+    /**
+     * 轨迹文件内容
+     */
+    public static class Trace {
+        private final double sampleRate;
+        private final Map<Integer, String> cacheNames = new HashMap<>();
+        private int size;
+        private long[] offsets = new long[1024];
+        private long[] keyHashes = new long[1024];
+        private byte[] cacheIds = new byte[1024];
+        private byte[] ops = new byte[1024];
+        private byte[] tiers = new byte[1024];
+
+        public Trace(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        void add(byte cacheId, byte op, byte tier, long offset, long keyHash) {
+            if (size == offsets.length) {
+                int capacity = size * 2;
+                offsets = Arrays.copyOf(offsets, capacity);
+                keyHashes = Arrays.copyOf(keyHashes, capacity);
+                cacheIds = Arrays.copyOf(cacheIds, capacity);
+                ops = Arrays.copyOf(ops, capacity);
+                tiers = Arrays.copyOf(tiers, capacity);
+            }
+            offsets[size] = offset;
+            keyHashes[size] = keyHash;
+            cacheIds[size] = cacheId;
+            ops[size] = op;
+            tiers[size] = tier;
+            size++;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Map<Integer, String> getCacheNames() {
+            return cacheNames;
+        }
+
+        /**
+         * 轨迹覆盖的时间跨度（秒），至少1秒
+         */
+        public double durationSeconds() {
+            if (size == 0) {
+                return 1;
+            }
+            return Math.max(1, (offsets[size - 1] - offsets[0]) / 1000.0);
+        }
+
+        /**
+         * 实际采集时的L1命中率，用于和模拟结果对比
+         */
+        public double recordedL1HitRatio() {
+            long gets = 0;
+            long hits = 0;
+            for (int i = 0; i < size; i++) {
+                if (ops[i] == CacheAccessTraceRecorder.OP_GET) {
+                    gets++;
+                    if (tiers[i] == CacheAccessTraceRecorder.TIER_L1) {
+                        hits++;
+                    }
+                }
+            }
+            return gets == 0 ? 0 : (double) hits / gets;
+        }
+    }
+
+    /**
+     * 候选配置
+     */
+    public static class Candidate {
+        private final long maximumSize;
+        private final Duration ttl;
+        private final AdmissionPolicy admission;
+
+        public Candidate(long maximumSize, Duration ttl, AdmissionPolicy admission) {
+            this.maximumSize = maximumSize;
+            this.ttl = ttl;
+            this.admission = admission;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public AdmissionPolicy getAdmission() {
+            return admission;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("size=%d ttl=%s admission=%s", maximumSize, ttl, admission);
+        }
+    }
+
+    /**
+     * 单个候选配置的模拟结果
+     */
+    public static class Result {
+        private final Candidate candidate;
+        private final long gets;
+        private final long hits;
+        private final double redisQps;
+
+        Result(Candidate candidate, long gets, long hits, double redisQps) {
+            this.candidate = candidate;
+            this.gets = gets;
+            this.hits = hits;
+            this.redisQps = redisQps;
+        }
+
+        public Candidate getCandidate() {
+            return candidate;
+        }
+
+        public double getHitRatio() {
+            return gets == 0 ? 0 : (double) hits / gets;
+        }
+
+        public double getRedisQps() {
+            return redisQps;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-45s hitRatio=%6.2f%% redisQps=%10.2f", candidate, getHitRatio() * 100, redisQps);
+        }
+    }
+
+    /**
+     * 读取轨迹文件
+     */
+    public static Trace read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != CacheAccessTraceRecorder.MAGIC) {
+                throw new IOException("Not a cache trace file: " + file);
+            }
+            short version = in.readShort();
+            // 版本1的偏移量是int，仍然可以读取
+            if (version != 1 && version != CacheAccessTraceRecorder.VERSION) {
+                throw new IOException("Unsupported cache trace version " + version);
+            }
+            Trace trace = new Trace(in.readDouble());
+            in.readLong();
+            while (true) {
+                int type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (type == CacheAccessTraceRecorder.RECORD_CACHE) {
+                    int id = in.readUnsignedByte();
+                    byte[] name = new byte[in.readShort()];
+                    in.readFully(name);
+                    trace.cacheNames.put(id, new String(name, StandardCharsets.UTF_8));
+                } else if (type == CacheAccessTraceRecorder.RECORD_ACCESS) {
+                    byte cacheId = in.readByte();
+                    byte op = in.readByte();
+                    byte tier = in.readByte();
+                    long offset = version == 1 ? in.readInt() : in.readLong();
+                    long keyHash = in.readLong();
+                    trace.add(cacheId, op, tier, offset, keyHash);
+                } else {
+                    throw new IOException("Corrupted cache trace, unknown record type " + type);
+                }
+            }
+            return trace;
+        }
+    }
+
+    /**
+     * 依次回放每个候选配置
+     */
+    public static List<Result> simulate(Trace trace, List<Candidate> candidates) {
+        List<Result> results = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            results.add(simulate(trace, candidate));
+        }
+        return results;
+    }
+
+    public static Result simulate(Trace trace, Candidate candidate) {
+        // 采样后的key数量按比例减少，容量也要按比例缩小
+        int scaledSize = (int) Math.max(1, Math.round(candidate.maximumSize * trace.sampleRate));
+        long ttlMillis = candidate.ttl.toMillis();
+        Map<Byte, SimulatedCache> caches = new HashMap<>();
+        long gets = 0;
+        long hits = 0;
+        long redisOps = 0;
+
+        for (int i = 0; i < trace.size; i++) {
+            SimulatedCache cache = caches.get(trace.cacheIds[i]);
+            if (cache == null) {
+                cache = new SimulatedCache(scaledSize, ttlMillis, candidate.admission);
+                caches.put(trace.cacheIds[i], cache);
+            }
+            long now = trace.offsets[i];
+            long key = trace.keyHashes[i];
+            switch (trace.ops[i]) {
+                case CacheAccessTraceRecorder.OP_GET:
+                    gets++;
+                    if (cache.get(key, now)) {
+                        hits++;
+                    } else {
+                        // L1未命中需要访问Redis，Redis中存在时回填L1（记录为MISS时随后会有PUT）
+                        redisOps++;
+                        if (trace.tiers[i] != CacheAccessTraceRecorder.TIER_MISS) {
+                            cache.put(key, now);
+                        }
+                    }
+                    break;
+                case CacheAccessTraceRecorder.OP_PUT:
+                    redisOps++;
+                    cache.put(key, now);
+                    break;
+                case CacheAccessTraceRecorder.OP_EVICT:
+                    redisOps++;
+                    cache.remove(key);
+                    break;
+                case CacheAccessTraceRecorder.OP_CLEAR:
+                    redisOps++;
+                    cache.clear();
+                    break;
+                default:
+                    break;
+            }
+        }
+        double redisQps = redisOps / trace.sampleRate / trace.durationSeconds();
+        return new Result(candidate, gets, hits, redisQps);
+    }
+
+    /**
+     * 模拟的L1缓存：按写入时间过期的LRU，可选TinyLFU准入
+     */
+    static class SimulatedCache {
+        private final int maximumSize;
+        private final long ttlMillis;
+        private final FrequencySketch sketch;
+        private final LinkedHashMap<Long, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        SimulatedCache(int maximumSize, long ttlMillis, AdmissionPolicy admission) {
+            this.maximumSize = maximumSize;
+            this.ttlMillis = ttlMillis;
+            this.sketch = admission == AdmissionPolicy.TINY_LFU ? new FrequencySketch(maximumSize) : null;
+        }
+
+        boolean get(long key, long now) {
+            if (sketch != null) {
+                sketch.increment(key);
+            }
+            Long writeTime = entries.get(key);
+            if (writeTime == null) {
+                return false;
+            }
+            if (now - writeTime >= ttlMillis) {
+                entries.remove(key);
+                return false;
+            }
+            return true;
+        }
+
+        void put(long key, long now) {
+            if (entries.containsKey(key) || entries.size() < maximumSize) {
+                entries.put(key, now);
+                return;
+            }
+            Iterator<Map.Entry<Long, Long>> eldest = entries.entrySet().iterator();
+            Map.Entry<Long, Long> victim = eldest.next();
+            if (sketch != null && sketch.frequency(key) <= sketch.frequency(victim.getKey())) {
+                return;
+            }
+            eldest.remove();
+            entries.put(key, now);
+        }
+
+        void remove(long key) {
+            entries.remove(key);
+        }
+
+        void clear() {
+            entries.clear();
+        }
+    }
+
+    /**
+     * 4位计数的Count-Min Sketch，计数总和达到阈值后全部减半以淘汰历史频率
+     */
+    static class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+        private final int[] counters;
+        private final int mask;
+        private final int resetThreshold;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(16, maximumSize * 4) - 1) << 1;
+            this.counters = new int[width * SEEDS.length];
+            this.mask = width - 1;
+            this.resetThreshold = maximumSize * 10;
+        }
+
+        void increment(long key) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = index(key, row);
+                if (counters[index] < 15) {
+                    counters[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= resetThreshold) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(long key) {
+            int frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, counters[index(key, row)]);
+            }
+            return frequency;
+        }
+
+        private int index(long key, int row) {
+            long h = (key ^ SEEDS[row]) * 0x9e3779b97f4a7c15L;
+            h ^= h >>> 29;
+            return row * (mask + 1) + (int) (h & mask);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: CacheTraceSimulator <trace-file> [sizes, e.g. 250,500,1000] [ttls, e.g. 5m,10m,30m]");
+            System.exit(1);
+        }
+        Trace trace = read(new File(args[0]));
+        String sizes = args.length > 1 ? args[1] : "250,500,1000,2000,5000";
+        String ttls = args.length > 2 ? args[2] : "5m,10m,30m";
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (String size : sizes.split(",")) {
+            for (String ttl : ttls.split(",")) {
+                for (AdmissionPolicy admission : AdmissionPolicy.values()) {
+                    candidates.add(new Candidate(Long.parseLong(size.trim()), parseDuration(ttl.trim()), admission));
+                }
+            }
+        }
+
+        System.out.printf("Trace: %d records, %.0f seconds, sample rate %.4f, caches %s%n",
+                trace.size(), trace.durationSeconds(), trace.getSampleRate(), trace.getCacheNames().values());
+        System.out.printf("Recorded L1 hit ratio: %.2f%%%n", trace.recordedL1HitRatio() * 100);
+        for (Result result : simulate(trace, candidates)) {
+            System.out.println(result);
+        }
+    }
+
+    private static Duration parseDuration(String text) {
+        long value = Long.parseLong(text.substring(0, text.length() - 1));
+        switch (text.charAt(text.length() - 1)) {
+            case 's':
+                return Duration.ofSeconds(value);
+            case 'm':
+                return Duration.ofMinutes(value);
+            case 'h':
+                return Duration.ofHours(value);
+            default:
+                throw new IllegalArgumentException("Unsupported duration: " + text);
+        }
+    }
+}
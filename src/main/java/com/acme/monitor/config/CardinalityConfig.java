@@ -0,0 +1,50 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 指标标签基数限制配置类
+ * 同一指标的同一个标签超过上限的取值统一记为 __overflow__，避免无界标签撑爆注册表
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.metrics.cardinality")
+public class CardinalityConfig {
+    /**
+     * 是否启用基数限制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 未单独配置的指标，每个标签最多保留的取值数量，0表示不限制
+     */
+    private int defaultMaxValues = 1000;
+
+    /**
+     * 按指标名称和标签单独配置的上限
+     */
+    private List<Limit> limits = new ArrayList<>();
+
+    @Data
+    public static class Limit {
+        /**
+         * 指标名称，以 * 结尾时按前缀匹配，如 method_latency、http.server.*
+         */
+        private String meter;
+
+        /**
+         * 标签名称
+         */
+        private String tag;
+
+        /**
+         * 最多保留的取值数量，0表示不限制
+         */
+        private int maxValues;
+    }
+}
@@ -0,0 +1,180 @@
+package com.acme.monitor.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 指标标签基数限制
+ *
+ * 按指标名称和标签分别记录已出现的取值，超过上限后新的取值改写为 {@link #OVERFLOW_VALUE}，
+ * 已经保留的取值不受影响。该过滤器由Spring Boot自动应用到注册表，不能依赖 MeterRegistry，
+ * 首次超限时通过 {@link #setOverflowListener(Consumer)} 通知监控服务，由其在 map() 调用之外注册指标和告警。
+ */
+@Component
+public class CardinalityLimitMeterFilter implements MeterFilter {
+    public static final String OVERFLOW_VALUE = "__overflow__";
+    /**
+     * 基数监控自身的指标不受限制
+     */
+    public static final String SELF_METER_PREFIX = "meter_cardinality";
+
+    @Autowired
+    private CardinalityConfig config;
+
+    private final Map<String, Map<String, Tracker>> trackers = new ConcurrentHashMap<>();
+    private volatile Consumer<Tracker> overflowListener;
+
+    public CardinalityLimitMeterFilter() {
+    }
+
+    CardinalityLimitMeterFilter(CardinalityConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public Meter.Id map(Meter.Id id) {
+        if (!config.isEnabled() || id.getName().startsWith(SELF_METER_PREFIX)) {
+            return id;
+        }
+        List<Tag> tags = id.getTags();
+        List<Tag> mapped = null;
+        for (int i = 0; i < tags.size(); i++) {
+            Tag tag = tags.get(i);
+            Tracker tracker = tracker(id.getName(), tag.getKey());
+            if (tracker == null || tracker.admit(tag.getValue())) {
+                continue;
+            }
+            if (mapped == null) {
+                mapped = new ArrayList<>(tags);
+            }
+            mapped.set(i, Tag.of(tag.getKey(), OVERFLOW_VALUE));
+            if (tracker.overflowed.compareAndSet(false, true)) {
+                Consumer<Tracker> listener = overflowListener;
+                if (listener != null) {
+                    listener.accept(tracker);
+                }
+            }
+        }
+        return mapped == null ? id : id.replaceTags(mapped);
+    }
+
+    /**
+     * 设置首次超限时的回调，回调在 map() 的调用线程中执行，实现方需要自行异步处理
+     */
+    public void setOverflowListener(Consumer<Tracker> overflowListener) {
+        this.overflowListener = overflowListener;
+    }
+
+    /**
+     * 所有已跟踪的指标和标签
+     */
+    public Collection<Tracker> getTrackers() {
+        List<Tracker> result = new ArrayList<>();
+        for (Map<String, Tracker> byTag : trackers.values()) {
+            result.addAll(byTag.values());
+        }
+        return result;
+    }
+
+    private Tracker tracker(String meter, String tag) {
+        Map<String, Tracker> byTag = trackers.get(meter);
+        if (byTag != null) {
+            Tracker tracker = byTag.get(tag);
+            if (tracker != null) {
+                return tracker.limit > 0 ? tracker : null;
+            }
+        }
+        int limit = limitFor(meter, tag);
+        Tracker tracker = trackers.computeIfAbsent(meter, m -> new ConcurrentHashMap<>())
+                .computeIfAbsent(tag, t -> new Tracker(meter, tag, limit));
+        return tracker.limit > 0 ? tracker : null;
+    }
+
+    private int limitFor(String meter, String tag) {
+        for (CardinalityConfig.Limit limit : config.getLimits()) {
+            String pattern = limit.getMeter();
+            boolean matches = pattern.endsWith("*")
+                    ? meter.startsWith(pattern.substring(0, pattern.length() - 1))
+                    : meter.equals(pattern);
+            if (matches && tag.equals(limit.getTag())) {
+                return limit.getMaxValues();
+            }
+        }
+        return config.getDefaultMaxValues();
+    }
+
+    /**
+     * 单个指标的单个标签的取值统计
+     */
+    public static final class Tracker {
+        private final String meter;
+        private final String tag;
+        private final int limit;
+        private final Set<String> values = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger admitted = new AtomicInteger();
+        private final LongAdder overflowHits = new LongAdder();
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+
+        Tracker(String meter, String tag, int limit) {
+            this.meter = meter;
+            this.tag = tag;
+            this.limit = limit;
+        }
+
+        /**
+         * 已保留的取值直接通过；新取值在名额内时保留，否则计一次溢出
+         */
+        boolean admit(String value) {
+            if (values.contains(value)) {
+                return true;
+            }
+            if (admitted.incrementAndGet() <= limit) {
+                if (!values.add(value)) {
+                    admitted.decrementAndGet();
+                }
+                return true;
+            }
+            admitted.decrementAndGet();
+            overflowHits.increment();
+            return false;
+        }
+
+        public String getMeter() {
+            return meter;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public int getDistinctValues() {
+            return values.size();
+        }
+
+        public long getOverflowHits() {
+            return overflowHits.sum();
+        }
+
+        public boolean isOverflowed() {
+            return overflowed.get();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 锁竞争和死锁监控配置类
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.contention")
+public class ContentionConfig {
+    private boolean enabled = true;
+
+    /**
+     * 采样等锁线程的间隔（毫秒），每把锁的等待时间按采样次数估算
+     */
+    private long sampleIntervalMs = 100;
+
+    /**
+     * 汇总间隔（毫秒）：计算每个线程的阻塞/等待时间增量、生成锁排行并检测死锁
+     */
+    private long reportIntervalMs = 10000;
+
+    /**
+     * 排行中保留的锁数量和线程数量
+     */
+    private int topLocks = 10;
+
+    private int topThreads = 10;
+
+    /**
+     * 持有者调用栈和死锁线程调用栈的最大深度
+     */
+    private int stackDepth = 16;
+
+    /**
+     * 每个汇总周期最多跟踪的锁数量
+     */
+    private int maxLocks = 1000;
+}
@@ -0,0 +1,55 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 跨单元健康状态聚合配置类
+ * 并发请求各个对端单元的 /api/health/status，合并为集群视图
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.federation")
+public class FederationConfig {
+    /**
+     * 对端单元列表，不包含本单元
+     */
+    private List<Peer> peers = new ArrayList<>();
+
+    /**
+     * 单个对端的总超时时间（毫秒），超时的单元在结果中标记为TIMEOUT
+     */
+    private long timeoutMs = 1000;
+
+    /**
+     * 对端在该时间（毫秒）内未返回时发出一次对冲请求，0表示不对冲
+     */
+    private long hedgeDelayMs = 300;
+
+    /**
+     * 集群视图缓存时间（毫秒），期间的请求直接返回缓存结果
+     */
+    private long cacheTtlMs = 2000;
+
+    /**
+     * 请求对端使用的线程数
+     */
+    private int threads = 8;
+
+    @Data
+    public static class Peer {
+        /**
+         * 对端单元ID，与对端的 unit.id 一致
+         */
+        private String id;
+
+        /**
+         * 对端地址，如 http://10.0.0.2:8080；配置多个时对冲请求发往下一个地址
+         */
+        private List<String> urls = new ArrayList<>();
+    }
+}
@@ -0,0 +1,30 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * GC事件监控配置类
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.gc")
+public class GcMonitorConfig {
+    private boolean enabled = true;
+
+    /**
+     * 保留的最近GC事件数量
+     */
+    private int historySize = 256;
+
+    /**
+     * 计算分配速率、晋升速率和GC开销的滑动窗口（秒）
+     */
+    private int rateWindowSeconds = 60;
+
+    /**
+     * 停顿超过该值（毫秒）时输出警告日志
+     */
+    private long longPauseMs = 500;
+}
@@ -0,0 +1,55 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 方法级延迟埋点配置类
+ * 每个切点匹配到的方法记录到 method_latency 计时器，切点表达式使用AspectJ语法，高QPS的切点可以开启自适应采样
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.instrumentation")
+public class InstrumentationConfig {
+    /**
+     * 是否启用方法级延迟埋点，修改后需要重启
+     */
+    private boolean enabled = true;
+
+    /**
+     * 切点列表，一个方法匹配多个切点时归入第一个
+     */
+    private List<Pointcut> pointcuts = new ArrayList<>();
+
+    @Data
+    public static class Pointcut {
+        /**
+         * 切点名称，作为 method_latency 的 pointcut 标签
+         */
+        private String name;
+
+        /**
+         * AspectJ切点表达式，如 within(com.acme..*) &amp;&amp; @within(org.springframework.stereotype.Service)
+         */
+        private String expression;
+
+        /**
+         * 同时记录到 LatencySketchService 的来源名称，为空时不记录
+         */
+        private String sketchSource;
+
+        /**
+         * 每秒的目标样本数，调用速率超过该值时按比例采样，导出的次数和总耗时按采样概率放大；0表示记录每一次调用
+         */
+        private double samplesPerSecond = 0;
+
+        /**
+         * 耗时不低于该值（毫秒）的调用和抛出异常的调用总是记录，不参与采样
+         */
+        private long alwaysRecordAboveMs = 100;
+    }
+}
@@ -0,0 +1,28 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 实时指标推送（SSE）配置类
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.stream")
+public class LiveStreamConfig {
+    /**
+     * 最大订阅者数量，超过后新的连接返回503
+     */
+    private int maxSubscribers = 500;
+
+    /**
+     * 订阅者连续多久（毫秒）无法写入后断开
+     */
+    private long maxStallMs = 30000;
+
+    /**
+     * 每隔多少帧发送一次完整快照，其余帧只包含变化的指标
+     */
+    private int snapshotEveryFrames = 30;
+}
@@ -0,0 +1,43 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 常驻线程栈采样配置类
+ * 按固定间隔采样RUNNABLE线程的调用栈，按分钟窗口聚合为火焰图和热点方法排行
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.profiler")
+public class ProfilerConfig {
+    private boolean enabled = true;
+
+    /**
+     * 采样间隔（毫秒），超出CPU预算时自动放大，最多放大到 maxIntervalMs
+     */
+    private long intervalMs = 50;
+
+    private long maxIntervalMs = 1000;
+
+    /**
+     * 采样线程允许占用的CPU（单核的百分比）
+     */
+    private double cpuBudgetPct = 1.0;
+
+    /**
+     * 每个线程栈最多采集的帧数（从栈顶算起）
+     */
+    private int maxDepth = 64;
+
+    /**
+     * 保留的1分钟窗口数
+     */
+    private int retainMinutes = 15;
+
+    /**
+     * 每个窗口的调用路径数上限，超过后归入 [truncated] 节点
+     */
+    private int maxPaths = 20000;
+}
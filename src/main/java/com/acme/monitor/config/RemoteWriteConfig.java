@@ -0,0 +1,63 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prometheus remote write 推送配置类
+ * 用于Prometheus无法主动抓取的单元（如NAT之后），定时把注册表中的指标推送到远端
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.remote-write")
+public class RemoteWriteConfig {
+    /**
+     * 是否启用推送
+     */
+    private boolean enabled = false;
+
+    /**
+     * 接收端地址，如 http://prometheus:9090/api/v1/write
+     */
+    private String url;
+
+    /**
+     * 附加的请求头，如 Authorization
+     */
+    private Map<String, String> headers = new LinkedHashMap<>();
+
+    /**
+     * 采集间隔（毫秒）
+     */
+    private long intervalMs = 15000;
+
+    /**
+     * 单个请求最多包含的样本数
+     */
+    private int maxSamplesPerBatch = 2000;
+
+    /**
+     * 未满的批次最多等待的时间（毫秒），超过后立即发送
+     */
+    private long maxBatchDelayMs = 5000;
+
+    /**
+     * 待发送队列最多保留的批次数，超过时丢弃最旧的批次
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * 请求超时时间（毫秒）
+     */
+    private int timeoutMs = 5000;
+
+    /**
+     * 发送失败后的重试间隔（毫秒），连续失败时翻倍直到最大值
+     */
+    private long minBackoffMs = 500;
+    private long maxBackoffMs = 30000;
+}
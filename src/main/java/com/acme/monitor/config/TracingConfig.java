@@ -0,0 +1,41 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 进程内span追踪配置类
+ * 埋点方法、缓存和异步任务的span按调用路径聚合为火焰图
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.tracing")
+public class TracingConfig {
+    private boolean enabled = true;
+
+    /**
+     * 环形缓冲区的槽位数（向上取整到2的幂），聚合线程来不及读取时最旧的span被覆盖
+     */
+    private int ringSize = 16384;
+
+    /**
+     * 单个线程上span的最大嵌套深度，更深的span不记录
+     */
+    private int maxDepth = 32;
+
+    /**
+     * 每个窗口的调用路径数上限，超过后归入 [truncated] 节点
+     */
+    private int maxPaths = 5000;
+
+    /**
+     * 聚合线程读取环形缓冲区的间隔（毫秒）
+     */
+    private long drainIntervalMs = 200;
+
+    /**
+     * 聚合窗口（秒），火焰图包含当前窗口和上一个完整窗口
+     */
+    private long windowSeconds = 300;
+}
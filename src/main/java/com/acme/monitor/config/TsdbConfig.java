@@ -0,0 +1,59 @@
+package com.acme.monitor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地时序存储配置类
+ * 单元指标按Gorilla方式压缩后写入内存映射的分段文件，进程重启或Prometheus不可用时仍可查询历史
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.tsdb")
+public class TsdbConfig {
+    /**
+     * 是否启用本地时序存储
+     */
+    private boolean enabled = false;
+
+    /**
+     * 分段文件目录
+     */
+    private String directory = "./data/tsdb";
+
+    /**
+     * 数据块大小（字节），每个块只保存一个指标的连续数据
+     */
+    private int blockSize = 4096;
+
+    /**
+     * 每个分段文件的块数量（含文件头块），默认每个分段4MB
+     */
+    private int blocksPerSegment = 1024;
+
+    /**
+     * 每个原始分段最多覆盖的时长（小时），超过后切换到新分段，便于按分段过期和合并
+     */
+    private long segmentHours = 6;
+
+    /**
+     * 数据保留时长（小时）
+     */
+    private long retentionHours = 72;
+
+    /**
+     * 超过该时长（小时）的原始分段会被合并并降采样
+     */
+    private long compactAfterHours = 24;
+
+    /**
+     * 合并后的数据分辨率（秒），取时间窗口内的平均值
+     */
+    private long compactionResolutionSeconds = 60;
+
+    /**
+     * 过期清理和合并的检查间隔（毫秒）
+     */
+    private long maintenanceIntervalMs = 600000;
+}
@@ -1,23 +1,159 @@
 package com.acme.monitor.config;
 
+import com.acme.monitor.service.SpanTracer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 public class TwoLevelCache implements Cache {
     private static final Logger logger = LoggerFactory.getLogger(TwoLevelCache.class);
 
+    /**
+     * 按标签批量失效时每批处理的key数量
+     */
+    static final int TAG_EVICT_BATCH_SIZE = 500;
+
+    /**
+     * 本地标签索引超过该数量时，清理已不在Caffeine中的key；
+     * 清理后下一次的阈值为剩余数量的两倍（不低于该值），每个key分摊的清理开销为常数
+     */
+    static final int TAG_INDEX_PRUNE_THRESHOLD = 10000;
+
+    /**
+     * 按标签失效后通知其他节点清理本地缓存的Redis频道
+     */
+    public static final String INVALIDATION_CHANNEL = "two-level-cache:invalidation";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private final String name;
     private final Cache caffeineCache;
+    // Caffeine原生缓存，用于按字符串形式查找非字符串key；L1不是Caffeine时为null
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeL1;
     private final Cache redisCache;
+    // 标签二级索引：Redis中使用Set保存，为null时只维护本地索引
+    private final StringRedisTemplate redisTemplate;
+
+    // 访问轨迹采集，未启用时为null
+    private volatile CacheAccessTraceRecorder traceRecorder;
+    // span追踪，未启用时为null；帧名称预先拼好
+    private volatile SpanTracer spanTracer;
+    private final String getFrame;
+    private final String redisGetFrame;
+    private final String putFrame;
+
+    // 读取结果计数：Caffeine命中、Redis命中、未命中
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // 本地标签索引：tag -> keys，以及反向索引 key -> tags
+    private final Map<String, Set<Object>> tagIndex = new ConcurrentHashMap<>();
+    private final Map<Object, Set<String>> keyTags = new ConcurrentHashMap<>();
+    // 带标签key的字符串形式 -> 原始key，Redis标签集合和失效通知中只有字符串形式
+    private final Map<String, Object> keysByName = new ConcurrentHashMap<>();
+    // 下一次清理本地标签索引的阈值，同一时间只有一个线程清理
+    private volatile int pruneAt = TAG_INDEX_PRUNE_THRESHOLD;
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    // 本节点标识，收到自己发出的失效通知时忽略
+    private volatile String nodeId;
 
     public TwoLevelCache(String name, Cache caffeineCache, Cache redisCache) {
+        this(name, caffeineCache, redisCache, null);
+    }
+
+    public TwoLevelCache(String name, Cache caffeineCache, Cache redisCache, StringRedisTemplate redisTemplate) {
         this.name = name;
         this.caffeineCache = caffeineCache;
+        this.nativeL1 = caffeineCache instanceof CaffeineCache
+                ? ((CaffeineCache) caffeineCache).getNativeCache() : null;
         this.redisCache = redisCache;
+        this.redisTemplate = redisTemplate;
+        this.getFrame = "cache:" + name + ".get";
+        this.redisGetFrame = "redis:" + name + ".get";
+        this.putFrame = "cache:" + name + ".put";
+    }
+
+    public void setTraceRecorder(CacheAccessTraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    public void setSpanTracer(SpanTracer spanTracer) {
+        this.spanTracer = spanTracer;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * 注册读取结果计数器 two_level_cache_gets{cache, result=l1_hit|l2_hit|miss}
+     */
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        registerGets(meterRegistry, "l1_hit", l1Hits);
+        registerGets(meterRegistry, "l2_hit", l2Hits);
+        registerGets(meterRegistry, "miss", misses);
+    }
+
+    private void registerGets(MeterRegistry meterRegistry, String result, LongAdder counter) {
+        FunctionCounter.builder("two_level_cache.gets", counter, LongAdder::doubleValue)
+                .description("Two-level cache reads by result")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public long getL1Hits() {
+        return l1Hits.sum();
+    }
+
+    public long getL2Hits() {
+        return l2Hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private SpanTracer beginSpan(String frame) {
+        SpanTracer tracer = spanTracer;
+        if (tracer != null) {
+            tracer.begin(frame);
+        }
+        return tracer;
+    }
+
+    private static void endSpan(SpanTracer tracer) {
+        if (tracer != null) {
+            tracer.end();
+        }
+    }
+
+    private void trace(Object key, byte op, byte tier) {
+        CacheAccessTraceRecorder recorder = traceRecorder;
+        if (recorder != null) {
+            recorder.record(name, key, op, tier);
+        }
     }
 
     @Override
@@ -33,26 +169,39 @@ public class TwoLevelCache implements Cache {
     @Override
     public ValueWrapper get(Object key) {
         long startTime = System.currentTimeMillis();
+        SpanTracer tracer = beginSpan(getFrame);
         try {
             // 先从Caffeine中获取
             ValueWrapper valueWrapper = caffeineCache.get(key);
             if (valueWrapper != null) {
                 logger.debug("Cache hit from Caffeine: {}", key);
+                l1Hits.increment();
+                trace(key, CacheAccessTraceRecorder.OP_GET, CacheAccessTraceRecorder.TIER_L1);
                 return valueWrapper;
             }
 
             // Caffeine中没有，再从Redis中获取
-            valueWrapper = redisCache.get(key);
+            SpanTracer redisTracer = beginSpan(redisGetFrame);
+            try {
+                valueWrapper = redisCache.get(key);
+            } finally {
+                endSpan(redisTracer);
+            }
             if (valueWrapper != null) {
                 logger.debug("Cache hit from Redis: {}", key);
+                l2Hits.increment();
                 // 放入Caffeine中，下次直接从内存获取
                 caffeineCache.put(key, valueWrapper.get());
+                trace(key, CacheAccessTraceRecorder.OP_GET, CacheAccessTraceRecorder.TIER_L2);
                 return valueWrapper;
             }
 
             logger.debug("Cache miss for key: {}", key);
+            misses.increment();
+            trace(key, CacheAccessTraceRecorder.OP_GET, CacheAccessTraceRecorder.TIER_MISS);
             return null;
         } finally {
+            endSpan(tracer);
             long duration = System.currentTimeMillis() - startTime;
             if (duration > 10) {
                 logger.warn("Cache get operation took {} ms for key: {}", duration, key);
@@ -101,12 +250,15 @@ public class TwoLevelCache implements Cache {
     @Override
     public void put(Object key, Object value) {
         long startTime = System.currentTimeMillis();
+        SpanTracer tracer = beginSpan(putFrame);
         try {
             // 同时放入两级缓存
             caffeineCache.put(key, value);
             redisCache.put(key, value);
+            trace(key, CacheAccessTraceRecorder.OP_PUT, CacheAccessTraceRecorder.TIER_NONE);
             logger.debug("Value put into both Caffeine and Redis caches: {}", key);
         } finally {
+            endSpan(tracer);
             long duration = System.currentTimeMillis() - startTime;
             if (duration > 10) {
                 logger.warn("Cache put operation took {} ms for key: {}", duration, key);
@@ -114,6 +266,268 @@ public class TwoLevelCache implements Cache {
         }
     }
 
+    /**
+     * 放入缓存并打上标签，之后可以通过 {@link #evictByTag(String)} 按标签批量失效
+     */
+    public void put(Object key, Object value, String... tags) {
+        put(key, value);
+        tag(key, tags);
+    }
+
+    /**
+     * 为已存在的key追加标签（如租户、单元）
+     * 本地已记录过的标签不会重复写入Redis
+     */
+    public void tag(Object key, String... tags) {
+        if (key == null || tags == null || tags.length == 0) {
+            return;
+        }
+        Set<String> existing = keyTags.get(key);
+        if (existing == null) {
+            existing = keyTags.computeIfAbsent(key, k -> {
+                keysByName.put(String.valueOf(k), k);
+                return ConcurrentHashMap.newKeySet();
+            });
+        }
+        for (String tag : tags) {
+            if (tag == null || !existing.add(tag)) {
+                continue;
+            }
+            tagIndex.computeIfAbsent(tag, t -> ConcurrentHashMap.newKeySet()).add(key);
+            if (redisTemplate != null) {
+                try {
+                    String tagKey = redisTagKey(tag);
+                    redisTemplate.opsForSet().add(tagKey, String.valueOf(key));
+                    Duration ttl = redisEntryTtl();
+                    if (ttl != null) {
+                        redisTemplate.expire(tagKey, ttl);
+                    }
+                } catch (Exception e) {
+                    logger.warn("Failed to index tag {} for key {} in Redis", tag, key, e);
+                }
+            }
+        }
+        if (keyTags.size() > pruneAt && pruning.compareAndSet(false, true)) {
+            try {
+                pruneTagIndex();
+            } finally {
+                pruning.set(false);
+            }
+        }
+    }
+
+    /**
+     * 按标签失效缓存，只删除带该标签的key，两级缓存同时处理
+     *
+     * @param tag 标签
+     * @return 失效的key数量
+     */
+    public int evictByTag(String tag) {
+        long startTime = System.currentTimeMillis();
+        int evicted = 0;
+        try {
+            // 本地索引中的key：原始key对象，Caffeine按原始key删除
+            Set<Object> localKeys = tagIndex.remove(tag);
+            Set<String> evictedKeys = new HashSet<>();
+            if (localKeys != null) {
+                List<String> batch = new ArrayList<>(TAG_EVICT_BATCH_SIZE);
+                for (Object key : localKeys) {
+                    caffeineCache.evict(key);
+                    // 缓存项已删除，key的其他标签也一并移除
+                    untagAll(key);
+                    batch.add(String.valueOf(key));
+                    evictedKeys.add(String.valueOf(key));
+                    evicted++;
+                    if (batch.size() >= TAG_EVICT_BATCH_SIZE) {
+                        evictRedisBatch(batch);
+                        batch.clear();
+                    }
+                }
+                evictRedisBatch(batch);
+            }
+
+            // Redis标签集合中的key：可能由其他节点写入，分批弹出后删除
+            if (redisTemplate != null) {
+                String tagKey = redisTagKey(tag);
+                List<String> members;
+                while ((members = redisTemplate.opsForSet().pop(tagKey, TAG_EVICT_BATCH_SIZE)) != null
+                        && !members.isEmpty()) {
+                    List<String> fresh = new ArrayList<>(members.size());
+                    for (String member : members) {
+                        if (evictedKeys.add(member)) {
+                            fresh.add(member);
+                            evicted++;
+                        }
+                    }
+                    evictLocalByName(fresh);
+                    evictRedisBatch(members);
+                }
+            }
+            publishInvalidation(tag, evictedKeys);
+            logger.debug("Evicted {} entries tagged {} from cache {}", evicted, tag, name);
+            return evicted;
+        } finally {
+            long duration = System.currentTimeMillis() - startTime;
+            if (duration > 10) {
+                logger.warn("Cache evictByTag operation took {} ms for tag: {}", duration, tag);
+            }
+        }
+    }
+
+    /**
+     * 按字符串形式从本地缓存中删除key
+     *
+     * 本节点打过标签的key通过 keysByName 还原为原始key；其余的（如从Redis回填到本地的key）先按字符串删除，
+     * 再在Caffeine中查找字符串形式相同的非字符串key。
+     */
+    private void evictLocalByName(Collection<String> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+        Set<String> unresolved = new HashSet<>();
+        for (String keyName : names) {
+            Object key = keysByName.get(keyName);
+            if (key != null) {
+                caffeineCache.evict(key);
+                untagAll(key);
+            } else {
+                caffeineCache.evict(keyName);
+                unresolved.add(keyName);
+            }
+        }
+        if (!unresolved.isEmpty() && nativeL1 != null) {
+            nativeL1.asMap().keySet().removeIf(k -> !(k instanceof String) && unresolved.contains(String.valueOf(k)));
+        }
+    }
+
+    /**
+     * 通知其他节点清理本地缓存中带该标签的key，按批发送
+     */
+    private void publishInvalidation(String tag, Collection<String> keys) {
+        if (redisTemplate == null) {
+            return;
+        }
+        List<String> all = new ArrayList<>(keys);
+        int from = 0;
+        do {
+            int to = Math.min(all.size(), from + TAG_EVICT_BATCH_SIZE);
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("node", nodeId);
+            message.put("cache", name);
+            message.put("tag", tag);
+            message.put("keys", all.subList(from, to));
+            try {
+                redisTemplate.convertAndSend(INVALIDATION_CHANNEL, MAPPER.writeValueAsString(message));
+            } catch (Exception e) {
+                logger.warn("Failed to publish invalidation of tag {} in cache {}", tag, name, e);
+                return;
+            }
+            from = to;
+        } while (from < all.size());
+    }
+
+    /**
+     * 处理其他节点发出的按标签失效通知，只清理本地缓存和本地标签索引
+     *
+     * @param tag  失效的标签
+     * @param keys 失效的key的字符串形式
+     */
+    void onInvalidation(String tag, Collection<String> keys) {
+        Set<Object> localKeys = tagIndex.remove(tag);
+        if (localKeys != null) {
+            for (Object key : localKeys) {
+                caffeineCache.evict(key);
+                untagAll(key);
+            }
+        }
+        evictLocalByName(keys);
+        logger.debug("Invalidated {} keys tagged {} in local cache {}", keys.size(), tag, name);
+    }
+
+    /**
+     * 清理本地标签索引中已经被Caffeine淘汰的key
+     */
+    public void pruneTagIndex() {
+        for (Object key : keyTags.keySet()) {
+            if (!isInL1(key)) {
+                untagAll(key);
+            }
+        }
+        pruneAt = Math.max(TAG_INDEX_PRUNE_THRESHOLD, keyTags.size() * 2);
+    }
+
+    /**
+     * 检查key是否仍在Caffeine中；使用 getIfPresentQuietly，不计入命中统计，也不影响淘汰顺序
+     */
+    private boolean isInL1(Object key) {
+        if (nativeL1 != null) {
+            return nativeL1.policy().getIfPresentQuietly(key) != null;
+        }
+        return caffeineCache.get(key) != null;
+    }
+
+    /**
+     * 返回本地索引中带有该标签的key数量
+     */
+    public int getTaggedKeyCount(String tag) {
+        Set<Object> keys = tagIndex.get(tag);
+        return keys == null ? 0 : keys.size();
+    }
+
+    private void evictRedisBatch(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        String prefix = redisKeyPrefix();
+        if (redisTemplate != null && prefix != null) {
+            List<String> redisKeys = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                redisKeys.add(prefix + key);
+            }
+            redisTemplate.delete(redisKeys);
+        } else {
+            for (String key : keys) {
+                redisCache.evict(key);
+            }
+        }
+    }
+
+    private void untagAll(Object key) {
+        Set<String> tags = keyTags.remove(key);
+        if (tags == null) {
+            return;
+        }
+        keysByName.remove(String.valueOf(key), key);
+        for (String tag : tags) {
+            Set<Object> keys = tagIndex.get(tag);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    tagIndex.remove(tag, keys);
+                }
+            }
+        }
+    }
+
+    private String redisTagKey(String tag) {
+        return name + ":tags:" + tag;
+    }
+
+    private String redisKeyPrefix() {
+        if (redisCache instanceof RedisCache) {
+            return ((RedisCache) redisCache).getCacheConfiguration().getKeyPrefixFor(name);
+        }
+        return null;
+    }
+
+    private Duration redisEntryTtl() {
+        if (redisCache instanceof RedisCache) {
+            Duration ttl = ((RedisCache) redisCache).getCacheConfiguration().getTtl();
+            return ttl.isZero() || ttl.isNegative() ? null : ttl;
+        }
+        return null;
+    }
+
     @Override
     public void evict(Object key) {
         long startTime = System.currentTimeMillis();
@@ -121,6 +535,8 @@ public class TwoLevelCache implements Cache {
             // 从两级缓存中都删除
             caffeineCache.evict(key);
             redisCache.evict(key);
+            untagAll(key);
+            trace(key, CacheAccessTraceRecorder.OP_EVICT, CacheAccessTraceRecorder.TIER_NONE);
             logger.debug("Value evicted from both Caffeine and Redis caches: {}", key);
         } finally {
             long duration = System.currentTimeMillis() - startTime;
@@ -137,6 +553,10 @@ public class TwoLevelCache implements Cache {
             // 清空两级缓存
             caffeineCache.clear();
             redisCache.clear();
+            tagIndex.clear();
+            keyTags.clear();
+            keysByName.clear();
+            trace(null, CacheAccessTraceRecorder.OP_CLEAR, CacheAccessTraceRecorder.TIER_NONE);
             logger.debug("Both Caffeine and Redis caches cleared");
         } finally {
             long duration = System.currentTimeMillis() - startTime;
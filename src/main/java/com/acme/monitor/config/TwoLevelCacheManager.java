@@ -1,27 +1,118 @@
 package com.acme.monitor.config;
 
+import com.acme.monitor.service.SpanTracer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 二级缓存管理器，同时接收其他节点通过 {@link TwoLevelCache#INVALIDATION_CHANNEL} 发出的按标签失效通知
+ */
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
 
-public class TwoLevelCacheManager implements CacheManager {
     private final CacheManager caffeineCacheManager;
     private final CacheManager redisCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    // 缓存实例需要复用，否则每次获取都会丢失本地标签索引
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private CacheAccessTraceRecorder traceRecorder;
+    private SpanTracer spanTracer;
+    private MeterRegistry meterRegistry;
+    private final String nodeId = UUID.randomUUID().toString();
 
     public TwoLevelCacheManager(CacheManager caffeineCacheManager, CacheManager redisCacheManager) {
+        this(caffeineCacheManager, redisCacheManager, null);
+    }
+
+    public TwoLevelCacheManager(CacheManager caffeineCacheManager, CacheManager redisCacheManager,
+                                StringRedisTemplate redisTemplate) {
         this.caffeineCacheManager = caffeineCacheManager;
         this.redisCacheManager = redisCacheManager;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 设置访问轨迹采集器，对之后创建的缓存生效
+     */
+    public void setTraceRecorder(CacheAccessTraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * 设置span追踪，对之后创建的缓存生效
+     */
+    public void setSpanTracer(SpanTracer spanTracer) {
+        this.spanTracer = spanTracer;
+    }
+
+    /**
+     * 设置指标注册表，对之后创建的缓存生效
+     */
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
     public Cache getCache(String name) {
-        return new TwoLevelCache(name, caffeineCacheManager.getCache(name), redisCacheManager.getCache(name));
+        return caches.computeIfAbsent(name, n -> {
+            TwoLevelCache cache = new TwoLevelCache(n, caffeineCacheManager.getCache(n),
+                    redisCacheManager.getCache(n), redisTemplate);
+            cache.setTraceRecorder(traceRecorder);
+            cache.setSpanTracer(spanTracer);
+            cache.setNodeId(nodeId);
+            if (meterRegistry != null) {
+                cache.setMeterRegistry(meterRegistry);
+            }
+            return cache;
+        });
+    }
+
+    /**
+     * 收到按标签失效通知时，清理本节点对应缓存的本地副本；本节点发出的通知和未创建的缓存忽略
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JsonNode node;
+        try {
+            node = MAPPER.readTree(message.getBody());
+        } catch (IOException e) {
+            logger.warn("Ignoring malformed cache invalidation message: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(node.path("node").asText(null))) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(node.path("cache").asText());
+        if (cache == null) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        for (JsonNode key : node.path("keys")) {
+            keys.add(key.asText());
+        }
+        cache.onInvalidation(node.path("tag").asText(), keys);
     }
 
     @Override
     public Collection<String> getCacheNames() {
-        return Collections.emptySet();
+        return Collections.unmodifiableSet(caches.keySet());
     }
-}
\ No newline at end of file
+}
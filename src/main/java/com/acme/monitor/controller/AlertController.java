@@ -0,0 +1,71 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.service.AlertRuleEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地告警接口
+ * 供Grafana滚动告警横幅等使用，规则定义见 alert-rules.yml
+ */
+@RestController
+@RequestMapping("/api/alerts")
+public class AlertController {
+
+    @Autowired
+    private AlertRuleEngine alertRuleEngine;
+
+    /**
+     * 当前处于PENDING和FIRING状态的告警
+     */
+    @GetMapping
+    public Map<String, Object> active() {
+        List<Map<String, Object>> alerts = alertRuleEngine.getActiveAlerts();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", System.currentTimeMillis());
+        result.put("firing", alertRuleEngine.getFiringCount());
+        result.put("alerts", alerts);
+        return result;
+    }
+
+    @GetMapping("/rules")
+    public Map<String, Object> rules() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("source", alertRuleEngine.getRulesSource());
+        result.put("rules", alertRuleEngine.getRules());
+        return result;
+    }
+
+    /**
+     * 最近的告警触发和恢复记录
+     */
+    @GetMapping("/history")
+    public List<Map<String, Object>> history() {
+        return alertRuleEngine.getHistory();
+    }
+
+    /**
+     * 立即重新加载规则文件
+     */
+    @PostMapping("/reload")
+    public Map<String, Object> reload() {
+        try {
+            int count = alertRuleEngine.reload();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("source", alertRuleEngine.getRulesSource());
+            result.put("rules", count);
+            return result;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.service.RequestAllocationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 接口分配量接口
+ */
+@RestController
+@RequestMapping("/api/allocations")
+public class AllocationController {
+
+    @Autowired
+    private RequestAllocationService requestAllocationService;
+
+    /**
+     * 各接口启动以来每个请求的分配量统计，按总分配量降序，JVM不支持时 supported 为false
+     */
+    @GetMapping
+    public Map<String, Object> allocations() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", System.currentTimeMillis());
+        result.put("supported", requestAllocationService.isSupported());
+        result.put("endpoints", requestAllocationService.getEndpointAllocations());
+        return result;
+    }
+}
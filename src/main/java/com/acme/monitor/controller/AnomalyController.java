@@ -0,0 +1,54 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.config.AnomalyConfig;
+import com.acme.monitor.service.AnomalyDetectionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在线异常检测接口
+ */
+@RestController
+@RequestMapping("/api/anomalies")
+public class AnomalyController {
+
+    @Autowired
+    private AnomalyDetectionService anomalyDetectionService;
+
+    @Autowired
+    private AnomalyConfig config;
+
+    /**
+     * 当前异常分数最高的序列
+     */
+    @GetMapping
+    public Map<String, Object> scores(@RequestParam(defaultValue = "20") int top) {
+        if (top <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "top must be positive");
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", System.currentTimeMillis());
+        result.put("threshold", config.getThreshold());
+        result.put("series", anomalyDetectionService.getSeriesCount());
+        result.put("bytes_per_series", anomalyDetectionService.getBytesPerSeries());
+        result.put("scores", anomalyDetectionService.getTopScores(top));
+        return result;
+    }
+
+    /**
+     * 最近的异常事件，最新的在前
+     */
+    @GetMapping("/events")
+    public List<Map<String, Object>> events() {
+        return anomalyDetectionService.getRecentEvents();
+    }
+}
@@ -27,6 +27,11 @@ public class CacheTestController {
         userService.deleteUser(id);
     }
     
+    @DeleteMapping("/user/domain/{domain}")
+    public void deleteUsersByDomain(@PathVariable String domain) {
+        userService.deleteUsersByDomain(domain);
+    }
+    
     @DeleteMapping("/user/clear")
     public void clearAllUsers() {
         userService.clearAllUsers();
@@ -0,0 +1,28 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.service.LockContentionMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 锁竞争和死锁接口
+ */
+@RestController
+@RequestMapping("/api/contention")
+public class ContentionController {
+
+    @Autowired
+    private LockContentionMonitor monitor;
+
+    /**
+     * 最近一个汇总周期内竞争最激烈的锁（等待位置、持有者调用栈）、阻塞最多的线程和死锁，第一次汇总前为空
+     */
+    @GetMapping
+    public Map<String, Object> report() {
+        return monitor.getLastReport();
+    }
+}
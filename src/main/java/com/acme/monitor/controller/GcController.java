@@ -0,0 +1,44 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.service.GcEventMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * GC事件接口
+ */
+@RestController
+@RequestMapping("/api/gc")
+public class GcController {
+
+    @Autowired
+    private GcEventMonitor gcEventMonitor;
+
+    /**
+     * 最近的GC事件（最新的在前）和滑动窗口内的分配速率、晋升速率、GC开销
+     */
+    @GetMapping("/events")
+    public Map<String, Object> events(@RequestParam(defaultValue = "50") int limit) {
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", now);
+        result.put("window_seconds", gcEventMonitor.getRateWindowSeconds());
+        result.put("allocation_bytes_per_s", gcEventMonitor.getAllocationRate(now));
+        result.put("promotion_bytes_per_s", gcEventMonitor.getPromotionRate(now));
+        result.put("overhead_pct", gcEventMonitor.getOverheadPct(now));
+        result.put("total_events", gcEventMonitor.getEventCount());
+        result.put("events", gcEventMonitor.getRecentEvents(limit));
+        return result;
+    }
+}
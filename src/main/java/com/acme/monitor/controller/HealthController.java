@@ -1,8 +1,23 @@
 package com.acme.monitor.controller;
 
+import com.acme.monitor.service.HealthFederationService;
+import com.acme.monitor.service.HealthStatusPublisher;
+import com.acme.monitor.service.MetricHistoryStore;
 import com.acme.monitor.service.UnitMetricsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -11,14 +26,96 @@ import java.util.Map;
 @RestController
 @RequestMapping("/api/health")
 public class HealthController {
+    /**
+     * 还没有生成过健康状态时返回的内容
+     */
+    private static final byte[] STATUS_UNAVAILABLE = "{\"status\":\"DOWN\"}".getBytes(StandardCharsets.UTF_8);
+
     @Autowired
-    private UnitMetricsService unitMetricsService;
+    private HealthStatusPublisher healthStatusPublisher;
+
+    @Autowired
+    private MetricHistoryStore metricHistoryStore;
+
+    @Autowired
+    private HealthFederationService healthFederationService;
 
     /**
      * 获取当前单元健康状态
+     * 返回后台预先生成的JSON，支持 If-None-Match 条件请求（包括弱ETag和多个ETag）；
+     * 启动后还没有成功生成过健康状态时返回503和DOWN状态
      */
     @GetMapping("/status")
-    public Map<String, Object> status() {
-        return unitMetricsService.getUnitStatus();
+    public ResponseEntity<byte[]> status(WebRequest request) {
+        HealthStatusPublisher.Payload payload = healthStatusPublisher.getPayload();
+        if (payload == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .cacheControl(CacheControl.noStore())
+                    .body(STATUS_UNAVAILABLE);
+        }
+        if (request.checkNotModified(payload.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(payload.getEtag())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(payload.getEtag())
+                .body(payload.getBody());
+    }
+
+    /**
+     * 查询单元指标历史
+     *
+     * @param metrics 指标名称，多个用逗号分隔，默认全部
+     * @param from    起始时间（毫秒时间戳），默认5分钟前
+     * @param to      结束时间（毫秒时间戳），默认当前时间
+     * @param step    分辨率，如 1s、10s、1m，默认按时间范围自动选择
+     */
+    @GetMapping("/history")
+    public Map<String, Object> history(@RequestParam(required = false) String metrics,
+                                       @RequestParam(required = false) Long from,
+                                       @RequestParam(required = false) Long to,
+                                       @RequestParam(required = false) String step) {
+        long end = to != null ? to : System.currentTimeMillis();
+        long start = from != null ? from : end - 5 * 60 * 1000L;
+        if (start < 0 || start > end) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid time range: " + start + " - " + end);
+        }
+        long stepMillis = 0;
+        if (step != null) {
+            try {
+                stepMillis = DurationStyle.detectAndParse(step).toMillis();
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid step: " + step);
+            }
+        }
+        List<String> names = Arrays.asList(UnitMetricsService.METRIC_NAMES);
+        List<String> requested = metrics != null ? Arrays.asList(metrics.split(",")) : names;
+
+        Map<String, Object> series = new LinkedHashMap<>();
+        for (String name : requested) {
+            int index = names.indexOf(name.trim());
+            if (index < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown metric: " + name);
+            }
+            series.put(name.trim(), metricHistoryStore.query(index, start, end, stepMillis));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("from", start);
+        result.put("to", end);
+        result.put("series", series);
+        return result;
+    }
+
+    /**
+     * 集群视图：本单元与各对端单元的健康状态及汇总指标
+     * 对端并发请求，超时或失败的单元单独标记，结果短时间缓存
+     */
+    @GetMapping("/federation")
+    public Map<String, Object> federation() {
+        return healthFederationService.getClusterView();
     }
 }
@@ -0,0 +1,106 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.service.LatencySketchService;
+import com.acme.monitor.util.DDSketch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 延迟草图接口
+ *
+ * GET 返回本单元序列化后的草图（Base64），POST /merge 合并多个单元或多个时间窗口的草图并计算全局分位数
+ */
+@RestController
+@RequestMapping("/api/health/sketch")
+public class LatencySketchController {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    @Autowired
+    private LatencySketchService latencySketchService;
+
+    @Value("${unit.id:U01}")
+    private String unitId;
+
+    /**
+     * 获取本单元的延迟草图
+     *
+     * @param source    来源：http 或 grpc
+     * @param minutes   合并最近多少分钟，最多15分钟
+     * @param perWindow 为 true 时额外返回每分钟的草图，便于离线按时间窗口合并
+     */
+    @GetMapping
+    public Map<String, Object> sketch(@RequestParam(defaultValue = LatencySketchService.SOURCE_HTTP) String source,
+                                      @RequestParam(defaultValue = "5") int minutes,
+                                      @RequestParam(name = "per_window", defaultValue = "false") boolean perWindow) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("unit_id", unitId);
+        result.put("source", source);
+        result.put("minutes", minutes);
+        result.putAll(describe(latencySketchService.merged(source, minutes)));
+        if (perWindow) {
+            List<Map<String, Object>> windows = new ArrayList<>();
+            for (LatencySketchService.Sample sample : latencySketchService.windows(source, minutes)) {
+                Map<String, Object> window = new LinkedHashMap<>();
+                window.put("start", sample.getStart());
+                window.put("count", sample.getSketch().getCount());
+                window.put("sketch", Base64.getEncoder().encodeToString(sample.getSketch().serialize()));
+                windows.add(window);
+            }
+            result.put("windows", windows);
+        }
+        return result;
+    }
+
+    /**
+     * 合并多个草图并计算分位数
+     * 请求体：{"sketches": ["Base64草图", ...]}
+     */
+    @PostMapping("/merge")
+    public Map<String, Object> merge(@RequestBody Map<String, List<String>> body) {
+        List<String> sketches = body.get("sketches");
+        if (sketches == null || sketches.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No sketches to merge");
+        }
+        DDSketch merged = null;
+        for (String encoded : sketches) {
+            try {
+                DDSketch sketch = DDSketch.deserialize(Base64.getDecoder().decode(encoded));
+                if (merged == null) {
+                    merged = sketch;
+                } else {
+                    merged.merge(sketch);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid sketch: " + e.getMessage());
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("merged", sketches.size());
+        result.putAll(describe(merged));
+        return result;
+    }
+
+    private static Map<String, Object> describe(DDSketch sketch) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("relative_accuracy", sketch.getRelativeAccuracy());
+        map.put("count", sketch.getCount());
+        map.put("min_ms", sketch.getMin());
+        map.put("max_ms", sketch.getMax());
+        Map<String, Object> quantiles = new LinkedHashMap<>();
+        for (double q : QUANTILES) {
+            quantiles.put(String.valueOf(q), Math.round(sketch.getValueAtQuantile(q) * 1000) / 1000.0);
+        }
+        map.put("quantiles_ms", quantiles);
+        map.put("sketch", Base64.getEncoder().encodeToString(sketch.serialize()));
+        return map;
+    }
+}
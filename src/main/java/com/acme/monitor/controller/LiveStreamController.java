@@ -0,0 +1,130 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.service.LiveMetricsBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 实时指标推送接口（Server-Sent Events）
+ *
+ * 直接使用Servlet异步和非阻塞输出：连接建立后立即收到一个 snapshot 帧，之后每秒收到 delta 帧，
+ * 大屏可以用一个长连接代替各个面板的定时轮询。
+ */
+@RestController
+@RequestMapping("/api/stream")
+public class LiveStreamController {
+    private static final Logger logger = LoggerFactory.getLogger(LiveStreamController.class);
+
+    @Autowired
+    private LiveMetricsBroadcaster liveMetricsBroadcaster;
+
+    @GetMapping("/metrics")
+    public void metrics(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!liveMetricsBroadcaster.hasCapacity()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many live stream subscribers");
+        }
+        response.setContentType("text/event-stream;charset=UTF-8");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        // 禁止反向代理缓冲
+        response.setHeader("X-Accel-Buffering", "no");
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        ServletOutputStream out = response.getOutputStream();
+
+        LiveMetricsBroadcaster.Subscriber subscriber = liveMetricsBroadcaster.subscribe(new ServletSink(asyncContext, out));
+        if (subscriber == null) {
+            // 并发连接时才会出现，直接结束
+            asyncContext.complete();
+            return;
+        }
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                subscriber.close();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                subscriber.close();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                subscriber.close();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        // 设置后容器会立即回调一次 onWritePossible，写出连接时的 snapshot
+        out.setWriteListener(new WriteListener() {
+            @Override
+            public void onWritePossible() {
+                subscriber.onWritable();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                logger.debug("Live stream write failed: {}", t.getMessage());
+                subscriber.close();
+            }
+        });
+    }
+
+    /**
+     * 非阻塞的Servlet输出，必须在设置 WriteListener 之后才能写入
+     */
+    private static final class ServletSink implements LiveMetricsBroadcaster.FrameSink {
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream out;
+
+        ServletSink(AsyncContext asyncContext, ServletOutputStream out) {
+            this.asyncContext = asyncContext;
+            this.out = out;
+        }
+
+        @Override
+        public boolean isReady() {
+            try {
+                return out.isReady();
+            } catch (IllegalStateException e) {
+                // 还没有设置 WriteListener
+                return false;
+            }
+        }
+
+        @Override
+        public void write(byte[] frame) throws IOException {
+            out.write(frame);
+            if (out.isReady()) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // 连接已经结束
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.service.MeterCardinalityService;
+import com.acme.monitor.service.MeterIndex;
+import com.acme.monitor.service.PrometheusExpositionWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prometheus 抓取接口
+ * 与 /actuator/prometheus 输出相同的指标，使用预编码的名称和标签，客户端支持时以gzip输出；
+ * 带过滤参数时只输出匹配的指标，如 ?prefix=unit_&unit_id=U01&method=getUser,listUsers
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsExpositionController {
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String PREFIX_PARAM = "prefix";
+
+    @Autowired
+    private PrometheusExpositionWriter prometheusExpositionWriter;
+
+    @Autowired
+    private MeterCardinalityService meterCardinalityService;
+
+    @Autowired
+    private MeterIndex meterIndex;
+
+    /**
+     * 抓取指标
+     *
+     * @param params prefix 为Prometheus名称前缀，其余参数为标签过滤条件；
+     *               同一标签的多个值（逗号分隔或重复参数）之间为"或"，不同标签之间为"与"
+     */
+    @GetMapping("/prometheus")
+    public void prometheus(@RequestParam MultiValueMap<String, String> params,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        response.setContentType(CONTENT_TYPE);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        if (params.isEmpty()) {
+            prometheusExpositionWriter.write(response.getOutputStream(), gzip);
+            return;
+        }
+        String prefix = null;
+        Map<String, Set<String>> tags = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            if (PREFIX_PARAM.equals(param.getKey())) {
+                prefix = param.getValue().get(0);
+                continue;
+            }
+            Set<String> values = new LinkedHashSet<>();
+            for (String value : param.getValue()) {
+                values.addAll(Arrays.asList(value.split(",")));
+            }
+            tags.put(param.getKey(), values);
+        }
+        prometheusExpositionWriter.write(response.getOutputStream(), gzip, meterIndex.find(prefix, tags));
+    }
+
+    /**
+     * 时间序列最多的指标、各标签的取值数量和估算内存，以及基数限制的使用情况
+     */
+    @GetMapping("/cardinality")
+    public Map<String, Object> cardinality(@RequestParam(defaultValue = "20") int top) {
+        return meterCardinalityService.getReport(Math.max(1, top));
+    }
+}
@@ -0,0 +1,70 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.service.StackSamplingProfiler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 线程栈采样接口
+ *
+ * minutes 为合并的分钟窗口数，end 为截止时间（毫秒时间戳，默认为当前时间），可以查看保留期内任意一段时间
+ */
+@RestController
+@RequestMapping("/api/profiler")
+public class ProfilerController {
+
+    @Autowired
+    private StackSamplingProfiler profiler;
+
+    /**
+     * 折叠栈，值为按采样估算的执行时间（微秒），可直接交给 flamegraph.pl 或 speedscope
+     */
+    @GetMapping(value = "/folded", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String folded(@RequestParam(defaultValue = "1") int minutes,
+                         @RequestParam(required = false) Long end) {
+        StringBuilder out = new StringBuilder();
+        profile(minutes, end).getTrie().writeFolded(out);
+        return out.toString();
+    }
+
+    /**
+     * 按自身时间排序的热点方法
+     */
+    @GetMapping("/top")
+    public Map<String, Object> top(@RequestParam(defaultValue = "1") int minutes,
+                                   @RequestParam(required = false) Long end,
+                                   @RequestParam(defaultValue = "30") int limit) {
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+        StackSamplingProfiler.Profile profile = profile(minutes, end);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", profiler.isEnabled());
+        result.put("from", profile.getFrom());
+        result.put("to", profile.getTo());
+        result.put("windows", profile.getWindows());
+        result.put("samples", profile.getSamples());
+        result.put("interval_ms", profiler.getIntervalMs());
+        result.put("cpu_pct", Math.round(profiler.getCpuPct() * 100) / 100.0);
+        result.put("unit", "microseconds");
+        result.put("methods", profile.getTrie().topFrames(limit));
+        return result;
+    }
+
+    private StackSamplingProfiler.Profile profile(int minutes, Long end) {
+        if (minutes <= 0 || minutes > profiler.getRetainMinutes()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "minutes must be between 1 and " + profiler.getRetainMinutes());
+        }
+        return profiler.profile(minutes, end == null ? System.currentTimeMillis() : end);
+    }
+}
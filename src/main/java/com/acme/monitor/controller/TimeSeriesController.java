@@ -0,0 +1,56 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.service.TimeSeriesStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 本地时序存储查询接口
+ */
+@RestController
+@RequestMapping("/api/tsdb")
+@ConditionalOnProperty(name = "app.tsdb.enabled", havingValue = "true", matchIfMissing = false)
+public class TimeSeriesController {
+    @Autowired
+    private TimeSeriesStore timeSeriesStore;
+
+    /**
+     * 查询单个指标的原始点
+     *
+     * @param metric 指标名称，如 unit_cpu_pct
+     * @param from   起始时间（毫秒时间戳），默认1小时前
+     * @param to     结束时间（毫秒时间戳），默认当前时间
+     */
+    @GetMapping("/query")
+    public Map<String, Object> query(@RequestParam String metric,
+                                     @RequestParam(required = false) Long from,
+                                     @RequestParam(required = false) Long to) {
+        long end = to != null ? to : System.currentTimeMillis();
+        long start = from != null ? from : end - 3600 * 1000L;
+        if (start > end) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid time range: " + start + " - " + end);
+        }
+        TimeSeriesStore.Result result = timeSeriesStore.query(metric, start, end);
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("metric", metric);
+        map.put("from", start);
+        map.put("to", end);
+        map.put("timestamps", result.getTimestamps());
+        map.put("values", result.getValues());
+        return map;
+    }
+
+    /**
+     * 存储统计：分段数量、点数、占用字节数和每个点的平均字节数
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return timeSeriesStore.getStats().toMap();
+    }
+}
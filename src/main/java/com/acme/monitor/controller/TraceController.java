@@ -0,0 +1,57 @@
+package com.acme.monitor.controller;
+
+import com.acme.monitor.service.SpanTracer;
+import com.acme.monitor.util.CallPathTrie;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 链路火焰图接口
+ *
+ * /folded 返回折叠栈文本，可直接交给 flamegraph.pl 或 speedscope；
+ * /flamegraph 返回JSON，tree 为 d3-flame-graph 的嵌套格式，levels 为Grafana火焰图面板使用的嵌套集合格式
+ */
+@RestController
+@RequestMapping("/api/traces")
+public class TraceController {
+
+    @Autowired
+    private SpanTracer spanTracer;
+
+    @GetMapping(value = "/folded", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String folded() {
+        StringBuilder out = new StringBuilder();
+        spanTracer.snapshot().writeFolded(out);
+        return out.toString();
+    }
+
+    @GetMapping("/flamegraph")
+    public Map<String, Object> flamegraph(@RequestParam(defaultValue = "tree") String format) {
+        if (!"tree".equals(format) && !"levels".equals(format)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown format: " + format);
+        }
+        CallPathTrie trie = spanTracer.snapshot();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", System.currentTimeMillis());
+        result.put("enabled", spanTracer.isEnabled());
+        result.put("unit", "microseconds");
+        result.put("paths", trie.getNodeCount());
+        result.put("spans", spanTracer.getSpanCount());
+        result.put("dropped", spanTracer.getDroppedCount());
+        if ("tree".equals(format)) {
+            result.put("root", trie.toTree());
+        } else {
+            result.put("levels", trie.toLevels());
+        }
+        return result;
+    }
+}
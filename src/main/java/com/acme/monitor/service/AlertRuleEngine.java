@@ -0,0 +1,461 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.AlertConfig;
+import com.acme.monitor.util.NamedThreadFactory;
+import com.acme.monitor.util.SlidingWindowAggregate;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地告警规则引擎
+ *
+ * 每秒随 {@link UnitMetricsSampler} 的采样评估一次规则，可用的指标为单元指标和 {@link RuntimeSignals} 中的运行时信号。
+ * 每条规则持有自己的 {@link SlidingWindowAggregate}，聚合值增量更新，不重新扫描历史数据。
+ * 条件满足后进入PENDING，持续 for 指定的时间后变为FIRING，条件不再满足时恢复。
+ *
+ * 规则从YAML文件加载，文件修改后自动重新加载；定义没有变化的规则保留窗口数据和告警状态，
+ * 文件格式错误时保留原有规则。
+ */
+@Component
+public class AlertRuleEngine implements MetricSampleListener {
+    private static final Logger logger = LoggerFactory.getLogger(AlertRuleEngine.class);
+
+    static final String CLASSPATH_RULES = "alert-rules.yml";
+    static final String[] SIGNAL_NAMES = concat(UnitMetricsService.METRIC_NAMES, RuntimeSignals.NAMES);
+    private static final Set<String> AGGREGATES = new HashSet<>(Arrays.asList("avg", "min", "max", "last", "rate"));
+    private static final Set<String> OPERATORS = new HashSet<>(Arrays.asList(">", ">=", "<", "<=", "==", "!="));
+
+    public static final String STATE_INACTIVE = "inactive";
+    public static final String STATE_PENDING = "pending";
+    public static final String STATE_FIRING = "firing";
+
+    @Autowired
+    private AlertConfig config;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RuntimeSignals runtimeSignals;
+
+    private final double[] signals = new double[SIGNAL_NAMES.length];
+    private List<RuleState> rules = Collections.emptyList();
+    private final Deque<Map<String, Object>> history = new ArrayDeque<>();
+    private String rulesSource;
+    private volatile long rulesLastModified = Long.MIN_VALUE;
+    private ScheduledExecutorService reloader;
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            reload();
+        } catch (IllegalArgumentException e) {
+            logger.error("Failed to load alert rules: {}", e.getMessage());
+        }
+        Gauge.builder("unit_alerts_firing", this, AlertRuleEngine::getFiringCount)
+                .description("Number of firing local alert rules")
+                .register(meterRegistry);
+        reloader = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Alert-Rule-Reloader"));
+        reloader.scheduleWithFixedDelay(this::reloadIfChanged,
+                config.getReloadIntervalMs(), config.getReloadIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    @Override
+    public void onSample(long timestamp, double[] values) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        System.arraycopy(values, 0, signals, 0, values.length);
+        runtimeSignals.fill(timestamp, signals, values.length);
+        evaluate(timestamp, signals);
+    }
+
+    /**
+     * 用一次采样的信号值评估所有规则，signalValues 按 {@link #SIGNAL_NAMES} 的顺序排列
+     */
+    synchronized void evaluate(long timestamp, double[] signalValues) {
+        for (RuleState state : rules) {
+            state.evaluate(timestamp, signalValues[state.rule.signal]);
+        }
+    }
+
+    /**
+     * 规则文件修改时间变化后重新加载
+     */
+    void reloadIfChanged() {
+        try {
+            File file = new File(config.getRulesFile());
+            long modified = file.isFile() ? file.lastModified() : -1;
+            if (modified != rulesLastModified) {
+                reload();
+            }
+        } catch (IllegalArgumentException e) {
+            logger.error("Failed to reload alert rules, keeping previous rules: {}", e.getMessage());
+        } catch (Exception e) {
+            logger.error("Failed to reload alert rules", e);
+        }
+    }
+
+    /**
+     * 重新加载规则，定义没有变化的规则保留状态
+     *
+     * @return 加载的规则数量
+     * @throws IllegalArgumentException 规则文件格式错误，原有规则不变
+     */
+    public int reload() {
+        File file = new File(config.getRulesFile());
+        // 先记录修改时间，格式错误的文件在再次修改之前不会重复加载
+        rulesLastModified = file.isFile() ? file.lastModified() : -1;
+        String source;
+        List<Rule> parsed;
+        try {
+            if (file.isFile()) {
+                source = file.getPath();
+                try (InputStream in = new FileInputStream(file)) {
+                    parsed = parse(in);
+                }
+            } else {
+                source = "classpath:" + CLASSPATH_RULES;
+                try (InputStream in = AlertRuleEngine.class.getClassLoader().getResourceAsStream(CLASSPATH_RULES)) {
+                    parsed = in == null ? Collections.<Rule>emptyList() : parse(in);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read alert rules: " + e.getMessage(), e);
+        }
+
+        synchronized (this) {
+            Map<String, RuleState> existing = new HashMap<>();
+            for (RuleState state : rules) {
+                existing.put(state.rule.name, state);
+            }
+            List<RuleState> updated = new ArrayList<>(parsed.size());
+            for (Rule rule : parsed) {
+                RuleState previous = existing.get(rule.name);
+                updated.add(previous != null && previous.rule.equals(rule) ? previous : new RuleState(rule));
+            }
+            rules = updated;
+            rulesSource = source;
+        }
+        logger.info("Loaded {} alert rules from {}", parsed.size(), source);
+        return parsed.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Rule> parse(InputStream in) {
+        Object root;
+        try {
+            // 只允许基本类型，不按YAML标签实例化任意类
+            root = new Yaml(new SafeConstructor()).load(in);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid YAML: " + e.getMessage(), e);
+        }
+        if (root == null) {
+            return Collections.emptyList();
+        }
+        if (!(root instanceof Map) || !(((Map<String, Object>) root).get("rules") instanceof List)) {
+            throw new IllegalArgumentException("Alert rules file must contain a 'rules' list");
+        }
+        List<Rule> result = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Object item : (List<Object>) ((Map<String, Object>) root).get("rules")) {
+            if (!(item instanceof Map)) {
+                throw new IllegalArgumentException("Alert rule must be a map: " + item);
+            }
+            Rule rule = Rule.of((Map<String, Object>) item);
+            if (!names.add(rule.name)) {
+                throw new IllegalArgumentException("Duplicate alert rule: " + rule.name);
+            }
+            result.add(rule);
+        }
+        return result;
+    }
+
+    /**
+     * 处于PENDING和FIRING状态的告警，FIRING在前
+     */
+    public synchronized List<Map<String, Object>> getActiveAlerts() {
+        List<Map<String, Object>> firing = new ArrayList<>();
+        List<Map<String, Object>> pending = new ArrayList<>();
+        for (RuleState state : rules) {
+            if (STATE_FIRING.equals(state.state)) {
+                firing.add(state.toMap());
+            } else if (STATE_PENDING.equals(state.state)) {
+                pending.add(state.toMap());
+            }
+        }
+        firing.addAll(pending);
+        return firing;
+    }
+
+    public synchronized List<Map<String, Object>> getRules() {
+        List<Map<String, Object>> result = new ArrayList<>(rules.size());
+        for (RuleState state : rules) {
+            Map<String, Object> map = state.rule.toMap();
+            map.putAll(state.toMap());
+            result.add(map);
+        }
+        return result;
+    }
+
+    /**
+     * 最近的告警触发和恢复记录，最新的在前
+     */
+    public synchronized List<Map<String, Object>> getHistory() {
+        return new ArrayList<>(history);
+    }
+
+    public synchronized String getRulesSource() {
+        return rulesSource;
+    }
+
+    public synchronized int getFiringCount() {
+        int count = 0;
+        for (RuleState state : rules) {
+            if (STATE_FIRING.equals(state.state)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void record(RuleState state, String event, long timestamp) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("rule", state.rule.name);
+        entry.put("severity", state.rule.severity);
+        entry.put("event", event);
+        entry.put("value", state.value);
+        entry.put("timestamp", timestamp);
+        history.addFirst(entry);
+        while (history.size() > config.getHistorySize()) {
+            history.pollLast();
+        }
+    }
+
+    private static String[] concat(String[] a, String[] b) {
+        String[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * 规则定义，不可变
+     */
+    static final class Rule {
+        private final String name;
+        private final String metric;
+        private final int signal;
+        private final String aggregate;
+        private final long windowMillis;
+        private final String op;
+        private final double threshold;
+        private final long forMillis;
+        private final String severity;
+        private final String description;
+
+        private Rule(String name, String metric, int signal, String aggregate, long windowMillis, String op,
+                     double threshold, long forMillis, String severity, String description) {
+            this.name = name;
+            this.metric = metric;
+            this.signal = signal;
+            this.aggregate = aggregate;
+            this.windowMillis = windowMillis;
+            this.op = op;
+            this.threshold = threshold;
+            this.forMillis = forMillis;
+            this.severity = severity;
+            this.description = description;
+        }
+
+        static Rule of(Map<String, Object> map) {
+            String name = string(map, "name", null);
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("Alert rule without name: " + map);
+            }
+            String metric = string(map, "metric", null);
+            int signal = Arrays.asList(SIGNAL_NAMES).indexOf(metric);
+            if (signal < 0) {
+                throw new IllegalArgumentException("Alert rule " + name + ": unknown metric " + metric);
+            }
+            String aggregate = string(map, "aggregate", "avg");
+            if (!AGGREGATES.contains(aggregate)) {
+                throw new IllegalArgumentException("Alert rule " + name + ": unknown aggregate " + aggregate);
+            }
+            String op = string(map, "op", ">");
+            if (!OPERATORS.contains(op)) {
+                throw new IllegalArgumentException("Alert rule " + name + ": unknown op " + op);
+            }
+            Object threshold = map.get("threshold");
+            if (!(threshold instanceof Number)) {
+                throw new IllegalArgumentException("Alert rule " + name + ": threshold must be a number");
+            }
+            long windowMillis = duration(name, string(map, "window", "1m"));
+            if (windowMillis <= 0) {
+                throw new IllegalArgumentException("Alert rule " + name + ": window must be positive");
+            }
+            return new Rule(name, metric, signal, aggregate, windowMillis, op, ((Number) threshold).doubleValue(),
+                    duration(name, string(map, "for", "0s")), string(map, "severity", "warning"),
+                    string(map, "description", ""));
+        }
+
+        private static String string(Map<String, Object> map, String key, String defaultValue) {
+            Object value = map.get(key);
+            return value == null ? defaultValue : value.toString();
+        }
+
+        private static long duration(String name, String value) {
+            try {
+                return DurationStyle.detectAndParse(value).toMillis();
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Alert rule " + name + ": invalid duration " + value, e);
+            }
+        }
+
+        boolean matches(double value) {
+            switch (op) {
+                case ">":
+                    return value > threshold;
+                case ">=":
+                    return value >= threshold;
+                case "<":
+                    return value < threshold;
+                case "<=":
+                    return value <= threshold;
+                case "==":
+                    return value == threshold;
+                default:
+                    return value != threshold;
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", name);
+            map.put("metric", metric);
+            map.put("aggregate", aggregate);
+            map.put("window_ms", windowMillis);
+            map.put("op", op);
+            map.put("threshold", threshold);
+            map.put("for_ms", forMillis);
+            map.put("severity", severity);
+            map.put("description", description);
+            return map;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Rule && toMap().equals(((Rule) o).toMap());
+        }
+
+        @Override
+        public int hashCode() {
+            return toMap().hashCode();
+        }
+    }
+
+    /**
+     * 单条规则的窗口数据和告警状态，只在持有引擎锁时访问
+     */
+    private final class RuleState {
+        private final Rule rule;
+        private final SlidingWindowAggregate window;
+        private String state = STATE_INACTIVE;
+        private double value = Double.NaN;
+        private long activeSince;
+
+        RuleState(Rule rule) {
+            this.rule = rule;
+            this.window = new SlidingWindowAggregate(rule.windowMillis);
+        }
+
+        void evaluate(long timestamp, double sample) {
+            window.add(timestamp, sample);
+            value = aggregate();
+            // 没有数据时视为条件不满足
+            boolean active = !Double.isNaN(value) && rule.matches(value);
+            if (!active) {
+                if (STATE_FIRING.equals(state)) {
+                    logger.info("Alert {} resolved, {} {} = {}", rule.name, rule.aggregate, rule.metric, value);
+                    record(this, "resolved", timestamp);
+                }
+                state = STATE_INACTIVE;
+                return;
+            }
+            if (STATE_INACTIVE.equals(state)) {
+                state = STATE_PENDING;
+                activeSince = timestamp;
+            }
+            if (STATE_PENDING.equals(state) && timestamp - activeSince >= rule.forMillis) {
+                state = STATE_FIRING;
+                logger.warn("Alert {} firing [{}]: {} {} = {} {} {}, {}", rule.name, rule.severity,
+                        rule.aggregate, rule.metric, value, rule.op, rule.threshold, rule.description);
+                record(this, "firing", timestamp);
+            }
+        }
+
+        private double aggregate() {
+            switch (rule.aggregate) {
+                case "min":
+                    return window.min();
+                case "max":
+                    return window.max();
+                case "last":
+                    return window.last();
+                case "rate":
+                    return window.ratePerSecond();
+                default:
+                    return window.avg();
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", rule.name);
+            map.put("severity", rule.severity);
+            map.put("state", state);
+            map.put("value", Double.isNaN(value) ? null : value);
+            map.put("threshold", rule.threshold);
+            map.put("active_since", STATE_INACTIVE.equals(state) ? null : activeSince);
+            map.put("description", rule.description);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.AnomalyConfig;
+import com.acme.monitor.util.SeasonalAnomalyDetector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 关键序列的在线异常检测
+ *
+ * 每秒随 {@link UnitMetricsSampler} 的采样更新单元p99延迟、QPS、缓存命中率、GC耗时，
+ * 以及每个HTTP接口的p99延迟和QPS。每条序列由 {@link SeasonalAnomalyDetector} 维护按小时划分的季节基线，
+ * 内存占用固定，更新不分配对象。
+ *
+ * 异常分数通过 anomaly_score{signal, endpoint} 指标暴露；分数绝对值超过阈值时发布 {@link AnomalyEvent}，
+ * 同一条序列在冷却时间内只发布一次。
+ */
+@Component
+public class AnomalyDetectionService implements MetricSampleListener {
+    private static final Logger logger = LoggerFactory.getLogger(AnomalyDetectionService.class);
+
+    /**
+     * 单元级别序列的 endpoint 标签值
+     */
+    public static final String UNIT_ENDPOINT = "_unit";
+    static final String ENDPOINT_LATENCY = "endpoint_latency_p99_ms";
+    static final String ENDPOINT_QPS = "endpoint_qps";
+    private static final int LATENCY_INDEX = Arrays.asList(UnitMetricsService.METRIC_NAMES).indexOf("unit_latency_p99_ms");
+    private static final int QPS_INDEX = Arrays.asList(UnitMetricsService.METRIC_NAMES).indexOf("unit_qps_total");
+    private static final int CACHE_HIT_INDEX = Arrays.asList(RuntimeSignals.NAMES).indexOf("cache_hit_ratio");
+    private static final int GC_TIME_INDEX = Arrays.asList(RuntimeSignals.NAMES).indexOf("jvm_gc_time_ms_per_s");
+
+    @Autowired
+    private AnomalyConfig config;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RuntimeSignals runtimeSignals;
+
+    @Autowired
+    private RequestMetricsService requestMetricsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private SeasonalAnomalyDetector detector;
+    private final double[] runtime = new double[RuntimeSignals.NAMES.length];
+    private final Map<String, Map<String, Integer>> series = new HashMap<>();
+    private final List<String> signals = new ArrayList<>();
+    private final List<String> endpoints = new ArrayList<>();
+    private double[] lastValues = new double[64];
+    private long[] lastEventAt = new long[64];
+    private final List<AnomalyEvent> pending = new ArrayList<>();
+    private final Deque<AnomalyEvent> recentEvents = new ArrayDeque<>();
+    private final Map<String, Counter> eventCounters = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        detector = new SeasonalAnomalyDetector(config.getAlpha(), config.getBeta(), config.getGamma(),
+                config.getSeasonSlots(), TimeUnit.MINUTES.toMillis(config.getSlotMinutes()),
+                config.getWarmupSamples(), config.getClipScore());
+    }
+
+    @Override
+    public void onSample(long timestamp, double[] values) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        runtimeSignals.fill(timestamp, runtime, 0);
+        synchronized (this) {
+            observe(timestamp, "unit_latency_p99_ms", UNIT_ENDPOINT, values[LATENCY_INDEX]);
+            observe(timestamp, "unit_qps_total", UNIT_ENDPOINT, values[QPS_INDEX]);
+            observe(timestamp, "cache_hit_ratio", UNIT_ENDPOINT, runtime[CACHE_HIT_INDEX]);
+            observe(timestamp, "jvm_gc_time_ms_per_s", UNIT_ENDPOINT, runtime[GC_TIME_INDEX]);
+            if (config.isPerEndpoint()) {
+                // 直接遍历接口统计，不再每秒复制一份排序的Map
+                requestMetricsService.forEachEndpointSnapshot((endpoint, snapshot) -> {
+                    // 没有请求时延迟没有意义，跳过而不是当作0
+                    observe(timestamp, ENDPOINT_LATENCY, endpoint,
+                            snapshot.getCount() == 0 ? Double.NaN : snapshot.getPercentileMillis(0.99));
+                    observe(timestamp, ENDPOINT_QPS, endpoint, snapshot.getQps());
+                });
+            }
+        }
+        // 在锁外分发事件，监听器里读取本服务的状态不会死锁
+        for (AnomalyEvent event : drainPending()) {
+            logger.warn("Anomaly detected: {} {} value={} expected={} score={}", event.getSignal(),
+                    event.getEndpoint(), event.getValue(), event.getExpected(), event.getScore());
+            eventPublisher.publishEvent(event);
+        }
+    }
+
+    /**
+     * 更新一条序列，第一次出现时创建序列并注册指标
+     */
+    synchronized void observe(long timestamp, String signal, String endpoint, double value) {
+        int index = indexOf(signal, endpoint);
+        double score = detector.update(index, timestamp, value);
+        lastValues[index] = value;
+        if (Math.abs(score) >= config.getThreshold() && timestamp - lastEventAt[index] >= config.getCooldownMs()) {
+            lastEventAt[index] = timestamp;
+            AnomalyEvent event = new AnomalyEvent(this, signal, endpoint, timestamp, value,
+                    detector.getExpected(index), score);
+            pending.add(event);
+            recentEvents.addLast(event);
+            while (recentEvents.size() > config.getHistorySize()) {
+                recentEvents.removeFirst();
+            }
+            eventCounter(signal).increment();
+        }
+    }
+
+    private int indexOf(String signal, String endpoint) {
+        Map<String, Integer> bySignal = series.get(signal);
+        if (bySignal == null) {
+            bySignal = new HashMap<>();
+            series.put(signal, bySignal);
+        }
+        Integer index = bySignal.get(endpoint);
+        if (index != null) {
+            return index;
+        }
+        int created = detector.addSeries();
+        if (created == lastValues.length) {
+            lastValues = Arrays.copyOf(lastValues, created * 2);
+            lastEventAt = Arrays.copyOf(lastEventAt, created * 2);
+        }
+        lastEventAt[created] = Long.MIN_VALUE / 2;
+        signals.add(signal);
+        endpoints.add(endpoint);
+        bySignal.put(endpoint, created);
+        Gauge.builder("anomaly_score", this, s -> s.getScore(created))
+                .description("Deviation of the latest sample from its seasonal baseline, in standard deviations")
+                .tags("signal", signal, "endpoint", endpoint)
+                .register(meterRegistry);
+        return created;
+    }
+
+    private Counter eventCounter(String signal) {
+        Counter counter = eventCounters.get(signal);
+        if (counter == null) {
+            counter = Counter.builder("anomaly_events_total")
+                    .description("Number of detected anomalies")
+                    .tag("signal", signal)
+                    .register(meterRegistry);
+            eventCounters.put(signal, counter);
+        }
+        return counter;
+    }
+
+    private synchronized List<AnomalyEvent> drainPending() {
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<AnomalyEvent> events = new ArrayList<>(pending);
+        pending.clear();
+        return events;
+    }
+
+    synchronized double getScore(int index) {
+        return detector.getScore(index);
+    }
+
+    public synchronized int getSeriesCount() {
+        return detector.size();
+    }
+
+    /**
+     * 异常分数绝对值最大的若干条序列
+     */
+    public synchronized List<Map<String, Object>> getTopScores(int top) {
+        Integer[] order = new Integer[detector.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(Math.abs(detector.getScore(b)), Math.abs(detector.getScore(a))));
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(top, order.length); i++) {
+            int index = order[i];
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("signal", signals.get(index));
+            map.put("endpoint", endpoints.get(index));
+            map.put("value", round(lastValues[index]));
+            map.put("expected", round(detector.getExpected(index)));
+            map.put("stddev", round(detector.getStdDev(index)));
+            map.put("score", round(detector.getScore(index)));
+            map.put("samples", detector.getSamples(index));
+            result.add(map);
+        }
+        return result;
+    }
+
+    /**
+     * 最近的异常事件，最新的在前
+     */
+    public synchronized List<Map<String, Object>> getRecentEvents() {
+        List<Map<String, Object>> result = new ArrayList<>(recentEvents.size());
+        for (Iterator<AnomalyEvent> it = recentEvents.descendingIterator(); it.hasNext(); ) {
+            result.add(it.next().toMap());
+        }
+        return result;
+    }
+
+    public synchronized int getBytesPerSeries() {
+        return detector.bytesPerSeries();
+    }
+
+    private static Object round(double value) {
+        return Double.isNaN(value) ? null : Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,67 @@
+package com.acme.monitor.service;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 检测到异常时发布的事件，在采样线程中同步分发，监听器不应执行耗时操作
+ */
+public class AnomalyEvent extends ApplicationEvent {
+    private final String signal;
+    private final String endpoint;
+    private final long time;
+    private final double value;
+    private final double expected;
+    private final double score;
+
+    public AnomalyEvent(Object source, String signal, String endpoint, long time,
+                        double value, double expected, double score) {
+        super(source);
+        this.signal = signal;
+        this.endpoint = endpoint;
+        this.time = time;
+        this.value = value;
+        this.expected = expected;
+        this.score = score;
+    }
+
+    public String getSignal() {
+        return signal;
+    }
+
+    /**
+     * 接口名称，单元级别的序列为 {@link AnomalyDetectionService#UNIT_ENDPOINT}
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public double getExpected() {
+        return expected;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("time", time);
+        map.put("signal", signal);
+        map.put("endpoint", endpoint);
+        map.put("value", value);
+        map.put("expected", expected);
+        map.put("score", score);
+        return map;
+    }
+}
@@ -0,0 +1,196 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 依赖健康探测
+ *
+ * 后台定期检查Redis（PING延迟）和数据源（Connection.isValid），
+ * 健康接口只读取最近一次的结果，不会因为下游I/O而阻塞。
+ * 上一次检查还没返回时跳过本轮，超时的依赖标记为DOWN；检查线程数固定，下游卡住时不会堆积线程。
+ */
+@Component
+public class DependencyHealthProbe {
+    private static final Logger logger = LoggerFactory.getLogger(DependencyHealthProbe.class);
+
+    /**
+     * 同时检查的依赖数上限，每个依赖最多一个检查在执行
+     */
+    private static final int MAX_CHECKERS = 2;
+
+    @Autowired
+    private ObjectProvider<RedisConnectionFactory> redisConnectionFactory;
+
+    @Autowired
+    private ObjectProvider<DataSource> dataSource;
+
+    @Value("${app.health.probe-interval-ms:5000}")
+    private long probeIntervalMs;
+
+    @Value("${app.health.probe-timeout-ms:2000}")
+    private long probeTimeoutMs;
+
+    private final Map<String, DependencyStatus> results = new ConcurrentHashMap<>();
+    // 依赖名称 -> 正在执行的检查的开始时间
+    private final Map<String, Long> inFlight = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private ExecutorService checkers;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Dependency-Probe"));
+        // 不排队：线程都被卡住的检查占用时直接拒绝，不会无限创建线程
+        checkers = new ThreadPoolExecutor(MAX_CHECKERS, MAX_CHECKERS, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), new NamedThreadFactory("Dependency-Check"));
+        scheduler.scheduleWithFixedDelay(this::probeAll, 0, probeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            checkers.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取各依赖最近一次的检查结果
+     */
+    public Map<String, DependencyStatus> getResults() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(results));
+    }
+
+    private void probeAll() {
+        RedisConnectionFactory redis = redisConnectionFactory.getIfAvailable();
+        if (redis != null) {
+            probe("redis", () -> {
+                RedisConnection connection = redis.getConnection();
+                try {
+                    connection.ping();
+                } finally {
+                    connection.close();
+                }
+                return true;
+            });
+        }
+        DataSource ds = dataSource.getIfAvailable();
+        if (ds != null) {
+            probe("datasource", () -> {
+                try (Connection connection = ds.getConnection()) {
+                    return connection.isValid((int) Math.max(1, probeTimeoutMs / 1000));
+                }
+            });
+        }
+    }
+
+    /**
+     * 提交一次检查，同一个依赖上一次检查还在执行时跳过
+     * 阻塞在socket或JDBC上的调用无法中断，超时后不取消任务，只把依赖标记为DOWN，任务结束前不再提交新的检查
+     */
+    void probe(String name, Callable<Boolean> check) {
+        if (inFlight.containsKey(name)) {
+            logger.debug("Previous {} health check still running, skipping", name);
+            return;
+        }
+        long start = System.nanoTime();
+        inFlight.put(name, start);
+        try {
+            checkers.execute(() -> runCheck(name, start, check));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(name);
+            update(name, new DependencyStatus(false, 0, System.currentTimeMillis(), "no checker thread available"));
+            return;
+        }
+        scheduler.schedule(() -> {
+            if (Long.valueOf(start).equals(inFlight.get(name))) {
+                update(name, new DependencyStatus(false, probeTimeoutMs, System.currentTimeMillis(), "timeout"));
+            }
+        }, probeTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void runCheck(String name, long start, Callable<Boolean> check) {
+        DependencyStatus status;
+        try {
+            boolean up = check.call();
+            double latencyMs = (System.nanoTime() - start) / 1e6;
+            if (latencyMs > probeTimeoutMs) {
+                // 已按超时标记为DOWN，慢返回的结果不改回UP
+                status = new DependencyStatus(false, latencyMs, System.currentTimeMillis(), "timeout");
+            } else {
+                status = new DependencyStatus(up, latencyMs, System.currentTimeMillis(), up ? null : "validation failed");
+            }
+        } catch (Exception e) {
+            status = new DependencyStatus(false, (System.nanoTime() - start) / 1e6, System.currentTimeMillis(),
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+        } finally {
+            inFlight.remove(name);
+        }
+        update(name, status);
+    }
+
+    private void update(String name, DependencyStatus status) {
+        DependencyStatus last = results.put(name, status);
+        if (last != null && last.isUp() != status.isUp()) {
+            logger.warn("Dependency {} changed state: {} -> {} ({})", name,
+                    last.isUp() ? "UP" : "DOWN", status.isUp() ? "UP" : "DOWN", status.getError());
+        }
+    }
+
+    /**
+     * 单个依赖的检查结果
+     */
+    public static final class DependencyStatus {
+        private final boolean up;
+        private final double latencyMs;
+        private final long checkedAt;
+        private final String error;
+
+        public DependencyStatus(boolean up, double latencyMs, long checkedAt, String error) {
+            this.up = up;
+            this.latencyMs = latencyMs;
+            this.checkedAt = checkedAt;
+            this.error = error;
+        }
+
+        public boolean isUp() {
+            return up;
+        }
+
+        public double getLatencyMs() {
+            return latencyMs;
+        }
+
+        public long getCheckedAt() {
+            return checkedAt;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
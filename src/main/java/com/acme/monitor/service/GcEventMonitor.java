@@ -0,0 +1,347 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.aspect.MemoryMonitor;
+import com.acme.monitor.config.GcMonitorConfig;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件驱动的GC监控
+ *
+ * 订阅各个 {@link GarbageCollectorMXBean} 的GC通知，记录每次GC的耗时、原因和各内存池GC前后的占用，
+ * 按滑动窗口计算分配速率、晋升速率和GC开销（停顿时间占比），最近的GC事件保存在固定大小的环形缓冲区中。
+ *
+ * <ul>
+ *     <li>分配量：本次GC前年轻代（Eden/nursery）的占用减去上次GC后的占用；没有年轻代的收集器（ZGC、Shenandoah）用整个堆估算</li>
+ *     <li>晋升量：年轻代GC前后老年代占用的增长</li>
+ *     <li>并发收集器的周期（如 G1 Concurrent GC、ZGC Cycles）大部分时间与应用线程并行，单独计时，不计入停顿和GC开销</li>
+ * </ul>
+ */
+@Component
+public class GcEventMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(GcEventMonitor.class);
+
+    /**
+     * 通知中的耗时是并发周期而不是停顿的收集器
+     */
+    static final Set<String> CONCURRENT_COLLECTORS = new HashSet<>(Arrays.asList(
+            "ConcurrentMarkSweep", "G1 Concurrent GC", "ZGC Cycles", "ZGC Major Cycles", "ZGC Minor Cycles",
+            "Shenandoah Cycles"));
+
+    @Autowired
+    private GcMonitorConfig config;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final NotificationListener listener = (notification, handback) -> handle(notification);
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final long jvmStartTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final Set<String> heapPools = new HashSet<>();
+    // 以下字段由GC通知线程和接口线程访问，用this同步
+    private GcEvent[] ring;
+    private long eventCount;
+    private final ArrayDeque<long[]> window = new ArrayDeque<>();
+    private long windowAllocated;
+    private long windowPromoted;
+    private long windowPauseMs;
+    private long lastYoungAfter = -1;
+    private long since;
+
+    @PostConstruct
+    public void start() {
+        ring = new GcEvent[config.getHistorySize()];
+        since = System.currentTimeMillis();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) collector;
+                emitter.addNotificationListener(listener, notification ->
+                        GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()), null);
+                emitters.add(emitter);
+            }
+        }
+        if (emitters.isEmpty()) {
+            logger.warn("GC notifications are not supported by this JVM, GC event monitoring disabled");
+            return;
+        }
+
+        Gauge.builder("gc_allocation_rate_bytes_per_second", this, m -> m.getAllocationRate(System.currentTimeMillis()))
+                .description("Heap allocation rate over the GC rate window, derived from young generation usage between collections")
+                .register(meterRegistry);
+        Gauge.builder("gc_promotion_rate_bytes_per_second", this, m -> m.getPromotionRate(System.currentTimeMillis()))
+                .description("Old generation growth during young collections over the GC rate window")
+                .register(meterRegistry);
+        Gauge.builder("gc_overhead_pct", this, m -> m.getOverheadPct(System.currentTimeMillis()))
+                .description("Percent of wall time spent in GC pauses over the GC rate window")
+                .register(meterRegistry);
+        logger.info("GC event monitoring started for {} collectors", emitters.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException ignored) {
+                // 已移除
+            }
+        }
+        emitters.clear();
+    }
+
+    private void handle(Notification notification) {
+        try {
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            GcInfo gc = info.getGcInfo();
+            record(info.getGcName(), info.getGcAction(), info.getGcCause(), jvmStartTime + gc.getStartTime(),
+                    gc.getDuration(), gc.getMemoryUsageBeforeGc(), gc.getMemoryUsageAfterGc(),
+                    System.currentTimeMillis());
+        } catch (Exception e) {
+            logger.warn("Failed to process GC notification", e);
+        }
+    }
+
+    /**
+     * 记录一次GC
+     *
+     * @param startTime 开始时间（毫秒时间戳）
+     * @param now       收到通知的时间，用于滑动窗口
+     */
+    GcEvent record(String gcName, String action, String cause, long startTime, long durationMs,
+                   Map<String, MemoryUsage> before, Map<String, MemoryUsage> after, long now) {
+        boolean concurrent = CONCURRENT_COLLECTORS.contains(gcName);
+        Timer.builder(concurrent ? "gc_concurrent_phase" : "gc_pause")
+                .description(concurrent ? "Concurrent GC cycle duration" : "GC pause duration")
+                .tags("gc", gcName, "action", action, "cause", cause)
+                .publishPercentileHistogram(!concurrent)
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry)
+                .record(durationMs, TimeUnit.MILLISECONDS);
+
+        long youngBefore = youngUsed(before);
+        long youngAfter = youngUsed(after);
+        long oldBefore = oldUsed(before);
+        long oldAfter = oldUsed(after);
+        GcEvent event;
+        synchronized (this) {
+            long allocated = lastYoungAfter < 0 ? 0 : Math.max(0, youngBefore - lastYoungAfter);
+            lastYoungAfter = youngAfter;
+            long promoted = action.contains("minor") ? Math.max(0, oldAfter - oldBefore) : 0;
+            long pauseMs = concurrent ? 0 : durationMs;
+            event = new GcEvent(eventCount, gcName, action, cause, startTime, durationMs, concurrent,
+                    allocated, promoted, pools(before, after));
+            ring[(int) (eventCount % ring.length)] = event;
+            eventCount++;
+
+            window.addLast(new long[]{now, allocated, promoted, pauseMs});
+            windowAllocated += allocated;
+            windowPromoted += promoted;
+            windowPauseMs += pauseMs;
+            evict(now);
+        }
+        if (!concurrent && durationMs >= config.getLongPauseMs()) {
+            logger.warn("Long GC pause: {} ({}, {}) took {}ms, old gen {}MB -> {}MB", gcName, action, cause,
+                    durationMs, oldBefore / (1024 * 1024), oldAfter / (1024 * 1024));
+        }
+        return event;
+    }
+
+    private long youngUsed(Map<String, MemoryUsage> usage) {
+        long young = 0;
+        boolean found = false;
+        for (Map.Entry<String, MemoryUsage> entry : usage.entrySet()) {
+            if (isYoungPool(entry.getKey())) {
+                young += entry.getValue().getUsed();
+                found = true;
+            }
+        }
+        if (found) {
+            return young;
+        }
+        long heap = 0;
+        for (Map.Entry<String, MemoryUsage> entry : usage.entrySet()) {
+            if (heapPools.contains(entry.getKey())) {
+                heap += entry.getValue().getUsed();
+            }
+        }
+        return heap;
+    }
+
+    private static long oldUsed(Map<String, MemoryUsage> usage) {
+        long old = 0;
+        for (Map.Entry<String, MemoryUsage> entry : usage.entrySet()) {
+            if (MemoryMonitor.isOldGenPool(entry.getKey())) {
+                old += entry.getValue().getUsed();
+            }
+        }
+        return old;
+    }
+
+    static boolean isYoungPool(String poolName) {
+        return poolName.contains("Eden") || poolName.toLowerCase().contains("nursery");
+    }
+
+    private static Map<String, long[]> pools(Map<String, MemoryUsage> before, Map<String, MemoryUsage> after) {
+        Map<String, long[]> pools = new LinkedHashMap<>();
+        for (Map.Entry<String, MemoryUsage> entry : before.entrySet()) {
+            MemoryUsage usage = after.get(entry.getKey());
+            pools.put(entry.getKey(), new long[]{entry.getValue().getUsed(), usage == null ? -1 : usage.getUsed()});
+        }
+        return pools;
+    }
+
+    private void evict(long now) {
+        long from = now - TimeUnit.SECONDS.toMillis(config.getRateWindowSeconds());
+        while (!window.isEmpty() && window.peekFirst()[0] < from) {
+            long[] oldest = window.removeFirst();
+            windowAllocated -= oldest[1];
+            windowPromoted -= oldest[2];
+            windowPauseMs -= oldest[3];
+        }
+    }
+
+    /**
+     * 窗口长度（秒），启动不足一个窗口时按实际运行时间计算
+     */
+    private double windowSeconds(long now) {
+        long millis = Math.min(TimeUnit.SECONDS.toMillis(config.getRateWindowSeconds()), now - since);
+        return Math.max(1000, millis) / 1000.0;
+    }
+
+    /**
+     * 滑动窗口内的分配速率（字节/秒）
+     */
+    public synchronized double getAllocationRate(long now) {
+        evict(now);
+        return windowAllocated / windowSeconds(now);
+    }
+
+    /**
+     * 滑动窗口内的晋升速率（字节/秒）
+     */
+    public synchronized double getPromotionRate(long now) {
+        evict(now);
+        return windowPromoted / windowSeconds(now);
+    }
+
+    /**
+     * 滑动窗口内GC停顿时间的占比（百分比）
+     */
+    public synchronized double getOverheadPct(long now) {
+        evict(now);
+        return windowPauseMs / 10.0 / windowSeconds(now);
+    }
+
+    /**
+     * 最近的GC事件，最新的在前
+     */
+    public synchronized List<Map<String, Object>> getRecentEvents(int limit) {
+        int count = (int) Math.min(Math.min(limit, eventCount), ring.length);
+        List<Map<String, Object>> events = new ArrayList<>(count);
+        for (long i = eventCount - 1; i >= eventCount - count; i--) {
+            events.add(ring[(int) (i % ring.length)].toMap());
+        }
+        return events;
+    }
+
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    public int getRateWindowSeconds() {
+        return config.getRateWindowSeconds();
+    }
+
+    /**
+     * 一次GC，创建后不再修改
+     */
+    static final class GcEvent {
+        final long id;
+        final String gcName;
+        final String action;
+        final String cause;
+        final long startTime;
+        final long durationMs;
+        final boolean concurrent;
+        final long allocatedBytes;
+        final long promotedBytes;
+        // 内存池名称 -> {GC前占用, GC后占用}
+        final Map<String, long[]> pools;
+
+        GcEvent(long id, String gcName, String action, String cause, long startTime, long durationMs,
+                boolean concurrent, long allocatedBytes, long promotedBytes, Map<String, long[]> pools) {
+            this.id = id;
+            this.gcName = gcName;
+            this.action = action;
+            this.cause = cause;
+            this.startTime = startTime;
+            this.durationMs = durationMs;
+            this.concurrent = concurrent;
+            this.allocatedBytes = allocatedBytes;
+            this.promotedBytes = promotedBytes;
+            this.pools = pools;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("timestamp", startTime);
+            map.put("gc", gcName);
+            map.put("action", action);
+            map.put("cause", cause);
+            map.put("duration_ms", durationMs);
+            map.put("concurrent", concurrent);
+            map.put("allocated_bytes", allocatedBytes);
+            map.put("promoted_bytes", promotedBytes);
+            Map<String, Object> usage = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> entry : pools.entrySet()) {
+                Map<String, Object> pool = new LinkedHashMap<>();
+                pool.put("before", entry.getValue()[0]);
+                pool.put("after", entry.getValue()[1]);
+                usage.put(entry.getKey(), pool);
+            }
+            map.put("pools", usage);
+            return map;
+        }
+    }
+}
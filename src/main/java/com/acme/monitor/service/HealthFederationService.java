@@ -0,0 +1,274 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.FederationConfig;
+import com.acme.monitor.util.NamedThreadFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 跨单元健康状态聚合
+ *
+ * 并发请求配置的各个对端单元的 /api/health/status，与本单元状态合并为集群视图：
+ * <ul>
+ *     <li>每个对端有独立的超时，超时或失败的单元标记为TIMEOUT/DOWN，其余单元照常返回（partial）</li>
+ *     <li>对端在对冲延迟内未返回时再发一次请求，先返回的结果生效</li>
+ *     <li>集群视图缓存一小段时间，同一时刻的并发请求只触发一次扇出</li>
+ * </ul>
+ */
+@Component
+public class HealthFederationService {
+    private static final Logger logger = LoggerFactory.getLogger(HealthFederationService.class);
+
+    static final String STATUS_PATH = "/api/health/status";
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    @Autowired
+    private FederationConfig config;
+
+    @Autowired
+    private UnitMetricsService unitMetricsService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SpanTracer spanTracer;
+
+    @Value("${unit.id:U01}")
+    private String unitId;
+
+    private final Object refreshLock = new Object();
+    private volatile Map<String, Object> cachedView;
+    private volatile long cachedUntil;
+    private ExecutorService requestExecutor;
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void start() {
+        requestExecutor = Executors.newFixedThreadPool(config.getThreads(), new NamedThreadFactory("Federation-Request"));
+        timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Federation-Timer"));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (requestExecutor != null) {
+            requestExecutor.shutdownNow();
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取集群视图，缓存有效期内直接返回缓存结果
+     * 最长等待时间为单个对端的超时时间
+     */
+    public Map<String, Object> getClusterView() {
+        Map<String, Object> view = cachedView;
+        if (view != null && System.currentTimeMillis() < cachedUntil) {
+            return view;
+        }
+        synchronized (refreshLock) {
+            // 等锁期间其他线程可能已经刷新
+            if (cachedView != null && System.currentTimeMillis() < cachedUntil) {
+                return cachedView;
+            }
+            view = collect();
+            cachedView = view;
+            cachedUntil = System.currentTimeMillis() + config.getCacheTtlMs();
+            return view;
+        }
+    }
+
+    private Map<String, Object> collect() {
+        List<FederationConfig.Peer> peers = config.getPeers();
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>(peers.size());
+        for (FederationConfig.Peer peer : peers) {
+            futures.add(fetch(peer));
+        }
+
+        Map<String, Object> units = new TreeMap<>();
+        Map<String, Object> local = new LinkedHashMap<>();
+        local.put("status", "UP");
+        local.put("latency_ms", 0);
+        local.put("metrics", unitMetricsService.getUnitStatus());
+        units.put(unitId, local);
+        // 每个future都会在超时时间内完成
+        for (int i = 0; i < peers.size(); i++) {
+            units.put(peers.get(i).getId(), futures.get(i).join());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("generated_at", System.currentTimeMillis());
+        result.put("unit_id", unitId);
+        result.put("summary", summarize(units));
+        result.put("units", units);
+        return result;
+    }
+
+    /**
+     * 请求单个对端，返回的future一定会在超时时间内完成，不会异常结束
+     */
+    private CompletableFuture<Map<String, Object>> fetch(FederationConfig.Peer peer) {
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        if (peer.getUrls().isEmpty()) {
+            result.complete(peerResult("DOWN", 0, false, null, "no url configured"));
+            return result;
+        }
+        long start = System.nanoTime();
+        long timeoutMs = config.getTimeoutMs();
+        long hedgeDelayMs = config.getHedgeDelayMs();
+        List<Future<?>> attempts = new CopyOnWriteArrayList<>();
+        AtomicInteger pending = new AtomicInteger(1);
+
+        // 在调用线程上包装，请求的span挂在当前调用路径下（对冲请求由定时线程提交）
+        Runnable first = spanTracer.wrap(() -> attempt(peer, 0, start, pending, result));
+        Runnable hedge = spanTracer.wrap(() -> attempt(peer, 1, start, pending, result));
+        attempts.add(requestExecutor.submit(first));
+        if (hedgeDelayMs > 0 && hedgeDelayMs < timeoutMs) {
+            timer.schedule(() -> {
+                if (!result.isDone()) {
+                    pending.incrementAndGet();
+                    attempts.add(requestExecutor.submit(hedge));
+                }
+            }, hedgeDelayMs, TimeUnit.MILLISECONDS);
+        }
+        timer.schedule(() -> result.complete(peerResult("TIMEOUT", elapsedMillis(start), false, null,
+                "no response within " + timeoutMs + "ms")), timeoutMs, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, error) -> {
+            for (Future<?> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private void attempt(FederationConfig.Peer peer, int attempt, long start, AtomicInteger pending,
+                         CompletableFuture<Map<String, Object>> result) {
+        List<String> urls = peer.getUrls();
+        String url = urls.get(attempt % urls.size()) + STATUS_PATH;
+        spanTracer.begin("federation:" + peer.getId());
+        try {
+            Map<String, Object> status = get(url);
+            result.complete(peerResult("UP", elapsedMillis(start), attempt > 0, status, null));
+        } catch (Exception e) {
+            logger.debug("Federation request to {} failed", url, e);
+            if (pending.decrementAndGet() == 0) {
+                result.complete(peerResult("DOWN", elapsedMillis(start), attempt > 0, null,
+                        e.getClass().getSimpleName() + ": " + e.getMessage()));
+            }
+        } finally {
+            spanTracer.end();
+        }
+    }
+
+    private Map<String, Object> get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        int timeout = (int) config.getTimeoutMs();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        connection.setRequestProperty("Accept", "application/json");
+        try {
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + code);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return objectMapper.readValue(in, MAP_TYPE);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static Map<String, Object> peerResult(String status, long latencyMs, boolean hedged,
+                                                  Map<String, Object> metrics, String error) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("status", status);
+        map.put("latency_ms", latencyMs);
+        if (hedged) {
+            map.put("hedged", true);
+        }
+        if (metrics != null) {
+            map.put("metrics", metrics);
+        }
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+
+    /**
+     * 汇总可用单元的指标：QPS求和，成功率按QPS加权，CPU取平均，p99延迟取最大值
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> summarize(Map<String, Object> units) {
+        int up = 0;
+        double qps = 0;
+        double weightedSuccess = 0;
+        double successSum = 0;
+        double cpuSum = 0;
+        double p99Max = 0;
+        for (Object value : units.values()) {
+            Map<String, Object> unit = (Map<String, Object>) value;
+            if (!"UP".equals(unit.get("status"))) {
+                continue;
+            }
+            Map<String, Object> metrics = (Map<String, Object>) unit.get("metrics");
+            double unitQps = number(metrics, "unit_qps_total");
+            double successRate = number(metrics, "unit_success_rate");
+            up++;
+            qps += unitQps;
+            weightedSuccess += successRate * unitQps;
+            successSum += successRate;
+            cpuSum += number(metrics, "unit_cpu_pct");
+            p99Max = Math.max(p99Max, number(metrics, "unit_latency_p99_ms"));
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("units_total", units.size());
+        summary.put("units_up", up);
+        summary.put("partial", up < units.size());
+        summary.put("qps_total", round(qps));
+        summary.put("success_rate", up == 0 ? 0 : round(qps > 0 ? weightedSuccess / qps : successSum / up));
+        summary.put("cpu_pct_avg", up == 0 ? 0 : round(cpuSum / up));
+        summary.put("latency_p99_ms_max", round(p99Max));
+        return summary;
+    }
+
+    private static double number(Map<String, Object> metrics, String name) {
+        Object value = metrics == null ? null : metrics.get(name);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
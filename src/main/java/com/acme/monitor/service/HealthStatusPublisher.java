@@ -0,0 +1,107 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.util.NamedThreadFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 预先序列化的健康状态
+ *
+ * 负载均衡和大屏会频繁轮询 /api/health/status，这里由后台线程按固定频率生成JSON字节和ETag，
+ * 请求线程直接返回最近一次的结果，内容没有变化时ETag保持不变。
+ */
+@Component
+public class HealthStatusPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(HealthStatusPublisher.class);
+
+    @Autowired
+    private UnitMetricsService unitMetricsService;
+
+    @Autowired
+    private DependencyHealthProbe dependencyHealthProbe;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.health.refresh-interval-ms:1000}")
+    private long refreshIntervalMs;
+
+    private volatile Payload payload;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        regenerate();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Health-Status-Publisher"));
+        scheduler.scheduleAtFixedRate(this::regenerate, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取最近一次生成的健康状态
+     */
+    public Payload getPayload() {
+        return payload;
+    }
+
+    /**
+     * 重新生成健康状态，内容未变化时沿用原来的对象
+     */
+    void regenerate() {
+        try {
+            Map<String, Object> status = new TreeMap<>(unitMetricsService.getUnitStatus());
+            status.put("dependencies", new TreeMap<>(dependencyHealthProbe.getResults()));
+            byte[] body = objectMapper.writeValueAsBytes(status);
+            Payload current = payload;
+            if (current != null && Arrays.equals(current.body, body)) {
+                return;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+            payload = new Payload(body, "\"" + Long.toHexString(crc.getValue()) + "-" + body.length + "\"");
+        } catch (Exception e) {
+            logger.error("Failed to generate health status", e);
+        }
+    }
+
+    /**
+     * 序列化后的健康状态及其ETag
+     */
+    public static final class Payload {
+        private final byte[] body;
+        private final String etag;
+
+        Payload(byte[] body, String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.util.AtomicDDSketch;
+import com.acme.monitor.util.DDSketch;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 可合并的延迟草图服务
+ *
+ * 按来源（HTTP请求、gRPC调用等）分别记录延迟（毫秒）到 {@link DDSketch}，
+ * 每分钟一个窗口，保留最近 {@link #WINDOW_COUNT} 分钟。
+ * 窗口使用 {@link AtomicDDSketch}，记录路径不加锁，读取时转换为 {@link DDSketch}。
+ * 草图可以序列化后交给聚合节点或离线任务，跨单元、跨时间窗口合并后计算全局分位数。
+ */
+@Component
+public class LatencySketchService {
+    public static final String SOURCE_HTTP = "http";
+    public static final String SOURCE_GRPC = "grpc";
+
+    static final int WINDOW_COUNT = 15;
+    static final long WINDOW_MILLIS = 60_000L;
+
+    private final Map<String, Windows> sources = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public LatencySketchService() {
+        this(System::currentTimeMillis);
+    }
+
+    LatencySketchService(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * 记录一次延迟
+     *
+     * @param source 来源，如 {@link #SOURCE_HTTP}
+     * @param millis 延迟（毫秒）
+     */
+    public void record(String source, double millis) {
+        record(source, millis, 1);
+    }
+
+    /**
+     * 记录一次带权重的延迟，weight 为采样概率的倒数
+     */
+    public void record(String source, double millis, long weight) {
+        long epoch = clock.getAsLong() / WINDOW_MILLIS;
+        Windows windows = sources.get(source);
+        if (windows == null) {
+            windows = sources.computeIfAbsent(source, s -> new Windows());
+        }
+        int slot = (int) (epoch % WINDOW_COUNT);
+        long current = windows.epochs.get(slot);
+        if (current != epoch) {
+            windows.rollover(slot, current, epoch);
+        }
+        windows.sketches[slot].accept(millis, weight);
+    }
+
+    /**
+     * 合并最近若干分钟（含当前分钟）的草图
+     */
+    public DDSketch merged(String source, int minutes) {
+        DDSketch result = new DDSketch();
+        for (Sample sample : windows(source, minutes)) {
+            result.merge(sample.getSketch());
+        }
+        return result;
+    }
+
+    /**
+     * 最近若干分钟（含当前分钟）各窗口草图的副本，按时间排序，没有数据的窗口不返回
+     */
+    public List<Sample> windows(String source, int minutes) {
+        List<Sample> result = new ArrayList<>();
+        Windows windows = sources.get(source);
+        if (windows == null) {
+            return result;
+        }
+        long current = clock.getAsLong() / WINDOW_MILLIS;
+        int count = Math.max(1, Math.min(minutes, WINDOW_COUNT));
+        for (long epoch = Math.max(0, current - count + 1); epoch <= current; epoch++) {
+            int slot = (int) (epoch % WINDOW_COUNT);
+            if (windows.epochs.get(slot) != epoch) {
+                continue;
+            }
+            DDSketch sketch = windows.sketches[slot].toSketch();
+            // 读取期间窗口被复用时丢弃
+            if (windows.epochs.get(slot) == epoch && sketch.getCount() > 0) {
+                result.add(new Sample(epoch * WINDOW_MILLIS, sketch));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 一个来源的环形分钟窗口
+     */
+    private static final class Windows {
+        private static final long RESETTING = -2;
+
+        final AtomicDDSketch[] sketches = new AtomicDDSketch[WINDOW_COUNT];
+        final AtomicLongArray epochs = new AtomicLongArray(WINDOW_COUNT);
+
+        Windows() {
+            for (int i = 0; i < WINDOW_COUNT; i++) {
+                sketches[i] = new AtomicDDSketch();
+                epochs.set(i, -1);
+            }
+        }
+
+        /**
+         * 窗口进入新的分钟时清零，只有一个线程执行清零，其他线程短暂等待，与 {@link com.acme.monitor.util.LatencyHistogram} 相同
+         */
+        void rollover(int slot, long current, long epoch) {
+            while (current != epoch) {
+                if (current > epoch) {
+                    // 时钟回拨时沿用当前窗口
+                    return;
+                }
+                if (current != RESETTING && epochs.compareAndSet(slot, current, RESETTING)) {
+                    sketches[slot].reset();
+                    epochs.set(slot, epoch);
+                    return;
+                }
+                Thread.yield();
+                current = epochs.get(slot);
+            }
+        }
+    }
+
+    /**
+     * 单个时间窗口的草图
+     */
+    public static final class Sample {
+        private final long start;
+        private final DDSketch sketch;
+
+        Sample(long start, DDSketch sketch) {
+            this.start = start;
+            this.sketch = sketch;
+        }
+
+        /**
+         * 窗口起始时间（毫秒）
+         */
+        public long getStart() {
+            return start;
+        }
+
+        public DDSketch getSketch() {
+            return sketch;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.LiveStreamConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实时指标推送（Server-Sent Events）
+ *
+ * 每次单元指标采样后生成一帧，包含单元指标（含延迟分位数）和告警状态：
+ * <ul>
+ *     <li>snapshot 帧包含全部数据，delta 帧只包含与上一帧相比变化的指标，告警变化时才包含告警列表</li>
+ *     <li>每帧只序列化一次，所有订阅者共享同一个字节数组</li>
+ *     <li>每个订阅者只有一个待发送帧的位置，上一帧还没写出时用新的 snapshot 帧替换，
+ *     慢订阅者只会丢失中间帧，不会阻塞发布线程，也不会积压内存</li>
+ * </ul>
+ * 写入通过 {@link FrameSink} 完成，Servlet实现是非阻塞的（WriteListener）。
+ */
+@Component
+public class LiveMetricsBroadcaster implements MetricSampleListener {
+    private static final Logger logger = LoggerFactory.getLogger(LiveMetricsBroadcaster.class);
+
+    static final String EVENT_SNAPSHOT = "snapshot";
+    static final String EVENT_DELTA = "delta";
+
+    @Autowired
+    private LiveStreamConfig config;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AlertRuleEngine alertRuleEngine;
+
+    @Value("${unit.id:U01}")
+    private String unitId;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Object[] lastValues = new Object[UnitMetricsService.METRIC_NAMES.length];
+    private List<Map<String, Object>> lastAlerts;
+    private long sequence;
+    private volatile byte[] latestSnapshot;
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void start() {
+        droppedCounter = Counter.builder("live_stream_frames_dropped_total")
+                .description("Frames replaced before a slow subscriber could receive them")
+                .register(meterRegistry);
+        Gauge.builder("live_stream_subscribers", subscribers, Set::size)
+                .description("Connected live stream subscribers")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+    @Override
+    public void onSample(long timestamp, double[] values) {
+        publish(timestamp, values, alertRuleEngine.getActiveAlerts());
+    }
+
+    /**
+     * 新的订阅者，连接后立即收到最近的 snapshot 帧
+     *
+     * @return 订阅者数量已达上限时返回null
+     */
+    public Subscriber subscribe(FrameSink sink) {
+        if (subscribers.size() >= config.getMaxSubscribers()) {
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(sink);
+        subscribers.add(subscriber);
+        byte[] snapshot = latestSnapshot;
+        if (snapshot != null) {
+            subscriber.offer(snapshot, snapshot);
+        }
+        return subscriber;
+    }
+
+    public boolean hasCapacity() {
+        return subscribers.size() < config.getMaxSubscribers();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 编码一帧并分发给所有订阅者
+     */
+    synchronized void publish(long timestamp, double[] values, List<Map<String, Object>> alerts) {
+        Map<String, Object> all = new LinkedHashMap<>();
+        Map<String, Object> changed = new LinkedHashMap<>();
+        for (int i = 0; i < lastValues.length; i++) {
+            Object value = UnitMetricsService.format(i, values[i]);
+            all.put(UnitMetricsService.METRIC_NAMES[i], value);
+            if (!value.equals(lastValues[i])) {
+                changed.put(UnitMetricsService.METRIC_NAMES[i], value);
+                lastValues[i] = value;
+            }
+        }
+        boolean alertsChanged = !alerts.equals(lastAlerts);
+        lastAlerts = alerts;
+        sequence++;
+
+        byte[] snapshot = encode(EVENT_SNAPSHOT, timestamp, all, alerts);
+        latestSnapshot = snapshot;
+        // 定期发送完整快照，订阅者即使错过了某个 delta 也能自动恢复
+        byte[] delta = sequence % Math.max(1, config.getSnapshotEveryFrames()) == 0 ? snapshot
+                : encode(EVENT_DELTA, timestamp, changed, alertsChanged ? alerts : null);
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.isStalled(now)) {
+                logger.info("Closing live stream subscriber stalled for more than {} ms", config.getMaxStallMs());
+                subscriber.close();
+            } else {
+                subscriber.offer(snapshot, delta);
+            }
+        }
+    }
+
+    private byte[] encode(String event, long timestamp, Map<String, Object> metrics, List<Map<String, Object>> alerts) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("unit_id", unitId);
+        data.put("timestamp", timestamp);
+        data.put("metrics", metrics);
+        if (alerts != null) {
+            data.put("alerts", alerts);
+        }
+        try {
+            // JSON不含换行，可以直接放在一行data中
+            byte[] json = objectMapper.writeValueAsBytes(data);
+            byte[] header = ("id: " + sequence + "\nevent: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8);
+            byte[] frame = new byte[header.length + json.length + 2];
+            System.arraycopy(header, 0, frame, 0, header.length);
+            System.arraycopy(json, 0, frame, header.length, json.length);
+            frame[frame.length - 2] = '\n';
+            frame[frame.length - 1] = '\n';
+            return frame;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode live stream frame", e);
+        }
+    }
+
+    /**
+     * 订阅者的输出，write 不能阻塞
+     */
+    public interface FrameSink {
+        /**
+         * 是否可以立即写入下一帧
+         */
+        boolean isReady();
+
+        void write(byte[] frame) throws IOException;
+
+        void close();
+    }
+
+    /**
+     * 单个订阅者，只保留一个待发送帧
+     */
+    public final class Subscriber {
+        private final FrameSink sink;
+        private byte[] pending;
+        private boolean needsSnapshot = true;
+        private boolean closed;
+        private long lastProgressAt = System.currentTimeMillis();
+        private long dropped;
+
+        Subscriber(FrameSink sink) {
+            this.sink = sink;
+        }
+
+        synchronized void offer(byte[] snapshot, byte[] delta) {
+            if (closed) {
+                return;
+            }
+            if (pending != null) {
+                // 上一帧还没写出就被替换，后续的 delta 缺少基准，改为发送 snapshot
+                pending = snapshot;
+                dropped++;
+                droppedCounter.increment();
+            } else {
+                pending = needsSnapshot ? snapshot : delta;
+                lastProgressAt = System.currentTimeMillis();
+            }
+            needsSnapshot = false;
+            flush();
+        }
+
+        /**
+         * 输出可写时由容器回调
+         */
+        public synchronized void onWritable() {
+            flush();
+        }
+
+        private void flush() {
+            try {
+                while (pending != null && !closed && sink.isReady()) {
+                    byte[] frame = pending;
+                    pending = null;
+                    sink.write(frame);
+                    lastProgressAt = System.currentTimeMillis();
+                }
+            } catch (IOException e) {
+                logger.debug("Live stream subscriber disconnected: {}", e.getMessage());
+                close();
+            }
+        }
+
+        synchronized boolean isStalled(long now) {
+            return pending != null && now - lastProgressAt > config.getMaxStallMs();
+        }
+
+        public synchronized long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * 断开连接，可以重复调用
+         */
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pending = null;
+            }
+            subscribers.remove(this);
+            sink.close();
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.ContentionConfig;
+import com.acme.monitor.util.NamedThreadFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 锁竞争和死锁监控
+ *
+ * <ul>
+ *     <li>开启 {@link ThreadMXBean} 的竞争监控，每个汇总周期计算每个线程阻塞（BLOCKED）和等待（WAITING）的次数和时间增量</li>
+ *     <li>按较短的间隔采样正在等锁的线程：阻塞在monitor上，或停在有持有者的 j.u.c 锁上（Object.wait、空闲的线程池线程不算竞争），
+ *     按采样次数估算每把锁上的等待时间，并记录等待位置和持有者当时的调用栈</li>
+ *     <li>每个汇总周期检测一次死锁，包括monitor和 j.u.c 锁</li>
+ * </ul>
+ * 采样和汇总在同一个线程上执行，接口读取的是最近一次汇总的结果。
+ */
+@Component
+public class LockContentionMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(LockContentionMonitor.class);
+
+    /**
+     * 按线程池汇总时最多区分的池数量，超过的归入 other
+     */
+    private static final int MAX_POOLS = 50;
+
+    @Autowired
+    private ContentionConfig config;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    // 以下字段只由监控线程访问
+    private Map<String, LockStats> locks = new HashMap<>();
+    // 第一次汇总前为null，第一次只记录基线
+    private Map<Long, long[]> lastThreadTimes;
+    private long tick;
+    private long windowStart;
+    private Set<Long> lastDeadlocked = Collections.emptySet();
+    private final Map<String, double[]> poolTotals = new ConcurrentHashMap<>();
+    private boolean contentionTimeEnabled;
+    private ScheduledExecutorService scheduler;
+
+    private volatile Map<String, Object> lastReport = Collections.emptyMap();
+    private volatile int contendedLocks;
+    private volatile double topLockWaiters;
+    private volatile int deadlockedThreads;
+    private volatile double blockedMsPerSecond = Double.NaN;
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (threadMXBean.isThreadContentionMonitoringSupported()) {
+            threadMXBean.setThreadContentionMonitoringEnabled(true);
+            contentionTimeEnabled = true;
+        } else {
+            logger.warn("Thread contention monitoring is not supported, only blocked/waited counts are reported");
+        }
+        Gauge.builder("lock_contended_locks", this, m -> m.contendedLocks)
+                .description("Distinct locks with waiting threads in the last report interval")
+                .register(meterRegistry);
+        Gauge.builder("lock_top_contention_waiters", this, m -> m.topLockWaiters)
+                .description("Average number of threads waiting on the most contended lock in the last report interval")
+                .register(meterRegistry);
+        Gauge.builder("jvm_deadlocked_threads", this, m -> m.deadlockedThreads)
+                .description("Threads in a monitor or ownable synchronizer deadlock")
+                .register(meterRegistry);
+
+        windowStart = System.currentTimeMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Lock-Contention-Monitor"));
+        scheduler.scheduleWithFixedDelay(this::sampleSafely, config.getSampleIntervalMs(),
+                config.getSampleIntervalMs(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::reportSafely, config.getReportIntervalMs(),
+                config.getReportIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void sampleSafely() {
+        try {
+            sample();
+        } catch (Exception e) {
+            logger.warn("Failed to sample lock contention", e);
+        }
+    }
+
+    private void reportSafely() {
+        try {
+            report(System.currentTimeMillis());
+        } catch (Exception e) {
+            logger.warn("Failed to report lock contention", e);
+        }
+    }
+
+    /**
+     * 采样一次正在等锁的线程
+     *
+     * @return 等锁的线程数
+     */
+    int sample() {
+        tick++;
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), 1);
+        Map<Long, List<LockStats>> owners = null;
+        int waiting = 0;
+        for (ThreadInfo info : infos) {
+            if (info == null || !isContended(info)) {
+                continue;
+            }
+            LockStats stats = locks.get(info.getLockName());
+            if (stats == null) {
+                if (locks.size() >= config.getMaxLocks()) {
+                    continue;
+                }
+                stats = new LockStats(info.getLockName(), info.getLockInfo().getClassName());
+                locks.put(info.getLockName(), stats);
+            }
+            stats.add(info, tick);
+            waiting++;
+            if (info.getLockOwnerId() != -1) {
+                if (owners == null) {
+                    owners = new HashMap<>();
+                }
+                owners.computeIfAbsent(info.getLockOwnerId(), id -> new ArrayList<>()).add(stats);
+            }
+        }
+        if (owners != null) {
+            // 只为持有竞争锁的线程再取一次完整调用栈
+            long[] ids = new long[owners.size()];
+            int i = 0;
+            for (Long id : owners.keySet()) {
+                ids[i++] = id;
+            }
+            for (ThreadInfo owner : threadMXBean.getThreadInfo(ids, config.getStackDepth())) {
+                if (owner != null) {
+                    List<String> stack = stack(owner.getStackTrace());
+                    for (LockStats stats : owners.get(owner.getThreadId())) {
+                        stats.ownerStack = stack;
+                    }
+                }
+            }
+        }
+        return waiting;
+    }
+
+    /**
+     * 阻塞在monitor上，或停在有持有者的锁上
+     */
+    private static boolean isContended(ThreadInfo info) {
+        if (info.getLockName() == null) {
+            return false;
+        }
+        Thread.State state = info.getThreadState();
+        return state == Thread.State.BLOCKED
+                || (state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING) && info.getLockOwnerId() != -1;
+    }
+
+    /**
+     * 汇总一个周期：线程的阻塞/等待增量、锁排行和死锁
+     */
+    Map<String, Object> report(long now) {
+        double seconds = Math.max(1, now - windowStart) / 1000.0;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", now);
+        report.put("interval_ms", now - windowStart);
+        report.put("contention_time_enabled", contentionTimeEnabled);
+
+        List<Map<String, Object>> threads = threadDeltas(report, seconds);
+        report.put("locks", topLocks(seconds));
+        report.put("threads", threads);
+        report.put("deadlocks", detectDeadlocks());
+
+        locks = new HashMap<>();
+        windowStart = now;
+        lastReport = report;
+        return report;
+    }
+
+    private List<Map<String, Object>> threadDeltas(Map<String, Object> report, double seconds) {
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), 0);
+        Map<Long, long[]> current = new HashMap<>();
+        List<long[]> deltas = new ArrayList<>();
+        List<ThreadInfo> deltaThreads = new ArrayList<>();
+        long blockedMs = 0;
+        long waitedMs = 0;
+        for (ThreadInfo info : infos) {
+            if (info == null) {
+                continue;
+            }
+            long[] times = {info.getBlockedCount(), info.getBlockedTime(), info.getWaitedCount(), info.getWaitedTime()};
+            current.put(info.getThreadId(), times);
+            long[] last = lastThreadTimes == null ? times : lastThreadTimes.get(info.getThreadId());
+            // 上次汇总后新建的线程从0开始计算
+            long[] delta = new long[4];
+            for (int i = 0; i < 4; i++) {
+                delta[i] = times[i] < 0 ? -1 : times[i] - (last == null ? 0 : Math.max(0, last[i]));
+            }
+            blockedMs += Math.max(0, delta[1]);
+            waitedMs += Math.max(0, delta[3]);
+            addPoolTotals(info.getThreadName(), delta);
+            if (delta[0] > 0 || delta[1] > 0) {
+                deltas.add(delta);
+                deltaThreads.add(info);
+            }
+        }
+        lastThreadTimes = current;
+
+        blockedMsPerSecond = contentionTimeEnabled ? blockedMs / seconds : Double.NaN;
+        report.put("blocked_ms_per_s", contentionTimeEnabled ? round(blockedMs / seconds) : null);
+        report.put("waited_ms_per_s", contentionTimeEnabled ? round(waitedMs / seconds) : null);
+
+        Integer[] order = new Integer[deltas.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // 按阻塞时间排序，没有时间数据时按阻塞次数
+        Arrays.sort(order, (a, b) -> deltas.get(a)[1] != deltas.get(b)[1]
+                ? Long.compare(deltas.get(b)[1], deltas.get(a)[1]) : Long.compare(deltas.get(b)[0], deltas.get(a)[0]));
+        List<Map<String, Object>> threads = new ArrayList<>();
+        for (int i = 0; i < Math.min(config.getTopThreads(), order.length); i++) {
+            long[] delta = deltas.get(order[i]);
+            ThreadInfo info = deltaThreads.get(order[i]);
+            Map<String, Object> thread = new LinkedHashMap<>();
+            thread.put("thread", info.getThreadName());
+            thread.put("state", info.getThreadState().name());
+            thread.put("blocked_count", delta[0]);
+            thread.put("blocked_ms", delta[1] < 0 ? null : delta[1]);
+            thread.put("waited_count", delta[2]);
+            thread.put("waited_ms", delta[3] < 0 ? null : delta[3]);
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    /**
+     * 按线程池累加阻塞/等待时间，第一次出现的池注册计数器
+     */
+    private void addPoolTotals(String threadName, long[] delta) {
+        if (!contentionTimeEnabled || (delta[1] <= 0 && delta[3] <= 0)) {
+            return;
+        }
+        String pool = poolName(threadName);
+        double[] totals = poolTotals.get(pool);
+        if (totals == null) {
+            if (poolTotals.size() >= MAX_POOLS) {
+                pool = "other";
+                totals = poolTotals.get(pool);
+            }
+            if (totals == null) {
+                totals = new double[2];
+                poolTotals.put(pool, totals);
+                FunctionCounter.builder("jvm_threads_blocked_seconds", totals, t -> t[0])
+                        .description("Time threads spent blocked entering monitors, by thread pool")
+                        .tag("pool", pool)
+                        .register(meterRegistry);
+                FunctionCounter.builder("jvm_threads_waited_seconds", totals, t -> t[1])
+                        .description("Time threads spent waiting or parked, by thread pool")
+                        .tag("pool", pool)
+                        .register(meterRegistry);
+            }
+        }
+        totals[0] += Math.max(0, delta[1]) / 1000.0;
+        totals[1] += Math.max(0, delta[3]) / 1000.0;
+    }
+
+    /**
+     * 去掉线程名称末尾的编号，如 http-nio-8080-exec-3 归入 http-nio-8080-exec
+     */
+    static String poolName(String threadName) {
+        int end = threadName.length();
+        while (end > 0 && (Character.isDigit(threadName.charAt(end - 1)) || threadName.charAt(end - 1) == '-')) {
+            end--;
+        }
+        return end == 0 ? threadName : threadName.substring(0, end);
+    }
+
+    private List<Map<String, Object>> topLocks(double seconds) {
+        List<LockStats> sorted = new ArrayList<>(locks.values());
+        sorted.sort((a, b) -> Long.compare(b.samples, a.samples));
+        contendedLocks = sorted.size();
+        topLockWaiters = sorted.isEmpty() ? 0 : sorted.get(0).samples * config.getSampleIntervalMs() / 1000.0 / seconds;
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(config.getTopLocks(), sorted.size()); i++) {
+            LockStats stats = sorted.get(i);
+            Map<String, Object> lock = new LinkedHashMap<>();
+            lock.put("lock", stats.name);
+            lock.put("class", stats.className);
+            // 等锁线程数×采样间隔，多个线程同时等待时会超过墙上时间
+            lock.put("estimated_wait_ms", stats.samples * config.getSampleIntervalMs());
+            lock.put("avg_waiters", round(stats.samples * config.getSampleIntervalMs() / 1000.0 / seconds));
+            lock.put("max_waiters", stats.maxWaiters);
+            lock.put("blocked_samples", stats.blockedSamples);
+            lock.put("parked_samples", stats.samples - stats.blockedSamples);
+            lock.put("waiting_at", stats.waiterFrames);
+            lock.put("owner", stats.ownerName);
+            lock.put("owner_stack", stats.ownerStack);
+            result.add(lock);
+        }
+        return result;
+    }
+
+    /**
+     * 检测死锁，新出现的死锁输出错误日志
+     */
+    private List<Map<String, Object>> detectDeadlocks() {
+        long[] ids = threadMXBean.isSynchronizerUsageSupported()
+                ? threadMXBean.findDeadlockedThreads() : threadMXBean.findMonitorDeadlockedThreads();
+        if (ids == null) {
+            deadlockedThreads = 0;
+            lastDeadlocked = Collections.emptySet();
+            return Collections.emptyList();
+        }
+        deadlockedThreads = ids.length;
+        List<Map<String, Object>> result = new ArrayList<>();
+        Set<Long> deadlocked = new HashSet<>();
+        for (ThreadInfo info : threadMXBean.getThreadInfo(ids, config.getStackDepth())) {
+            if (info == null) {
+                continue;
+            }
+            deadlocked.add(info.getThreadId());
+            Map<String, Object> thread = new LinkedHashMap<>();
+            thread.put("thread", info.getThreadName());
+            thread.put("state", info.getThreadState().name());
+            LockInfo lock = info.getLockInfo();
+            thread.put("waiting_for", lock == null ? null : lock.toString());
+            thread.put("owner", info.getLockOwnerName());
+            thread.put("stack", stack(info.getStackTrace()));
+            result.add(thread);
+        }
+        if (!deadlocked.equals(lastDeadlocked)) {
+            logger.error("Deadlock detected among {} threads: {}", deadlocked.size(), result);
+        }
+        lastDeadlocked = deadlocked;
+        return result;
+    }
+
+    private static List<String> stack(StackTraceElement[] elements) {
+        List<String> stack = new ArrayList<>(elements.length);
+        for (StackTraceElement element : elements) {
+            stack.add(element.toString());
+        }
+        return stack;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /**
+     * 最近一次汇总的结果
+     */
+    public Map<String, Object> getLastReport() {
+        return lastReport;
+    }
+
+    public int getDeadlockedThreads() {
+        return deadlockedThreads;
+    }
+
+    /**
+     * 最近一个汇总周期内所有线程平均每秒的阻塞时间（毫秒），不支持竞争监控时为NaN
+     */
+    public double getBlockedMsPerSecond() {
+        return blockedMsPerSecond;
+    }
+
+    /**
+     * 一个汇总周期内一把锁的采样统计
+     */
+    private static final class LockStats {
+        private static final int MAX_WAITER_FRAMES = 5;
+
+        final String name;
+        final String className;
+        final Map<String, Integer> waiterFrames = new LinkedHashMap<>();
+        long samples;
+        long blockedSamples;
+        int maxWaiters;
+        String ownerName;
+        List<String> ownerStack;
+        private long lastTick;
+        private int waitersThisTick;
+
+        LockStats(String name, String className) {
+            this.name = name;
+            this.className = className;
+        }
+
+        void add(ThreadInfo info, long tick) {
+            samples++;
+            if (info.getThreadState() == Thread.State.BLOCKED) {
+                blockedSamples++;
+            }
+            if (tick != lastTick) {
+                lastTick = tick;
+                waitersThisTick = 0;
+            }
+            maxWaiters = Math.max(maxWaiters, ++waitersThisTick);
+            if (info.getLockOwnerName() != null) {
+                ownerName = info.getLockOwnerName();
+            }
+            StackTraceElement[] stack = info.getStackTrace();
+            if (stack.length > 0) {
+                String frame = stack[0].toString();
+                Integer count = waiterFrames.get(frame);
+                if (count != null || waiterFrames.size() < MAX_WAITER_FRAMES) {
+                    waiterFrames.put(frame, count == null ? 1 : count + 1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.CardinalityLimitMeterFilter;
+import com.acme.monitor.util.NamedThreadFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 指标基数监控
+ *
+ * 统计注册表中各指标的时间序列数量、各标签的取值数量和估算内存；
+ * 标签首次达到上限时记录告警日志，并注册 meter_cardinality_overflow{meter,tag} 计数器，
+ * 告警规则可直接基于该计数器配置。
+ */
+@Component
+public class MeterCardinalityService {
+    private static final Logger logger = LoggerFactory.getLogger(MeterCardinalityService.class);
+
+    /**
+     * 每个标签的估算开销：Tag对象和两个字符串的对象头
+     */
+    private static final int TAG_OVERHEAD_BYTES = 80;
+    private static final int ID_OVERHEAD_BYTES = 120;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CardinalityLimitMeterFilter cardinalityLimitMeterFilter;
+
+    private ExecutorService alertExecutor;
+
+    @PostConstruct
+    public void start() {
+        alertExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("Cardinality-Alert"));
+        Gauge.builder("meter_cardinality_series", meterRegistry, r -> r.getMeters().size())
+                .description("Number of meters in the registry")
+                .register(meterRegistry);
+        // 回调发生在 MeterFilter.map() 内部，不能在注册指标的调用栈里再注册指标
+        cardinalityLimitMeterFilter.setOverflowListener(tracker -> alertExecutor.execute(() -> onOverflow(tracker)));
+    }
+
+    @PreDestroy
+    public void stop() {
+        cardinalityLimitMeterFilter.setOverflowListener(null);
+        if (alertExecutor != null) {
+            alertExecutor.shutdownNow();
+        }
+    }
+
+    private void onOverflow(CardinalityLimitMeterFilter.Tracker tracker) {
+        logger.warn("Meter {} tag {} reached cardinality limit {}, new values are recorded as {}",
+                tracker.getMeter(), tracker.getTag(), tracker.getLimit(), CardinalityLimitMeterFilter.OVERFLOW_VALUE);
+        FunctionCounter.builder("meter_cardinality_overflow", tracker, CardinalityLimitMeterFilter.Tracker::getOverflowHits)
+                .description("Meter registrations whose tag value was replaced by the overflow bucket")
+                .tag("meter", tracker.getMeter())
+                .tag("tag", tracker.getTag())
+                .register(meterRegistry);
+    }
+
+    /**
+     * 基数报告
+     *
+     * @param top 返回时间序列最多的前几个指标
+     */
+    public Map<String, Object> getReport(int top) {
+        Map<String, MeterStats> byName = new HashMap<>();
+        long totalBytes = 0;
+        List<Meter> meters = meterRegistry.getMeters();
+        for (Meter meter : meters) {
+            Meter.Id id = meter.getId();
+            MeterStats stats = byName.computeIfAbsent(id.getName(), MeterStats::new);
+            long bytes = estimateBytes(meter);
+            stats.series++;
+            stats.bytes += bytes;
+            totalBytes += bytes;
+            for (Tag tag : id.getTagsAsIterable()) {
+                stats.tagValues.computeIfAbsent(tag.getKey(), k -> new HashSet<>()).add(tag.getValue());
+            }
+        }
+
+        List<MeterStats> sorted = new ArrayList<>(byName.values());
+        sorted.sort((a, b) -> Integer.compare(b.series, a.series));
+        List<Map<String, Object>> topMeters = new ArrayList<>();
+        for (MeterStats stats : sorted.subList(0, Math.min(top, sorted.size()))) {
+            topMeters.add(stats.toMap());
+        }
+
+        List<Map<String, Object>> limits = new ArrayList<>();
+        for (CardinalityLimitMeterFilter.Tracker tracker : cardinalityLimitMeterFilter.getTrackers()) {
+            if (tracker.getLimit() <= 0 || tracker.getDistinctValues() == 0) {
+                continue;
+            }
+            Map<String, Object> limit = new LinkedHashMap<>();
+            limit.put("meter", tracker.getMeter());
+            limit.put("tag", tracker.getTag());
+            limit.put("distinct_values", tracker.getDistinctValues());
+            limit.put("limit", tracker.getLimit());
+            limit.put("overflowed", tracker.isOverflowed());
+            limit.put("overflow_hits", tracker.getOverflowHits());
+            limits.add(limit);
+        }
+        limits.sort((a, b) -> Double.compare(usage(b), usage(a)));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("series_total", meters.size());
+        result.put("meter_names", byName.size());
+        result.put("estimated_bytes", totalBytes);
+        result.put("meters", topMeters);
+        result.put("limits", limits.subList(0, Math.min(top, limits.size())));
+        return result;
+    }
+
+    private static double usage(Map<String, Object> limit) {
+        return ((Integer) limit.get("distinct_values")).doubleValue() / (Integer) limit.get("limit");
+    }
+
+    /**
+     * 估算单个指标占用的堆内存：按类型的固定开销加上标签字符串，只用于相对比较
+     */
+    static long estimateBytes(Meter meter) {
+        long bytes = ID_OVERHEAD_BYTES + 2L * meter.getId().getName().length();
+        for (Tag tag : meter.getId().getTagsAsIterable()) {
+            bytes += TAG_OVERHEAD_BYTES + 2L * (tag.getKey().length() + tag.getValue().length());
+        }
+        if (meter instanceof Timer || meter instanceof DistributionSummary) {
+            // 滑动窗口最大值和直方图快照
+            bytes += 1024;
+        } else if (meter instanceof LongTaskTimer) {
+            bytes += 512;
+        } else if (meter instanceof Counter || meter instanceof FunctionCounter) {
+            bytes += 96;
+        } else {
+            bytes += 128;
+        }
+        return bytes;
+    }
+
+    private static final class MeterStats {
+        private final String name;
+        private int series;
+        private long bytes;
+        private final Map<String, Set<String>> tagValues = new HashMap<>();
+
+        MeterStats(String name) {
+            this.name = name;
+        }
+
+        Map<String, Object> toMap() {
+            List<Map<String, Object>> tags = new ArrayList<>();
+            for (Map.Entry<String, Set<String>> entry : tagValues.entrySet()) {
+                Map<String, Object> tag = new LinkedHashMap<>();
+                tag.put("tag", entry.getKey());
+                tag.put("distinct_values", entry.getValue().size());
+                tag.put("overflowed", entry.getValue().contains(CardinalityLimitMeterFilter.OVERFLOW_VALUE));
+                tags.add(tag);
+            }
+            tags.sort((a, b) -> Integer.compare((Integer) b.get("distinct_values"), (Integer) a.get("distinct_values")));
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", name);
+            map.put("series", series);
+            map.put("estimated_bytes", bytes);
+            map.put("tags", tags);
+            return map;
+        }
+    }
+}
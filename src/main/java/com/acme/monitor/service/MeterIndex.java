@@ -0,0 +1,209 @@
+package com.acme.monitor.service;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.prometheus.PrometheusNamingConvention;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 注册表的倒排索引
+ *
+ * 按Prometheus名称（有序，支持前缀查询）和 标签名=标签值 建立到 Meter.Id 的倒排表，
+ * 随指标的注册和删除同步更新。过滤查询从候选最少的倒排表开始，逐个用其他条件的倒排表校验，
+ * 耗时与最小候选集的大小成正比，而不是与注册表的总大小成正比。
+ */
+@Component
+public class MeterIndex {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final NamingConvention namingConvention = new PrometheusNamingConvention();
+    private final ConcurrentSkipListMap<String, Set<Meter.Id>> byName = new ConcurrentSkipListMap<>();
+    private final Map<String, Map<String, Set<Meter.Id>>> byTag = new ConcurrentHashMap<>();
+    private final Map<Meter.Id, String> names = new ConcurrentHashMap<>();
+    private final Map<Meter.Id, Meter> meters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        bind(meterRegistry);
+    }
+
+    /**
+     * 跟踪注册表中指标的注册和删除，已存在的指标立即加入
+     */
+    public void bind(MeterRegistry registry) {
+        registry.config().onMeterAdded(this::add).onMeterRemoved(meter -> remove(meter.getId()));
+        for (Meter meter : registry.getMeters()) {
+            add(meter);
+        }
+    }
+
+    /**
+     * 查询同时满足所有条件的指标
+     *
+     * @param namePrefix Prometheus名称前缀，为空时不限制
+     * @param tags       标签名到可选值的映射，同一标签的多个值之间为"或"，不同标签之间为"与"
+     */
+    public List<Meter.Id> find(String namePrefix, Map<String, ? extends Collection<String>> tags) {
+        boolean hasPrefix = namePrefix != null && !namePrefix.isEmpty();
+        // 选出候选最少的条件
+        Collection<Set<Meter.Id>> smallest = null;
+        int smallestSize = Integer.MAX_VALUE;
+        if (hasPrefix) {
+            smallest = byPrefix(namePrefix).values();
+            smallestSize = size(smallest);
+        }
+        for (Map.Entry<String, ? extends Collection<String>> filter : tags.entrySet()) {
+            List<Set<Meter.Id>> postings = postings(filter.getKey(), filter.getValue());
+            int size = size(postings);
+            if (size < smallestSize) {
+                smallest = postings;
+                smallestSize = size;
+            }
+        }
+        if (smallest == null) {
+            smallest = byName.values();
+        }
+
+        List<Meter.Id> result = new ArrayList<>(smallestSize == Integer.MAX_VALUE ? 16 : smallestSize);
+        for (Set<Meter.Id> ids : smallest) {
+            for (Meter.Id id : ids) {
+                if (matches(id, hasPrefix ? namePrefix : null, tags)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 与 {@link #find} 相同，返回指标本身
+     */
+    public List<Meter> findMeters(String namePrefix, Map<String, ? extends Collection<String>> tags) {
+        List<Meter.Id> ids = find(namePrefix, tags);
+        List<Meter> result = new ArrayList<>(ids.size());
+        for (Meter.Id id : ids) {
+            Meter meter = meters.get(id);
+            if (meter != null) {
+                result.add(meter);
+            }
+        }
+        return result;
+    }
+
+    private boolean matches(Meter.Id id, String namePrefix, Map<String, ? extends Collection<String>> tags) {
+        if (namePrefix != null) {
+            String name = names.get(id);
+            if (name == null || !name.startsWith(namePrefix)) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, ? extends Collection<String>> filter : tags.entrySet()) {
+            Map<String, Set<Meter.Id>> values = byTag.get(filter.getKey());
+            boolean found = false;
+            if (values != null) {
+                for (String value : filter.getValue()) {
+                    Set<Meter.Id> ids = values.get(value);
+                    if (ids != null && ids.contains(id)) {
+                        found = true;
+                        break;
+                    }
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private NavigableMap<String, Set<Meter.Id>> byPrefix(String prefix) {
+        return byName.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private List<Set<Meter.Id>> postings(String key, Collection<String> values) {
+        Map<String, Set<Meter.Id>> byValue = byTag.get(key);
+        if (byValue == null) {
+            return Collections.emptyList();
+        }
+        List<Set<Meter.Id>> postings = new ArrayList<>(values.size());
+        for (String value : values) {
+            Set<Meter.Id> ids = byValue.get(value);
+            if (ids != null) {
+                postings.add(ids);
+            }
+        }
+        return postings;
+    }
+
+    private static int size(Collection<Set<Meter.Id>> postings) {
+        int size = 0;
+        for (Set<Meter.Id> ids : postings) {
+            size += ids.size();
+        }
+        return size;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    // 注册和删除相对查询很少，加锁保证倒排表的增删和清理空集合不会交错
+    private synchronized void add(Meter meter) {
+        Meter.Id id = meter.getId();
+        if (names.containsKey(id)) {
+            return;
+        }
+        String name = id.getConventionName(namingConvention);
+        names.put(id, name);
+        meters.put(id, meter);
+        byName.computeIfAbsent(name, k -> ConcurrentHashMap.newKeySet()).add(id);
+        for (Tag tag : id.getConventionTags(namingConvention)) {
+            byTag.computeIfAbsent(tag.getKey(), k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(tag.getValue(), k -> ConcurrentHashMap.newKeySet())
+                    .add(id);
+        }
+    }
+
+    private synchronized void remove(Meter.Id id) {
+        String name = names.remove(id);
+        if (name == null) {
+            return;
+        }
+        meters.remove(id);
+        removePosting(byName, name, id);
+        for (Tag tag : id.getConventionTags(namingConvention)) {
+            Map<String, Set<Meter.Id>> values = byTag.get(tag.getKey());
+            if (values != null) {
+                removePosting(values, tag.getValue(), id);
+                if (values.isEmpty()) {
+                    byTag.remove(tag.getKey());
+                }
+            }
+        }
+    }
+
+    private static void removePosting(Map<String, Set<Meter.Id>> postings, String key, Meter.Id id) {
+        Set<Meter.Id> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+}
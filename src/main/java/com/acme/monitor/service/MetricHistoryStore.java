@@ -0,0 +1,194 @@
+package com.acme.monitor.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * 单元指标历史记录
+ *
+ * 接收 {@link UnitMetricsSampler} 每秒一次的采样，同时写入1秒、10秒、1分钟三个分辨率的环形缓冲区，
+ * 每个槽位增量维护 min/max/sum/count。所有缓冲区在启动时一次性分配，写入路径不创建对象，
+ * 默认保留1小时的秒级、6小时的10秒级和24小时的分钟级数据。
+ */
+@Component
+public class MetricHistoryStore implements MetricSampleListener {
+    /**
+     * 各分辨率的槽位时长（毫秒）和槽位数
+     */
+    static final long[] RESOLUTION_MILLIS = {1000L, 10_000L, 60_000L};
+    static final int[] RESOLUTION_SLOTS = {3600, 2160, 1440};
+
+    private final Tier[] tiers;
+
+    public MetricHistoryStore() {
+        this(UnitMetricsService.METRIC_NAMES.length);
+    }
+
+    MetricHistoryStore(int metricCount) {
+        tiers = new Tier[RESOLUTION_MILLIS.length];
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = new Tier(RESOLUTION_MILLIS[i], RESOLUTION_SLOTS[i], metricCount);
+        }
+    }
+
+    @Override
+    public void onSample(long timestamp, double[] values) {
+        for (Tier tier : tiers) {
+            tier.record(timestamp, values);
+        }
+    }
+
+    /**
+     * 按时间范围查询某个指标
+     *
+     * @param metricIndex 指标在 {@link UnitMetricsService#METRIC_NAMES} 中的位置
+     * @param from        起始时间（毫秒，含）
+     * @param to          结束时间（毫秒，含）
+     * @param stepMillis  期望的分辨率，小于等于0时自动选择仍覆盖起始时间的最细分辨率
+     */
+    public Series query(int metricIndex, long from, long to, long stepMillis) {
+        return selectTier(from, to, stepMillis).query(metricIndex, from, to);
+    }
+
+    private Tier selectTier(long from, long to, long stepMillis) {
+        if (stepMillis > 0) {
+            for (Tier tier : tiers) {
+                if (tier.slotMillis >= stepMillis) {
+                    return tier;
+                }
+            }
+            return tiers[tiers.length - 1];
+        }
+        for (Tier tier : tiers) {
+            if (tier.covers(from)) {
+                return tier;
+            }
+        }
+        return tiers[tiers.length - 1];
+    }
+
+    /**
+     * 某一分辨率的环形缓冲区，槽位数据按 [slot * metricCount + metric] 平铺在基本类型数组中
+     */
+    private static final class Tier {
+        private final long slotMillis;
+        private final int slots;
+        private final int metricCount;
+        private final long[] epochs;
+        private final int[] counts;
+        private final double[] min;
+        private final double[] max;
+        private final double[] sum;
+        private long latestEpoch = -1;
+
+        Tier(long slotMillis, int slots, int metricCount) {
+            this.slotMillis = slotMillis;
+            this.slots = slots;
+            this.metricCount = metricCount;
+            this.epochs = new long[slots];
+            this.counts = new int[slots];
+            this.min = new double[slots * metricCount];
+            this.max = new double[slots * metricCount];
+            this.sum = new double[slots * metricCount];
+            Arrays.fill(epochs, -1);
+        }
+
+        synchronized void record(long timestamp, double[] values) {
+            long epoch = timestamp / slotMillis;
+            int slot = (int) (epoch % slots);
+            int base = slot * metricCount;
+            if (epochs[slot] != epoch) {
+                epochs[slot] = epoch;
+                counts[slot] = 0;
+                Arrays.fill(min, base, base + metricCount, Double.POSITIVE_INFINITY);
+                Arrays.fill(max, base, base + metricCount, Double.NEGATIVE_INFINITY);
+                Arrays.fill(sum, base, base + metricCount, 0);
+            }
+            for (int i = 0; i < metricCount; i++) {
+                double value = values[i];
+                int index = base + i;
+                if (value < min[index]) {
+                    min[index] = value;
+                }
+                if (value > max[index]) {
+                    max[index] = value;
+                }
+                sum[index] += value;
+            }
+            counts[slot]++;
+            if (epoch > latestEpoch) {
+                latestEpoch = epoch;
+            }
+        }
+
+        synchronized boolean covers(long timestamp) {
+            return latestEpoch < 0 || timestamp / slotMillis > latestEpoch - slots;
+        }
+
+        synchronized Series query(int metric, long from, long to) {
+            long firstEpoch = Math.max(Math.max(from, 0) / slotMillis, latestEpoch - slots + 1);
+            long lastEpoch = Math.min(to / slotMillis, latestEpoch);
+            int size = 0;
+            for (long epoch = firstEpoch; epoch <= lastEpoch; epoch++) {
+                if (epochs[(int) (epoch % slots)] == epoch) {
+                    size++;
+                }
+            }
+            Series series = new Series(slotMillis, size);
+            int n = 0;
+            for (long epoch = firstEpoch; epoch <= lastEpoch; epoch++) {
+                int slot = (int) (epoch % slots);
+                if (epochs[slot] != epoch) {
+                    continue;
+                }
+                int index = slot * metricCount + metric;
+                series.timestamps[n] = epoch * slotMillis;
+                series.min[n] = min[index];
+                series.max[n] = max[index];
+                series.avg[n] = sum[index] / counts[slot];
+                n++;
+            }
+            return series;
+        }
+    }
+
+    /**
+     * 查询结果，缺失数据的槽位不会出现在结果中
+     */
+    public static final class Series {
+        private final long stepMillis;
+        private final long[] timestamps;
+        private final double[] min;
+        private final double[] max;
+        private final double[] avg;
+
+        Series(long stepMillis, int size) {
+            this.stepMillis = stepMillis;
+            this.timestamps = new long[size];
+            this.min = new double[size];
+            this.max = new double[size];
+            this.avg = new double[size];
+        }
+
+        public long getStepMillis() {
+            return stepMillis;
+        }
+
+        public long[] getTimestamps() {
+            return timestamps;
+        }
+
+        public double[] getMin() {
+            return min;
+        }
+
+        public double[] getMax() {
+            return max;
+        }
+
+        public double[] getAvg() {
+            return avg;
+        }
+    }
+}
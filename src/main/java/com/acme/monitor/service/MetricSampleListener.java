@@ -0,0 +1,16 @@
+package com.acme.monitor.service;
+
+/**
+ * 单元指标采样监听器
+ * 由 {@link UnitMetricsSampler} 在采样线程中回调，values 数组会被复用，实现方不能持有其引用
+ */
+public interface MetricSampleListener {
+
+    /**
+     * 收到一组采样值
+     *
+     * @param timestamp 采样时间（毫秒）
+     * @param values    按 {@link UnitMetricsService#METRIC_NAMES} 顺序排列的指标值
+     */
+    void onSample(long timestamp, double[] values);
+}
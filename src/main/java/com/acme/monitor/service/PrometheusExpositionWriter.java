@@ -0,0 +1,447 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.util.ExpositionBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.HistogramSupport;
+import io.micrometer.prometheus.PrometheusNamingConvention;
+import io.prometheus.client.Collector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 增量编码的Prometheus文本输出
+ *
+ * 默认的 /actuator/prometheus 每次抓取都会遍历所有指标，重新拼接名称和标签（包括全局的 unit_id 标签）。
+ * 这里在指标注册时就把每条时间序列的 "名称{标签} " 前缀编码成字节数组，按指标族分组缓存，
+ * 指标删除时同步移除；抓取时只格式化变化的数值，通过可复用的 {@link ExpositionBuffer} 直接写入（gzip）响应流。
+ *
+ * 名称和类型与 {@link PrometheusNamingConvention} 一致。Timer/DistributionSummary 输出 count、sum 和 max，
+ * 开启了百分位直方图的按 histogram 类型额外输出 _bucket{le=...}，每次抓取只取一次快照。
+ */
+@Component
+public class PrometheusExpositionWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int POOL_SIZE = 4;
+
+    private static final int COUNTER = 0;
+    private static final int GAUGE = 1;
+    private static final int TIME_GAUGE = 2;
+    private static final int TIMER_COUNT = 3;
+    private static final int TIMER_SUM = 4;
+    private static final int TIMER_MAX = 5;
+    private static final int SUMMARY_COUNT = 6;
+    private static final int SUMMARY_SUM = 7;
+    private static final int SUMMARY_MAX = 8;
+    private static final int LONG_TASK_ACTIVE = 9;
+    private static final int LONG_TASK_DURATION = 10;
+    private static final int LONG_TASK_MAX = 11;
+    private static final int FUNCTION_COUNTER = 12;
+    private static final int FUNCTION_TIMER_COUNT = 13;
+    private static final int FUNCTION_TIMER_SUM = 14;
+    private static final int MEASUREMENT = 15;
+    private static final int TIMER_HISTOGRAM = 16;
+    private static final int SUMMARY_HISTOGRAM = 17;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final NamingConvention namingConvention = new PrometheusNamingConvention();
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+    private final Map<Meter.Id, List<Family>> registrations = new ConcurrentHashMap<>();
+    private final BlockingQueue<ExpositionBuffer> bufferPool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    @PostConstruct
+    public void init() {
+        bind(meterRegistry);
+    }
+
+    /**
+     * 跟踪注册表中指标的注册和删除，已存在的指标立即加入
+     */
+    public void bind(MeterRegistry registry) {
+        registry.config().onMeterAdded(this::add).onMeterRemoved(this::remove);
+        for (Meter meter : registry.getMeters()) {
+            add(meter);
+        }
+    }
+
+    /**
+     * 输出全部指标
+     *
+     * @param out  响应流，方法内不会关闭
+     * @param gzip 是否以gzip格式输出
+     */
+    public void write(OutputStream out, boolean gzip) throws IOException {
+        ExpositionBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = new ExpositionBuffer(BUFFER_SIZE);
+        }
+        try {
+            buffer.begin(out, gzip);
+            for (Family family : families.values()) {
+                writeFamily(buffer, family);
+            }
+            buffer.finish();
+        } finally {
+            if (!bufferPool.offer(buffer)) {
+                buffer.close();
+            }
+        }
+    }
+
+    /**
+     * 只输出指定的指标，耗时与指定指标的数量成正比
+     *
+     * @param ids 要输出的指标，如 {@link MeterIndex#find} 的结果；已删除的指标会被忽略
+     */
+    public void write(OutputStream out, boolean gzip, Collection<Meter.Id> ids) throws IOException {
+        // 同一指标族的序列必须连续输出，先按指标族分组
+        Map<Family, List<Series[]>> selected = new LinkedHashMap<>();
+        for (Meter.Id id : ids) {
+            List<Family> registered = registrations.get(id);
+            if (registered == null) {
+                continue;
+            }
+            for (Family family : registered) {
+                Series[] lines = family.series.get(id);
+                if (lines != null) {
+                    selected.computeIfAbsent(family, f -> new ArrayList<>()).add(lines);
+                }
+            }
+        }
+        ExpositionBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = new ExpositionBuffer(BUFFER_SIZE);
+        }
+        try {
+            buffer.begin(out, gzip);
+            for (Map.Entry<Family, List<Series[]>> entry : selected.entrySet()) {
+                buffer.write(entry.getKey().header);
+                for (Series[] lines : entry.getValue()) {
+                    writeSeries(buffer, lines);
+                }
+            }
+            buffer.finish();
+        } finally {
+            if (!bufferPool.offer(buffer)) {
+                buffer.close();
+            }
+        }
+    }
+
+    private static void writeFamily(ExpositionBuffer buffer, Family family) throws IOException {
+        if (family.series.isEmpty()) {
+            return;
+        }
+        buffer.write(family.header);
+        for (Series[] lines : family.series.values()) {
+            writeSeries(buffer, lines);
+        }
+    }
+
+    private static void writeSeries(ExpositionBuffer buffer, Series[] lines) throws IOException {
+        for (Series line : lines) {
+            if (line.buckets != null) {
+                writeHistogram(buffer, line);
+                continue;
+            }
+            buffer.write(line.prefix);
+            buffer.writeDouble(line.value());
+            buffer.write((byte) '\n');
+        }
+    }
+
+    /**
+     * 同一个快照输出全部 _bucket、_count 和 _sum，保证 le="+Inf" 与 _count 一致
+     */
+    private static void writeHistogram(ExpositionBuffer buffer, Series line) throws IOException {
+        HistogramSnapshot snapshot = ((HistogramSupport) line.meter).takeSnapshot();
+        CountAtBucket[] counts = snapshot.histogramCounts();
+        byte[][] prefixes = line.buckets;
+        int bounds = Math.min(counts.length, prefixes.length - 3);
+        for (int i = 0; i < bounds; i++) {
+            buffer.write(prefixes[i]);
+            buffer.writeDouble(counts[i].count());
+            buffer.write((byte) '\n');
+        }
+        double[] tail = {snapshot.count(), snapshot.count(),
+                line.kind == TIMER_HISTOGRAM ? snapshot.total(TimeUnit.SECONDS) : snapshot.total()};
+        for (int i = 0; i < tail.length; i++) {
+            buffer.write(prefixes[prefixes.length - 3 + i]);
+            buffer.writeDouble(tail[i]);
+            buffer.write((byte) '\n');
+        }
+    }
+
+    /**
+     * 当前缓存的时间序列数量
+     */
+    public int getSeriesCount() {
+        int count = 0;
+        for (Family family : families.values()) {
+            for (Series[] lines : family.series.values()) {
+                for (Series line : lines) {
+                    count += line.buckets == null ? 1 : line.buckets.length;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void add(Meter meter) {
+        Meter.Id id = meter.getId();
+        if (registrations.containsKey(id)) {
+            return;
+        }
+        String name = id.getConventionName(namingConvention);
+        String labels = encodeLabels(id.getConventionTags(namingConvention));
+        String help = id.getDescription();
+        List<Family> added = new ArrayList<>(2);
+
+        if (meter instanceof Counter) {
+            added.add(register(id, name, "counter", help, line(meter, COUNTER, name, labels)));
+        } else if (meter instanceof FunctionCounter) {
+            added.add(register(id, name, "counter", help, line(meter, FUNCTION_COUNTER, name, labels)));
+        } else if (meter instanceof TimeGauge) {
+            added.add(register(id, name, "gauge", help, line(meter, TIME_GAUGE, name, labels)));
+        } else if (meter instanceof Gauge) {
+            added.add(register(id, name, "gauge", help, line(meter, GAUGE, name, labels)));
+        } else if (meter instanceof Timer) {
+            Series histogram = histogram(meter, TIMER_HISTOGRAM, name, labels);
+            if (histogram != null) {
+                added.add(register(id, name, "histogram", help, histogram));
+            } else {
+                added.add(register(id, name, "summary", help,
+                        line(meter, TIMER_COUNT, name + "_count", labels), line(meter, TIMER_SUM, name + "_sum", labels)));
+            }
+            added.add(register(id, name + "_max", "gauge", help, line(meter, TIMER_MAX, name + "_max", labels)));
+        } else if (meter instanceof DistributionSummary) {
+            Series histogram = histogram(meter, SUMMARY_HISTOGRAM, name, labels);
+            if (histogram != null) {
+                added.add(register(id, name, "histogram", help, histogram));
+            } else {
+                added.add(register(id, name, "summary", help,
+                        line(meter, SUMMARY_COUNT, name + "_count", labels), line(meter, SUMMARY_SUM, name + "_sum", labels)));
+            }
+            added.add(register(id, name + "_max", "gauge", help, line(meter, SUMMARY_MAX, name + "_max", labels)));
+        } else if (meter instanceof LongTaskTimer) {
+            added.add(register(id, name, "untyped", help,
+                    line(meter, LONG_TASK_ACTIVE, name + "_active_count", labels),
+                    line(meter, LONG_TASK_DURATION, name + "_duration_sum", labels)));
+            added.add(register(id, name + "_max", "gauge", help, line(meter, LONG_TASK_MAX, name + "_max", labels)));
+        } else if (meter instanceof FunctionTimer) {
+            added.add(register(id, name, "summary", help,
+                    line(meter, FUNCTION_TIMER_COUNT, name + "_count", labels),
+                    line(meter, FUNCTION_TIMER_SUM, name + "_sum", labels)));
+        } else {
+            for (Measurement measurement : meter.measure()) {
+                Statistic statistic = measurement.getStatistic();
+                String seriesName = name + suffix(statistic);
+                Series series = line(meter, MEASUREMENT, seriesName, labels);
+                series.statistic = statistic;
+                added.add(register(id, seriesName, "untyped", help, series));
+            }
+        }
+        registrations.put(id, added);
+    }
+
+    private void remove(Meter meter) {
+        List<Family> removed = registrations.remove(meter.getId());
+        if (removed != null) {
+            for (Family family : removed) {
+                family.series.remove(meter.getId());
+            }
+        }
+    }
+
+    private Family register(Meter.Id id, String familyName, String type, String help, Series... lines) {
+        Family family = families.computeIfAbsent(familyName, n -> new Family(n, type, help));
+        family.series.put(id, lines);
+        return family;
+    }
+
+    private static Series line(Meter meter, int kind, String name, String labels) {
+        return new Series(meter, kind, (name + labels + " ").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 开启了百分位直方图的Timer/DistributionSummary，按注册时的 bucket 边界预先编码
+     * _bucket{...,le="..."}、_count 和 _sum 前缀；未开启时返回null
+     */
+    private static Series histogram(Meter meter, int kind, String name, String labels) {
+        CountAtBucket[] counts = ((HistogramSupport) meter).takeSnapshot().histogramCounts();
+        if (counts.length == 0) {
+            return null;
+        }
+        // le 与 simpleclient 的格式一致，放在其它标签之后
+        String bucketLabels = labels.isEmpty() ? "{le=\"" : labels.substring(0, labels.length() - 1) + ",le=\"";
+        byte[][] prefixes = new byte[counts.length + 3][];
+        for (int i = 0; i < counts.length; i++) {
+            double bound = kind == TIMER_HISTOGRAM ? counts[i].bucket(TimeUnit.SECONDS) : counts[i].bucket();
+            prefixes[i] = bytes(name + "_bucket" + bucketLabels + Collector.doubleToGoString(bound) + "\"} ");
+        }
+        prefixes[counts.length] = bytes(name + "_bucket" + bucketLabels + "+Inf\"} ");
+        prefixes[counts.length + 1] = bytes(name + "_count" + labels + " ");
+        prefixes[counts.length + 2] = bytes(name + "_sum" + labels + " ");
+        Series series = new Series(meter, kind, null);
+        series.buckets = prefixes;
+        return series;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 非Timer/Counter类指标各统计量对应的名称后缀
+     */
+    static String suffix(Statistic statistic) {
+        switch (statistic) {
+            case COUNT:
+                return "_count";
+            case TOTAL:
+            case TOTAL_TIME:
+                return "_sum";
+            case MAX:
+                return "_max";
+            case ACTIVE_TASKS:
+                return "_active_count";
+            case DURATION:
+                return "_duration_sum";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * 编码标签部分，如 {method="GET",unit_id="U01"}
+     */
+    static String encodeLabels(List<Tag> tags) {
+        if (tags.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (Tag tag : tags) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append(tag.getKey()).append("=\"");
+            String value = tag.getValue();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * 同名指标族，HELP/TYPE 头部预先编码
+     */
+    private static final class Family {
+        private final byte[] header;
+        private final Map<Meter.Id, Series[]> series = new ConcurrentHashMap<>();
+
+        Family(String name, String type, String help) {
+            String description = help == null ? "" : help.replace("\\", "\\\\").replace("\n", "\\n");
+            this.header = ("# HELP " + name + " " + description + "\n# TYPE " + name + " " + type + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 一条时间序列：编码好的前缀和取值方式
+     */
+    private static final class Series {
+        private final Meter meter;
+        private final int kind;
+        private final byte[] prefix;
+        private Statistic statistic;
+        /** 直方图的 _bucket、+Inf、_count、_sum 前缀，非直方图为null */
+        private byte[][] buckets;
+
+        Series(Meter meter, int kind, byte[] prefix) {
+            this.meter = meter;
+            this.kind = kind;
+            this.prefix = prefix;
+        }
+
+        double value() {
+            switch (kind) {
+                case COUNTER:
+                    return ((Counter) meter).count();
+                case GAUGE:
+                    return ((Gauge) meter).value();
+                case TIME_GAUGE:
+                    return ((TimeGauge) meter).value(TimeUnit.SECONDS);
+                case TIMER_COUNT:
+                    return ((Timer) meter).count();
+                case TIMER_SUM:
+                    return ((Timer) meter).totalTime(TimeUnit.SECONDS);
+                case TIMER_MAX:
+                    return ((Timer) meter).max(TimeUnit.SECONDS);
+                case SUMMARY_COUNT:
+                    return ((DistributionSummary) meter).count();
+                case SUMMARY_SUM:
+                    return ((DistributionSummary) meter).totalAmount();
+                case SUMMARY_MAX:
+                    return ((DistributionSummary) meter).max();
+                case LONG_TASK_ACTIVE:
+                    return ((LongTaskTimer) meter).activeTasks();
+                case LONG_TASK_DURATION:
+                    return ((LongTaskTimer) meter).duration(TimeUnit.SECONDS);
+                case LONG_TASK_MAX:
+                    return ((LongTaskTimer) meter).max(TimeUnit.SECONDS);
+                case FUNCTION_COUNTER:
+                    return ((FunctionCounter) meter).count();
+                case FUNCTION_TIMER_COUNT:
+                    return ((FunctionTimer) meter).count();
+                case FUNCTION_TIMER_SUM:
+                    return ((FunctionTimer) meter).totalTime(TimeUnit.SECONDS);
+                default:
+                    for (Measurement measurement : meter.measure()) {
+                        if (measurement.getStatistic() == statistic) {
+                            return measurement.getValue();
+                        }
+                    }
+                    return Double.NaN;
+            }
+        }
+    }
+}
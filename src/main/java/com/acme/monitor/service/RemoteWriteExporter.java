@@ -0,0 +1,371 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.RemoteWriteConfig;
+import com.acme.monitor.util.NamedThreadFactory;
+import com.acme.monitor.util.ProtobufWriter;
+import com.acme.monitor.util.Snappy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.prometheus.PrometheusNamingConvention;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prometheus remote write 推送
+ *
+ * 定时遍历注册表（包括 {@link com.acme.monitor.config.MetricsConfig} 配置的 unit_id 标签），
+ * 按 remote write 的 protobuf 格式编码样本，达到样本数上限或等待超时后封装成批次，snappy压缩后放入待发送队列。
+ * 发送线程按顺序发送队列中的批次：
+ * <ul>
+ *     <li>网络错误、429和5xx放回队首，按指数退避重试</li>
+ *     <li>其他4xx说明数据被拒绝，直接丢弃</li>
+ *     <li>队列满时丢弃最旧的批次，内存占用有上限</li>
+ *     <li>发送过程中的意外异常按网络错误处理，发送线程不会退出</li>
+ * </ul>
+ * 关闭时封装未满的批次，并把队列中剩余的批次各发送一次。
+ * 每条时间序列的标签在第一次推送时编码并缓存，指标删除时移除。
+ */
+@Component
+@ConditionalOnProperty(name = "app.remote-write.enabled", havingValue = "true", matchIfMissing = false)
+public class RemoteWriteExporter {
+    private static final Logger logger = LoggerFactory.getLogger(RemoteWriteExporter.class);
+
+    private static final int FIELD_TIMESERIES = 1;
+    private static final int FIELD_LABELS = 1;
+    private static final int FIELD_SAMPLES = 2;
+    private static final int FIELD_NAME = 1;
+    private static final int FIELD_VALUE = 2;
+    private static final int FIELD_SAMPLE_VALUE = 1;
+    private static final int FIELD_SAMPLE_TIMESTAMP = 2;
+    private static final long MAX_FLUSH_CHECK_MS = 1000;
+
+    @Autowired
+    private RemoteWriteConfig config;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final NamingConvention namingConvention = new PrometheusNamingConvention();
+    private final Map<Meter.Id, byte[][]> labelCache = new ConcurrentHashMap<>();
+    private final Deque<Batch> queue = new ArrayDeque<>();
+    private final ProtobufWriter pending = new ProtobufWriter(64 * 1024);
+    private int pendingSamples;
+    private long pendingSince;
+
+    private Counter sentCounter;
+    private Counter failedCounter;
+    private Counter droppedCounter;
+    private ScheduledExecutorService collector;
+    private ExecutorService sender;
+
+    @PostConstruct
+    public void start() {
+        sentCounter = Counter.builder("remote_write_samples_sent_total")
+                .description("Samples accepted by the remote write receiver")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("remote_write_samples_failed_total")
+                .description("Samples in remote write requests that failed, including retried requests")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("remote_write_samples_dropped_total")
+                .description("Samples discarded without being delivered")
+                .register(meterRegistry);
+        Gauge.builder("remote_write_queue_batches", this, RemoteWriteExporter::getQueueSize)
+                .description("Batches waiting to be sent")
+                .register(meterRegistry);
+        meterRegistry.config().onMeterRemoved(meter -> labelCache.remove(meter.getId()));
+
+        long flushCheckMs = Math.max(1, Math.min(config.getMaxBatchDelayMs(), MAX_FLUSH_CHECK_MS));
+        collector = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("RemoteWrite-Collector"));
+        collector.scheduleAtFixedRate(() -> {
+            try {
+                collect(System.currentTimeMillis());
+            } catch (Exception e) {
+                logger.error("Remote write collection failed", e);
+            }
+        }, config.getIntervalMs(), config.getIntervalMs(), TimeUnit.MILLISECONDS);
+        collector.scheduleWithFixedDelay(() -> flushIfDue(System.currentTimeMillis()),
+                flushCheckMs, flushCheckMs, TimeUnit.MILLISECONDS);
+        sender = Executors.newSingleThreadExecutor(new NamedThreadFactory("RemoteWrite-Sender"));
+        sender.execute(this::sendLoop);
+        logger.info("Remote write exporter started, url={}", config.getUrl());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (collector == null) {
+            return;
+        }
+        collector.shutdownNow();
+        // 中断发送线程的等待和退避；正在进行的请求最多等到超时
+        sender.shutdownNow();
+        try {
+            collector.awaitTermination(5, TimeUnit.SECONDS);
+            sender.awaitTermination(config.getTimeoutMs() + 1000L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (pendingSamples > 0) {
+                seal();
+            }
+        }
+        flushOnShutdown();
+    }
+
+    /**
+     * 把队列中剩余的批次各发送一次，不再重试；第一次失败后接收端多半不可用，剩余批次直接丢弃，避免拖慢关闭
+     */
+    private void flushOnShutdown() {
+        boolean failed = false;
+        while (true) {
+            Batch batch;
+            synchronized (queue) {
+                batch = queue.pollFirst();
+            }
+            if (batch == null) {
+                return;
+            }
+            if (!failed) {
+                int code = send(batch);
+                if (code >= 200 && code < 300) {
+                    sentCounter.increment(batch.samples);
+                    continue;
+                }
+                failed = true;
+                failedCounter.increment(batch.samples);
+                logger.warn("Remote write flush on shutdown failed, HTTP {}, dropping {} queued batches",
+                        code, getQueueSize() + 1);
+            }
+            droppedCounter.increment(batch.samples);
+        }
+    }
+
+    /**
+     * 采集注册表中所有指标的当前值，写入当前批次
+     */
+    synchronized void collect(long timestamp) {
+        for (Meter meter : meterRegistry.getMeters()) {
+            byte[][] labels = labelCache.computeIfAbsent(meter.getId(), id -> encodeLabels(meter));
+            int i = 0;
+            for (Measurement measurement : meter.measure()) {
+                if (i >= labels.length) {
+                    break;
+                }
+                double value = measurement.getValue();
+                if (!Double.isNaN(value)) {
+                    append(labels[i], value, timestamp);
+                }
+                i++;
+            }
+        }
+    }
+
+    /**
+     * 当前批次等待超过 maxBatchDelayMs 时立即封装
+     */
+    synchronized void flushIfDue(long now) {
+        if (pendingSamples > 0 && now - pendingSince >= config.getMaxBatchDelayMs()) {
+            seal();
+        }
+    }
+
+    private void append(byte[] labels, double value, long timestamp) {
+        if (pendingSamples == 0) {
+            pendingSince = System.currentTimeMillis();
+        }
+        int sampleSize = 1 + 8 + 1 + ProtobufWriter.varintSize(timestamp);
+        pending.tag(FIELD_TIMESERIES, ProtobufWriter.WIRE_LENGTH_DELIMITED);
+        pending.varint(labels.length + ProtobufWriter.lengthDelimitedSize(FIELD_SAMPLES, sampleSize));
+        pending.raw(labels);
+        pending.tag(FIELD_SAMPLES, ProtobufWriter.WIRE_LENGTH_DELIMITED);
+        pending.varint(sampleSize);
+        pending.doubleField(FIELD_SAMPLE_VALUE, value);
+        pending.int64Field(FIELD_SAMPLE_TIMESTAMP, timestamp);
+        if (++pendingSamples >= config.getMaxSamplesPerBatch()) {
+            seal();
+        }
+    }
+
+    private void seal() {
+        Batch batch = new Batch(Snappy.compress(pending.buffer(), 0, pending.size()), pendingSamples);
+        pending.reset();
+        pendingSamples = 0;
+        synchronized (queue) {
+            while (queue.size() >= config.getQueueCapacity()) {
+                Batch oldest = queue.pollFirst();
+                droppedCounter.increment(oldest.samples);
+                logger.debug("Remote write queue full, dropped batch of {} samples", oldest.samples);
+            }
+            queue.addLast(batch);
+            queue.notifyAll();
+        }
+    }
+
+    /**
+     * 编码每个统计量对应时间序列的标签，标签按名称排序
+     */
+    private byte[][] encodeLabels(Meter meter) {
+        Meter.Id id = meter.getId();
+        String name = id.getConventionName(namingConvention);
+        TreeMap<String, String> tags = new TreeMap<>();
+        for (Tag tag : id.getConventionTags(namingConvention)) {
+            tags.put(tag.getKey(), tag.getValue());
+        }
+        boolean singleValue = meter instanceof Counter || meter instanceof FunctionCounter
+                || meter instanceof Gauge || meter instanceof TimeGauge;
+        List<byte[]> result = new ArrayList<>();
+        ProtobufWriter label = new ProtobufWriter(64);
+        ProtobufWriter labels = new ProtobufWriter(256);
+        for (Measurement measurement : meter.measure()) {
+            tags.put("__name__", singleValue ? name : name + PrometheusExpositionWriter.suffix(measurement.getStatistic()));
+            labels.reset();
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                label.reset();
+                label.stringField(FIELD_NAME, tag.getKey());
+                label.stringField(FIELD_VALUE, tag.getValue());
+                labels.tag(FIELD_LABELS, ProtobufWriter.WIRE_LENGTH_DELIMITED);
+                labels.varint(label.size());
+                labels.raw(label.toByteArray());
+            }
+            result.add(labels.toByteArray());
+        }
+        return result.toArray(new byte[0][]);
+    }
+
+    private void sendLoop() {
+        long backoff = config.getMinBackoffMs();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Batch batch;
+                synchronized (queue) {
+                    while (queue.isEmpty()) {
+                        queue.wait();
+                    }
+                    batch = queue.pollFirst();
+                }
+                int code = send(batch);
+                if (code >= 200 && code < 300) {
+                    sentCounter.increment(batch.samples);
+                    backoff = config.getMinBackoffMs();
+                    continue;
+                }
+                failedCounter.increment(batch.samples);
+                if (code >= 400 && code < 500 && code != 429) {
+                    // 接收端拒绝的数据重试也不会成功
+                    droppedCounter.increment(batch.samples);
+                    logger.warn("Remote write receiver rejected batch of {} samples, HTTP {}", batch.samples, code);
+                    continue;
+                }
+                requeue(batch);
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, config.getMaxBackoffMs());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 发送一个批次，返回HTTP状态码，网络错误或其他异常时返回-1
+     */
+    private int send(Batch batch) {
+        try {
+            return post(batch.body);
+        } catch (IOException e) {
+            logger.debug("Remote write request failed", e);
+            return -1;
+        } catch (RuntimeException e) {
+            // 如非法的请求头，不能让发送线程退出
+            logger.warn("Remote write request failed unexpectedly", e);
+            return -1;
+        }
+    }
+
+    /**
+     * 失败的批次放回队首；队列已满时它就是最旧的批次，直接丢弃
+     */
+    private void requeue(Batch batch) {
+        synchronized (queue) {
+            if (queue.size() >= config.getQueueCapacity()) {
+                droppedCounter.increment(batch.samples);
+            } else {
+                queue.addFirst(batch);
+            }
+        }
+    }
+
+    private int post(byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(config.getUrl()).openConnection();
+        connection.setConnectTimeout(config.getTimeoutMs());
+        connection.setReadTimeout(config.getTimeoutMs());
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", "application/x-protobuf");
+        connection.setRequestProperty("Content-Encoding", "snappy");
+        connection.setRequestProperty("X-Prometheus-Remote-Write-Version", "0.1.0");
+        for (Map.Entry<String, String> header : config.getHeaders().entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        int code = connection.getResponseCode();
+        InputStream in = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (in != null) {
+            // 读完响应体后连接可以被复用，不调用 disconnect
+            try (InputStream response = in) {
+                byte[] skip = new byte[1024];
+                while (response.read(skip) >= 0) {
+                    // discard
+                }
+            }
+        }
+        return code;
+    }
+
+    public int getQueueSize() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    private static final class Batch {
+        private final byte[] body;
+        private final int samples;
+
+        Batch(byte[] body, int samples) {
+            this.body = body;
+            this.samples = samples;
+        }
+    }
+}
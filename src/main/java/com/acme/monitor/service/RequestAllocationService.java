@@ -0,0 +1,126 @@
+package com.acme.monitor.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按接口统计每个请求在处理线程上分配的堆内存
+ *
+ * 通过 HotSpot 扩展的 {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} 读取当前线程累计分配的字节数，
+ * 请求前后相减得到该请求的分配量，按接口写入直方图，用于找出产生垃圾最多的接口。
+ * JVM不提供该扩展或不支持线程分配统计时不做任何记录。
+ */
+@Component
+public class RequestAllocationService {
+    private static final Logger logger = LoggerFactory.getLogger(RequestAllocationService.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.metrics.request.allocation-enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, DistributionSummary> endpoints = new ConcurrentHashMap<>();
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                logger.info("com.sun.management.ThreadMXBean is not available, per-request allocation is not recorded");
+                return;
+            }
+            com.sun.management.ThreadMXBean extension = (com.sun.management.ThreadMXBean) bean;
+            if (!extension.isThreadAllocatedMemorySupported()) {
+                logger.info("Thread allocated memory is not supported, per-request allocation is not recorded");
+                return;
+            }
+            if (!extension.isThreadAllocatedMemoryEnabled()) {
+                extension.setThreadAllocatedMemoryEnabled(true);
+            }
+            threadMXBean = extension;
+        } catch (LinkageError | UnsupportedOperationException e) {
+            // 非HotSpot的JVM可能没有 com.sun.management 包
+            logger.info("Per-request allocation is not recorded: {}", e.toString());
+        }
+    }
+
+    public boolean isSupported() {
+        return threadMXBean != null;
+    }
+
+    /**
+     * 当前线程累计分配的字节数，不支持时返回-1
+     */
+    public long currentThreadAllocatedBytes() {
+        return threadMXBean == null ? -1 : threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 记录一个请求的分配量
+     *
+     * @param endpoint 接口路径模板
+     * @param bytes    请求期间处理线程分配的字节数
+     */
+    public void record(String endpoint, long bytes) {
+        if (bytes < 0) {
+            return;
+        }
+        DistributionSummary summary = endpoints.get(endpoint);
+        if (summary == null) {
+            summary = endpoints.size() >= RequestMetricsService.MAX_ENDPOINTS
+                    ? endpoints.computeIfAbsent(RequestMetricsService.OTHER_ENDPOINT, this::createSummary)
+                    : endpoints.computeIfAbsent(endpoint, this::createSummary);
+        }
+        summary.record(bytes);
+    }
+
+    private DistributionSummary createSummary(String endpoint) {
+        return DistributionSummary.builder("http_request_allocated")
+                .description("Heap bytes allocated by the request thread per request")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1024.0)
+                .maximumExpectedValue(1024.0 * 1024 * 1024)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 各接口启动以来的分配统计，按总分配量降序
+     */
+    public List<Map<String, Object>> getEndpointAllocations() {
+        List<Map.Entry<String, DistributionSummary>> entries = new ArrayList<>(endpoints.entrySet());
+        entries.sort((a, b) -> Double.compare(b.getValue().totalAmount(), a.getValue().totalAmount()));
+        List<Map<String, Object>> result = new ArrayList<>(entries.size());
+        for (Map.Entry<String, DistributionSummary> entry : entries) {
+            DistributionSummary summary = entry.getValue();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("endpoint", entry.getKey());
+            row.put("requests", summary.count());
+            row.put("total_bytes", (long) summary.totalAmount());
+            row.put("mean_bytes", (long) summary.mean());
+            row.put("max_bytes", (long) summary.max());
+            result.add(row);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,165 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.util.LatencyHistogram;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 请求延迟统计服务
+ *
+ * 按接口和整个单元分别维护 {@link LatencyHistogram}，
+ * 计算滑动窗口内的QPS、p50/p99/p999延迟和成功率，并注册为Micrometer指标。
+ * 记录路径只有一次ConcurrentHashMap查找和若干原子自增，不加锁。
+ */
+@Component
+public class RequestMetricsService {
+    private static final Logger logger = LoggerFactory.getLogger(RequestMetricsService.class);
+
+    /**
+     * 超过该数量的接口统一记为OTHER，避免未匹配的URL造成指标膨胀
+     */
+    static final int MAX_ENDPOINTS = 200;
+    static final String OTHER_ENDPOINT = "OTHER";
+
+    private static final int SLOT_SECONDS = 10;
+    private static final int STRIPES = 8;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.metrics.request.window-seconds:60}")
+    private int windowSeconds;
+
+    private final Map<String, Recorder> endpoints = new ConcurrentHashMap<>();
+    private Recorder unit;
+
+    @PostConstruct
+    public void init() {
+        unit = new Recorder(newHistogram());
+        registerGauges(unit, "unit", null);
+    }
+
+    /**
+     * 记录一次请求
+     *
+     * @param endpoint 接口路径模板，如 /api/cache/user/{id}
+     * @param micros   延迟（微秒）
+     * @param success  是否成功
+     */
+    public void record(String endpoint, long micros, boolean success) {
+        unit.histogram.record(micros, success);
+        Recorder recorder = endpoints.get(endpoint);
+        if (recorder == null) {
+            recorder = endpoints.size() >= MAX_ENDPOINTS
+                    ? endpoints.computeIfAbsent(OTHER_ENDPOINT, this::createEndpointRecorder)
+                    : endpoints.computeIfAbsent(endpoint, this::createEndpointRecorder);
+        }
+        recorder.histogram.record(micros, success);
+    }
+
+    /**
+     * 整个单元的滑动窗口统计
+     * 结果引用复用的缓冲区，只在当前这一秒内有效，不要长期持有
+     */
+    public LatencyHistogram.Snapshot getUnitSnapshot() {
+        return unit.snapshot();
+    }
+
+    /**
+     * 各接口的滑动窗口统计，按接口路径排序，结果的有效期同 {@link #getUnitSnapshot()}
+     */
+    public Map<String, LatencyHistogram.Snapshot> getEndpointSnapshots() {
+        Map<String, LatencyHistogram.Snapshot> result = new TreeMap<>();
+        for (Map.Entry<String, Recorder> entry : endpoints.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * 依次访问各接口的滑动窗口统计，不排序也不复制，用于每秒的采样
+     */
+    public void forEachEndpointSnapshot(BiConsumer<String, LatencyHistogram.Snapshot> action) {
+        for (Map.Entry<String, Recorder> entry : endpoints.entrySet()) {
+            action.accept(entry.getKey(), entry.getValue().snapshot());
+        }
+    }
+
+    private Recorder createEndpointRecorder(String endpoint) {
+        Recorder recorder = new Recorder(newHistogram());
+        registerGauges(recorder, "http_endpoint", endpoint);
+        logger.debug("Start recording latency for endpoint {}", endpoint);
+        return recorder;
+    }
+
+    private LatencyHistogram newHistogram() {
+        int slots = Math.max(1, windowSeconds / SLOT_SECONDS) + 1;
+        return new LatencyHistogram(slots, SLOT_SECONDS * 1000L, STRIPES);
+    }
+
+    private void registerGauges(Recorder recorder, String prefix, String uri) {
+        gauge(prefix + "_qps", uri, null, recorder, r -> r.snapshot().getQps());
+        gauge(prefix + "_success_rate", uri, null, recorder, r -> r.snapshot().getSuccessRate());
+        gauge(prefix + "_latency_ms", uri, "0.5", recorder, r -> r.snapshot().getPercentileMillis(0.5));
+        gauge(prefix + "_latency_ms", uri, "0.99", recorder, r -> r.snapshot().getPercentileMillis(0.99));
+        gauge(prefix + "_latency_ms", uri, "0.999", recorder, r -> r.snapshot().getPercentileMillis(0.999));
+    }
+
+    private void gauge(String name, String uri, String quantile, Recorder recorder,
+                       ToDoubleFunction<Recorder> value) {
+        Gauge.Builder<Recorder> builder = Gauge.builder(name, recorder, value);
+        if (uri != null) {
+            builder.tag("uri", uri);
+        }
+        if (quantile != null) {
+            builder.tag("quantile", quantile);
+        }
+        builder.register(meterRegistry);
+    }
+
+    /**
+     * 直方图及最近一次统计结果
+     * 同一秒内的多次读取（如一次抓取中的多个Gauge）复用同一个统计结果；
+     * 两个分桶缓冲区轮流使用，刷新时不分配，也不会覆盖上一秒仍在被读取的结果
+     */
+    private class Recorder {
+        private final LatencyHistogram histogram;
+        private final long[][] buffers = {LatencyHistogram.newBucketBuffer(), LatencyHistogram.newBucketBuffer()};
+        private int next;
+        private volatile LatencyHistogram.Snapshot cached;
+        private volatile long cachedAt;
+
+        Recorder(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        LatencyHistogram.Snapshot snapshot() {
+            long now = System.currentTimeMillis();
+            LatencyHistogram.Snapshot snapshot = cached;
+            if (snapshot == null || now - cachedAt >= 1000) {
+                synchronized (this) {
+                    snapshot = cached;
+                    if (snapshot == null || now - cachedAt >= 1000) {
+                        snapshot = histogram.snapshotInto(windowSeconds / SLOT_SECONDS, buffers[next]);
+                        next ^= 1;
+                        cached = snapshot;
+                        cachedAt = now;
+                    }
+                }
+            }
+            return snapshot;
+        }
+    }
+}
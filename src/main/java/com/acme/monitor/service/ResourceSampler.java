@@ -0,0 +1,578 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.util.CgroupReader;
+import com.acme.monitor.util.NamedThreadFactory;
+import com.acme.monitor.util.ProcFileReader;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主机与进程资源采样器
+ *
+ * 后台线程按固定间隔读取 OperatingSystemMXBean 以及 /proc/stat、/proc/meminfo、
+ * /proc/self/io、/proc/net/dev，根据两次采样的差值计算速率，
+ * 结果发布为不可变的 {@link Snapshot}，请求线程读取时不做任何I/O。
+ * 非Linux环境下只使用 OperatingSystemMXBean，磁盘和网络速率为0。
+ *
+ * 在容器中运行时同时通过 {@link CgroupReader} 读取cgroup的CPU配额、限流、内存上限和PSI，
+ * 主机的CPU和内存占用率不能反映容器是否被限流，计算结果见 {@link Container}。
+ */
+@Component
+public class ResourceSampler {
+    private static final Logger logger = LoggerFactory.getLogger(ResourceSampler.class);
+
+    private static final byte[] CPU = "cpu ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MEM_TOTAL = "MemTotal:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MEM_AVAILABLE = "MemAvailable:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] READ_BYTES = "read_bytes:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WRITE_BYTES = "write_bytes:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LOOPBACK = "lo:".getBytes(StandardCharsets.US_ASCII);
+
+    @Value("${app.metrics.sampler.interval-ms:1000}")
+    private long intervalMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private final ProcFileReader statReader = new ProcFileReader(Paths.get("/proc/stat"), 16 * 1024);
+    private final ProcFileReader memInfoReader = new ProcFileReader(Paths.get("/proc/meminfo"), 8 * 1024);
+    private final ProcFileReader ioReader = new ProcFileReader(Paths.get("/proc/self/io"), 1024);
+    private final ProcFileReader netReader = new ProcFileReader(Paths.get("/proc/net/dev"), 8 * 1024);
+    private final CgroupReader cgroupReader = CgroupReader.forCurrentProcess();
+
+    // 上一次采样的原始计数，下标含义见各parse方法
+    private final long[] cpuTimes = new long[2];
+    private final long[] lastCpuTimes = new long[2];
+    private final long[] memInfo = new long[2];
+    private final long[] osMemory = new long[2];
+    private final long[] ioBytes = new long[2];
+    private final long[] lastIoBytes = new long[2];
+    private final long[] netBytes = new long[2];
+    private final long[] lastNetBytes = new long[2];
+    private final long[] cgroupValues = new long[CgroupReader.FIELDS];
+    private final long[] lastCgroupValues = new long[CgroupReader.FIELDS];
+    private long lastSampleNanos;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        Arrays.fill(lastCgroupValues, -1);
+        sample();
+        if (cgroupReader.getVersion() > 0) {
+            logger.info("Reading cgroup v{} metrics from {}", cgroupReader.getVersion(), cgroupReader.getCpuDir());
+            registerContainerMeters();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Resource-Sampler"));
+        scheduler.scheduleAtFixedRate(this::sample, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        statReader.close();
+        memInfoReader.close();
+        ioReader.close();
+        netReader.close();
+        cgroupReader.close();
+    }
+
+    /**
+     * 获取最近一次采样结果
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 采样一次并发布新的快照，只在采样线程中调用
+     */
+    void sample() {
+        try {
+            long now = System.nanoTime();
+            double seconds = lastSampleNanos == 0 ? 0 : (now - lastSampleNanos) / 1e9;
+            lastSampleNanos = now;
+
+            double systemCpuPct = -1;
+            if (readCpuTimes(statReader, cpuTimes)) {
+                long total = cpuTimes[0] - lastCpuTimes[0];
+                long idle = cpuTimes[1] - lastCpuTimes[1];
+                if (lastCpuTimes[0] > 0 && total > 0) {
+                    systemCpuPct = (1 - (double) idle / total) * 100;
+                }
+                System.arraycopy(cpuTimes, 0, lastCpuTimes, 0, 2);
+            }
+
+            double processCpuPct = -1;
+            double memoryPct = -1;
+            long totalMemoryBytes = 0;
+            if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+                com.sun.management.OperatingSystemMXBean sunOsBean = (com.sun.management.OperatingSystemMXBean) osBean;
+                processCpuPct = sunOsBean.getProcessCpuLoad() * 100;
+                double systemCpuLoad = readOsFallback(sunOsBean, osMemory);
+                if (systemCpuPct < 0) {
+                    systemCpuPct = systemCpuLoad * 100;
+                }
+                long total = osMemory[0];
+                totalMemoryBytes = total;
+                if (total > 0) {
+                    memoryPct = (1 - (double) osMemory[1] / total) * 100;
+                }
+            }
+            // MemAvailable包含可回收的page cache，比free内存更准确
+            if (readMemInfo(memInfoReader, memInfo) && memInfo[0] > 0 && memInfo[1] >= 0) {
+                memoryPct = (1 - (double) memInfo[1] / memInfo[0]) * 100;
+                totalMemoryBytes = memInfo[0] * 1024;
+            }
+
+            double diskReadRate = 0;
+            double diskWriteRate = 0;
+            if (readProcessIo(ioReader, ioBytes)) {
+                if (seconds > 0) {
+                    diskReadRate = Math.max(0, ioBytes[0] - lastIoBytes[0]) / seconds;
+                    diskWriteRate = Math.max(0, ioBytes[1] - lastIoBytes[1]) / seconds;
+                }
+                System.arraycopy(ioBytes, 0, lastIoBytes, 0, 2);
+            }
+
+            double netRxRate = 0;
+            double netTxRate = 0;
+            if (readNetDev(netReader, netBytes)) {
+                if (seconds > 0) {
+                    netRxRate = Math.max(0, netBytes[0] - lastNetBytes[0]) / seconds;
+                    netTxRate = Math.max(0, netBytes[1] - lastNetBytes[1]) / seconds;
+                }
+                System.arraycopy(netBytes, 0, lastNetBytes, 0, 2);
+            }
+
+            Container container = Container.NONE;
+            if (cgroupReader.read(cgroupValues)) {
+                container = Container.of(cgroupReader.getVersion(), cgroupValues, lastCgroupValues, seconds,
+                        totalMemoryBytes, Runtime.getRuntime().availableProcessors());
+                System.arraycopy(cgroupValues, 0, lastCgroupValues, 0, CgroupReader.FIELDS);
+            }
+
+            snapshot = new Snapshot(System.currentTimeMillis(), Math.max(0, systemCpuPct), Math.max(0, processCpuPct),
+                    Math.max(0, memoryPct), diskReadRate, diskWriteRate, netRxRate, netTxRate,
+                    osBean.getSystemLoadAverage(), container);
+        } catch (Exception e) {
+            logger.error("Error sampling host resources", e);
+        }
+    }
+
+    /**
+     * 注册cgroup相关指标，命名与cAdvisor一致，启动时读取不到的字段不注册
+     */
+    private void registerContainerMeters() {
+        Gauge.builder("container_cpu_limit_cores", this, s -> s.getSnapshot().getContainer().getCpuQuotaCores())
+                .description("CPU quota of the cgroup in cores, NaN when unlimited")
+                .register(meterRegistry);
+        Gauge.builder("container_memory_limit_bytes", this, s -> s.getSnapshot().getContainer().getMemoryLimitBytes())
+                .description("Memory limit of the cgroup, NaN when unlimited")
+                .register(meterRegistry);
+        if (cgroupValues[CgroupReader.MEMORY_CURRENT] >= 0) {
+            Gauge.builder("container_memory_usage_bytes", this,
+                    s -> s.getSnapshot().getContainer().getRaw(CgroupReader.MEMORY_CURRENT))
+                    .description("Current memory usage of the cgroup including page cache")
+                    .register(meterRegistry);
+        }
+        registerContainerCounter("container_cpu_usage_seconds", "Cumulative CPU time consumed by the cgroup",
+                CgroupReader.CPU_USAGE_USEC, 1e-6);
+        registerContainerCounter("container_cpu_cfs_periods", "Number of elapsed CFS enforcement periods",
+                CgroupReader.CPU_NR_PERIODS, 1);
+        registerContainerCounter("container_cpu_cfs_throttled_periods", "Number of throttled CFS periods",
+                CgroupReader.CPU_NR_THROTTLED, 1);
+        registerContainerCounter("container_cpu_cfs_throttled_seconds", "Total time the cgroup was throttled",
+                CgroupReader.CPU_THROTTLED_USEC, 1e-6);
+        registerContainerCounter("container_pressure_stalled_seconds", "PSI stall time",
+                CgroupReader.CPU_PRESSURE_SOME_USEC, 1e-6, "resource", "cpu", "kind", "some");
+        registerContainerCounter("container_pressure_stalled_seconds", "PSI stall time",
+                CgroupReader.MEMORY_PRESSURE_SOME_USEC, 1e-6, "resource", "memory", "kind", "some");
+        registerContainerCounter("container_pressure_stalled_seconds", "PSI stall time",
+                CgroupReader.MEMORY_PRESSURE_FULL_USEC, 1e-6, "resource", "memory", "kind", "full");
+        registerContainerCounter("container_pressure_stalled_seconds", "PSI stall time",
+                CgroupReader.IO_PRESSURE_SOME_USEC, 1e-6, "resource", "io", "kind", "some");
+        registerContainerCounter("container_pressure_stalled_seconds", "PSI stall time",
+                CgroupReader.IO_PRESSURE_FULL_USEC, 1e-6, "resource", "io", "kind", "full");
+    }
+
+    private void registerContainerCounter(String name, String description, int field, double scale, String... tags) {
+        if (cgroupValues[field] < 0) {
+            return;
+        }
+        FunctionCounter.builder(name, this, s -> Math.max(0, s.getSnapshot().getContainer().getRaw(field)) * scale)
+                .description(description)
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 解析 /proc/stat 的汇总cpu行
+     *
+     * @param out out[0] 总jiffies，out[1] 空闲jiffies（idle + iowait）
+     */
+    static boolean readCpuTimes(ProcFileReader reader, long[] out) {
+        if (!reader.read() || !reader.findLine(CPU)) {
+            return false;
+        }
+        long total = 0;
+        long idle = 0;
+        // user nice system idle iowait irq softirq steal，guest已计入user
+        for (int i = 0; i < 8; i++) {
+            long value = reader.nextLong();
+            if (value < 0) {
+                break;
+            }
+            total += value;
+            if (i == 3 || i == 4) {
+                idle += value;
+            }
+        }
+        out[0] = total;
+        out[1] = idle;
+        return true;
+    }
+
+    /**
+     * 解析 /proc/meminfo
+     *
+     * @param out out[0] MemTotal（kB），out[1] MemAvailable（kB，内核不支持时为-1）
+     */
+    static boolean readMemInfo(ProcFileReader reader, long[] out) {
+        if (!reader.read() || !reader.findLine(MEM_TOTAL)) {
+            return false;
+        }
+        out[0] = reader.nextLong();
+        out[1] = reader.findLine(MEM_AVAILABLE) ? reader.nextLong() : -1;
+        return true;
+    }
+
+    /**
+     * 解析 /proc/self/io 中实际落盘的读写字节数
+     *
+     * @param out out[0] read_bytes，out[1] write_bytes
+     */
+    static boolean readProcessIo(ProcFileReader reader, long[] out) {
+        if (!reader.read() || !reader.findLine(READ_BYTES)) {
+            return false;
+        }
+        out[0] = reader.nextLong();
+        out[1] = reader.findLine(WRITE_BYTES) ? reader.nextLong() : 0;
+        return true;
+    }
+
+    /**
+     * 解析 /proc/net/dev，累加除回环网卡外所有网卡的收发字节数
+     *
+     * @param out out[0] 接收字节数，out[1] 发送字节数
+     */
+    static boolean readNetDev(ProcFileReader reader, long[] out) {
+        if (!reader.read()) {
+            return false;
+        }
+        long rx = 0;
+        long tx = 0;
+        // 前两行是表头
+        if (reader.nextLine()) {
+            while (reader.nextLine()) {
+                if (reader.startsWith(LOOPBACK) || !reader.skipPast((byte) ':')) {
+                    continue;
+                }
+                long lineRx = reader.nextLong();
+                // 接收方向共8列，之后是发送字节数
+                for (int i = 0; i < 7; i++) {
+                    reader.nextLong();
+                }
+                long lineTx = reader.nextLong();
+                rx += Math.max(0, lineRx);
+                tx += Math.max(0, lineTx);
+            }
+        }
+        out[0] = rx;
+        out[1] = tx;
+        return true;
+    }
+
+    /**
+     * 读取系统CPU占用率（0~1），物理内存总量和空闲量写入 memory，只作为 /proc 不可读时的回退
+     */
+    // 这几个方法从JDK 14起被废弃，但Java 8没有替代方法
+    @SuppressWarnings("deprecation")
+    private static double readOsFallback(com.sun.management.OperatingSystemMXBean bean, long[] memory) {
+        memory[0] = bean.getTotalPhysicalMemorySize();
+        memory[1] = bean.getFreePhysicalMemorySize();
+        return bean.getSystemCpuLoad();
+    }
+
+    /**
+     * 资源采样快照，创建后不再修改
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0, 0, 0, -1, Container.NONE);
+
+        private final long timestamp;
+        private final double systemCpuPct;
+        private final double processCpuPct;
+        private final double memoryPct;
+        private final double diskReadBytesPerSec;
+        private final double diskWriteBytesPerSec;
+        private final double netRxBytesPerSec;
+        private final double netTxBytesPerSec;
+        private final double loadAverage;
+        private final Container container;
+
+        public Snapshot(long timestamp, double systemCpuPct, double processCpuPct, double memoryPct,
+                        double diskReadBytesPerSec, double diskWriteBytesPerSec,
+                        double netRxBytesPerSec, double netTxBytesPerSec, double loadAverage, Container container) {
+            this.timestamp = timestamp;
+            this.systemCpuPct = systemCpuPct;
+            this.processCpuPct = processCpuPct;
+            this.memoryPct = memoryPct;
+            this.diskReadBytesPerSec = diskReadBytesPerSec;
+            this.diskWriteBytesPerSec = diskWriteBytesPerSec;
+            this.netRxBytesPerSec = netRxBytesPerSec;
+            this.netTxBytesPerSec = netTxBytesPerSec;
+            this.loadAverage = loadAverage;
+            this.container = container;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public double getSystemCpuPct() {
+            return systemCpuPct;
+        }
+
+        public double getProcessCpuPct() {
+            return processCpuPct;
+        }
+
+        public double getMemoryPct() {
+            return memoryPct;
+        }
+
+        public double getDiskReadBytesPerSec() {
+            return diskReadBytesPerSec;
+        }
+
+        public double getDiskWriteBytesPerSec() {
+            return diskWriteBytesPerSec;
+        }
+
+        public double getNetRxBytesPerSec() {
+            return netRxBytesPerSec;
+        }
+
+        public double getNetTxBytesPerSec() {
+            return netTxBytesPerSec;
+        }
+
+        public double getLoadAverage() {
+            return loadAverage;
+        }
+
+        /**
+         * 容器（cgroup）指标，不在cgroup中时为 {@link Container#NONE}
+         */
+        public Container getContainer() {
+            return container;
+        }
+    }
+
+    /**
+     * 一次cgroup采样的结果，速率和比例由与上一次采样的差值计算，创建后不再修改
+     */
+    public static final class Container {
+        static final Container NONE = new Container(0, unavailable(), 0, 0, 0, 0, 0, 0, 0, 0);
+
+        private final int version;
+        private final long[] raw;
+        private final double cpuPct;
+        private final double cpuLimitCores;
+        private final double throttledPct;
+        private final double throttledMsPerSec;
+        private final double memoryPct;
+        private final double cpuPressurePct;
+        private final double memoryPressurePct;
+        private final double ioPressurePct;
+
+        Container(int version, long[] raw, double cpuPct, double cpuLimitCores, double throttledPct,
+                  double throttledMsPerSec, double memoryPct, double cpuPressurePct, double memoryPressurePct,
+                  double ioPressurePct) {
+            this.version = version;
+            this.raw = raw;
+            this.cpuPct = cpuPct;
+            this.cpuLimitCores = cpuLimitCores;
+            this.throttledPct = throttledPct;
+            this.throttledMsPerSec = throttledMsPerSec;
+            this.memoryPct = memoryPct;
+            this.cpuPressurePct = cpuPressurePct;
+            this.memoryPressurePct = memoryPressurePct;
+            this.ioPressurePct = ioPressurePct;
+        }
+
+        /**
+         * 根据两次读取的原始值计算
+         *
+         * @param current     本次 {@link CgroupReader#read(long[])} 的结果
+         * @param last        上一次的结果，第一次采样时全部为-1
+         * @param seconds     两次采样的间隔，第一次采样时为0
+         * @param hostMemory  主机内存总量，cgroup没有内存上限时作为分母
+         * @param processors  没有CPU配额时可用的核数
+         */
+        static Container of(int version, long[] current, long[] last, double seconds, long hostMemory,
+                            int processors) {
+            long quota = current[CgroupReader.CPU_QUOTA_USEC];
+            long period = current[CgroupReader.CPU_PERIOD_USEC];
+            double cores = quota > 0 && quota != CgroupReader.UNLIMITED && period > 0
+                    ? (double) quota / period : processors;
+            double micros = seconds * 1e6;
+
+            double cpuPct = 0;
+            long usage = delta(current, last, CgroupReader.CPU_USAGE_USEC);
+            if (usage >= 0 && micros > 0 && cores > 0) {
+                cpuPct = usage / (micros * cores) * 100;
+            }
+            double throttledPct = 0;
+            long periods = delta(current, last, CgroupReader.CPU_NR_PERIODS);
+            long throttledPeriods = delta(current, last, CgroupReader.CPU_NR_THROTTLED);
+            if (periods > 0 && throttledPeriods >= 0) {
+                throttledPct = (double) throttledPeriods / periods * 100;
+            }
+            double throttledMsPerSec = 0;
+            long throttled = delta(current, last, CgroupReader.CPU_THROTTLED_USEC);
+            if (throttled >= 0 && seconds > 0) {
+                throttledMsPerSec = throttled / 1000.0 / seconds;
+            }
+            double memoryPct = 0;
+            long memory = current[CgroupReader.MEMORY_CURRENT];
+            long limit = current[CgroupReader.MEMORY_MAX];
+            long denominator = limit > 0 && limit != CgroupReader.UNLIMITED ? limit : hostMemory;
+            if (memory >= 0 && denominator > 0) {
+                memoryPct = (double) memory / denominator * 100;
+            }
+            return new Container(version, current.clone(), cpuPct, cores, throttledPct, throttledMsPerSec, memoryPct,
+                    stallPct(current, last, CgroupReader.CPU_PRESSURE_SOME_USEC, micros),
+                    stallPct(current, last, CgroupReader.MEMORY_PRESSURE_SOME_USEC, micros),
+                    stallPct(current, last, CgroupReader.IO_PRESSURE_SOME_USEC, micros));
+        }
+
+        private static long delta(long[] current, long[] last, int field) {
+            return current[field] >= 0 && last[field] >= 0 ? Math.max(0, current[field] - last[field]) : -1;
+        }
+
+        private static double stallPct(long[] current, long[] last, int field, double micros) {
+            long stalled = delta(current, last, field);
+            return stalled >= 0 && micros > 0 ? Math.min(100, stalled / micros * 100) : 0;
+        }
+
+        private static long[] unavailable() {
+            long[] raw = new long[CgroupReader.FIELDS];
+            Arrays.fill(raw, -1);
+            return raw;
+        }
+
+        /**
+         * cgroup版本，不在cgroup中时为0
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * 原始值，下标为 {@link CgroupReader} 的字段常量，读取不到时为-1
+         */
+        public long getRaw(int field) {
+            return raw[field];
+        }
+
+        /**
+         * CPU使用量占可用核数的百分比
+         */
+        public double getCpuPct() {
+            return cpuPct;
+        }
+
+        /**
+         * 可用核数，没有CPU配额时为JVM可用的处理器数
+         */
+        public double getCpuLimitCores() {
+            return cpuLimitCores;
+        }
+
+        /**
+         * CPU配额（核），没有配额时为NaN
+         */
+        public double getCpuQuotaCores() {
+            long quota = raw[CgroupReader.CPU_QUOTA_USEC];
+            long period = raw[CgroupReader.CPU_PERIOD_USEC];
+            return quota > 0 && quota != CgroupReader.UNLIMITED && period > 0 ? (double) quota / period : Double.NaN;
+        }
+
+        /**
+         * 内存上限（字节），没有上限时为NaN
+         */
+        public double getMemoryLimitBytes() {
+            long limit = raw[CgroupReader.MEMORY_MAX];
+            return limit > 0 && limit != CgroupReader.UNLIMITED ? limit : Double.NaN;
+        }
+
+        /**
+         * 采样间隔内被限流的调度周期占比
+         */
+        public double getThrottledPct() {
+            return throttledPct;
+        }
+
+        /**
+         * 采样间隔内平均每秒被限流的时间（毫秒）
+         */
+        public double getThrottledMsPerSec() {
+            return throttledMsPerSec;
+        }
+
+        /**
+         * 内存使用量占cgroup上限（没有上限时为主机内存）的百分比
+         */
+        public double getMemoryPct() {
+            return memoryPct;
+        }
+
+        /**
+         * PSI some：采样间隔内至少一个任务因等待CPU而停顿的时间占比，以下两项同理
+         */
+        public double getCpuPressurePct() {
+            return cpuPressurePct;
+        }
+
+        public double getMemoryPressurePct() {
+            return memoryPressurePct;
+        }
+
+        public double getIoPressurePct() {
+            return ioPressurePct;
+        }
+    }
+}
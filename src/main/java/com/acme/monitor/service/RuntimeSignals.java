@@ -0,0 +1,103 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.AdaptiveL1CacheSizer;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Statistic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单元指标之外的运行时信号，与单元指标同频采样
+ *
+ * 缓存命中率和GC耗时是两次采样之间的增量，死锁线程数和锁阻塞时间取自 {@link LockContentionMonitor} 最近一次汇总。
+ * 同一时间戳的多次读取复用第一次的结果，告警、异常检测等多个采样监听器可以共用而不互相影响。
+ */
+@Component
+public class RuntimeSignals {
+    public static final String[] NAMES = {"jvm_old_gen_after_gc_pct", "cache_hit_ratio", "jvm_gc_time_ms_per_s",
+            "jvm_deadlocked_threads", "jvm_lock_blocked_ms_per_s"};
+
+    @Autowired
+    private MeterIndex meterIndex;
+
+    @Autowired
+    private LockContentionMonitor lockContentionMonitor;
+
+    @Autowired
+    private AdaptiveL1CacheSizer adaptiveL1CacheSizer;
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final double[] values = new double[NAMES.length];
+    private long sampledAt = Long.MIN_VALUE;
+    private double lastCacheHits = Double.NaN;
+    private double lastCacheTotal = Double.NaN;
+    private long lastGcMillis = -1;
+    private long lastGcAt;
+
+    /**
+     * 把时间戳对应的信号值按 {@link #NAMES} 的顺序写入 out[offset...]
+     */
+    public synchronized void fill(long timestamp, double[] out, int offset) {
+        if (timestamp != sampledAt) {
+            values[0] = adaptiveL1CacheSizer.oldGenUsageAfterGc() * 100;
+            values[1] = cacheHitRatio();
+            values[2] = gcTimePerSecond(timestamp);
+            // 锁竞争监控按自己的周期汇总，这里读取最近一次的结果
+            values[3] = lockContentionMonitor.getDeadlockedThreads();
+            values[4] = lockContentionMonitor.getBlockedMsPerSecond();
+            sampledAt = timestamp;
+        }
+        System.arraycopy(values, 0, out, offset, values.length);
+    }
+
+    /**
+     * 两次采样之间的缓存命中率，基于二级缓存注册的 two_level_cache_gets 计数器，Caffeine和Redis命中都算命中，
+     * 没有缓存访问时为NaN
+     */
+    private double cacheHitRatio() {
+        double hits = 0;
+        double total = 0;
+        for (Meter meter : meterIndex.findMeters("two_level_cache_gets",
+                Collections.<String, List<String>>emptyMap())) {
+            double count = count(meter);
+            total += count;
+            if (!"miss".equals(meter.getId().getTag("result"))) {
+                hits += count;
+            }
+        }
+        double ratio = total > lastCacheTotal ? (hits - lastCacheHits) / (total - lastCacheTotal) : Double.NaN;
+        lastCacheHits = hits;
+        lastCacheTotal = total;
+        return ratio;
+    }
+
+    private static double count(Meter meter) {
+        for (Measurement measurement : meter.measure()) {
+            if (measurement.getStatistic() == Statistic.COUNT) {
+                return measurement.getValue();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 两次采样之间平均每秒的GC耗时（毫秒）
+     */
+    private double gcTimePerSecond(long timestamp) {
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        double rate = lastGcMillis < 0 || timestamp <= lastGcAt ? Double.NaN
+                : (gcMillis - lastGcMillis) * 1000.0 / (timestamp - lastGcAt);
+        lastGcMillis = gcMillis;
+        lastGcAt = timestamp;
+        return rate;
+    }
+}
@@ -0,0 +1,298 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.TracingConfig;
+import com.acme.monitor.util.CallPathTrie;
+import com.acme.monitor.util.NamedThreadFactory;
+import com.acme.monitor.util.SpanRing;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内span追踪
+ *
+ * 每个线程在线程本地变量中维护当前的span栈，{@link #begin(String)} 和 {@link #end()} 必须成对调用。
+ * span结束时把调用路径、总耗时和自身耗时写入无锁的 {@link SpanRing}，调用线程上不加锁、不分配对象；
+ * 聚合线程定期读取并按调用路径累加到 {@link CallPathTrie}，供火焰图接口使用。
+ * 提交到线程池的任务用 {@link #wrap(Runnable)} 包装后，任务中的span挂在提交时的调用路径下。
+ */
+@Component
+public class SpanTracer {
+    private static final Logger logger = LoggerFactory.getLogger(SpanTracer.class);
+
+    @Autowired
+    private TracingConfig config;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${unit.id:U01}")
+    private String unitId;
+
+    private final ThreadLocal<Context> context = ThreadLocal.withInitial(() -> new Context(config.getMaxDepth()));
+    private final Object windowLock = new Object();
+    private volatile boolean enabled;
+    private SpanRing ring;
+    private String[] scratch;
+    private SpanRing.Visitor aggregate;
+    private CallPathTrie current;
+    private CallPathTrie previous;
+    private long windowStart;
+    private ScheduledExecutorService aggregator;
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        ring = new SpanRing(config.getRingSize(), config.getMaxDepth());
+        scratch = new String[config.getMaxDepth()];
+        aggregate = (frames, depth, totalNanos, selfNanos) -> current.addSpan(frames, depth, totalNanos, selfNanos);
+        current = newTrie();
+        windowStart = System.currentTimeMillis();
+
+        FunctionCounter.builder("trace_spans", ring, SpanRing::getPublished)
+                .description("Spans recorded by the in-process tracer")
+                .register(meterRegistry);
+        FunctionCounter.builder("trace_spans_dropped", ring, SpanRing::getDropped)
+                .description("Spans overwritten in the ring buffer before being aggregated")
+                .register(meterRegistry);
+        Gauge.builder("trace_call_paths", this, SpanTracer::getPathCount)
+                .description("Distinct call paths in the current flame graph window")
+                .register(meterRegistry);
+
+        enabled = true;
+        aggregator = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Span-Aggregator"));
+        aggregator.scheduleWithFixedDelay(this::drain, config.getDrainIntervalMs(), config.getDrainIntervalMs(),
+                TimeUnit.MILLISECONDS);
+        logger.info("Span tracing enabled: ring {} slots, max depth {}, window {}s", ring.getCapacity(),
+                config.getMaxDepth(), config.getWindowSeconds());
+    }
+
+    @PreDestroy
+    public void stop() {
+        enabled = false;
+        if (aggregator != null) {
+            aggregator.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 在当前线程上开始一个span，超过最大深度的span不记录
+     *
+     * @param name 帧名称，应当是常量或预先拼好的字符串
+     */
+    public void begin(String name) {
+        if (!enabled) {
+            return;
+        }
+        Context ctx = context.get();
+        int depth = ctx.depth;
+        if (depth == ctx.names.length) {
+            ctx.overflow++;
+            return;
+        }
+        ctx.names[depth] = name;
+        ctx.childNanos[depth] = 0;
+        ctx.starts[depth] = System.nanoTime();
+        ctx.depth = depth + 1;
+    }
+
+    /**
+     * 结束当前线程上最近开始的span
+     */
+    public void end() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        Context ctx = context.get();
+        if (ctx.overflow > 0) {
+            ctx.overflow--;
+            return;
+        }
+        int index = ctx.depth - 1;
+        if (index < ctx.base) {
+            // 没有对应的begin（如追踪开启前开始的span）
+            return;
+        }
+        long total = now - ctx.starts[index];
+        long self = total - ctx.childNanos[index];
+        if (index > ctx.base) {
+            ctx.childNanos[index - 1] += total;
+        }
+        ring.publish(ctx.names, index + 1, total, self);
+        ctx.depth = index;
+    }
+
+    /**
+     * 包装要提交到其他线程执行的任务，任务中的span挂在当前调用路径下
+     * 当前线程没有进行中的span时返回原任务
+     */
+    public Runnable wrap(Runnable task) {
+        String[] parent = capture();
+        if (parent == null) {
+            return task;
+        }
+        return () -> {
+            Context ctx = context.get();
+            boolean attached = attach(ctx, parent);
+            try {
+                task.run();
+            } finally {
+                detach(ctx, attached);
+            }
+        };
+    }
+
+    /**
+     * 同 {@link #wrap(Runnable)}
+     */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        String[] parent = capture();
+        if (parent == null) {
+            return task;
+        }
+        return () -> {
+            Context ctx = context.get();
+            boolean attached = attach(ctx, parent);
+            try {
+                return task.call();
+            } finally {
+                detach(ctx, attached);
+            }
+        };
+    }
+
+    private String[] capture() {
+        if (!enabled) {
+            return null;
+        }
+        Context ctx = context.get();
+        return ctx.depth == 0 ? null : Arrays.copyOf(ctx.names, ctx.depth);
+    }
+
+    /**
+     * 把提交方的调用路径作为当前线程的起点，这些帧的耗时属于提交方线程，结束时不会再记录
+     * 当前线程已有进行中的span时（如调用方线程直接执行），任务中的span挂在当前线程的路径下
+     */
+    private static boolean attach(Context ctx, String[] parent) {
+        if (ctx.depth != 0) {
+            return false;
+        }
+        System.arraycopy(parent, 0, ctx.names, 0, parent.length);
+        ctx.depth = parent.length;
+        ctx.base = parent.length;
+        return true;
+    }
+
+    private static void detach(Context ctx, boolean attached) {
+        if (attached) {
+            Arrays.fill(ctx.names, 0, ctx.depth, null);
+            ctx.depth = 0;
+            ctx.base = 0;
+            ctx.overflow = 0;
+        }
+    }
+
+    /**
+     * 读取环形缓冲区并累加到当前窗口，窗口到期时轮换
+     */
+    void drain() {
+        try {
+            synchronized (windowLock) {
+                drainLocked();
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to aggregate spans", e);
+        }
+    }
+
+    private void drainLocked() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= TimeUnit.SECONDS.toMillis(config.getWindowSeconds())) {
+            // 先把上一个窗口的span读完再轮换
+            ring.drain(scratch, aggregate);
+            previous = current;
+            current = newTrie();
+            windowStart = now;
+        }
+        ring.drain(scratch, aggregate);
+    }
+
+    /**
+     * 当前窗口和上一个完整窗口合并后的调用路径树，返回的是副本
+     */
+    public CallPathTrie snapshot() {
+        CallPathTrie result = newTrie();
+        if (!enabled) {
+            return result;
+        }
+        synchronized (windowLock) {
+            drainLocked();
+            if (previous != null) {
+                result.merge(previous);
+            }
+            result.merge(current);
+        }
+        return result;
+    }
+
+    private CallPathTrie newTrie() {
+        return new CallPathTrie(unitId, config.getMaxPaths());
+    }
+
+    /**
+     * 当前窗口的调用路径数，用于指标
+     */
+    double getPathCount() {
+        synchronized (windowLock) {
+            return current.getNodeCount();
+        }
+    }
+
+    public long getSpanCount() {
+        return ring == null ? 0 : ring.getPublished();
+    }
+
+    public long getDroppedCount() {
+        return ring == null ? 0 : ring.getDropped();
+    }
+
+    /**
+     * 线程本地的span栈，只由所属线程访问
+     */
+    private static final class Context {
+        final String[] names;
+        final long[] starts;
+        final long[] childNanos;
+        int depth;
+        // 从提交方继承的帧数，这些帧不在本线程结束
+        int base;
+        // 超过最大深度后未记录的span数
+        int overflow;
+
+        Context(int maxDepth) {
+            this.names = new String[maxDepth];
+            this.starts = new long[maxDepth];
+            this.childNanos = new long[maxDepth];
+        }
+    }
+}
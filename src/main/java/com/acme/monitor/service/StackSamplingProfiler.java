@@ -0,0 +1,389 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.ProfilerConfig;
+import com.acme.monitor.util.CallPathTrie;
+import com.acme.monitor.util.NamedThreadFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 常驻的线程栈采样分析器
+ *
+ * 按配置的间隔通过 {@link ThreadMXBean} 采集所有线程的调用栈，只保留RUNNABLE且不是阻塞在网络等待上的线程，
+ * 帧名称（类名.方法名）和线程名称经过驻留后按调用路径累加到 {@link CallPathTrie}，每分钟一个窗口，保留最近若干分钟。
+ * 每个样本代表一个采样间隔的时间，折叠栈和热点方法排行中的值是按采样估算的执行时间。
+ *
+ * 采样线程统计自身的CPU时间，超过预算时把采样间隔加倍；间隔已到上限仍超预算时，每次只轮流采样一部分线程，
+ * 样本权重按比例放大。远低于预算时先恢复采样全部线程，再逐步恢复到配置的间隔。
+ */
+@Component
+public class StackSamplingProfiler {
+    private static final Logger logger = LoggerFactory.getLogger(StackSamplingProfiler.class);
+
+    static final long WINDOW_MILLIS = 60_000;
+
+    /**
+     * 栈深度超过采集上限时插入的帧，表示栈底部分被截断
+     */
+    static final String TRUNCATED_STACK = "[truncated-stack]";
+
+    /**
+     * 状态为RUNNABLE但实际在等待网络事件的栈顶方法
+     */
+    private static final Set<String> IDLE_FRAMES = new HashSet<>(Arrays.asList(
+            "sun.nio.ch.EPoll.wait",
+            "sun.nio.ch.EPoll.epollWait",
+            "sun.nio.ch.EPollArrayWrapper.epollWait",
+            "sun.nio.ch.KQueue.poll",
+            "sun.nio.ch.KQueue.keventPoll",
+            "sun.nio.ch.KQueueArrayWrapper.kevent0",
+            "sun.nio.ch.WindowsSelectorImpl$SubSelector.poll0",
+            "sun.nio.ch.Net.poll",
+            "sun.nio.ch.Net.accept",
+            "sun.nio.ch.ServerSocketChannelImpl.accept0",
+            "java.net.PlainSocketImpl.socketAccept",
+            "java.net.PlainSocketImpl.accept0",
+            "java.net.SocketInputStream.socketRead0",
+            "sun.nio.ch.SocketDispatcher.read0"));
+
+    /**
+     * 驻留表超过该大小时清空，避免动态生成的类名无限增长
+     */
+    private static final int MAX_INTERNED = 100_000;
+
+    /**
+     * 超预算时每次采样的线程数下限
+     */
+    static final int MIN_THREADS_PER_SAMPLE = 16;
+
+    @Autowired
+    private ProfilerConfig config;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${unit.id:U01}")
+    private String unitId;
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final Object windowLock = new Object();
+    private final ArrayDeque<Window> windows = new ArrayDeque<>();
+    private final AtomicLong samples = new AtomicLong();
+    // 以下字段只由采样线程访问
+    private final Map<String, Map<String, String>> frameNames = new HashMap<>();
+    private final Map<String, String> threadNames = new HashMap<>();
+    private int internedCount;
+    private String[] scratch;
+    private long samplerThreadId = -1;
+    private int threadCount;
+    private int threadCursor;
+    private volatile long intervalMs;
+    // 每次采样的线程数上限，0表示全部线程
+    private volatile int threadLimit;
+    private volatile double cpuPct;
+    private boolean cpuTimeSupported;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        intervalMs = config.getIntervalMs();
+        threadLimit = 0;
+        scratch = new String[config.getMaxDepth() + 2];
+        if (!config.isEnabled()) {
+            return;
+        }
+        cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+
+        Gauge.builder("profiler_interval_ms", this, StackSamplingProfiler::getIntervalMs)
+                .description("Current stack sampling interval, raised when over the CPU budget")
+                .register(meterRegistry);
+        Gauge.builder("profiler_thread_limit", this, StackSamplingProfiler::getThreadLimit)
+                .description("Threads sampled per tick when over the CPU budget at the maximum interval, 0 means all")
+                .register(meterRegistry);
+        Gauge.builder("profiler_cpu_pct", this, StackSamplingProfiler::getCpuPct)
+                .description("CPU used by the stack sampling thread, percent of one core")
+                .register(meterRegistry);
+        FunctionCounter.builder("profiler_stack_samples", samples, AtomicLong::get)
+                .description("Thread stacks recorded by the sampling profiler")
+                .register(meterRegistry);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Stack-Profiler"));
+        scheduler.schedule(this::tick, intervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Stack sampling profiler started: every {}ms, CPU budget {}%{}", intervalMs,
+                config.getCpuBudgetPct(), cpuTimeSupported ? "" : " (thread CPU time unavailable, using wall time)");
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void tick() {
+        try {
+            long start = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+            sample(System.currentTimeMillis());
+            long cost = (cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime()) - start;
+            adjustInterval(cost);
+        } catch (Exception e) {
+            logger.warn("Stack sampling failed", e);
+        } finally {
+            if (!scheduler.isShutdown()) {
+                scheduler.schedule(this::tick, intervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 采集一次所有线程的调用栈
+     *
+     * @return 记录的线程栈数
+     */
+    int sample(long now) {
+        if (samplerThreadId < 0) {
+            samplerThreadId = Thread.currentThread().getId();
+        }
+        long[] ids = threadMXBean.getAllThreadIds();
+        threadCount = ids.length;
+        long[] sampled = ids;
+        int limit = threadLimit;
+        if (limit > 0 && limit < ids.length) {
+            // 轮流采样一部分线程，每个线程每 ids.length / limit 次被采到一次
+            sampled = new long[limit];
+            for (int i = 0; i < limit; i++) {
+                sampled[i] = ids[(threadCursor + i) % ids.length];
+            }
+            threadCursor = (threadCursor + limit) % ids.length;
+        }
+        ThreadInfo[] infos = threadMXBean.getThreadInfo(sampled, config.getMaxDepth());
+        long weightNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs) * ids.length / Math.max(1, sampled.length);
+        int recorded = 0;
+        synchronized (windowLock) {
+            Window window = window(now);
+            for (ThreadInfo info : infos) {
+                if (info == null || info.getThreadState() != Thread.State.RUNNABLE
+                        || info.getThreadId() == samplerThreadId) {
+                    continue;
+                }
+                StackTraceElement[] stack = info.getStackTrace();
+                if (stack.length == 0 || IDLE_FRAMES.contains(frameName(stack[0]))) {
+                    continue;
+                }
+                int depth = 0;
+                scratch[depth++] = threadName(info.getThreadName());
+                if (stack.length >= config.getMaxDepth()) {
+                    scratch[depth++] = TRUNCATED_STACK;
+                }
+                for (int i = stack.length - 1; i >= 0; i--) {
+                    scratch[depth++] = frameName(stack[i]);
+                }
+                window.trie.addSample(scratch, depth, weightNanos);
+                window.samples++;
+                recorded++;
+            }
+        }
+        samples.addAndGet(recorded);
+        return recorded;
+    }
+
+    private Window window(long now) {
+        long start = now - now % WINDOW_MILLIS;
+        Window last = windows.peekLast();
+        if (last == null || last.start != start) {
+            last = new Window(start, new CallPathTrie(unitId, config.getMaxPaths()));
+            windows.addLast(last);
+            while (windows.size() > config.getRetainMinutes()) {
+                windows.removeFirst();
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 按最近一次采样的CPU开销调整间隔和每次采样的线程数，开销用指数移动平均平滑
+     */
+    void adjustInterval(long costNanos) {
+        double pct = costNanos * 100.0 / TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        double smoothed = cpuPct == 0 ? pct : cpuPct * 0.8 + pct * 0.2;
+        cpuPct = smoothed;
+        double budget = config.getCpuBudgetPct();
+        if (smoothed > budget) {
+            if (intervalMs < config.getMaxIntervalMs()) {
+                intervalMs = Math.min(config.getMaxIntervalMs(), intervalMs * 2);
+                logger.info("Stack sampling uses {}% CPU, over budget {}%, interval raised to {}ms",
+                        String.format("%.2f", smoothed), budget, intervalMs);
+            } else if (threadLimit != MIN_THREADS_PER_SAMPLE) {
+                int current = threadLimit > 0 ? threadLimit : threadCount;
+                threadLimit = Math.max(MIN_THREADS_PER_SAMPLE, current / 2);
+                logger.info("Stack sampling uses {}% CPU at the maximum interval, sampling {} threads per tick",
+                        String.format("%.2f", smoothed), threadLimit);
+            }
+        } else if (smoothed < budget / 4) {
+            if (threadLimit > 0) {
+                int next = threadLimit * 2;
+                threadLimit = next >= threadCount ? 0 : next;
+            } else if (intervalMs > config.getIntervalMs()) {
+                intervalMs = Math.max(config.getIntervalMs(), intervalMs / 2);
+            }
+        }
+    }
+
+    /**
+     * 驻留帧名称，同一个方法只创建一次字符串
+     */
+    private String frameName(StackTraceElement element) {
+        Map<String, String> methods = frameNames.get(element.getClassName());
+        if (methods == null) {
+            internCheck();
+            methods = new HashMap<>();
+            frameNames.put(element.getClassName(), methods);
+        }
+        String name = methods.get(element.getMethodName());
+        if (name == null) {
+            internCheck();
+            name = element.getClassName() + "." + element.getMethodName();
+            methods.put(element.getMethodName(), name);
+            internedCount++;
+        }
+        return name;
+    }
+
+    /**
+     * 线程池中的线程名称去掉编号，同一个池的线程合并为一个根帧，如 http-nio-8080-exec-3 合并为 http-nio-8080-exec-#
+     */
+    private String threadName(String raw) {
+        String name = threadNames.get(raw);
+        if (name == null) {
+            internCheck();
+            int end = raw.length();
+            while (end > 0 && Character.isDigit(raw.charAt(end - 1))) {
+                end--;
+            }
+            name = end < raw.length() ? raw.substring(0, end) + "#" : raw;
+            threadNames.put(raw, name);
+            internedCount++;
+        }
+        return name;
+    }
+
+    private void internCheck() {
+        if (internedCount >= MAX_INTERNED) {
+            frameNames.clear();
+            threadNames.clear();
+            internedCount = 0;
+        }
+    }
+
+    /**
+     * 合并截止到 end 的最近 minutes 个分钟窗口
+     */
+    public Profile profile(int minutes, long end) {
+        CallPathTrie merged = new CallPathTrie(unitId, Integer.MAX_VALUE);
+        long from = end - end % WINDOW_MILLIS - (minutes - 1) * WINDOW_MILLIS;
+        int count = 0;
+        long total = 0;
+        synchronized (windowLock) {
+            for (Window window : windows) {
+                if (window.start >= from && window.start <= end) {
+                    merged.merge(window.trie);
+                    count++;
+                    total += window.samples;
+                }
+            }
+        }
+        return new Profile(merged, from, end, count, total);
+    }
+
+    public boolean isEnabled() {
+        return scheduler != null;
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    public int getThreadLimit() {
+        return threadLimit;
+    }
+
+    public double getCpuPct() {
+        return cpuPct;
+    }
+
+    public int getRetainMinutes() {
+        return config.getRetainMinutes();
+    }
+
+    private static final class Window {
+        final long start;
+        final CallPathTrie trie;
+        long samples;
+
+        Window(long start, CallPathTrie trie) {
+            this.start = start;
+            this.trie = trie;
+        }
+    }
+
+    /**
+     * 若干分钟窗口合并后的结果
+     */
+    public static final class Profile {
+        private final CallPathTrie trie;
+        private final long from;
+        private final long to;
+        private final int windows;
+        private final long samples;
+
+        Profile(CallPathTrie trie, long from, long to, int windows, long samples) {
+            this.trie = trie;
+            this.from = from;
+            this.to = to;
+            this.windows = windows;
+            this.samples = samples;
+        }
+
+        public CallPathTrie getTrie() {
+            return trie;
+        }
+
+        public long getFrom() {
+            return from;
+        }
+
+        public long getTo() {
+            return to;
+        }
+
+        public int getWindows() {
+            return windows;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+    }
+}
@@ -0,0 +1,653 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.TsdbConfig;
+import com.acme.monitor.util.GorillaDecoder;
+import com.acme.monitor.util.GorillaEncoder;
+import com.acme.monitor.util.NamedThreadFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 本地时序存储
+ *
+ * 接收 {@link UnitMetricsSampler} 的每秒采样，按 {@link GorillaEncoder} 压缩后直接写入内存映射的分段文件。
+ * 分段文件大小固定，只追加：文件头之后是若干固定大小的数据块，每个块只保存一个指标的连续数据，
+ * 块头中的点数在数据写入后才更新，进程异常退出时最多丢失未刷盘的页。
+ *
+ * 分段文件格式：
+ * <pre>
+ *   块0（文件头）：magic, version, blockSize, blockCount, resolutionMillis, nameCount, [nameLength, name]...
+ *   块N：seriesId + 1（0表示空闲）, count, firstTimestamp, lastTimestamp, bitLength, reserved, 压缩数据...
+ * </pre>
+ * 后台定期删除超过保留时长的分段，并把较早的原始分段合并降采样为分钟级分段。
+ */
+@Component
+@ConditionalOnProperty(name = "app.tsdb.enabled", havingValue = "true", matchIfMissing = false)
+public class TimeSeriesStore implements MetricSampleListener {
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesStore.class);
+
+    private static final int MAGIC = 0x54534442;
+    private static final int VERSION = 1;
+    static final int BLOCK_HEADER_BYTES = 32;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".tsdb";
+
+    @Autowired
+    private TsdbConfig config;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private String[] seriesNames = UnitMetricsService.METRIC_NAMES;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * 按起始时间排序的分段
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    private Writer writer;
+    private long lastSequence;
+    private boolean writeFailed;
+    private ScheduledExecutorService scheduler;
+
+    public TimeSeriesStore() {
+    }
+
+    TimeSeriesStore(TsdbConfig config, String[] seriesNames) {
+        this.config = config;
+        this.seriesNames = seriesNames;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        open();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Tsdb-Maintenance"));
+        scheduler.scheduleWithFixedDelay(() -> maintain(System.currentTimeMillis()),
+                config.getMaintenanceIntervalMs(), config.getMaintenanceIntervalMs(), TimeUnit.MILLISECONDS);
+        if (meterRegistry != null) {
+            Gauge.builder("tsdb_bytes_per_sample", this, s -> s.getStats().getBytesPerSample())
+                    .description("Average stored bytes per sample in local time-series segments")
+                    .register(meterRegistry);
+            Gauge.builder("tsdb_segments", this, s -> s.getStats().getSegments())
+                    .description("Number of local time-series segment files")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 加载目录下已有的分段，新数据总是写入新的分段
+     */
+    void open() throws IOException {
+        File dir = new File(config.getDirectory());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create tsdb directory " + dir.getAbsolutePath());
+        }
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        lock.writeLock().lock();
+        try {
+            if (files != null) {
+                for (File file : files) {
+                    try {
+                        Segment segment = Segment.load(file);
+                        segments.add(segment);
+                        lastSequence = Math.max(lastSequence, segment.sequence);
+                    } catch (IOException | RuntimeException e) {
+                        logger.warn("Skipping unreadable tsdb segment {}", file, e);
+                    }
+                }
+            }
+            sortSegments();
+            writer = new Writer(0, TimeUnit.HOURS.toMillis(config.getSegmentHours()), null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Local tsdb opened at {} with {} segments", dir.getAbsolutePath(), segments.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+            writer = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onSample(long timestamp, double[] values) {
+        lock.writeLock().lock();
+        try {
+            if (writer == null) {
+                return;
+            }
+            for (int i = 0; i < seriesNames.length; i++) {
+                writer.append(i, timestamp, values[i]);
+            }
+            writeFailed = false;
+        } catch (IOException e) {
+            if (!writeFailed) {
+                logger.error("Failed to write local tsdb sample", e);
+                writeFailed = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询某个指标在时间范围内的全部点，合并后的分段返回降采样后的平均值
+     *
+     * @param series 指标名称
+     * @param from   起始时间（毫秒，含）
+     * @param to     结束时间（毫秒，含）
+     */
+    public Result query(String series, long from, long to) {
+        Result result = new Result();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments) {
+                if (segment.maxTimestamp < from || segment.minTimestamp > to) {
+                    continue;
+                }
+                int id = segment.seriesIndex(series);
+                if (id < 0) {
+                    continue;
+                }
+                for (int block = 1; block < segment.usedBlocks; block++) {
+                    if (segment.seriesId(block) != id || segment.lastTimestamp(block) < from
+                            || segment.firstTimestamp(block) > to) {
+                        continue;
+                    }
+                    GorillaDecoder decoder = segment.decoder(block);
+                    while (decoder.next()) {
+                        long timestamp = decoder.getTimestamp();
+                        if (timestamp >= from && timestamp <= to) {
+                            result.add(timestamp, decoder.getValue());
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 删除过期分段，并合并较早的原始分段
+     */
+    void maintain(long now) {
+        lock.writeLock().lock();
+        try {
+            long retentionCutoff = now - TimeUnit.HOURS.toMillis(config.getRetentionHours());
+            Iterator<Segment> it = segments.iterator();
+            while (it.hasNext()) {
+                Segment segment = it.next();
+                if (segment != writer.segment && segment.maxTimestamp < retentionCutoff) {
+                    it.remove();
+                    segment.delete();
+                    logger.info("Deleted expired tsdb segment {}", segment.file.getName());
+                }
+            }
+
+            long compactCutoff = now - TimeUnit.HOURS.toMillis(config.getCompactAfterHours());
+            List<Segment> sources = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (segment.resolutionMillis == 0 && segment != writer.segment
+                        && segment.maxTimestamp < compactCutoff) {
+                    sources.add(segment);
+                }
+            }
+            if (!sources.isEmpty()) {
+                compact(sources);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Local tsdb maintenance failed", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 把原始分段按固定时间窗口取平均值写入新的分段，成功后删除原始分段
+     * 调用方需要持有写锁
+     */
+    private void compact(List<Segment> sources) throws IOException {
+        long resolution = TimeUnit.SECONDS.toMillis(config.getCompactionResolutionSeconds());
+        Writer out = new Writer(resolution, Long.MAX_VALUE, new ArrayList<>());
+        try {
+            for (int series = 0; series < seriesNames.length; series++) {
+                long bucket = Long.MIN_VALUE;
+                double sum = 0;
+                int count = 0;
+                for (Segment segment : sources) {
+                    int id = segment.seriesIndex(seriesNames[series]);
+                    if (id < 0) {
+                        continue;
+                    }
+                    for (int block = 1; block < segment.usedBlocks; block++) {
+                        if (segment.seriesId(block) != id) {
+                            continue;
+                        }
+                        GorillaDecoder decoder = segment.decoder(block);
+                        while (decoder.next()) {
+                            long timestamp = decoder.getTimestamp();
+                            long start = timestamp - Math.floorMod(timestamp, resolution);
+                            if (start != bucket) {
+                                if (count > 0) {
+                                    out.append(series, bucket, sum / count);
+                                }
+                                bucket = start;
+                                sum = 0;
+                                count = 0;
+                            }
+                            sum += decoder.getValue();
+                            count++;
+                        }
+                    }
+                }
+                if (count > 0) {
+                    out.append(series, bucket, sum / count);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Segment created : out.created) {
+                segments.remove(created);
+                created.delete();
+            }
+            throw e;
+        }
+        for (Segment created : out.created) {
+            created.buffer.force();
+        }
+        for (Segment source : sources) {
+            segments.remove(source);
+            source.delete();
+        }
+        sortSegments();
+        logger.info("Compacted {} tsdb segments into {}", sources.size(), out.created.size());
+    }
+
+    /**
+     * 统计分段数量、点数和存储占用
+     */
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            long samples = 0;
+            long storedBytes = 0;
+            long allocatedBytes = 0;
+            for (Segment segment : segments) {
+                for (int block = 1; block < segment.usedBlocks; block++) {
+                    samples += segment.count(block);
+                    storedBytes += BLOCK_HEADER_BYTES + (segment.bitLength(block) + 7) / 8;
+                }
+                allocatedBytes += (long) segment.usedBlocks * segment.blockSize;
+            }
+            return new Stats(segments.size(), samples, storedBytes, allocatedBytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Segment createSegment(long resolutionMillis) throws IOException {
+        long sequence = ++lastSequence;
+        File file = new File(config.getDirectory(), String.format("%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        Segment segment = Segment.create(file, sequence, config.getBlockSize(), config.getBlocksPerSegment(),
+                resolutionMillis, seriesNames);
+        segments.add(segment);
+        return segment;
+    }
+
+    private void sortSegments() {
+        segments.sort((a, b) -> a.minTimestamp != b.minTimestamp
+                ? Long.compare(a.minTimestamp, b.minTimestamp)
+                : Long.compare(a.sequence, b.sequence));
+    }
+
+    /**
+     * 按指标维护当前写入的块，块写满后分配新块，分段写满或超过时长后创建新分段
+     */
+    private final class Writer {
+        private final long resolutionMillis;
+        private final long segmentMillis;
+        private final int[] blocks = new int[seriesNames.length];
+        private final GorillaEncoder[] encoders = new GorillaEncoder[seriesNames.length];
+        /**
+         * 记录新建的分段，合并失败时用于清理，为null时不记录
+         */
+        private final List<Segment> created;
+        private Segment segment;
+
+        Writer(long resolutionMillis, long segmentMillis, List<Segment> created) {
+            this.resolutionMillis = resolutionMillis;
+            this.segmentMillis = segmentMillis;
+            this.created = created;
+        }
+
+        void append(int series, long timestamp, double value) throws IOException {
+            if (segment != null && timestamp - segment.minTimestamp >= segmentMillis) {
+                roll();
+            }
+            GorillaEncoder encoder = encoders[series];
+            if (encoder == null || !encoder.append(timestamp, value)) {
+                int block = segment == null ? -1 : segment.allocateBlock(series, timestamp);
+                if (block < 0) {
+                    roll();
+                    block = segment.allocateBlock(series, timestamp);
+                }
+                blocks[series] = block;
+                encoder = new GorillaEncoder(segment.buffer, segment.blockOffset(block) + BLOCK_HEADER_BYTES,
+                        segment.blockSize - BLOCK_HEADER_BYTES);
+                encoders[series] = encoder;
+                encoder.append(timestamp, value);
+            }
+            segment.commit(blocks[series], encoder);
+        }
+
+        /**
+         * 切换到新的分段，各指标从新分段的新块开始写入，保证每个分段的时间范围连续
+         */
+        private void roll() throws IOException {
+            segment = createSegment(resolutionMillis);
+            if (created != null) {
+                created.add(segment);
+            }
+            Arrays.fill(blocks, -1);
+            Arrays.fill(encoders, null);
+        }
+    }
+
+    /**
+     * 一个内存映射的分段文件
+     */
+    private static final class Segment {
+        private final File file;
+        private final long sequence;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int blockSize;
+        private final int blockCount;
+        private final long resolutionMillis;
+        private final String[] names;
+        private int usedBlocks = 1;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        private Segment(File file, long sequence, FileChannel channel, MappedByteBuffer buffer, int blockSize,
+                        int blockCount, long resolutionMillis, String[] names) {
+            this.file = file;
+            this.sequence = sequence;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.blockSize = blockSize;
+            this.blockCount = blockCount;
+            this.resolutionMillis = resolutionMillis;
+            this.names = names;
+        }
+
+        static Segment create(File file, long sequence, int blockSize, int blockCount, long resolutionMillis,
+                              String[] names) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) blockSize * blockCount);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putInt(blockSize);
+                buffer.putInt(blockCount);
+                buffer.putLong(resolutionMillis);
+                buffer.putInt(names.length);
+                for (String name : names) {
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    if (buffer.position() + 2 + bytes.length > blockSize) {
+                        throw new IllegalArgumentException("Series names do not fit in tsdb segment header");
+                    }
+                    buffer.putShort((short) bytes.length);
+                    buffer.put(bytes);
+                }
+                return new Segment(file, sequence, channel, buffer, blockSize, blockCount, resolutionMillis, names);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                file.delete();
+                throw e;
+            }
+        }
+
+        static Segment load(File file) throws IOException {
+            String fileName = file.getName();
+            long sequence = Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(),
+                    fileName.length() - SEGMENT_SUFFIX.length()));
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                    throw new IOException("Not a tsdb segment: " + file);
+                }
+                int blockSize = buffer.getInt();
+                int blockCount = buffer.getInt();
+                if ((long) blockSize * blockCount != channel.size()) {
+                    throw new IOException("Truncated tsdb segment: " + file);
+                }
+                long resolutionMillis = buffer.getLong();
+                String[] names = new String[buffer.getInt()];
+                for (int i = 0; i < names.length; i++) {
+                    byte[] bytes = new byte[buffer.getShort()];
+                    buffer.get(bytes);
+                    names[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                Segment segment = new Segment(file, sequence, channel, buffer, blockSize, blockCount,
+                        resolutionMillis, names);
+                // 块按顺序分配，遇到第一个空闲块即为已用区域的末尾
+                while (segment.usedBlocks < blockCount && buffer.getInt(segment.blockOffset(segment.usedBlocks)) != 0) {
+                    int block = segment.usedBlocks++;
+                    if (segment.count(block) > 0) {
+                        segment.minTimestamp = Math.min(segment.minTimestamp, segment.firstTimestamp(block));
+                        segment.maxTimestamp = Math.max(segment.maxTimestamp, segment.lastTimestamp(block));
+                    }
+                }
+                return segment;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        int blockOffset(int block) {
+            return block * blockSize;
+        }
+
+        int seriesIndex(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int seriesId(int block) {
+            return buffer.getInt(blockOffset(block)) - 1;
+        }
+
+        int count(int block) {
+            return buffer.getInt(blockOffset(block) + 4);
+        }
+
+        long firstTimestamp(int block) {
+            return buffer.getLong(blockOffset(block) + 8);
+        }
+
+        long lastTimestamp(int block) {
+            return buffer.getLong(blockOffset(block) + 16);
+        }
+
+        int bitLength(int block) {
+            return buffer.getInt(blockOffset(block) + 24);
+        }
+
+        GorillaDecoder decoder(int block) {
+            return new GorillaDecoder(buffer, blockOffset(block) + BLOCK_HEADER_BYTES, count(block));
+        }
+
+        /**
+         * 分配一个新块，分段已满时返回-1
+         */
+        int allocateBlock(int series, long firstTimestamp) {
+            if (usedBlocks >= blockCount) {
+                return -1;
+            }
+            int block = usedBlocks++;
+            int offset = blockOffset(block);
+            buffer.putInt(offset + 4, 0);
+            buffer.putLong(offset + 8, firstTimestamp);
+            buffer.putLong(offset + 16, firstTimestamp);
+            buffer.putInt(offset + 24, 0);
+            buffer.putInt(offset, series + 1);
+            return block;
+        }
+
+        /**
+         * 数据写入后更新块头，点数最后写入
+         */
+        void commit(int block, GorillaEncoder encoder) {
+            int offset = blockOffset(block);
+            buffer.putLong(offset + 16, encoder.getLastTimestamp());
+            buffer.putInt(offset + 24, encoder.getBitLength());
+            buffer.putInt(offset + 4, encoder.getCount());
+            minTimestamp = Math.min(minTimestamp, encoder.getLastTimestamp());
+            maxTimestamp = Math.max(maxTimestamp, encoder.getLastTimestamp());
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close tsdb segment {}", file, e);
+            }
+        }
+
+        void delete() {
+            close();
+            if (!file.delete()) {
+                logger.warn("Failed to delete tsdb segment {}", file);
+            }
+        }
+    }
+
+    /**
+     * 查询结果
+     */
+    public static final class Result {
+        private long[] timestamps = new long[256];
+        private double[] values = new double[256];
+        private int size;
+
+        void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long[] getTimestamps() {
+            return Arrays.copyOf(timestamps, size);
+        }
+
+        public double[] getValues() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * 存储统计
+     */
+    public static final class Stats {
+        private final int segments;
+        private final long samples;
+        private final long storedBytes;
+        private final long allocatedBytes;
+
+        Stats(int segments, long samples, long storedBytes, long allocatedBytes) {
+            this.segments = segments;
+            this.samples = samples;
+            this.storedBytes = storedBytes;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public int getSegments() {
+            return segments;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        /**
+         * 块头和压缩数据实际占用的字节数
+         */
+        public long getStoredBytes() {
+            return storedBytes;
+        }
+
+        /**
+         * 已分配块占用的字节数，包含块内未用完的空间
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public double getBytesPerSample() {
+            return samples == 0 ? 0 : (double) storedBytes / samples;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("segments", segments);
+            map.put("samples", samples);
+            map.put("stored_bytes", storedBytes);
+            map.put("allocated_bytes", allocatedBytes);
+            map.put("bytes_per_sample", Math.round(getBytesPerSample() * 1000) / 1000.0);
+            return map;
+        }
+    }
+}
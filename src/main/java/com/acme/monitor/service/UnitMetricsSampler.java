@@ -0,0 +1,63 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单元指标定时采样
+ * 每秒读取一次 {@link UnitMetricsService} 的全部指标并分发给各个 {@link MetricSampleListener}，
+ * 采样数组复用，不在每次采样时创建对象
+ */
+@Component
+public class UnitMetricsSampler {
+    private static final Logger logger = LoggerFactory.getLogger(UnitMetricsSampler.class);
+
+    @Autowired
+    private UnitMetricsService unitMetricsService;
+
+    @Autowired
+    private List<MetricSampleListener> listeners;
+
+    private final double[] values = new double[UnitMetricsService.METRIC_NAMES.length];
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Unit-Metrics-Sampler"));
+        scheduler.scheduleAtFixedRate(this::sample, 1000, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void sample() {
+        long timestamp = System.currentTimeMillis();
+        try {
+            unitMetricsService.fill(values);
+        } catch (Exception e) {
+            logger.warn("Failed to sample unit metrics", e);
+            return;
+        }
+        for (MetricSampleListener listener : listeners) {
+            try {
+                listener.onSample(timestamp, values);
+            } catch (Exception e) {
+                logger.warn("Metric sample listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.acme.monitor.service;
 
+import com.acme.monitor.util.LatencyHistogram;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.*;
 
@@ -8,23 +10,103 @@ import java.util.*;
  */
 @Service
 public class UnitMetricsService {
+    @Autowired
+    private ResourceSampler resourceSampler;
+
+    @Autowired
+    private RequestMetricsService requestMetricsService;
+
+    /**
+     * 单元指标名称，顺序与 {@link #fill(double[])} 写入的位置一致
+     */
+    public static final String[] METRIC_NAMES = {
+            "unit_up",
+            "unit_rto_seconds",
+            "unit_rpo_seconds",
+            "unit_cpu_pct",
+            "unit_process_cpu_pct",
+            "unit_mem_pct",
+            "unit_disk_io_mb",
+            "unit_net_bps",
+            "unit_load_average",
+            "unit_qps_total",
+            "unit_latency_p50_ms",
+            "unit_latency_p99_ms",
+            "unit_latency_p999_ms",
+            "unit_success_rate",
+            "unit_daily_cost_yuan",
+            "unit_idle_pct",
+            "unit_container_cpu_pct",
+            "unit_cpu_limit_cores",
+            "unit_cpu_throttled_pct",
+            "unit_cpu_throttled_ms_per_s",
+            "unit_container_mem_pct",
+            "unit_cpu_pressure_pct",
+            "unit_mem_pressure_pct",
+            "unit_io_pressure_pct"
+    };
+
+    /**
+     * 前几个指标以整数形式输出
+     */
+    private static final int INTEGER_METRICS = 3;
+
     /**
      * 获取当前单元健康状态和主要指标
+     * 资源指标来自后台采样的快照，请求指标来自滑动窗口直方图，调用时不做I/O
      */
     public Map<String, Object> getUnitStatus() {
+        double[] values = new double[METRIC_NAMES.length];
+        fill(values);
         Map<String, Object> map = new HashMap<>();
-        map.put("unit_up", 1);
-        map.put("unit_rto_seconds", 12);
-        map.put("unit_rpo_seconds", 30);
-        map.put("unit_cpu_pct", 67);
-        map.put("unit_mem_pct", 72);
-        map.put("unit_disk_io_mb", 120);
-        map.put("unit_net_bps", 800);
-        map.put("unit_qps_total", 3200);
-        map.put("unit_latency_p99_ms", 210);
-        map.put("unit_success_rate", 99.87);
-        map.put("unit_daily_cost_yuan", 1234.56);
-        map.put("unit_idle_pct", 12.3);
+        for (int i = 0; i < METRIC_NAMES.length; i++) {
+            map.put(METRIC_NAMES[i], format(i, values[i]));
+        }
         return map;
     }
-}
\ No newline at end of file
+
+    /**
+     * 将当前指标按 {@link #METRIC_NAMES} 的顺序写入数组，不创建额外对象，供历史记录等高频采集使用
+     */
+    public void fill(double[] out) {
+        ResourceSampler.Snapshot resources = resourceSampler.getSnapshot();
+        LatencyHistogram.Snapshot requests = requestMetricsService.getUnitSnapshot();
+        out[0] = 1;
+        out[1] = 12;
+        out[2] = 30;
+        out[3] = resources.getSystemCpuPct();
+        out[4] = resources.getProcessCpuPct();
+        out[5] = resources.getMemoryPct();
+        out[6] = (resources.getDiskReadBytesPerSec() + resources.getDiskWriteBytesPerSec()) / (1024 * 1024);
+        out[7] = (resources.getNetRxBytesPerSec() + resources.getNetTxBytesPerSec()) * 8;
+        out[8] = resources.getLoadAverage();
+        out[9] = requests.getQps();
+        out[10] = requests.getPercentileMillis(0.5);
+        out[11] = requests.getPercentileMillis(0.99);
+        out[12] = requests.getPercentileMillis(0.999);
+        out[13] = requests.getSuccessRate();
+        out[14] = 1234.56;
+        out[15] = 100 - resources.getSystemCpuPct();
+        // 容器指标，不在cgroup中时为0
+        ResourceSampler.Container container = resources.getContainer();
+        out[16] = container.getCpuPct();
+        out[17] = container.getCpuLimitCores();
+        out[18] = container.getThrottledPct();
+        out[19] = container.getThrottledMsPerSec();
+        out[20] = container.getMemoryPct();
+        out[21] = container.getCpuPressurePct();
+        out[22] = container.getMemoryPressurePct();
+        out[23] = container.getIoPressurePct();
+    }
+
+    /**
+     * 按对外展示的精度格式化第 index 个指标：前几个为整数，其余保留两位小数
+     */
+    static Object format(int index, double value) {
+        return index < INTEGER_METRICS ? (Object) (int) value : (Object) round(value);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -1,5 +1,7 @@
 package com.acme.monitor.service;
 
+import com.acme.monitor.aspect.CacheEvictByTag;
+import com.acme.monitor.aspect.CacheTags;
 import com.acme.monitor.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +16,10 @@ import java.util.Map;
 @Service
 public class UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+
+    // 按邮箱域名给用户缓存打标签，用于分组失效
+    private static final String DOMAIN_TAG = "#result == null || #result.email == null ? null : "
+            + "'domain:' + #result.email.substring(#result.email.indexOf('@') + 1)";
     
     // 模拟数据库存储
     private final Map<Long, User> userDatabase = new HashMap<>();
@@ -26,6 +32,7 @@ public class UserService {
     }
     
     @Cacheable(value = "users", key = "#id")
+    @CacheTags(cacheNames = "users", key = "#id", tags = DOMAIN_TAG)
     public User getUserById(Long id) {
         logger.info("Fetching user from database with id: {}", id);
         // 模拟数据库查询延迟
@@ -38,6 +45,7 @@ public class UserService {
     }
     
     @CachePut(value = "users", key = "#user.id")
+    @CacheTags(cacheNames = "users", key = "#user.id", tags = DOMAIN_TAG)
     public User saveUser(User user) {
         logger.info("Saving user to database: {}", user);
         userDatabase.put(user.getId(), user);
@@ -50,6 +58,12 @@ public class UserService {
         userDatabase.remove(id);
     }
     
+    @CacheEvictByTag(cacheNames = "users", tags = "'domain:' + #domain")
+    public void deleteUsersByDomain(String domain) {
+        logger.info("Deleting users with email domain: {}", domain);
+        userDatabase.values().removeIf(user -> user.getEmail() != null && user.getEmail().endsWith("@" + domain));
+    }
+    
     @CacheEvict(value = "users", allEntries = true)
     public void clearAllUsers() {
         logger.info("Clearing all users from cache");
@@ -0,0 +1,85 @@
+package com.acme.monitor.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按目标采样速率自动调整概率的采样器
+ *
+ * 每个调整周期根据上一周期的调用速率重新计算采样概率，使每秒的样本数不超过目标值。
+ * 概率取2的负整数次幂，被采样的调用带上整数权重（概率的倒数），按权重累加即可得到无偏的调用次数和总耗时。
+ * 判断是否采样只需要一次计数和一次线程本地随机数，不加锁、不分配对象。
+ */
+public class AdaptiveSampler {
+    /**
+     * 最低采样概率为 1/2^20
+     */
+    static final int MAX_SHIFT = 20;
+
+    private final double targetPerSecond;
+    private final long intervalNanos;
+    private final LongAdder calls = new LongAdder();
+    private final AtomicLong nextAdjustAt;
+    private long lastAdjustAt;
+    private volatile int shift;
+
+    /**
+     * @param targetPerSecond 每秒的目标样本数
+     * @param intervalNanos   调整周期
+     * @param nowNanos        当前的 {@link System#nanoTime()}
+     */
+    public AdaptiveSampler(double targetPerSecond, long intervalNanos, long nowNanos) {
+        if (targetPerSecond <= 0 || intervalNanos <= 0) {
+            throw new IllegalArgumentException("Invalid sampling target: " + targetPerSecond + "/s every "
+                    + intervalNanos + "ns");
+        }
+        this.targetPerSecond = targetPerSecond;
+        this.intervalNanos = intervalNanos;
+        this.lastAdjustAt = nowNanos;
+        this.nextAdjustAt = new AtomicLong(nowNanos + intervalNanos);
+    }
+
+    /**
+     * 登记一次调用并决定是否采样
+     *
+     * @param nowNanos 当前的 {@link System#nanoTime()}，调用方计时用到的值可以直接传入
+     * @return 0表示不采样，否则为本次样本的权重
+     */
+    public int sample(long nowNanos) {
+        calls.increment();
+        long next = nextAdjustAt.get();
+        // 只有一个线程能完成CAS并执行调整
+        if (nowNanos - next >= 0 && nextAdjustAt.compareAndSet(next, nowNanos + intervalNanos)) {
+            adjust(nowNanos);
+        }
+        int s = shift;
+        if (s == 0) {
+            return 1;
+        }
+        return (ThreadLocalRandom.current().nextInt() & ((1 << s) - 1)) == 0 ? 1 << s : 0;
+    }
+
+    private void adjust(long nowNanos) {
+        long count = calls.sumThenReset();
+        double seconds = (nowNanos - lastAdjustAt) / 1e9;
+        lastAdjustAt = nowNanos;
+        double rate = seconds > 0 ? count / seconds : 0;
+        int s = 0;
+        while (s < MAX_SHIFT && rate / (1 << s) > targetPerSecond) {
+            s++;
+        }
+        shift = s;
+    }
+
+    /**
+     * 当前的采样概率
+     */
+    public double getProbability() {
+        return 1.0 / (1 << shift);
+    }
+
+    public double getTargetPerSecond() {
+        return targetPerSecond;
+    }
+}
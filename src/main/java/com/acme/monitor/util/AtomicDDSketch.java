@@ -0,0 +1,92 @@
+package com.acme.monitor.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * 无锁写入的DDSketch记录器
+ *
+ * 使用与 {@link DDSketch} 默认配置相同的对数分桶（相对误差1%），下标范围固定，
+ * 覆盖 {@link #MIN_VALUE} ~ {@link #MAX_VALUE}，超出范围的值记入两端的桶。
+ * 写入只有一次 {@link AtomicLongArray} 自增、一次 {@link DoubleAdder} 累加，min/max只在变化时CAS，不加锁也不分配对象；
+ * 读取时转换为普通的 {@link DDSketch} 用于合并和序列化。
+ */
+public class AtomicDDSketch {
+    /**
+     * 可区分的最小值，更小的值记入零桶，与 {@link DDSketch} 一致
+     */
+    static final double MIN_VALUE = 1e-6;
+    /**
+     * 可区分的最大值，按毫秒约为11天
+     */
+    static final double MAX_VALUE = 1e9;
+
+    private static final double LOG_GAMMA = Math.log((1 + DDSketch.DEFAULT_RELATIVE_ACCURACY)
+            / (1 - DDSketch.DEFAULT_RELATIVE_ACCURACY));
+    static final int MIN_INDEX = index(MIN_VALUE);
+    static final int MAX_INDEX = index(MAX_VALUE);
+    private static final int ZERO = MAX_INDEX - MIN_INDEX + 1;
+
+    // [MIN_INDEX..MAX_INDEX 的桶, 零桶]
+    private final AtomicLongArray counts = new AtomicLongArray(ZERO + 1);
+    private final DoubleAdder sum = new DoubleAdder();
+    // 非负double的位模式与数值大小顺序一致，可以直接比较
+    private final AtomicLong minBits = new AtomicLong(Double.doubleToRawLongBits(Double.POSITIVE_INFINITY));
+    private final AtomicLong maxBits = new AtomicLong(0);
+
+    private static int index(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    /**
+     * 记录一个非负值出现了 n 次
+     */
+    public void accept(double value, long n) {
+        if (Double.isNaN(value) || value < 0 || n <= 0) {
+            return;
+        }
+        if (value < MIN_VALUE) {
+            counts.addAndGet(ZERO, n);
+        } else {
+            int index = Math.min(MAX_INDEX, Math.max(MIN_INDEX, index(value)));
+            counts.addAndGet(index - MIN_INDEX, n);
+        }
+        sum.add(value * n);
+        long bits = Double.doubleToRawLongBits(value);
+        long current = minBits.get();
+        while (bits < current && !minBits.compareAndSet(current, bits)) {
+            current = minBits.get();
+        }
+        current = maxBits.get();
+        while (bits > current && !maxBits.compareAndSet(current, bits)) {
+            current = maxBits.get();
+        }
+    }
+
+    /**
+     * 清零，调用方需要保证此时没有并发写入
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        minBits.set(Double.doubleToRawLongBits(Double.POSITIVE_INFINITY));
+        maxBits.set(0);
+    }
+
+    /**
+     * 转换为 {@link DDSketch}，与并发写入同时进行时结果是近似的快照
+     */
+    public DDSketch toSketch() {
+        long[] buckets = new long[ZERO];
+        for (int i = 0; i < ZERO; i++) {
+            buckets[i] = counts.get(i);
+        }
+        DDSketch sketch = new DDSketch();
+        sketch.addBuckets(buckets, MIN_INDEX, counts.get(ZERO), sum.sum(),
+                Double.longBitsToDouble(minBits.get()), Double.longBitsToDouble(maxBits.get()));
+        return sketch;
+    }
+}
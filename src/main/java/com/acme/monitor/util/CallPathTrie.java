@@ -0,0 +1,280 @@
+package com.acme.monitor.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按调用路径聚合耗时的前缀树，用于生成火焰图
+ *
+ * 每个节点对应从根开始的一条调用路径，记录该路径上span的次数、总耗时和自身耗时（去掉子span后的耗时）；
+ * 也可以记录采样得到的线程栈，每个样本按采样间隔计入路径上所有节点的总耗时和栈顶节点的自身耗时。
+ * 节点数达到上限后，新的路径归入所在父节点下的 {@link #TRUNCATED} 节点，内存有上限。
+ * 输出时节点的宽度为自身耗时加上所有子节点的宽度，跨线程的子span也能正确嵌套。
+ *
+ * 该类不是线程安全的。
+ */
+public class CallPathTrie {
+    /**
+     * 超过节点上限后新路径归入的节点名称
+     */
+    public static final String TRUNCATED = "[truncated]";
+
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private final int maxNodes;
+    private final Node root;
+    private int nodeCount;
+
+    public CallPathTrie(String rootName, int maxNodes) {
+        this.root = new Node(rootName);
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * 记录一个已结束的span
+     *
+     * @param frames     从根到该span的帧名称，最后一个是span自身
+     * @param depth      frames 中有效的数量
+     * @param totalNanos span的总耗时
+     * @param selfNanos  span的自身耗时
+     */
+    public void addSpan(String[] frames, int depth, long totalNanos, long selfNanos) {
+        Node node = root;
+        for (int i = 0; i < depth; i++) {
+            node = child(node, frames[i]);
+        }
+        node.count++;
+        node.totalNanos += totalNanos;
+        node.selfNanos += selfNanos;
+    }
+
+    /**
+     * 记录一个采样得到的线程栈
+     *
+     * @param frames      从栈底到栈顶的帧名称
+     * @param depth       frames 中有效的数量
+     * @param weightNanos 样本代表的时间，通常为采样间隔
+     */
+    public void addSample(String[] frames, int depth, long weightNanos) {
+        Node node = root;
+        for (int i = 0; i < depth; i++) {
+            node = child(node, frames[i]);
+            node.totalNanos += weightNanos;
+        }
+        node.count++;
+        node.selfNanos += weightNanos;
+    }
+
+    /**
+     * 把另一棵树的数据累加到本树
+     */
+    public void merge(CallPathTrie other) {
+        merge(root, other.root);
+    }
+
+    private void merge(Node into, Node from) {
+        into.count += from.count;
+        into.totalNanos += from.totalNanos;
+        into.selfNanos += from.selfNanos;
+        if (from.children != null) {
+            for (Node child : from.children.values()) {
+                merge(child(into, child.name), child);
+            }
+        }
+    }
+
+    private Node child(Node parent, String name) {
+        if (parent.children == null) {
+            parent.children = new HashMap<>();
+        }
+        Node child = parent.children.get(name);
+        if (child == null) {
+            if (nodeCount >= maxNodes && !TRUNCATED.equals(name)) {
+                // 达到上限，其下的路径都归入同一个节点
+                return TRUNCATED.equals(parent.name) ? parent : child(parent, TRUNCATED);
+            }
+            child = new Node(name);
+            parent.children.put(name, child);
+            nodeCount++;
+        }
+        return child;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public boolean isEmpty() {
+        return nodeCount == 0;
+    }
+
+    /**
+     * 输出折叠栈格式（flamegraph.pl、speedscope等工具可直接读取）
+     * 每行为分号分隔的调用路径和该路径的自身耗时（微秒），自身耗时不足1微秒的路径不输出
+     */
+    public void writeFolded(StringBuilder out) {
+        if (root.children == null) {
+            return;
+        }
+        StringBuilder path = new StringBuilder();
+        for (Node child : root.children.values()) {
+            writeFolded(child, path, out);
+        }
+    }
+
+    private void writeFolded(Node node, StringBuilder path, StringBuilder out) {
+        int length = path.length();
+        if (length > 0) {
+            path.append(';');
+        }
+        // 分号是帧分隔符
+        path.append(node.name.replace(';', ':'));
+        long selfMicros = node.selfNanos / NANOS_PER_MICRO;
+        if (selfMicros > 0) {
+            out.append(path).append(' ').append(selfMicros).append('\n');
+        }
+        if (node.children != null) {
+            for (Node child : node.children.values()) {
+                writeFolded(child, path, out);
+            }
+        }
+        path.setLength(length);
+    }
+
+    /**
+     * 输出嵌套的JSON树（d3-flame-graph格式），value为节点宽度（微秒），子节点按宽度降序排列
+     */
+    public Map<String, Object> toTree() {
+        computeWidth(root);
+        return toTree(root);
+    }
+
+    private static Map<String, Object> toTree(Node node) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", node.name);
+        map.put("value", node.width / NANOS_PER_MICRO);
+        map.put("self", node.selfNanos / NANOS_PER_MICRO);
+        map.put("total", node.totalNanos / NANOS_PER_MICRO);
+        map.put("count", node.count);
+        List<Map<String, Object>> children = new ArrayList<>();
+        for (Node child : sortedChildren(node)) {
+            children.add(toTree(child));
+        }
+        map.put("children", children);
+        return map;
+    }
+
+    /**
+     * 输出按深度优先排列的嵌套集合（Grafana火焰图面板的 level/label/value/self 格式），值为微秒
+     */
+    public List<Map<String, Object>> toLevels() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        computeWidth(root);
+        toLevels(root, 0, rows);
+        return rows;
+    }
+
+    private static void toLevels(Node node, int level, List<Map<String, Object>> rows) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("level", level);
+        row.put("label", node.name);
+        row.put("value", node.width / NANOS_PER_MICRO);
+        row.put("self", node.selfNanos / NANOS_PER_MICRO);
+        rows.add(row);
+        for (Node child : sortedChildren(node)) {
+            toLevels(child, level + 1, rows);
+        }
+    }
+
+    /**
+     * 按帧名称汇总的耗时排行，按自身耗时降序
+     * total 为包含子调用的耗时，递归调用只计算最外层；百分比相对于整棵树的宽度
+     */
+    public List<Map<String, Object>> topFrames(int limit) {
+        long all = computeWidth(root);
+        Map<String, long[]> frames = new HashMap<>();
+        if (root.children != null) {
+            Map<String, Integer> onPath = new HashMap<>();
+            for (Node child : root.children.values()) {
+                sumFrames(child, frames, onPath);
+            }
+        }
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(frames.entrySet());
+        entries.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                ? Long.compare(b.getValue()[0], a.getValue()[0]) : Long.compare(b.getValue()[1], a.getValue()[1]));
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            long[] value = entries.get(i).getValue();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("frame", entries.get(i).getKey());
+            row.put("self", value[0] / NANOS_PER_MICRO);
+            row.put("total", value[1] / NANOS_PER_MICRO);
+            row.put("self_pct", all == 0 ? 0 : Math.round(value[0] * 10000.0 / all) / 100.0);
+            row.put("total_pct", all == 0 ? 0 : Math.round(value[1] * 10000.0 / all) / 100.0);
+            result.add(row);
+        }
+        return result;
+    }
+
+    private static void sumFrames(Node node, Map<String, long[]> frames, Map<String, Integer> onPath) {
+        long[] value = frames.computeIfAbsent(node.name, k -> new long[2]);
+        value[0] += node.selfNanos;
+        Integer nested = onPath.get(node.name);
+        if (nested == null) {
+            value[1] += node.width;
+        }
+        onPath.put(node.name, nested == null ? 1 : nested + 1);
+        if (node.children != null) {
+            for (Node child : node.children.values()) {
+                sumFrames(child, frames, onPath);
+            }
+        }
+        if (nested == null) {
+            onPath.remove(node.name);
+        } else {
+            onPath.put(node.name, nested);
+        }
+    }
+
+    /**
+     * 节点宽度：自身耗时加上所有子节点的宽度
+     * 同线程的span中等于总耗时；异步子span在其他线程执行，宽度会大于父span的总耗时
+     */
+    private static long computeWidth(Node node) {
+        long width = node.selfNanos;
+        if (node.children != null) {
+            for (Node child : node.children.values()) {
+                width += computeWidth(child);
+            }
+        }
+        node.width = width;
+        return width;
+    }
+
+    private static List<Node> sortedChildren(Node node) {
+        if (node.children == null) {
+            return Collections.emptyList();
+        }
+        List<Node> children = new ArrayList<>(node.children.values());
+        children.sort((a, b) -> Long.compare(b.width, a.width));
+        return children;
+    }
+
+    private static final class Node {
+        final String name;
+        Map<String, Node> children;
+        long count;
+        long totalNanos;
+        long selfNanos;
+        // 输出前计算
+        long width;
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+}
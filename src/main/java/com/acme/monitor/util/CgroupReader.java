@@ -0,0 +1,300 @@
+package com.acme.monitor.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 当前进程所在cgroup的CPU、内存限制与压力读取器，支持cgroup v1和v2
+ *
+ * 创建时根据 /proc/self/cgroup 定位cgroup目录，之后每个伪文件通过 {@link ProcFileReader} 复用文件通道读取，
+ * 采样过程不创建对象。读取结果按下标写入long数组，文件不存在（如cgroup v1没有PSI）的字段为-1，
+ * 没有限制（"max"、-1或接近Long.MAX_VALUE的值）的字段为 {@link #UNLIMITED}。
+ * 非线程安全，只应在一个采样线程中使用。
+ */
+public class CgroupReader implements Closeable {
+    /**
+     * CPU配额（微秒/周期）
+     */
+    public static final int CPU_QUOTA_USEC = 0;
+    /**
+     * CPU调度周期（微秒）
+     */
+    public static final int CPU_PERIOD_USEC = 1;
+    /**
+     * 累计CPU使用时间（微秒）
+     */
+    public static final int CPU_USAGE_USEC = 2;
+    /**
+     * 累计调度周期数
+     */
+    public static final int CPU_NR_PERIODS = 3;
+    /**
+     * 累计被限流的周期数
+     */
+    public static final int CPU_NR_THROTTLED = 4;
+    /**
+     * 累计被限流的时间（微秒）
+     */
+    public static final int CPU_THROTTLED_USEC = 5;
+    /**
+     * 当前内存使用量（字节）
+     */
+    public static final int MEMORY_CURRENT = 6;
+    /**
+     * 内存上限（字节）
+     */
+    public static final int MEMORY_MAX = 7;
+    /**
+     * PSI：至少一个任务因等待CPU停顿的累计时间（微秒），以下PSI字段同理
+     */
+    public static final int CPU_PRESSURE_SOME_USEC = 8;
+    public static final int MEMORY_PRESSURE_SOME_USEC = 9;
+    public static final int MEMORY_PRESSURE_FULL_USEC = 10;
+    public static final int IO_PRESSURE_SOME_USEC = 11;
+    public static final int IO_PRESSURE_FULL_USEC = 12;
+    public static final int FIELDS = 13;
+
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    /**
+     * cgroup v1 没有设置内存上限时 limit_in_bytes 为按页对齐的 Long.MAX_VALUE
+     */
+    private static final long V1_UNLIMITED_THRESHOLD = 1L << 60;
+
+    private static final byte[] MAX = "max".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MINUS = "-".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] USAGE_USEC = "usage_usec".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NR_PERIODS = "nr_periods".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NR_THROTTLED = "nr_throttled".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] THROTTLED_USEC = "throttled_usec".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] THROTTLED_TIME = "throttled_time".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SOME = "some".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FULL = "full".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TOTAL = "total=".getBytes(StandardCharsets.US_ASCII);
+
+    private final int version;
+    private final Path cpuDir;
+    private final Path memoryDir;
+    // v2: cpu.max；v1: cpu.cfs_quota_us
+    private ProcFileReader cpuQuota;
+    // v1: cpu.cfs_period_us
+    private ProcFileReader cpuPeriod;
+    // v1: cpuacct.usage（纳秒），v2从cpu.stat的usage_usec读取
+    private ProcFileReader cpuUsage;
+    private ProcFileReader cpuStat;
+    private ProcFileReader memoryCurrent;
+    private ProcFileReader memoryMax;
+    private ProcFileReader cpuPressure;
+    private ProcFileReader memoryPressure;
+    private ProcFileReader ioPressure;
+
+    /**
+     * 读取当前进程的cgroup
+     */
+    public static CgroupReader forCurrentProcess() {
+        return new CgroupReader(Paths.get("/sys/fs/cgroup"), Paths.get("/proc/self/cgroup"));
+    }
+
+    /**
+     * @param mountRoot  cgroup文件系统的挂载点，通常为 /sys/fs/cgroup
+     * @param procCgroup 进程的cgroup描述文件，通常为 /proc/self/cgroup
+     */
+    public CgroupReader(Path mountRoot, Path procCgroup) {
+        List<String> lines = readLines(procCgroup);
+        if (Files.exists(mountRoot.resolve("cgroup.controllers"))) {
+            version = 2;
+            cpuDir = resolve(mountRoot, cgroupPath(lines, null), "cpu.stat");
+            memoryDir = cpuDir;
+            cpuQuota = reader(cpuDir, "cpu.max");
+            cpuStat = reader(cpuDir, "cpu.stat");
+            memoryCurrent = reader(memoryDir, "memory.current");
+            memoryMax = reader(memoryDir, "memory.max");
+            cpuPressure = reader(cpuDir, "cpu.pressure");
+            memoryPressure = reader(memoryDir, "memory.pressure");
+            ioPressure = reader(cpuDir, "io.pressure");
+        } else if (cgroupPath(lines, "cpu") != null || cgroupPath(lines, "memory") != null) {
+            version = 1;
+            cpuDir = resolve(controllerRoot(mountRoot, lines, "cpu"), cgroupPath(lines, "cpu"), "cpu.stat");
+            memoryDir = resolve(controllerRoot(mountRoot, lines, "memory"), cgroupPath(lines, "memory"),
+                    "memory.usage_in_bytes");
+            Path cpuacctDir = resolve(controllerRoot(mountRoot, lines, "cpuacct"), cgroupPath(lines, "cpuacct"),
+                    "cpuacct.usage");
+            cpuQuota = reader(cpuDir, "cpu.cfs_quota_us");
+            cpuPeriod = reader(cpuDir, "cpu.cfs_period_us");
+            cpuUsage = reader(cpuacctDir, "cpuacct.usage");
+            cpuStat = reader(cpuDir, "cpu.stat");
+            memoryCurrent = reader(memoryDir, "memory.usage_in_bytes");
+            memoryMax = reader(memoryDir, "memory.limit_in_bytes");
+        } else {
+            version = 0;
+            cpuDir = null;
+            memoryDir = null;
+        }
+    }
+
+    /**
+     * @return 2、1，不在cgroup中或无法识别时为0
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public Path getCpuDir() {
+        return cpuDir;
+    }
+
+    public Path getMemoryDir() {
+        return memoryDir;
+    }
+
+    /**
+     * 读取所有字段，下标见本类的常量
+     *
+     * @param out 长度至少为 {@link #FIELDS}
+     * @return 不在cgroup中时返回false
+     */
+    public boolean read(long[] out) {
+        Arrays.fill(out, 0, FIELDS, -1);
+        if (version == 0) {
+            return false;
+        }
+        if (version == 2) {
+            // cpu.max: "$MAX $PERIOD"，$MAX 为 max 表示不限制
+            if (cpuQuota.read()) {
+                out[CPU_QUOTA_USEC] = cpuQuota.startsWith(MAX) ? UNLIMITED : cpuQuota.nextLong();
+                out[CPU_PERIOD_USEC] = cpuQuota.nextLong();
+            }
+            if (cpuStat.read()) {
+                out[CPU_USAGE_USEC] = field(cpuStat, USAGE_USEC);
+                out[CPU_NR_PERIODS] = field(cpuStat, NR_PERIODS);
+                out[CPU_NR_THROTTLED] = field(cpuStat, NR_THROTTLED);
+                out[CPU_THROTTLED_USEC] = field(cpuStat, THROTTLED_USEC);
+            }
+            out[MEMORY_CURRENT] = single(memoryCurrent);
+            if (memoryMax.read()) {
+                out[MEMORY_MAX] = memoryMax.startsWith(MAX) ? UNLIMITED : memoryMax.nextLong();
+            }
+            if (cpuPressure.read()) {
+                out[CPU_PRESSURE_SOME_USEC] = pressureTotal(cpuPressure, SOME);
+            }
+            if (memoryPressure.read()) {
+                out[MEMORY_PRESSURE_SOME_USEC] = pressureTotal(memoryPressure, SOME);
+                out[MEMORY_PRESSURE_FULL_USEC] = pressureTotal(memoryPressure, FULL);
+            }
+            if (ioPressure.read()) {
+                out[IO_PRESSURE_SOME_USEC] = pressureTotal(ioPressure, SOME);
+                out[IO_PRESSURE_FULL_USEC] = pressureTotal(ioPressure, FULL);
+            }
+        } else {
+            if (cpuQuota.read()) {
+                out[CPU_QUOTA_USEC] = cpuQuota.startsWith(MINUS) ? UNLIMITED : cpuQuota.nextLong();
+            }
+            out[CPU_PERIOD_USEC] = single(cpuPeriod);
+            long usageNanos = single(cpuUsage);
+            out[CPU_USAGE_USEC] = usageNanos < 0 ? -1 : usageNanos / 1000;
+            if (cpuStat.read()) {
+                out[CPU_NR_PERIODS] = field(cpuStat, NR_PERIODS);
+                out[CPU_NR_THROTTLED] = field(cpuStat, NR_THROTTLED);
+                long throttledNanos = field(cpuStat, THROTTLED_TIME);
+                out[CPU_THROTTLED_USEC] = throttledNanos < 0 ? -1 : throttledNanos / 1000;
+            }
+            out[MEMORY_CURRENT] = single(memoryCurrent);
+            long limit = single(memoryMax);
+            out[MEMORY_MAX] = limit >= V1_UNLIMITED_THRESHOLD ? UNLIMITED : limit;
+        }
+        return true;
+    }
+
+    private static long single(ProcFileReader reader) {
+        return reader.read() ? reader.nextLong() : -1;
+    }
+
+    private static long field(ProcFileReader reader, byte[] name) {
+        return reader.findLine(name) ? reader.nextLong() : -1;
+    }
+
+    /**
+     * 解析PSI文件中 some/full 行的 total 字段，如 "some avg10=0.00 avg60=0.00 avg300=0.00 total=12345"
+     */
+    private static long pressureTotal(ProcFileReader reader, byte[] kind) {
+        if (!reader.findLine(kind) || !reader.skipPast(TOTAL)) {
+            return -1;
+        }
+        return reader.nextLong();
+    }
+
+    private static ProcFileReader reader(Path dir, String file) {
+        return new ProcFileReader(dir.resolve(file), 1024);
+    }
+
+    /**
+     * 在 /proc/self/cgroup 中查找cgroup路径
+     *
+     * @param controller v1的控制器名称，为null时查找v2的统一层级（"0::/path"）
+     */
+    private static String cgroupPath(List<String> lines, String controller) {
+        for (String line : lines) {
+            String[] parts = line.split(":", 3);
+            if (parts.length < 3) {
+                continue;
+            }
+            if (controller == null ? parts[0].equals("0") && parts[1].isEmpty()
+                    : Arrays.asList(parts[1].split(",")).contains(controller)) {
+                return parts[2];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * v1各控制器单独挂载，目录名可能是合并后的名称，如 cpu,cpuacct
+     */
+    private static Path controllerRoot(Path mountRoot, List<String> lines, String controller) {
+        for (String line : lines) {
+            String[] parts = line.split(":", 3);
+            if (parts.length == 3 && Arrays.asList(parts[1].split(",")).contains(controller)
+                    && Files.isDirectory(mountRoot.resolve(parts[1]))) {
+                return mountRoot.resolve(parts[1]);
+            }
+        }
+        return mountRoot.resolve(controller);
+    }
+
+    /**
+     * 拼接cgroup目录；容器内通常只挂载了自己的cgroup，/proc/self/cgroup 中却是宿主机视角的路径，
+     * 拼接后的目录下没有 probe 文件时退回挂载点本身
+     */
+    private static Path resolve(Path root, String cgroupPath, String probe) {
+        if (cgroupPath != null && cgroupPath.length() > 1) {
+            Path dir = root.resolve(cgroupPath.substring(1));
+            if (Files.exists(dir.resolve(probe))) {
+                return dir;
+            }
+        }
+        return root;
+    }
+
+    private static List<String> readLines(Path file) {
+        try {
+            return Files.readAllLines(file, StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ProcFileReader reader : new ProcFileReader[]{cpuQuota, cpuPeriod, cpuUsage, cpuStat, memoryCurrent,
+                memoryMax, cpuPressure, memoryPressure, ioPressure}) {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+}
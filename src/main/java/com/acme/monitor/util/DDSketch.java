@@ -0,0 +1,349 @@
+package com.acme.monitor.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * 可合并的分位数草图（DDSketch）
+ *
+ * 按 gamma = (1 + a) / (1 - a) 的对数间隔分桶，任意分位数的相对误差不超过 a（默认1%）。
+ * 与直方图快照里的p99不同，多个草图合并后得到的分位数仍满足同样的误差保证，
+ * 可以跨单元、跨时间窗口合并后再求全局分位数。
+ * 桶数量超过上限时合并最低的桶，只影响极低分位数的精度。
+ *
+ * 该类不是线程安全的，并发写入需要调用方加锁。
+ */
+public class DDSketch {
+    private static final int MAGIC = 0x44445331;
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+    /**
+     * 小于该值的数据计入零桶
+     */
+    private static final double MIN_INDEXABLE_VALUE = 1e-6;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBuckets;
+
+    private long[] counts = new long[0];
+    private int offset;
+    private int minIndex = Integer.MAX_VALUE;
+    private int maxIndex = Integer.MIN_VALUE;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+
+    public DDSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    public DDSketch(double relativeAccuracy, int maxBuckets) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        if (maxBuckets <= 0) {
+            throw new IllegalArgumentException("Max buckets must be positive: " + maxBuckets);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * 记录一个非负值
+     */
+    public void accept(double value) {
+        accept(value, 1);
+    }
+
+    /**
+     * 记录一个非负值出现了 n 次，用于带权重的采样数据
+     */
+    public void accept(double value, long n) {
+        if (Double.isNaN(value) || value < 0 || n <= 0) {
+            return;
+        }
+        if (value < MIN_INDEXABLE_VALUE) {
+            zeroCount += n;
+        } else {
+            add((int) Math.ceil(Math.log(value) / logGamma), n);
+        }
+        count += n;
+        sum += value * n;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * 合并另一个草图，两者的相对误差必须相同
+     */
+    public void merge(DDSketch other) {
+        if (Math.abs(other.relativeAccuracy - relativeAccuracy) > 1e-12) {
+            throw new IllegalArgumentException("Cannot merge sketches with relative accuracy "
+                    + relativeAccuracy + " and " + other.relativeAccuracy);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        for (int index = other.minIndex; index <= other.maxIndex; index++) {
+            long n = other.counts[index - other.offset];
+            if (n > 0) {
+                add(index, n);
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * 直接累加分桶计数和统计量，供 {@link AtomicDDSketch} 转换使用，分桶方式必须与本草图相同
+     *
+     * @param buckets    从 firstIndex 开始的连续桶计数
+     * @param firstIndex buckets[0] 对应的桶下标
+     */
+    void addBuckets(long[] buckets, int firstIndex, long zeros, double valueSum, double valueMin, double valueMax) {
+        long total = zeros;
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] > 0) {
+                add(firstIndex + i, buckets[i]);
+                total += buckets[i];
+            }
+        }
+        if (total == 0) {
+            return;
+        }
+        zeroCount += zeros;
+        count += total;
+        sum += valueSum;
+        min = Math.min(min, valueMin);
+        max = Math.max(max, valueMax);
+    }
+
+    /**
+     * 获取分位数，没有数据时返回0
+     *
+     * @param quantile 0~1
+     */
+    public double getValueAtQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        double rank = quantile * (count - 1);
+        long cumulative = zeroCount;
+        if (rank < cumulative) {
+            return min;
+        }
+        for (int index = minIndex; index <= maxIndex; index++) {
+            cumulative += counts[index - offset];
+            if (cumulative > rank) {
+                double value = 2 * Math.pow(gamma, index) / (gamma + 1);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    private void add(int index, long n) {
+        if (minIndex > maxIndex) {
+            ensureRange(index, index);
+            minIndex = index;
+            maxIndex = index;
+            counts[index - offset] += n;
+            return;
+        }
+        int newMax = Math.max(maxIndex, index);
+        int lowest = newMax - maxBuckets + 1;
+        if (minIndex < lowest) {
+            // 超过桶数量上限，把最低的桶合并到保留范围的第一个桶
+            long collapsed = 0;
+            for (int k = minIndex; k <= Math.min(maxIndex, lowest - 1); k++) {
+                collapsed += counts[k - offset];
+                counts[k - offset] = 0;
+            }
+            minIndex = lowest;
+            maxIndex = Math.max(maxIndex, lowest);
+            ensureRange(lowest, newMax);
+            counts[lowest - offset] += collapsed;
+        }
+        index = Math.max(index, lowest);
+        int newMin = Math.min(minIndex, index);
+        ensureRange(newMin, newMax);
+        minIndex = newMin;
+        maxIndex = newMax;
+        counts[index - offset] += n;
+    }
+
+    /**
+     * 保证 [low, high] 范围的桶都在数组内，需要扩容时保留当前已用范围的数据
+     */
+    private void ensureRange(int low, int high) {
+        if (low - offset >= 0 && high - offset < counts.length) {
+            return;
+        }
+        int needed = Math.max(high, maxIndex == Integer.MIN_VALUE ? high : maxIndex)
+                - Math.min(low, minIndex == Integer.MAX_VALUE ? low : minIndex) + 1;
+        int length = Math.max(64, Math.min(needed * 2, needed + maxBuckets));
+        int newOffset = Math.min(low, minIndex == Integer.MAX_VALUE ? low : minIndex) - (length - needed) / 2;
+        long[] resized = new long[length];
+        if (minIndex <= maxIndex) {
+            int from = Math.max(minIndex, offset);
+            int to = Math.min(maxIndex, offset + counts.length - 1);
+            if (from <= to) {
+                System.arraycopy(counts, from - offset, resized, from - newOffset, to - from + 1);
+            }
+        }
+        counts = resized;
+        offset = newOffset;
+    }
+
+    public DDSketch copy() {
+        DDSketch copy = new DDSketch(relativeAccuracy, maxBuckets);
+        copy.merge(this);
+        return copy;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * 序列化为紧凑的二进制格式，桶计数使用变长整数编码
+     */
+    public byte[] serialize() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (minIndex > maxIndex ? 0 : maxIndex - minIndex + 1));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeDouble(relativeAccuracy);
+            out.writeInt(maxBuckets);
+            writeVarLong(out, count);
+            writeVarLong(out, zeroCount);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            out.writeDouble(sum);
+            if (minIndex > maxIndex) {
+                out.writeInt(0);
+                writeVarLong(out, 0);
+            } else {
+                out.writeInt(minIndex);
+                writeVarLong(out, maxIndex - minIndex + 1);
+                for (int index = minIndex; index <= maxIndex; index++) {
+                    writeVarLong(out, counts[index - offset]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从 {@link #serialize()} 的结果还原，只接受默认相对误差的草图
+     *
+     * @throws IllegalArgumentException 数据格式不正确
+     */
+    public static DDSketch deserialize(byte[] data) {
+        return deserialize(data, DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * 从 {@link #serialize()} 的结果还原
+     * 数据可能来自外部请求：桶数量上限不采用数据中的值，固定为 {@link #DEFAULT_MAX_BUCKETS}，超过上限的数据在分配数组前拒绝；
+     * 相对误差不同的草图合并后分位数不正确，也直接拒绝。
+     *
+     * @param expectedAccuracy 本地草图的相对误差
+     * @throws IllegalArgumentException 数据格式不正确或相对误差不一致
+     */
+    public static DDSketch deserialize(byte[] data, double expectedAccuracy) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a serialized DDSketch");
+            }
+            double relativeAccuracy = in.readDouble();
+            if (!(Math.abs(relativeAccuracy - expectedAccuracy) <= 1e-12)) {
+                throw new IllegalArgumentException("Relative accuracy " + relativeAccuracy
+                        + " does not match " + expectedAccuracy);
+            }
+            // 发送方的桶数量上限，不采用
+            in.readInt();
+            DDSketch sketch = new DDSketch(expectedAccuracy, DEFAULT_MAX_BUCKETS);
+            sketch.count = readCount(in);
+            sketch.zeroCount = readCount(in);
+            sketch.min = in.readDouble();
+            sketch.max = in.readDouble();
+            sketch.sum = in.readDouble();
+            int firstIndex = in.readInt();
+            long buckets = readCount(in);
+            if (buckets > sketch.maxBuckets || firstIndex > Integer.MAX_VALUE - buckets + 1) {
+                throw new IllegalArgumentException("Invalid bucket range: " + firstIndex + "+" + buckets);
+            }
+            if (buckets > 0) {
+                sketch.counts = new long[(int) buckets];
+                sketch.offset = firstIndex;
+                sketch.minIndex = firstIndex;
+                sketch.maxIndex = (int) (firstIndex + buckets - 1);
+                for (int i = 0; i < buckets; i++) {
+                    sketch.counts[i] = readCount(in);
+                }
+            }
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Truncated DDSketch data", e);
+        }
+    }
+
+    private static long readCount(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative count: " + value);
+        }
+        return value;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
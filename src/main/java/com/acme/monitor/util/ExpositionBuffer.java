@@ -0,0 +1,196 @@
+package com.acme.monitor.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 可复用的文本输出缓冲区
+ *
+ * 用于把指标文本直接写入响应流：字节先写入固定大小的缓冲区，满了之后整块写出；
+ * 开启gzip时由复用的 {@link Deflater} 压缩后写出，自行输出gzip头和尾，避免每次请求创建 GZIPOutputStream。
+ * 数字直接按ASCII写入，整数和能精确表示为9位小数的值不创建字符串。
+ *
+ * 该类不是线程安全的，同一时间只能用于一个响应。
+ */
+public class ExpositionBuffer implements AutoCloseable {
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final long FRACTION_SCALE = 1_000_000_000L;
+    private static final int FRACTION_DIGITS = 9;
+    private static final byte[] NAN = {'N', 'a', 'N'};
+    private static final byte[] POSITIVE_INFINITY = {'+', 'I', 'n', 'f'};
+    private static final byte[] NEGATIVE_INFINITY = {'-', 'I', 'n', 'f'};
+
+    private final byte[] buffer;
+    private final byte[] deflated;
+    private final byte[] digits = new byte[20];
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private int position;
+    private OutputStream out;
+    private boolean gzip;
+
+    public ExpositionBuffer(int size) {
+        this.buffer = new byte[size];
+        this.deflated = new byte[size];
+    }
+
+    /**
+     * 开始写入一个新的响应
+     */
+    public void begin(OutputStream out, boolean gzip) throws IOException {
+        this.out = out;
+        this.gzip = gzip;
+        this.position = 0;
+        if (gzip) {
+            crc.reset();
+            deflater.reset();
+            out.write(GZIP_HEADER);
+        }
+    }
+
+    public void write(byte b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = b;
+    }
+
+    public void write(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            int n = Math.min(bytes.length - offset, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, n);
+            position += n;
+            offset += n;
+        }
+    }
+
+    /**
+     * 写入ASCII字符串，仅用于少见的格式（如科学计数法）
+     */
+    public void writeAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            write((byte) text.charAt(i));
+        }
+    }
+
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            write((byte) '-');
+            value = -value;
+        }
+        int n = digits.length;
+        do {
+            digits[--n] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        writeDigits(n, digits.length);
+    }
+
+    /**
+     * 写入浮点数，输出解析后与原值完全相同
+     * 整数和最多9位小数能精确表示的值直接写入，其他值退回 {@link Double#toString(double)}
+     */
+    public void writeDouble(double value) throws IOException {
+        if (Double.isNaN(value)) {
+            write(NAN);
+            return;
+        }
+        if (Double.isInfinite(value)) {
+            write(value > 0 ? POSITIVE_INFINITY : NEGATIVE_INFINITY);
+            return;
+        }
+        double abs = Math.abs(value);
+        if (abs < 1e15 && value == (long) value) {
+            writeLong((long) value);
+            return;
+        }
+        if (abs >= 1e-3 && abs < 1e9) {
+            long scaled = Math.round(abs * FRACTION_SCALE);
+            if ((double) scaled / FRACTION_SCALE == abs) {
+                if (value < 0) {
+                    write((byte) '-');
+                }
+                writeLong(scaled / FRACTION_SCALE);
+                write((byte) '.');
+                long fraction = scaled % FRACTION_SCALE;
+                int end = digits.length;
+                int n = end;
+                for (int i = 0; i < FRACTION_DIGITS; i++) {
+                    digits[--n] = (byte) ('0' + fraction % 10);
+                    fraction /= 10;
+                }
+                while (end > n + 1 && digits[end - 1] == '0') {
+                    end--;
+                }
+                writeDigits(n, end);
+                return;
+            }
+        }
+        writeAscii(Double.toString(value));
+    }
+
+    private void writeDigits(int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            write(digits[i]);
+        }
+    }
+
+    /**
+     * 写出剩余数据，gzip模式下输出压缩尾部
+     */
+    public void finish() throws IOException {
+        flushBuffer();
+        if (gzip) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                int n = deflater.deflate(deflated);
+                out.write(deflated, 0, n);
+            }
+            writeIntLE((int) crc.getValue());
+            writeIntLE((int) deflater.getBytesRead());
+        }
+        out.flush();
+        out = null;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        if (gzip) {
+            crc.update(buffer, 0, position);
+            deflater.setInput(buffer, 0, position);
+            while (!deflater.needsInput()) {
+                int n = deflater.deflate(deflated);
+                if (n > 0) {
+                    out.write(deflated, 0, n);
+                }
+            }
+        } else {
+            out.write(buffer, 0, position);
+        }
+        position = 0;
+    }
+
+    private void writeIntLE(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        out.write((value >>> 16) & 0xFF);
+        out.write((value >>> 24) & 0xFF);
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+    }
+}
@@ -0,0 +1,120 @@
+package com.acme.monitor.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link GorillaEncoder} 编码结果的解码器
+ *
+ * 用法：
+ * <pre>
+ *   GorillaDecoder decoder = new GorillaDecoder(buffer, offset, count);
+ *   while (decoder.next()) {
+ *       decoder.getTimestamp();
+ *       decoder.getValue();
+ *   }
+ * </pre>
+ */
+public class GorillaDecoder {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int count;
+
+    private int bitPosition;
+    private int read;
+    private long timestamp;
+    private long delta;
+    private long valueBits;
+    private int leadingZeros;
+    private int trailingZeros;
+
+    /**
+     * @param buffer 源缓冲区
+     * @param offset 编码区域起始字节偏移
+     * @param count  编码的点数
+     */
+    public GorillaDecoder(ByteBuffer buffer, int offset, int count) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.count = count;
+    }
+
+    /**
+     * 解码下一个点，没有更多数据时返回 false
+     */
+    public boolean next() {
+        if (read >= count) {
+            return false;
+        }
+        if (read == 0) {
+            timestamp = readBits(64);
+            valueBits = readBits(64);
+        } else {
+            delta += readTimestamp();
+            timestamp += delta;
+            readValue();
+        }
+        read++;
+        return true;
+    }
+
+    private long readTimestamp() {
+        if (readBits(1) == 0) {
+            return 0;
+        }
+        if (readBits(1) == 0) {
+            return signExtend(readBits(7), 7);
+        }
+        if (readBits(1) == 0) {
+            return signExtend(readBits(9), 9);
+        }
+        if (readBits(1) == 0) {
+            return signExtend(readBits(12), 12);
+        }
+        return readBits(64);
+    }
+
+    private void readValue() {
+        if (readBits(1) == 0) {
+            return;
+        }
+        if (readBits(1) == 1) {
+            leadingZeros = (int) readBits(5);
+            int significantBits = (int) readBits(6);
+            if (significantBits == 0) {
+                significantBits = 64;
+            }
+            trailingZeros = 64 - leadingZeros - significantBits;
+        }
+        long xor = readBits(64 - leadingZeros - trailingZeros) << trailingZeros;
+        valueBits ^= xor;
+    }
+
+    private long readBits(int bits) {
+        long result = 0;
+        while (bits > 0) {
+            int index = offset + (bitPosition >>> 3);
+            int bitInByte = bitPosition & 7;
+            int available = 8 - bitInByte;
+            int n = Math.min(available, bits);
+            int current = buffer.get(index) & 0xFF;
+            int chunk = (current >>> (available - n)) & ((1 << n) - 1);
+            result = (result << n) | chunk;
+            bitPosition += n;
+            bits -= n;
+        }
+        return result;
+    }
+
+    private static long signExtend(long value, int bits) {
+        int shift = 64 - bits;
+        return (value << shift) >> shift;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getValue() {
+        return Double.longBitsToDouble(valueBits);
+    }
+}
@@ -0,0 +1,148 @@
+package com.acme.monitor.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gorilla 风格的时间序列压缩编码
+ *
+ * 时间戳使用二阶差分（delta-of-delta）变长编码，数值使用与前一个值异或后只保存有效位的方式编码，
+ * 固定间隔采样、变化缓慢的指标每个点通常只需要几个bit。
+ * 编码直接写入调用方给定的 ByteBuffer 区域（可以是内存映射文件），按绝对位置读写，不改变 buffer 的 position。
+ *
+ * 时间戳格式：
+ * <pre>
+ *   '0'                     差分为0
+ *   '10'   + 7bit           [-64, 63]
+ *   '110'  + 9bit           [-256, 255]
+ *   '1110' + 12bit          [-2048, 2047]
+ *   '1111' + 64bit          其他
+ * </pre>
+ * 数值格式：'0' 与前值相同；'10' + 有效位（沿用上一个前导零/尾零窗口）；
+ * '11' + 5bit前导零 + 6bit有效位长度 + 有效位。
+ */
+public class GorillaEncoder {
+    /**
+     * 单个点最多占用的bit数，写入前用于判断剩余空间
+     */
+    public static final int MAX_BITS_PER_SAMPLE = 4 + 64 + 2 + 5 + 6 + 64;
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int capacityBits;
+
+    private int bitPosition;
+    private int count;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeadingZeros = Integer.MAX_VALUE;
+    private int lastTrailingZeros;
+
+    /**
+     * @param buffer        目标缓冲区
+     * @param offset        编码区域起始字节偏移
+     * @param capacityBytes 编码区域字节数
+     */
+    public GorillaEncoder(ByteBuffer buffer, int offset, int capacityBytes) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.capacityBits = capacityBytes * 8;
+    }
+
+    /**
+     * 追加一个点，剩余空间不足时返回 false 且不写入任何内容
+     * 时间戳需要单调不减
+     */
+    public boolean append(long timestamp, double value) {
+        if (capacityBits - bitPosition < MAX_BITS_PER_SAMPLE) {
+            return false;
+        }
+        long valueBits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            writeBits(timestamp, 64);
+            writeBits(valueBits, 64);
+            firstTimestamp = timestamp;
+        } else {
+            long delta = timestamp - lastTimestamp;
+            writeTimestamp(delta - lastDelta);
+            writeValue(valueBits);
+            lastDelta = delta;
+        }
+        lastTimestamp = timestamp;
+        lastValueBits = valueBits;
+        count++;
+        return true;
+    }
+
+    private void writeTimestamp(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writeBits(0, 1);
+        } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeValue(long valueBits) {
+        long xor = valueBits ^ lastValueBits;
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailingZeros = Long.numberOfTrailingZeros(xor);
+        if (leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+            writeBits(0b10, 2);
+            writeBits(xor >>> lastTrailingZeros, 64 - lastLeadingZeros - lastTrailingZeros);
+        } else {
+            int significantBits = 64 - leadingZeros - trailingZeros;
+            writeBits(0b11, 2);
+            writeBits(leadingZeros, 5);
+            // 有效位长度为64时记为0
+            writeBits(significantBits, 6);
+            writeBits(xor >>> trailingZeros, significantBits);
+            lastLeadingZeros = leadingZeros;
+            lastTrailingZeros = trailingZeros;
+        }
+    }
+
+    private void writeBits(long value, int bits) {
+        while (bits > 0) {
+            int index = offset + (bitPosition >>> 3);
+            int bitInByte = bitPosition & 7;
+            int free = 8 - bitInByte;
+            int n = Math.min(free, bits);
+            int chunk = (int) (value >>> (bits - n)) & ((1 << n) - 1);
+            int current = bitInByte == 0 ? 0 : buffer.get(index) & 0xFF;
+            buffer.put(index, (byte) (current | (chunk << (free - n))));
+            bitPosition += n;
+            bits -= n;
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getBitLength() {
+        return bitPosition;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+}
@@ -0,0 +1,251 @@
+package com.acme.monitor.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 无锁、按线程分段的滑动窗口延迟直方图
+ *
+ * 延迟以微秒记录到对数线性分桶中（与HdrHistogram相同的思路，每个2的幂区间16个桶，
+ * 相对误差约3%），所有计数存放在一个 {@link AtomicLongArray} 里：
+ * <pre>
+ * [slot][stripe][bucket 0..BUCKETS-1, 总数, 失败数, 延迟总和]
+ * </pre>
+ * 时间被切分成固定长度的slot，环形复用；进入新slot的第一个线程负责清零，
+ * 读取时合并最近若干个slot得到滑动窗口统计。写入路径只有原子自增，不加锁也不分配对象。
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final int MAX_EXPONENT = 29;
+    /**
+     * 可区分的最大延迟（微秒），约17分钟，更大的值记入最后一个桶
+     */
+    public static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKETS = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private static final int COUNT = BUCKETS;
+    private static final int ERRORS = BUCKETS + 1;
+    private static final int SUM = BUCKETS + 2;
+    private static final int STRIDE = BUCKETS + 3;
+    private static final long RESETTING = -1;
+
+    private final int stripes;
+    private final int slots;
+    private final long slotMillis;
+    private final LongSupplier clock;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray slotEpochs;
+
+    /**
+     * @param slots      环形slot数量，决定可查询的最大窗口
+     * @param slotMillis 每个slot的时间长度
+     * @param stripes    分段数，会向上取整到2的幂
+     */
+    public LatencyHistogram(int slots, long slotMillis, int stripes) {
+        this(slots, slotMillis, stripes, System::currentTimeMillis);
+    }
+
+    public LatencyHistogram(int slots, long slotMillis, int stripes, LongSupplier clock) {
+        this.stripes = Integer.highestOneBit(Math.max(1, stripes - 1)) << (stripes > 1 ? 1 : 0);
+        this.slots = slots;
+        this.slotMillis = slotMillis;
+        this.clock = clock;
+        this.counts = new AtomicLongArray(slots * this.stripes * STRIDE);
+        this.slotEpochs = new AtomicLongArray(slots);
+    }
+
+    /**
+     * 记录一次请求
+     *
+     * @param micros  延迟（微秒）
+     * @param success 是否成功
+     */
+    public void record(long micros, boolean success) {
+        long epoch = clock.getAsLong() / slotMillis;
+        int slot = (int) (epoch % slots);
+        long current = slotEpochs.get(slot);
+        if (current != epoch) {
+            rollover(slot, current, epoch);
+        }
+        int stripe = (int) (Thread.currentThread().getId() & (stripes - 1));
+        int base = (slot * stripes + stripe) * STRIDE;
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(base + bucketIndex(value));
+        counts.incrementAndGet(base + COUNT);
+        counts.addAndGet(base + SUM, value);
+        if (!success) {
+            counts.incrementAndGet(base + ERRORS);
+        }
+    }
+
+    /**
+     * slot进入新的时间段时清零，只有一个线程执行清零，其他线程短暂等待
+     */
+    private void rollover(int slot, long current, long epoch) {
+        while (current != epoch) {
+            if (current > epoch) {
+                // 时钟回拨时沿用当前slot
+                return;
+            }
+            if (current != RESETTING && slotEpochs.compareAndSet(slot, current, RESETTING)) {
+                int from = slot * stripes * STRIDE;
+                int to = from + stripes * STRIDE;
+                for (int i = from; i < to; i++) {
+                    counts.set(i, 0);
+                }
+                slotEpochs.set(slot, epoch);
+                return;
+            }
+            Thread.yield();
+            current = slotEpochs.get(slot);
+        }
+    }
+
+    /**
+     * 合并最近windowSlots个slot（包含当前未结束的slot）
+     */
+    public Snapshot snapshot(int windowSlots) {
+        return snapshotInto(windowSlots, newBucketBuffer());
+    }
+
+    /**
+     * 与 {@link #snapshot(int)} 相同，但把分桶计数合并到调用方提供的缓冲区中，避免每次分配
+     * 返回的结果引用该缓冲区，缓冲区再次被使用后结果随之改变
+     *
+     * @param buckets 由 {@link #newBucketBuffer()} 创建的缓冲区
+     */
+    public Snapshot snapshotInto(int windowSlots, long[] buckets) {
+        int window = Math.min(Math.max(1, windowSlots), slots);
+        long now = clock.getAsLong();
+        long epoch = now / slotMillis;
+        Arrays.fill(buckets, 0);
+        long count = 0;
+        long errors = 0;
+        long sum = 0;
+        for (long e = epoch - window + 1; e <= epoch; e++) {
+            if (e < 0) {
+                continue;
+            }
+            int slot = (int) (e % slots);
+            if (slotEpochs.get(slot) != e) {
+                continue;
+            }
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                int base = (slot * stripes + stripe) * STRIDE;
+                for (int i = 0; i < BUCKETS; i++) {
+                    buckets[i] += counts.get(base + i);
+                }
+                count += counts.get(base + COUNT);
+                errors += counts.get(base + ERRORS);
+                sum += counts.get(base + SUM);
+            }
+        }
+        // 当前slot只经过了一部分时间
+        long elapsedMillis = (window - 1) * slotMillis + (now % slotMillis);
+        return new Snapshot(buckets, count, errors, sum, Math.max(1, elapsedMillis));
+    }
+
+    /**
+     * 创建 {@link #snapshotInto(int, long[])} 使用的分桶缓冲区
+     */
+    public static long[] newBucketBuffer() {
+        return new long[BUCKETS];
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        if (value > MAX_VALUE) {
+            return BUCKETS - 1;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        return (1L << exponent) | ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+    }
+
+    static long bucketWidth(int index) {
+        if (index < LINEAR_LIMIT) {
+            return 1;
+        }
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        return 1L << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * 滑动窗口统计结果
+     */
+    public static class Snapshot {
+        private final long[] buckets;
+        private final long count;
+        private final long errors;
+        private final long sumMicros;
+        private final long elapsedMillis;
+
+        Snapshot(long[] buckets, long count, long errors, long sumMicros, long elapsedMillis) {
+            this.buckets = buckets;
+            this.count = count;
+            this.errors = errors;
+            this.sumMicros = sumMicros;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * 窗口内的每秒请求数
+         */
+        public double getQps() {
+            return count * 1000.0 / elapsedMillis;
+        }
+
+        /**
+         * 成功率（百分比），没有请求时为100
+         */
+        public double getSuccessRate() {
+            return count == 0 ? 100 : (count - errors) * 100.0 / count;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0 : sumMicros / 1000.0 / count;
+        }
+
+        /**
+         * 分位数延迟（毫秒），取所在桶的中点
+         *
+         * @param quantile 0~1，例如0.99
+         */
+        public double getPercentileMillis(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && buckets[i] > 0) {
+                    return (bucketLowerBound(i) + (bucketWidth(i) - 1) / 2.0) / 1000.0;
+                }
+            }
+            return MAX_VALUE / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.acme.monitor.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * /proc、/sys 等伪文件的无分配读取器
+ *
+ * 文件通道只打开一次，每次从偏移0重新读取到复用的缓冲区中，
+ * 再通过游标方法逐行解析数字，整个过程不创建String或其他临时对象，
+ * 适合后台线程高频采样。非线程安全。
+ */
+public class ProcFileReader implements Closeable {
+    private final Path path;
+    private final byte[] data;
+    private final ByteBuffer buffer;
+    private FileChannel channel;
+    private int length;
+    private int position;
+
+    public ProcFileReader(Path path, int capacity) {
+        this.path = path;
+        this.data = new byte[capacity];
+        this.buffer = ByteBuffer.wrap(data);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 重新读取文件内容，游标回到开头
+     *
+     * @return 读取失败（文件不存在或无权限）时返回false
+     */
+    public boolean read() {
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            buffer.clear();
+            long offset = 0;
+            int n;
+            while (buffer.hasRemaining() && (n = channel.read(buffer, offset)) > 0) {
+                offset += n;
+            }
+            length = buffer.position();
+            position = 0;
+            return true;
+        } catch (IOException e) {
+            close();
+            length = 0;
+            position = 0;
+            return false;
+        }
+    }
+
+    /**
+     * 从头查找以指定前缀开头的行，找到后游标停在前缀之后
+     */
+    public boolean findLine(byte[] prefix) {
+        position = 0;
+        do {
+            if (startsWith(prefix)) {
+                position += prefix.length;
+                return true;
+            }
+        } while (nextLine());
+        return false;
+    }
+
+    /**
+     * 游标移动到下一行行首
+     *
+     * @return 没有下一行时返回false
+     */
+    public boolean nextLine() {
+        while (position < length && data[position] != '\n') {
+            position++;
+        }
+        if (position >= length - 1) {
+            position = length;
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    /**
+     * 当前位置（跳过空白后）是否以指定字节开头
+     */
+    public boolean startsWith(byte[] prefix) {
+        skipSpaces();
+        if (position + prefix.length > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[position + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在当前行内跳过指定字符及其之前的内容
+     *
+     * @return 当前行内没有该字符时返回false，游标不变
+     */
+    public boolean skipPast(byte b) {
+        for (int i = position; i < length && data[i] != '\n'; i++) {
+            if (data[i] == b) {
+                position = i + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在当前行内跳过指定字节序列及其之前的内容，如PSI行中的 "total="
+     *
+     * @return 当前行内没有该字节序列时返回false，游标不变
+     */
+    public boolean skipPast(byte[] token) {
+        for (int i = position; i + token.length <= length && data[i] != '\n'; i++) {
+            int j = 0;
+            while (j < token.length && data[i + j] == token[j]) {
+                j++;
+            }
+            if (j == token.length) {
+                position = i + token.length;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析当前行内的下一个非负整数
+     *
+     * @return 当前行内没有更多数字时返回-1
+     */
+    public long nextLong() {
+        while (position < length && data[position] != '\n' && (data[position] < '0' || data[position] > '9')) {
+            position++;
+        }
+        if (position >= length || data[position] == '\n') {
+            return -1;
+        }
+        long value = 0;
+        while (position < length && data[position] >= '0' && data[position] <= '9') {
+            value = value * 10 + (data[position++] - '0');
+        }
+        return value;
+    }
+
+    private void skipSpaces() {
+        while (position < length && (data[position] == ' ' || data[position] == '\t')) {
+            position++;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响下次重新打开
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.acme.monitor.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 最小的 protobuf 编码器，只支持 remote write 用到的字段类型（varint、64位定长、长度前缀）
+ * 嵌套消息由调用方先计算长度再写入内容，避免为每个消息创建临时缓冲区。
+ *
+ * 该类不是线程安全的。
+ */
+public class ProtobufWriter {
+    public static final int WIRE_VARINT = 0;
+    public static final int WIRE_FIXED64 = 1;
+    public static final int WIRE_LENGTH_DELIMITED = 2;
+
+    private byte[] buffer;
+    private int position;
+
+    public ProtobufWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public void tag(int field, int wireType) {
+        varint(field << 3 | wireType);
+    }
+
+    public void varint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public void fixed64(long value) {
+        ensure(8);
+        for (int i = 0; i < 8; i++) {
+            buffer[position++] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    public void doubleField(int field, double value) {
+        tag(field, WIRE_FIXED64);
+        fixed64(Double.doubleToRawLongBits(value));
+    }
+
+    public void int64Field(int field, long value) {
+        tag(field, WIRE_VARINT);
+        varint(value);
+    }
+
+    public void bytesField(int field, byte[] value) {
+        tag(field, WIRE_LENGTH_DELIMITED);
+        varint(value.length);
+        raw(value);
+    }
+
+    public void stringField(int field, String value) {
+        bytesField(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 写入已经编码好的字节
+     */
+    public void raw(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public void reset() {
+        position = 0;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensure(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+
+    public static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * 长度前缀字段的总长度：tag + 长度 + 内容
+     */
+    public static int lengthDelimitedSize(int field, int length) {
+        return varintSize(field << 3) + varintSize(length) + length;
+    }
+}
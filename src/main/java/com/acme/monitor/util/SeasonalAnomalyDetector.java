@@ -0,0 +1,142 @@
+package com.acme.monitor.util;
+
+import java.util.Arrays;
+
+/**
+ * 在线异常检测，每条序列占用固定内存
+ *
+ * 每条序列维护指数加权的水平值（level）、残差方差，以及按时间槽（默认一天24个小时槽）划分的季节偏移，
+ * 预期值为 level + 当前时间槽的季节偏移，异常分数为 (实际值 - 预期值) / 残差标准差。
+ * 所有状态按序列下标存放在平铺的基本类型数组中，更新一次为O(1)且不分配对象，单节点可以每秒处理数千条序列。
+ * 异常样本按阈值截断后再更新基线，避免一次尖刺拉偏后续的判断。
+ *
+ * 该类不是线程安全的。
+ */
+public class SeasonalAnomalyDetector {
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * 方差下限，避免常数序列出现一点变化就得到无穷大的分数
+     */
+    private static final double MIN_VARIANCE = 1e-6;
+
+    private final double alpha;
+    private final double beta;
+    private final double gamma;
+    private final int seasonSlots;
+    private final long slotMillis;
+    private final int warmupSamples;
+    private final double clipScore;
+
+    private int size;
+    private double[] level = new double[INITIAL_CAPACITY];
+    private double[] variance = new double[INITIAL_CAPACITY];
+    private double[] lastScore = new double[INITIAL_CAPACITY];
+    private double[] lastExpected = new double[INITIAL_CAPACITY];
+    private long[] samples = new long[INITIAL_CAPACITY];
+    private double[] seasonal;
+
+    /**
+     * @param alpha         水平值的平滑系数
+     * @param beta          残差方差的平滑系数
+     * @param gamma         季节偏移的平滑系数
+     * @param seasonSlots   一个周期的时间槽数量，1表示不考虑季节性
+     * @param slotMillis    每个时间槽的长度
+     * @param warmupSamples 样本数少于该值时分数为0
+     * @param clipScore     更新基线时把样本截断到 预期值 ± clipScore 个标准差
+     */
+    public SeasonalAnomalyDetector(double alpha, double beta, double gamma, int seasonSlots, long slotMillis,
+                                   int warmupSamples, double clipScore) {
+        if (seasonSlots < 1 || slotMillis <= 0) {
+            throw new IllegalArgumentException("Invalid season: " + seasonSlots + " slots of " + slotMillis + " ms");
+        }
+        this.alpha = alpha;
+        this.beta = beta;
+        this.gamma = gamma;
+        this.seasonSlots = seasonSlots;
+        this.slotMillis = slotMillis;
+        this.warmupSamples = warmupSamples;
+        this.clipScore = clipScore;
+        this.seasonal = new double[INITIAL_CAPACITY * seasonSlots];
+    }
+
+    /**
+     * 新增一条序列
+     *
+     * @return 序列下标
+     */
+    public int addSeries() {
+        if (size == level.length) {
+            int capacity = size * 2;
+            level = Arrays.copyOf(level, capacity);
+            variance = Arrays.copyOf(variance, capacity);
+            lastScore = Arrays.copyOf(lastScore, capacity);
+            lastExpected = Arrays.copyOf(lastExpected, capacity);
+            samples = Arrays.copyOf(samples, capacity);
+            seasonal = Arrays.copyOf(seasonal, capacity * seasonSlots);
+        }
+        return size++;
+    }
+
+    /**
+     * 加入一个样本并返回异常分数，NaN样本不更新状态，返回0
+     */
+    public double update(int series, long timestamp, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return 0;
+        }
+        int slot = series * seasonSlots + (int) ((timestamp / slotMillis) % seasonSlots);
+        if (samples[series] == 0) {
+            level[series] = value;
+            lastExpected[series] = value;
+            lastScore[series] = 0;
+            samples[series] = 1;
+            return 0;
+        }
+        double offset = seasonal[slot];
+        double expected = level[series] + offset;
+        double residual = value - expected;
+        double sigma = Math.sqrt(variance[series] + MIN_VARIANCE);
+        double score = samples[series] < warmupSamples ? 0 : residual / sigma;
+
+        // 预热之后才截断，否则初始方差为0时基线无法跟上真实水平
+        double clipped = residual;
+        if (samples[series] >= warmupSamples && Math.abs(residual) > clipScore * sigma) {
+            clipped = Math.copySign(clipScore * sigma, residual);
+        }
+        double x = expected + clipped;
+        level[series] += alpha * (x - offset - level[series]);
+        seasonal[slot] += gamma * (x - level[series] - offset);
+        variance[series] = (1 - beta) * (variance[series] + beta * clipped * clipped);
+        samples[series]++;
+        lastExpected[series] = expected;
+        lastScore[series] = score;
+        return score;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getScore(int series) {
+        return lastScore[series];
+    }
+
+    public double getExpected(int series) {
+        return lastExpected[series];
+    }
+
+    public double getStdDev(int series) {
+        return Math.sqrt(variance[series]);
+    }
+
+    public long getSamples(int series) {
+        return samples[series];
+    }
+
+    /**
+     * 每条序列占用的字节数（不含数组对象头）
+     */
+    public int bytesPerSeries() {
+        return 8 * (5 + seasonSlots);
+    }
+}
@@ -0,0 +1,157 @@
+package com.acme.monitor.util;
+
+/**
+ * 按时间窗口增量维护的聚合值
+ *
+ * 每次加入样本时淘汰窗口外的旧样本，同时更新和、计数，并用单调队列维护最小值和最大值，
+ * 求平均、最值、首尾值和变化率都是O(1)，不需要重新扫描窗口内的历史数据。
+ * 样本、最小值队列和最大值队列都是按样本序号寻址的环形数组，容量不够时翻倍。
+ *
+ * 该类不是线程安全的。
+ */
+public class SlidingWindowAggregate {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long windowMillis;
+    private long[] times = new long[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY];
+    private long[] minQueue = new long[INITIAL_CAPACITY];
+    private long[] maxQueue = new long[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+
+    /**
+     * 窗口内第一个样本和下一个样本的序号
+     */
+    private long first;
+    private long next;
+    private long minHead;
+    private long minTail;
+    private long maxHead;
+    private long maxTail;
+    private double sum;
+
+    public SlidingWindowAggregate(long windowMillis) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window must be positive: " + windowMillis);
+        }
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * 加入一个样本，时间戳需要单调不减，NaN只触发淘汰
+     */
+    public void add(long timestamp, double value) {
+        if (Double.isNaN(value)) {
+            evict(timestamp);
+            return;
+        }
+        if (next - first == times.length) {
+            grow();
+        }
+        int slot = (int) (next & mask);
+        times[slot] = timestamp;
+        values[slot] = value;
+        sum += value;
+        while (minTail > minHead && values[(int) (minQueue[(int) ((minTail - 1) & mask)] & mask)] >= value) {
+            minTail--;
+        }
+        minQueue[(int) (minTail++ & mask)] = next;
+        while (maxTail > maxHead && values[(int) (maxQueue[(int) ((maxTail - 1) & mask)] & mask)] <= value) {
+            maxTail--;
+        }
+        maxQueue[(int) (maxTail++ & mask)] = next;
+        next++;
+        evict(timestamp);
+    }
+
+    /**
+     * 淘汰时间戳不晚于 now - window 的样本
+     */
+    public void evict(long now) {
+        long cutoff = now - windowMillis;
+        while (first < next && times[(int) (first & mask)] <= cutoff) {
+            sum -= values[(int) (first & mask)];
+            if (minQueue[(int) (minHead & mask)] == first) {
+                minHead++;
+            }
+            if (maxQueue[(int) (maxHead & mask)] == first) {
+                maxHead++;
+            }
+            first++;
+        }
+        if (first == next) {
+            // 窗口清空时重置，避免加减累积的浮点误差
+            sum = 0;
+        }
+    }
+
+    private void grow() {
+        int capacity = times.length * 2;
+        int newMask = capacity - 1;
+        long[] newTimes = new long[capacity];
+        double[] newValues = new double[capacity];
+        long[] newMin = new long[capacity];
+        long[] newMax = new long[capacity];
+        for (long seq = first; seq < next; seq++) {
+            newTimes[(int) (seq & newMask)] = times[(int) (seq & mask)];
+            newValues[(int) (seq & newMask)] = values[(int) (seq & mask)];
+        }
+        for (long i = minHead; i < minTail; i++) {
+            newMin[(int) (i & newMask)] = minQueue[(int) (i & mask)];
+        }
+        for (long i = maxHead; i < maxTail; i++) {
+            newMax[(int) (i & newMask)] = maxQueue[(int) (i & mask)];
+        }
+        times = newTimes;
+        values = newValues;
+        minQueue = newMin;
+        maxQueue = newMax;
+        mask = newMask;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int count() {
+        return (int) (next - first);
+    }
+
+    public double sum() {
+        return sum;
+    }
+
+    /**
+     * 以下方法在窗口为空时返回NaN
+     */
+    public double avg() {
+        return first == next ? Double.NaN : sum / (next - first);
+    }
+
+    public double min() {
+        return first == next ? Double.NaN : values[(int) (minQueue[(int) (minHead & mask)] & mask)];
+    }
+
+    public double max() {
+        return first == next ? Double.NaN : values[(int) (maxQueue[(int) (maxHead & mask)] & mask)];
+    }
+
+    public double first() {
+        return first == next ? Double.NaN : values[(int) (first & mask)];
+    }
+
+    public double last() {
+        return first == next ? Double.NaN : values[(int) ((next - 1) & mask)];
+    }
+
+    /**
+     * 窗口内首尾样本之间每秒的变化量，少于两个样本时返回NaN
+     */
+    public double ratePerSecond() {
+        if (next - first < 2) {
+            return Double.NaN;
+        }
+        long elapsed = times[(int) ((next - 1) & mask)] - times[(int) (first & mask)];
+        return elapsed <= 0 ? Double.NaN : (last() - first()) * 1000.0 / elapsed;
+    }
+}
@@ -0,0 +1,205 @@
+package com.acme.monitor.util;
+
+import java.util.Arrays;
+
+/**
+ * Snappy 块格式压缩
+ *
+ * Prometheus remote write 要求请求体使用 snappy 块格式（非分帧格式）压缩。
+ * 压缩按64KB分块，用4字节哈希查找块内重复数据，输出字面量和回溯复制两种元素；
+ * 解压用于测试和排查问题。
+ */
+public final class Snappy {
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int HASH_BITS = 14;
+    private static final int INPUT_MARGIN = 4;
+
+    private static final int TAG_LITERAL = 0;
+    private static final int TAG_COPY_1 = 1;
+    private static final int TAG_COPY_2 = 2;
+    private static final int TAG_COPY_4 = 3;
+
+    private Snappy() {
+    }
+
+    /**
+     * 压缩后的最大长度
+     */
+    public static int maxCompressedLength(int length) {
+        return 32 + length + length / 6;
+    }
+
+    public static byte[] compress(byte[] input, int offset, int length) {
+        byte[] out = new byte[maxCompressedLength(length)];
+        int pos = writeVarInt(out, 0, length);
+        int[] table = new int[1 << HASH_BITS];
+        for (int block = offset; block < offset + length; block += BLOCK_SIZE) {
+            int blockEnd = Math.min(block + BLOCK_SIZE, offset + length);
+            Arrays.fill(table, -1);
+            pos = compressBlock(input, block, blockEnd, table, out, pos);
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    private static int compressBlock(byte[] in, int start, int end, int[] table, byte[] out, int pos) {
+        int literalStart = start;
+        int ip = start;
+        while (ip + INPUT_MARGIN <= end) {
+            int value = load32(in, ip);
+            int hash = (value * 0x1e35a7bd) >>> (32 - HASH_BITS);
+            int candidate = table[hash];
+            table[hash] = ip;
+            if (candidate < 0 || load32(in, candidate) != value) {
+                ip++;
+                continue;
+            }
+            pos = emitLiteral(in, literalStart, ip - literalStart, out, pos);
+            int length = INPUT_MARGIN;
+            while (ip + length < end && in[candidate + length] == in[ip + length]) {
+                length++;
+            }
+            pos = emitCopy(ip - candidate, length, out, pos);
+            ip += length;
+            literalStart = ip;
+        }
+        return emitLiteral(in, literalStart, end - literalStart, out, pos);
+    }
+
+    private static int emitLiteral(byte[] in, int start, int length, byte[] out, int pos) {
+        if (length == 0) {
+            return pos;
+        }
+        int n = length - 1;
+        if (n < 60) {
+            out[pos++] = (byte) (n << 2 | TAG_LITERAL);
+        } else if (n < 1 << 8) {
+            out[pos++] = (byte) (60 << 2 | TAG_LITERAL);
+            out[pos++] = (byte) n;
+        } else {
+            // 块不超过64KB，两个字节足够
+            out[pos++] = (byte) (61 << 2 | TAG_LITERAL);
+            out[pos++] = (byte) n;
+            out[pos++] = (byte) (n >>> 8);
+        }
+        System.arraycopy(in, start, out, pos, length);
+        return pos + length;
+    }
+
+    private static int emitCopy(int offset, int length, byte[] out, int pos) {
+        while (length >= 68) {
+            pos = emitCopy2(offset, 64, out, pos);
+            length -= 64;
+        }
+        if (length > 64) {
+            pos = emitCopy2(offset, 60, out, pos);
+            length -= 60;
+        }
+        if (length < 12 && offset < 2048) {
+            out[pos++] = (byte) ((offset >>> 8) << 5 | (length - 4) << 2 | TAG_COPY_1);
+            out[pos++] = (byte) offset;
+            return pos;
+        }
+        return emitCopy2(offset, length, out, pos);
+    }
+
+    private static int emitCopy2(int offset, int length, byte[] out, int pos) {
+        out[pos++] = (byte) ((length - 1) << 2 | TAG_COPY_2);
+        out[pos++] = (byte) offset;
+        out[pos++] = (byte) (offset >>> 8);
+        return pos;
+    }
+
+    /**
+     * 解压
+     *
+     * @throws IllegalArgumentException 数据格式不正确
+     */
+    public static byte[] uncompress(byte[] input) {
+        int[] header = readVarInt(input, 0);
+        byte[] out = new byte[header[0]];
+        int ip = header[1];
+        int op = 0;
+        try {
+            while (ip < input.length) {
+                int tag = input[ip++] & 0xFF;
+                int length;
+                int offset;
+                switch (tag & 3) {
+                    case TAG_LITERAL:
+                        length = tag >>> 2;
+                        if (length >= 60) {
+                            int bytes = length - 59;
+                            length = 0;
+                            for (int i = 0; i < bytes; i++) {
+                                length |= (input[ip++] & 0xFF) << (8 * i);
+                            }
+                        }
+                        length++;
+                        System.arraycopy(input, ip, out, op, length);
+                        ip += length;
+                        op += length;
+                        continue;
+                    case TAG_COPY_1:
+                        length = ((tag >>> 2) & 7) + 4;
+                        offset = (tag >>> 5) << 8 | (input[ip++] & 0xFF);
+                        break;
+                    case TAG_COPY_2:
+                        length = (tag >>> 2) + 1;
+                        offset = (input[ip] & 0xFF) | (input[ip + 1] & 0xFF) << 8;
+                        ip += 2;
+                        break;
+                    default:
+                        length = (tag >>> 2) + 1;
+                        offset = load32(input, ip);
+                        ip += 4;
+                        break;
+                }
+                if (offset <= 0 || offset > op || op + length > out.length) {
+                    throw new IllegalArgumentException("Invalid snappy copy at output position " + op);
+                }
+                // 源和目标可能重叠，逐字节复制
+                for (int i = 0; i < length; i++) {
+                    out[op + i] = out[op - offset + i];
+                }
+                op += length;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated snappy data", e);
+        }
+        if (op != out.length) {
+            throw new IllegalArgumentException("Snappy data decoded to " + op + " bytes, expected " + out.length);
+        }
+        return out;
+    }
+
+    private static int load32(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static int writeVarInt(byte[] out, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * @return {值, 下一个位置}
+     */
+    private static int[] readVarInt(byte[] in, int pos) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (pos >= in.length) {
+                throw new IllegalArgumentException("Truncated snappy header");
+            }
+            int b = in[pos++] & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return new int[]{value, pos};
+            }
+        }
+        throw new IllegalArgumentException("Malformed snappy header");
+    }
+}
@@ -0,0 +1,159 @@
+package com.acme.monitor.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 已结束span的无锁环形缓冲区，多个线程写入，单个线程读取
+ *
+ * 槽位在创建时预先分配，写入只复制调用路径上的帧名称引用，不分配对象。
+ * 写入方通过 {@link AtomicLong#getAndIncrement()} 领取序号，写完后发布序号；
+ * 读取方来不及消费时新数据直接覆盖最旧的数据，读取方按序号判断并统计丢弃的数量。
+ * 每个槽位有一个 {@link StampedLock}：写入方持写锁填充槽位，槽位只在追上一圈时才有竞争；
+ * 读取方不加锁，用乐观读复制后校验（类似seqlock），写入过程中被读到的槽位会被丢弃而不是返回半条数据。
+ */
+public class SpanRing {
+    private final Slot[] slots;
+    private final int mask;
+    private final int maxDepth;
+    private final AtomicLong head = new AtomicLong();
+    private long tail;
+    // 只由读取线程修改
+    private volatile long dropped;
+
+    /**
+     * @param capacity 槽位数，向上取整到2的幂
+     * @param maxDepth 每个span最多保存的调用路径深度
+     */
+    public SpanRing(int capacity, int maxDepth) {
+        if (capacity <= 0 || maxDepth <= 0) {
+            throw new IllegalArgumentException("Invalid span ring size: " + capacity + "x" + maxDepth);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(maxDepth, i - size);
+        }
+        this.mask = size - 1;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * 写入一个已结束的span
+     *
+     * @param frames     从根到该span的帧名称，最后一个是span自身
+     * @param depth      frames 中有效的数量，超过 maxDepth 时只保留最后 maxDepth 个
+     * @param totalNanos span的总耗时
+     * @param selfNanos  去掉同线程子span后的耗时
+     */
+    public void publish(String[] frames, int depth, long totalNanos, long selfNanos) {
+        long sequence = head.getAndIncrement();
+        Slot slot = slots[(int) (sequence & mask)];
+        int from = Math.max(0, depth - maxDepth);
+        int n = depth - from;
+        long stamp = slot.lock.writeLock();
+        try {
+            System.arraycopy(frames, from, slot.frames, 0, n);
+            slot.depth = n;
+            slot.totalNanos = totalNanos;
+            slot.selfNanos = selfNanos;
+            slot.sequence = sequence;
+        } finally {
+            slot.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 读取所有已发布的span，只能由一个线程调用
+     *
+     * @param scratch 长度不小于 maxDepth 的数组，每次回调前帧名称复制到其中
+     * @return 本次读取的span数
+     */
+    public int drain(String[] scratch, Visitor visitor) {
+        int count = 0;
+        while (true) {
+            long published = head.get();
+            if (tail >= published) {
+                return count;
+            }
+            if (published - tail > slots.length) {
+                // 落后超过一圈，最旧的数据已被覆盖
+                long skipTo = published - slots.length;
+                dropped += skipTo - tail;
+                tail = skipTo;
+            }
+            Slot slot = slots[(int) (tail & mask)];
+            long stamp = slot.lock.tryOptimisticRead();
+            long sequence = slot.sequence;
+            if (stamp == 0 || sequence < tail) {
+                // 正在写入，或已领取序号但还没写入，下次再读
+                return count;
+            }
+            if (sequence > tail) {
+                // 读取期间被后来的写入覆盖
+                dropped++;
+                tail++;
+                continue;
+            }
+            int depth = slot.depth;
+            System.arraycopy(slot.frames, 0, scratch, 0, depth);
+            long totalNanos = slot.totalNanos;
+            long selfNanos = slot.selfNanos;
+            if (!slot.lock.validate(stamp)) {
+                // 复制期间被后来的写入覆盖
+                dropped++;
+                tail++;
+                continue;
+            }
+            tail++;
+            count++;
+            visitor.visit(scratch, depth, totalNanos, selfNanos);
+        }
+    }
+
+    /**
+     * 已写入的span总数
+     */
+    public long getPublished() {
+        return head.get();
+    }
+
+    /**
+     * 因读取不及时被覆盖的span数
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * 读取回调
+     */
+    public interface Visitor {
+        void visit(String[] frames, int depth, long totalNanos, long selfNanos);
+    }
+
+    private static final class Slot {
+        final String[] frames;
+        final StampedLock lock = new StampedLock();
+        volatile long sequence;
+        int depth;
+        long totalNanos;
+        long selfNanos;
+
+        Slot(int maxDepth, long initialSequence) {
+            this.frames = new String[maxDepth];
+            this.sequence = initialSequence;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.acme.monitor.aspect;
+
+import com.acme.monitor.service.LatencySketchService;
+import com.acme.monitor.service.SpanTracer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 方法级延迟埋点测试，使用 ProxyFactory 代替Spring容器织入
+ */
+public class MethodLatencyInterceptorTest {
+
+    private MeterRegistry registry;
+    private LatencySketchService sketches;
+    private MethodLatencyInterceptor interceptor;
+    private Target proxy;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        sketches = new LatencySketchService();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", registry);
+        beanFactory.registerSingleton("latencySketchService", sketches);
+
+        MethodLatencyInterceptor.NamedPointcut slow = new MethodLatencyInterceptor.NamedPointcut("slow",
+                expression("execution(* com.acme.monitor.aspect.MethodLatencyInterceptorTest.Target.slow*(..))"), "rpc", 1000, 1);
+        MethodLatencyInterceptor.NamedPointcut all = new MethodLatencyInterceptor.NamedPointcut("all",
+                expression("within(com.acme.monitor.aspect.MethodLatencyInterceptorTest.Target)"), null);
+        MethodLatencyInterceptor.NamedPointcut english = new MethodLatencyInterceptor.NamedPointcut("english",
+                expression("within(com.acme.monitor.aspect.MethodLatencyInterceptorTest.English)"), null);
+        interceptor = new MethodLatencyInterceptor(Arrays.asList(slow, all, english),
+                beanFactory.getBeanProvider(MeterRegistry.class), beanFactory.getBeanProvider(LatencySketchService.class),
+                beanFactory.getBeanProvider(SpanTracer.class));
+
+        ProxyFactory factory = new ProxyFactory(new Target());
+        factory.setProxyTargetClass(true);
+        factory.addAdvisor(new DefaultPointcutAdvisor(expression("within(com.acme.monitor..*)"), interceptor));
+        proxy = (Target) factory.getProxy();
+    }
+
+    private Greeter greeter(Greeter target) {
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.addAdvisor(new DefaultPointcutAdvisor(expression("within(com.acme.monitor..*)"), interceptor));
+        return (Greeter) factory.getProxy();
+    }
+
+    private static AspectJExpressionPointcut expression(String expression) {
+        AspectJExpressionPointcut pointcut = new AspectJExpressionPointcut();
+        pointcut.setExpression(expression);
+        return pointcut;
+    }
+
+    @Test
+    public void testSuccessIsTimedWithCachedHandle() {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i + 1, proxy.add(i, 1));
+        }
+        FunctionTimer timer = registry.get(MethodLatencyInterceptor.METER_NAME)
+                .tags("pointcut", "all", "class", "Target", "method", "add", "outcome", "success", "exception", "none")
+                .functionTimer();
+        assertEquals(10, timer.count(), 0.0);
+        assertEquals(1, interceptor.getCachedMethodCount());
+        // 没有配置草图来源的切点不记录草图
+        assertEquals(0, sketches.merged("rpc", 1).getCount());
+    }
+
+    @Test
+    public void testFirstMatchingPointcutWinsAndFeedsSketch() throws Exception {
+        proxy.slowCall(5);
+
+        FunctionTimer timer = registry.get(MethodLatencyInterceptor.METER_NAME)
+                .tags("pointcut", "slow", "method", "slowCall", "outcome", "success").functionTimer();
+        assertEquals(1, timer.count(), 0.0);
+        assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) >= 4);
+        assertEquals(1, sketches.merged("rpc", 1).getCount());
+        // 开启采样的切点导出实际采样率
+        assertEquals(1.0, registry.get("method_sampling_rate").tag("pointcut", "slow").gauge().value(), 0.0);
+        assertNull(registry.find("method_sampling_rate").tag("pointcut", "all").gauge());
+    }
+
+    @Test
+    public void testFailureTaggedWithExceptionClass() {
+        assertThrows(IllegalStateException.class, () -> proxy.fail("boom"));
+        assertThrows(IllegalStateException.class, () -> proxy.fail("again"));
+        assertThrows(IllegalArgumentException.class, () -> proxy.fail(null));
+
+        assertEquals(2, registry.get(MethodLatencyInterceptor.METER_NAME)
+                .tags("method", "fail", "outcome", "error", "exception", "IllegalStateException").functionTimer().count(), 0.0);
+        assertEquals(1, registry.get(MethodLatencyInterceptor.METER_NAME)
+                .tags("method", "fail", "outcome", "error", "exception", "IllegalArgumentException").functionTimer().count(), 0.0);
+        assertNotNull(registry.find(MethodLatencyInterceptor.METER_NAME).tags("method", "fail", "outcome", "success")
+                .functionTimer());
+    }
+
+    @Test
+    public void testInterfaceMethodResolvedPerTargetClass() {
+        Greeter french = greeter(new French());
+        Greeter english = greeter(new English());
+
+        // 两个实现类共用 Greeter.greet 这个Method，先调用的类不匹配切点，不影响后调用的类
+        assertEquals("bonjour", french.greet());
+        assertEquals("hello", english.greet());
+        assertEquals("hello", english.greet());
+
+        assertEquals(2, registry.get(MethodLatencyInterceptor.METER_NAME)
+                .tags("pointcut", "english", "class", "English", "method", "greet", "outcome", "success")
+                .functionTimer().count(), 0.0);
+        assertNull(registry.find(MethodLatencyInterceptor.METER_NAME).tag("class", "French").functionTimer());
+        assertNull(registry.find(MethodLatencyInterceptor.METER_NAME).tag("class", "Greeter").functionTimer());
+        assertEquals(2, interceptor.getCachedMethodCount());
+    }
+
+    public interface Greeter {
+        String greet();
+    }
+
+    public static class English implements Greeter {
+        @Override
+        public String greet() {
+            return "hello";
+        }
+    }
+
+    public static class French implements Greeter {
+        @Override
+        public String greet() {
+            return "bonjour";
+        }
+    }
+
+    public static class Target {
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        public void slowCall(long millis) throws InterruptedException {
+            Thread.sleep(millis);
+        }
+
+        public void fail(String message) {
+            if (message == null) {
+                throw new IllegalArgumentException("message is null");
+            }
+            throw new IllegalStateException(message);
+        }
+    }
+}
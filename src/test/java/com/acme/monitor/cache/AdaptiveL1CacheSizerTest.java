@@ -0,0 +1,77 @@
+package com.acme.monitor.cache;
+
+import com.acme.monitor.config.AdaptiveCacheConfig;
+import com.acme.monitor.config.AdaptiveL1CacheSizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.MemoryUsage;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveL1CacheSizerTest {
+
+    private AdaptiveCacheConfig config;
+
+    @BeforeEach
+    public void setUp() {
+        config = new AdaptiveCacheConfig();
+        config.setMaximumSize(1000);
+        config.setMinimumSize(100);
+    }
+
+    @Test
+    public void testShrinkStepByStepAboveHighWatermark() {
+        long size = AdaptiveL1CacheSizer.nextSize(1000, 0.80, config);
+        assertEquals(500, size);
+
+        size = AdaptiveL1CacheSizer.nextSize(size, 0.80, config);
+        assertEquals(250, size);
+
+        // 不会低于最小容量
+        size = AdaptiveL1CacheSizer.nextSize(125, 0.80, config);
+        assertEquals(100, size);
+    }
+
+    @Test
+    public void testCriticalWatermarkJumpsToMinimum() {
+        assertEquals(100, AdaptiveL1CacheSizer.nextSize(1000, 0.95, config));
+    }
+
+    @Test
+    public void testGrowBackWhenPressureClears() {
+        long size = AdaptiveL1CacheSizer.nextSize(100, 0.30, config);
+        assertEquals(200, size);
+
+        size = AdaptiveL1CacheSizer.nextSize(800, 0.30, config);
+        assertEquals(1000, size);
+
+        // 已经是最大容量时保持不变
+        assertEquals(1000, AdaptiveL1CacheSizer.nextSize(1000, 0.30, config));
+    }
+
+    @Test
+    public void testSizeUnchangedBetweenWatermarks() {
+        assertEquals(400, AdaptiveL1CacheSizer.nextSize(400, 0.70, config));
+    }
+
+    @Test
+    public void testOldGenUsageFromGcNotification() {
+        long mb = 1024 * 1024;
+        AdaptiveL1CacheSizer sizer = new AdaptiveL1CacheSizer();
+        Map<String, MemoryUsage> after = new HashMap<>();
+        after.put("G1 Eden Space", new MemoryUsage(0, 0, 100 * mb, -1));
+        after.put("G1 Old Gen", new MemoryUsage(0, 5 * mb, 200 * mb, 500 * mb));
+        sizer.recordAfterGc(after);
+        assertEquals(0.01, sizer.oldGenUsageAfterGc(), 1e-9);
+
+        // 每个实例各自记录，不影响其它实例
+        AdaptiveL1CacheSizer other = new AdaptiveL1CacheSizer();
+        other.recordAfterGc(Collections.singletonMap("PS Old Gen", new MemoryUsage(0, 100 * mb, 200 * mb, -1)));
+        assertEquals(0.5, other.oldGenUsageAfterGc(), 1e-9);
+        assertEquals(0.01, sizer.oldGenUsageAfterGc(), 1e-9);
+    }
+}
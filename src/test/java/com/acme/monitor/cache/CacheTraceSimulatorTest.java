@@ -0,0 +1,126 @@
+package com.acme.monitor.cache;
+
+import com.acme.monitor.config.CacheAccessTraceRecorder;
+import com.acme.monitor.config.CacheTraceSimulator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheTraceSimulatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRecordedTraceCanBeReplayed() throws Exception {
+        File file = tempDir.resolve("trace.bin").toFile();
+        int records = writeUniformTrace(file, 20000, 1000);
+
+        CacheTraceSimulator.Trace trace = CacheTraceSimulator.read(file);
+
+        // 采样率为1时所有访问都被记录
+        assertEquals(records, trace.size());
+        assertEquals(1.0, trace.getSampleRate());
+        assertTrue(trace.getCacheNames().containsValue("users"));
+    }
+
+    @Test
+    public void testLargerCacheHasHigherHitRatio() throws Exception {
+        File file = tempDir.resolve("trace.bin").toFile();
+        writeUniformTrace(file, 20000, 1000);
+        CacheTraceSimulator.Trace trace = CacheTraceSimulator.read(file);
+
+        List<CacheTraceSimulator.Result> results = CacheTraceSimulator.simulate(trace, Arrays.asList(
+                new CacheTraceSimulator.Candidate(100, Duration.ofMinutes(10), CacheTraceSimulator.AdmissionPolicy.ALWAYS),
+                new CacheTraceSimulator.Candidate(1000, Duration.ofMinutes(10), CacheTraceSimulator.AdmissionPolicy.ALWAYS)));
+
+        CacheTraceSimulator.Result small = results.get(0);
+        CacheTraceSimulator.Result large = results.get(1);
+        assertTrue(large.getHitRatio() > small.getHitRatio());
+        // 命中率越高，访问Redis的次数越少
+        assertTrue(large.getRedisQps() < small.getRedisQps());
+        // 所有key都能放进缓存时，只有首次访问未命中
+        assertTrue(large.getHitRatio() > 0.9);
+    }
+
+    @Test
+    public void testZeroTtlNeverHits() throws Exception {
+        File file = tempDir.resolve("trace.bin").toFile();
+        writeUniformTrace(file, 5000, 100);
+        CacheTraceSimulator.Trace trace = CacheTraceSimulator.read(file);
+
+        CacheTraceSimulator.Result result = CacheTraceSimulator.simulate(trace,
+                new CacheTraceSimulator.Candidate(1000, Duration.ZERO, CacheTraceSimulator.AdmissionPolicy.TINY_LFU));
+
+        assertEquals(0.0, result.getHitRatio());
+    }
+
+    @Test
+    public void testConcurrentRecordingKeepsEveryRecord() throws Exception {
+        File file = tempDir.resolve("trace.bin").toFile();
+        CacheAccessTraceRecorder recorder = new CacheAccessTraceRecorder();
+        // 缓冲区较小，写入期间会多次换缓冲区
+        recorder.open(file, 1.0, 64 * 1024);
+        int threads = 4;
+        int perThread = 5000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String cacheName = "cache-" + t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    recorder.record(cacheName, (long) i, CacheAccessTraceRecorder.OP_GET, CacheAccessTraceRecorder.TIER_L1);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        recorder.close();
+
+        // 写线程来不及时允许丢弃，但写入的记录不能损坏
+        CacheTraceSimulator.Trace trace = CacheTraceSimulator.read(file);
+        assertEquals(threads * perThread, trace.size() + recorder.getDroppedRecords());
+        assertEquals(threads, trace.getCacheNames().size());
+    }
+
+    @Test
+    public void testCachesBeyondLimitAreNotRecorded() throws Exception {
+        File file = tempDir.resolve("trace.bin").toFile();
+        CacheAccessTraceRecorder recorder = new CacheAccessTraceRecorder();
+        recorder.open(file, 1.0, 1 << 20);
+        int caches = CacheAccessTraceRecorder.MAX_CACHES + 10;
+        for (int i = 0; i < caches; i++) {
+            recorder.record("cache-" + i, 1L, CacheAccessTraceRecorder.OP_GET, CacheAccessTraceRecorder.TIER_L1);
+        }
+        recorder.close();
+
+        CacheTraceSimulator.Trace trace = CacheTraceSimulator.read(file);
+        assertEquals(CacheAccessTraceRecorder.MAX_CACHES, trace.size());
+        assertEquals(CacheAccessTraceRecorder.MAX_CACHES, trace.getCacheNames().size());
+        assertEquals("cache-255", trace.getCacheNames().get(255));
+        assertEquals(10, recorder.getDroppedRecords());
+    }
+
+    private int writeUniformTrace(File file, int count, int keySpace) throws Exception {
+        CacheAccessTraceRecorder recorder = new CacheAccessTraceRecorder();
+        // 缓冲区足够大，避免测试中后台线程来不及写而丢弃记录
+        recorder.open(file, 1.0, 1 << 20);
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            recorder.record("users", (long) random.nextInt(keySpace),
+                    CacheAccessTraceRecorder.OP_GET, CacheAccessTraceRecorder.TIER_L2);
+        }
+        recorder.close();
+        assertEquals(0, recorder.getDroppedRecords());
+        return count;
+    }
+}
@@ -2,14 +2,24 @@ package com.acme.monitor.cache;
 
 import com.acme.monitor.config.CacheConfig;
 import com.acme.monitor.config.TwoLevelCache;
+import com.acme.monitor.config.TwoLevelCacheManager;
 import com.acme.monitor.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.Callable;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -209,4 +219,145 @@ public class TwoLevelCacheTest {
             twoLevelCache.get(key, callable);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEvictByTagOnlyRemovesTaggedEntries() {
+        twoLevelCache.put(1L, new User(1L, "Alice", "alice@example.com"), "tenant:a");
+        twoLevelCache.put(2L, new User(2L, "Bob", "bob@example.com"), "tenant:a", "unit:U01");
+        twoLevelCache.put(3L, new User(3L, "Charlie", "charlie@example.com"), "tenant:b");
+
+        // 按标签失效
+        int evicted = twoLevelCache.evictByTag("tenant:a");
+
+        // 只有带标签的key被删除
+        assertEquals(2, evicted);
+        assertNull(caffeineCache.get(1L));
+        assertNull(caffeineCache.get(2L));
+        assertNotNull(caffeineCache.get(3L));
+
+        // Redis中的对应key也被删除
+        verify(redisCache, times(1)).evict("1");
+        verify(redisCache, times(1)).evict("2");
+        verify(redisCache, never()).evict("3");
+        assertEquals(0, twoLevelCache.getTaggedKeyCount("tenant:a"));
+        assertEquals(1, twoLevelCache.getTaggedKeyCount("tenant:b"));
+        // 被删除的key的其他标签也一并移除
+        assertEquals(0, twoLevelCache.getTaggedKeyCount("unit:U01"));
+    }
+
+    @Test
+    public void testEvictRemovesKeyFromTagIndex() {
+        twoLevelCache.put(1L, new User(1L, "Alice", "alice@example.com"), "tenant:a");
+
+        twoLevelCache.evict(1L);
+
+        assertEquals(0, twoLevelCache.getTaggedKeyCount("tenant:a"));
+        assertEquals(0, twoLevelCache.evictByTag("tenant:a"));
+    }
+
+    @Test
+    public void testPruneTagIndexDropsEvictedL1Entries() {
+        twoLevelCache.put(1L, new User(1L, "Alice", "alice@example.com"), "tenant:a");
+        twoLevelCache.put(2L, new User(2L, "Bob", "bob@example.com"), "tenant:a");
+
+        // 模拟Caffeine自身淘汰
+        caffeineCache.evict(1L);
+        twoLevelCache.pruneTagIndex();
+
+        assertEquals(1, twoLevelCache.getTaggedKeyCount("tenant:a"));
+    }
+
+    @Test
+    public void testTagIndexPruneIsAmortized() {
+        // 超过阈值（10000）时清理一次，全部key仍在Caffeine中
+        for (long key = 0; key <= 10_000; key++) {
+            caffeineCache.put(key, "v");
+            twoLevelCache.tag(key, "bulk");
+        }
+        assertEquals(10_001, twoLevelCache.getTaggedKeyCount("bulk"));
+
+        // Caffeine淘汰后再打标签，索引数量未到下一次阈值（剩余数量的两倍），不会再次遍历
+        for (long key = 0; key < 5_000; key++) {
+            caffeineCache.evict(key);
+        }
+        twoLevelCache.tag(20_000L, "bulk");
+        assertEquals(10_002, twoLevelCache.getTaggedKeyCount("bulk"));
+
+        twoLevelCache.pruneTagIndex();
+        assertEquals(5_001, twoLevelCache.getTaggedKeyCount("bulk"));
+    }
+
+    @Test
+    public void testGetCountsHitsByLevel() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        twoLevelCache.setMeterRegistry(registry);
+        User user = new User(1L, "Alice", "alice@example.com");
+        Cache.ValueWrapper valueWrapper = mock(Cache.ValueWrapper.class);
+        when(valueWrapper.get()).thenReturn(user);
+        when(redisCache.get("remote")).thenReturn(valueWrapper);
+        caffeineCache.put("local", user);
+
+        twoLevelCache.get("local");
+        // 第一次从Redis读取并回填Caffeine，第二次命中Caffeine
+        twoLevelCache.get("remote");
+        twoLevelCache.get("remote");
+        twoLevelCache.get("absent");
+
+        assertEquals(2, twoLevelCache.getL1Hits());
+        assertEquals(1, twoLevelCache.getL2Hits());
+        assertEquals(1, twoLevelCache.getMisses());
+        assertEquals(2.0, registry.get("two_level_cache.gets")
+                .tags("cache", "testCache", "result", "l1_hit").functionCounter().count(), 0.0);
+        assertEquals(1.0, registry.get("two_level_cache.gets")
+                .tags("cache", "testCache", "result", "miss").functionCounter().count(), 0.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvictByTagEvictsTypedKeysAndPublishesInvalidation() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        SetOperations<String, String> setOps = mock(SetOperations.class);
+        when(redisTemplate.opsForSet()).thenReturn(setOps);
+        when(setOps.pop(eq("testCache:tags:tenant:a"), anyLong()))
+                .thenReturn(Arrays.asList("1", "7"), Collections.<String>emptyList());
+        TwoLevelCache cache = new TwoLevelCache("testCache", caffeineCache, redisCache, redisTemplate);
+        cache.put(1L, new User(1L, "Alice", "alice@example.com"), "tenant:a");
+        // 由其他节点打标签、本节点从Redis回填的Long类型key，Redis标签集合中只有字符串"7"
+        caffeineCache.put(7L, new User(7L, "Grace", "grace@example.com"));
+        caffeineCache.put(8L, new User(8L, "Heidi", "heidi@example.com"));
+
+        assertEquals(2, cache.evictByTag("tenant:a"));
+
+        assertNull(caffeineCache.get(1L));
+        assertNull(caffeineCache.get(7L));
+        assertNotNull(caffeineCache.get(8L));
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(TwoLevelCache.INVALIDATION_CHANNEL), message.capture());
+        assertTrue(message.getValue().contains("\"tag\":\"tenant:a\""));
+        assertTrue(message.getValue().contains("\"keys\":[\"1\",\"7\"]"));
+    }
+
+    @Test
+    public void testInvalidationMessageEvictsLocalCopies() {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
+        RedisCacheManager redisCacheManager = mock(RedisCacheManager.class);
+        when(redisCacheManager.getCache("testCache")).thenReturn(redisCache);
+        TwoLevelCacheManager manager = new TwoLevelCacheManager(caffeineCacheManager, redisCacheManager);
+        TwoLevelCache cache = (TwoLevelCache) manager.getCache("testCache");
+        Cache local = caffeineCacheManager.getCache("testCache");
+        cache.put(1L, new User(1L, "Alice", "alice@example.com"), "tenant:a");
+        cache.put(2L, new User(2L, "Bob", "bob@example.com"), "tenant:b");
+        local.put(9L, new User(9L, "Ivan", "ivan@example.com"));
+
+        String body = "{\"node\":\"other\",\"cache\":\"testCache\",\"tag\":\"tenant:a\",\"keys\":[\"1\",\"9\"]}";
+        manager.onMessage(new DefaultMessage(TwoLevelCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)), null);
+
+        assertNull(local.get(1L));
+        assertNull(local.get(9L));
+        assertNotNull(local.get(2L));
+        assertEquals(0, cache.getTaggedKeyCount("tenant:a"));
+        // 只清理本地副本，Redis中的数据由发出通知的节点删除
+        verify(redisCache, never()).evict(any());
+    }
+}
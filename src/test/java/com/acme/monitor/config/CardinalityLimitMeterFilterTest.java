@@ -0,0 +1,88 @@
+package com.acme.monitor.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 标签基数限制测试
+ */
+public class CardinalityLimitMeterFilterTest {
+
+    private CardinalityConfig config;
+    private CardinalityLimitMeterFilter filter;
+    private MeterRegistry registry;
+    private final List<CardinalityLimitMeterFilter.Tracker> overflowed = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        config = new CardinalityConfig();
+        config.setDefaultMaxValues(0);
+        CardinalityConfig.Limit limit = new CardinalityConfig.Limit();
+        limit.setMeter("unit_rtt_ms");
+        limit.setTag("method");
+        limit.setMaxValues(5);
+        config.getLimits().add(limit);
+        filter = new CardinalityLimitMeterFilter(config);
+        filter.setOverflowListener(overflowed::add);
+        registry = new SimpleMeterRegistry();
+        registry.config().meterFilter(filter);
+    }
+
+    @Test
+    public void testValuesBeyondLimitCollapseIntoOverflow() {
+        for (int i = 0; i < 20; i++) {
+            registry.counter("unit_rtt_ms", "method", "m" + i, "status", "OK").increment();
+        }
+        // 5个保留的取值加1个溢出桶
+        assertEquals(6, registry.find("unit_rtt_ms").counters().size());
+        Counter overflow = registry.get("unit_rtt_ms").tag("method", CardinalityLimitMeterFilter.OVERFLOW_VALUE).counter();
+        assertEquals(15, overflow.count(), 0.0);
+        assertEquals(1, registry.get("unit_rtt_ms").tag("method", "m0").counter().count(), 0.0);
+
+        // 已保留的取值不受影响，只回调一次
+        registry.counter("unit_rtt_ms", "method", "m4", "status", "OK").increment();
+        assertEquals(2, registry.get("unit_rtt_ms").tag("method", "m4").counter().count(), 0.0);
+        assertEquals(1, overflowed.size());
+        assertEquals("method", overflowed.get(0).getTag());
+        assertEquals(5, overflowed.get(0).getDistinctValues());
+        assertEquals(15, overflowed.get(0).getOverflowHits());
+    }
+
+    @Test
+    public void testDefaultLimitAndUnlimitedTags() {
+        for (int i = 0; i < 50; i++) {
+            registry.counter("other_meter", "key", "v" + i).increment();
+        }
+        assertEquals(50, registry.find("other_meter").counters().size());
+
+        config.setDefaultMaxValues(3);
+        CardinalityLimitMeterFilter limited = new CardinalityLimitMeterFilter(config);
+        MeterRegistry limitedRegistry = new SimpleMeterRegistry();
+        limitedRegistry.config().meterFilter(limited);
+        for (int i = 0; i < 50; i++) {
+            limitedRegistry.counter("other_meter", "key", "v" + i).increment();
+            limitedRegistry.counter("meter_cardinality_overflow", "meter", "m" + i).increment();
+        }
+        assertEquals(4, limitedRegistry.find("other_meter").counters().size());
+        // 基数监控自身的指标不受限制
+        assertEquals(50, limitedRegistry.find("meter_cardinality_overflow").counters().size());
+    }
+
+    @Test
+    public void testDisabled() {
+        config.setEnabled(false);
+        for (int i = 0; i < 20; i++) {
+            registry.counter("unit_rtt_ms", "method", "m" + i).increment();
+        }
+        assertEquals(20, registry.find("unit_rtt_ms").counters().size());
+        assertTrue(overflowed.isEmpty());
+    }
+}
@@ -0,0 +1,210 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.AdaptiveL1CacheSizer;
+import com.acme.monitor.config.AlertConfig;
+import com.acme.monitor.config.ContentionConfig;
+import com.acme.monitor.config.TwoLevelCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 告警规则加载、for持续时间、变化率规则和热加载测试
+ */
+public class AlertRuleEngineTest {
+
+    private static final int P99 = Arrays.asList(AlertRuleEngine.SIGNAL_NAMES).indexOf("unit_latency_p99_ms");
+    private static final int QPS = Arrays.asList(AlertRuleEngine.SIGNAL_NAMES).indexOf("unit_qps_total");
+
+    @TempDir
+    Path dir;
+
+    private Path rulesFile;
+    private AlertRuleEngine engine;
+    private final double[] signals = new double[AlertRuleEngine.SIGNAL_NAMES.length];
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        rulesFile = dir.resolve("alert-rules.yml");
+        writeRules("  - name: HighLatency\n"
+                + "    metric: unit_latency_p99_ms\n"
+                + "    aggregate: avg\n"
+                + "    window: 10s\n"
+                + "    op: \">\"\n"
+                + "    threshold: 100\n"
+                + "    for: 5s\n"
+                + "    severity: critical\n"
+                + "  - name: QpsSurge\n"
+                + "    metric: unit_qps_total\n"
+                + "    aggregate: rate\n"
+                + "    window: 5s\n"
+                + "    threshold: 10\n");
+        AlertConfig config = new AlertConfig();
+        config.setRulesFile(rulesFile.toString());
+        engine = new AlertRuleEngine();
+        ReflectionTestUtils.setField(engine, "config", config);
+        assertEquals(2, engine.reload());
+    }
+
+    private void writeRules(String rules) throws IOException {
+        Files.write(rulesFile, ("rules:\n" + rules).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String state(String rule) {
+        for (Map<String, Object> map : engine.getRules()) {
+            if (rule.equals(map.get("name"))) {
+                return (String) map.get("state");
+            }
+        }
+        throw new AssertionError("no rule " + rule);
+    }
+
+    private void sample(long second, double p99, double qps) {
+        signals[P99] = p99;
+        signals[QPS] = qps;
+        engine.evaluate(second * 1000, signals);
+    }
+
+    @Test
+    public void testForDurationAndResolve() {
+        for (int s = 0; s < 10; s++) {
+            sample(s, 50, 100);
+        }
+        assertEquals(AlertRuleEngine.STATE_INACTIVE, state("HighLatency"));
+
+        // 10秒窗口的平均值在第15秒超过100
+        long s = 10;
+        while (!AlertRuleEngine.STATE_PENDING.equals(state("HighLatency"))) {
+            sample(s++, 200, 100);
+            assertTrue(s < 30);
+        }
+        long pendingAt = s - 1;
+        while (!AlertRuleEngine.STATE_FIRING.equals(state("HighLatency"))) {
+            sample(s++, 200, 100);
+        }
+        assertEquals(pendingAt + 5, s - 1);
+        assertEquals(1, engine.getFiringCount());
+        assertEquals("HighLatency", engine.getActiveAlerts().get(0).get("name"));
+
+        while (AlertRuleEngine.STATE_FIRING.equals(state("HighLatency"))) {
+            sample(s++, 10, 100);
+        }
+        List<Map<String, Object>> history = engine.getHistory();
+        assertEquals(2, history.size());
+        assertEquals("resolved", history.get(0).get("event"));
+        assertEquals("firing", history.get(1).get("event"));
+        assertTrue(engine.getActiveAlerts().isEmpty());
+    }
+
+    @Test
+    public void testRateRule() {
+        for (int s = 0; s < 10; s++) {
+            sample(s, 0, 100 + s * 5);
+        }
+        assertEquals(AlertRuleEngine.STATE_INACTIVE, state("QpsSurge"));
+        for (int s = 10; s < 20; s++) {
+            sample(s, 0, 150 + (s - 10) * 20);
+        }
+        // 没有 for 的规则立即触发
+        assertEquals(AlertRuleEngine.STATE_FIRING, state("QpsSurge"));
+    }
+
+    @Test
+    public void testReloadKeepsStateOfUnchangedRules() throws IOException {
+        for (int s = 0; s < 30; s++) {
+            sample(s, 500, 100);
+        }
+        assertEquals(AlertRuleEngine.STATE_FIRING, state("HighLatency"));
+
+        // 只修改 QpsSurge，HighLatency 保持FIRING
+        writeRules("  - name: HighLatency\n"
+                + "    metric: unit_latency_p99_ms\n"
+                + "    aggregate: avg\n"
+                + "    window: 10s\n"
+                + "    op: \">\"\n"
+                + "    threshold: 100\n"
+                + "    for: 5s\n"
+                + "    severity: critical\n"
+                + "  - name: QpsSurge\n"
+                + "    metric: unit_qps_total\n"
+                + "    aggregate: rate\n"
+                + "    window: 5s\n"
+                + "    threshold: 20\n");
+        assertEquals(2, engine.reload());
+        assertEquals(AlertRuleEngine.STATE_FIRING, state("HighLatency"));
+        assertEquals(20.0, engine.getRules().get(1).get("threshold"));
+
+        // 格式错误时保留原有规则
+        writeRules("  - name: Broken\n    metric: no_such_metric\n    threshold: 1\n");
+        assertThrows(IllegalArgumentException.class, () -> engine.reload());
+        assertEquals(2, engine.getRules().size());
+        writeRules("  - [unclosed\n");
+        assertThrows(IllegalArgumentException.class, () -> engine.reload());
+        assertEquals(AlertRuleEngine.STATE_FIRING, state("HighLatency"));
+    }
+
+    @Test
+    public void testLowCacheHitRatioFiresFromTwoLevelCacheCounters() {
+        // 规则文件不存在时使用 classpath 中的 alert-rules.yml
+        AlertConfig config = new AlertConfig();
+        config.setRulesFile(dir.resolve("missing.yml").toString());
+        ReflectionTestUtils.setField(engine, "config", config);
+        engine.reload();
+
+        MeterRegistry registry = new SimpleMeterRegistry();
+        MeterIndex meterIndex = new MeterIndex();
+        meterIndex.bind(registry);
+        ContentionConfig contentionConfig = new ContentionConfig();
+        contentionConfig.setEnabled(false);
+        LockContentionMonitor lockContentionMonitor = new LockContentionMonitor();
+        ReflectionTestUtils.setField(lockContentionMonitor, "config", contentionConfig);
+        ReflectionTestUtils.setField(lockContentionMonitor, "meterRegistry", registry);
+        lockContentionMonitor.start();
+        RuntimeSignals runtimeSignals = new RuntimeSignals();
+        ReflectionTestUtils.setField(runtimeSignals, "meterIndex", meterIndex);
+        ReflectionTestUtils.setField(runtimeSignals, "lockContentionMonitor", lockContentionMonitor);
+        ReflectionTestUtils.setField(runtimeSignals, "adaptiveL1CacheSizer", new AdaptiveL1CacheSizer());
+
+        ConcurrentMapCache l1 = new ConcurrentMapCache("users");
+        ConcurrentMapCache l2 = new ConcurrentMapCache("users");
+        TwoLevelCache cache = new TwoLevelCache("users", l1, l2);
+        cache.setMeterRegistry(registry);
+        l2.put("remote", "value");
+
+        int offset = UnitMetricsService.METRIC_NAMES.length;
+        long s = 0;
+        while (!AlertRuleEngine.STATE_FIRING.equals(state("LowCacheHitRatio"))) {
+            // 每秒1次Caffeine命中、1次Redis命中、8次未命中
+            l1.put("local", "value");
+            l1.evict("remote");
+            cache.get("local");
+            cache.get("remote");
+            for (int i = 0; i < 8; i++) {
+                cache.get("absent" + i);
+            }
+            runtimeSignals.fill(s * 1000, signals, offset);
+            if (s > 0) {
+                // 第一次采样没有上一次的计数，命中率为NaN
+                assertEquals(0.2, signals[offset + 1], 1e-9);
+            }
+            engine.evaluate(s * 1000, signals);
+            assertTrue(++s < 700, "LowCacheHitRatio did not fire");
+        }
+        // 5分钟窗口填满后再持续5分钟
+        assertTrue(s > 300);
+    }
+}
@@ -0,0 +1,94 @@
+package com.acme.monitor.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 依赖健康探测测试：卡住的检查不会重复提交，超时后标记为DOWN
+ */
+public class DependencyHealthProbeTest {
+    private DependencyHealthProbe probe;
+
+    @BeforeEach
+    public void setUp() {
+        probe = new DependencyHealthProbe();
+        // 没有Redis和数据源，定时任务不做检查，由测试直接调用 probe()
+        ReflectionTestUtils.setField(probe, "redisConnectionFactory", mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(probe, "dataSource", mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(probe, "probeIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(probe, "probeTimeoutMs", 100L);
+        probe.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        probe.stop();
+    }
+
+    @Test
+    public void testHungCheckIsNotResubmitted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            probe.probe("redis", () -> {
+                calls.incrementAndGet();
+                release.await();
+                return true;
+            });
+            Thread.sleep(60);
+        }
+        assertEquals(1, calls.get());
+        DependencyHealthProbe.DependencyStatus status = probe.getResults().get("redis");
+        assertFalse(status.isUp());
+        assertEquals("timeout", status.getError());
+
+        // 卡住的检查返回后才提交下一次
+        release.countDown();
+        waitUntil(() -> probe.getResults().get("redis").getLatencyMs() > 100);
+        probe.probe("redis", () -> {
+            calls.incrementAndGet();
+            return true;
+        });
+        waitUntil(() -> probe.getResults().get("redis").isUp());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testCheckerThreadsAreBounded() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            probe.probe("a", () -> {
+                release.await();
+                return true;
+            });
+            probe.probe("b", () -> {
+                release.await();
+                return true;
+            });
+            probe.probe("c", () -> true);
+            DependencyHealthProbe.DependencyStatus status = probe.getResults().get("c");
+            assertFalse(status.isUp());
+            assertEquals("no checker thread available", status.getError());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.GcMonitorConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GC事件监控测试，直接调用 record() 模拟GC通知
+ */
+public class GcEventMonitorTest {
+    private static final long MB = 1024 * 1024;
+
+    private GcEventMonitor monitor;
+    private long t;
+
+    @BeforeEach
+    public void setUp() {
+        GcMonitorConfig config = new GcMonitorConfig();
+        config.setEnabled(false);
+        config.setHistorySize(3);
+        config.setRateWindowSeconds(10);
+        monitor = new GcEventMonitor();
+        ReflectionTestUtils.setField(monitor, "config", config);
+        ReflectionTestUtils.setField(monitor, "meterRegistry", new SimpleMeterRegistry());
+        // 不订阅GC通知
+        monitor.start();
+        // 运行时间超过一个窗口，速率按完整窗口计算
+        t = System.currentTimeMillis() + 60_000;
+    }
+
+    @Test
+    public void testRatesAndOverhead() {
+        monitor.record("PS Scavenge", "end of minor GC", "Allocation Failure", t, 20,
+                usage(100, 10), usage(0, 12), t);
+        monitor.record("PS Scavenge", "end of minor GC", "Allocation Failure", t + 1000, 30,
+                usage(80, 12), usage(0, 15), t + 1000);
+        monitor.record("PS MarkSweep", "end of major GC", "Ergonomics", t + 2000, 200,
+                usage(50, 15), usage(0, 5), t + 2000);
+        monitor.record("G1 Concurrent GC", "end of GC cycle", "No GC", t + 3000, 1000,
+                usage(20, 5), usage(20, 5), t + 3000);
+
+        // 第一次GC之前的分配无法计算；full GC不计晋升；并发周期不计入停顿
+        assertEquals(150.0 * MB / 10, monitor.getAllocationRate(t + 3000), 1);
+        assertEquals(5.0 * MB / 10, monitor.getPromotionRate(t + 3000), 1);
+        assertEquals(2.5, monitor.getOverheadPct(t + 3000), 1e-9);
+
+        // 前三次GC移出窗口
+        assertEquals(20.0 * MB / 10, monitor.getAllocationRate(t + 12_500), 1);
+        assertEquals(0, monitor.getPromotionRate(t + 12_500), 1e-9);
+        assertEquals(0, monitor.getOverheadPct(t + 12_500), 1e-9);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRecentEventsRing() {
+        for (int i = 0; i < 4; i++) {
+            monitor.record("PS Scavenge", "end of minor GC", "Allocation Failure", t + i, 10 + i,
+                    usage(100, 10), usage(0, 11), t + i);
+        }
+        assertEquals(4, monitor.getEventCount());
+        List<Map<String, Object>> events = monitor.getRecentEvents(10);
+        assertEquals(3, events.size());
+        assertEquals(3L, events.get(0).get("id"));
+        assertEquals(1L, events.get(2).get("id"));
+        assertEquals(13L, events.get(0).get("duration_ms"));
+        assertEquals(false, events.get(0).get("concurrent"));
+        assertEquals(100 * MB, events.get(0).get("allocated_bytes"));
+        assertEquals(MB, events.get(0).get("promoted_bytes"));
+        Map<String, Object> eden = (Map<String, Object>) ((Map<String, Object>) events.get(0).get("pools")).get("PS Eden Space");
+        assertEquals(100 * MB, eden.get("before"));
+        assertEquals(0L, eden.get("after"));
+
+        assertEquals(1, monitor.getRecentEvents(1).size());
+    }
+
+    @Test
+    public void testYoungPool() {
+        assertTrue(GcEventMonitor.isYoungPool("G1 Eden Space"));
+        assertTrue(GcEventMonitor.isYoungPool("nursery-allocate"));
+        assertFalse(GcEventMonitor.isYoungPool("G1 Survivor Space"));
+        assertFalse(GcEventMonitor.isYoungPool("PS Old Gen"));
+    }
+
+    private static Map<String, MemoryUsage> usage(long edenMb, long oldMb) {
+        Map<String, MemoryUsage> usage = new HashMap<>();
+        usage.put("PS Eden Space", new MemoryUsage(0, edenMb * MB, 200 * MB, 200 * MB));
+        usage.put("PS Old Gen", new MemoryUsage(0, oldMb * MB, 500 * MB, 500 * MB));
+        usage.put("Metaspace", new MemoryUsage(0, 30 * MB, 32 * MB, -1));
+        return usage;
+    }
+}
@@ -0,0 +1,162 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.FederationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用本地 HttpServer 模拟对端单元，测试并发扇出、超时、对冲和缓存
+ */
+public class HealthFederationServiceTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private FederationConfig config;
+    private HealthFederationService service;
+
+    @BeforeEach
+    public void setUp() {
+        config = new FederationConfig();
+        config.setTimeoutMs(500);
+        config.setHedgeDelayMs(100);
+        config.setCacheTtlMs(60_000);
+
+        Map<String, Object> localStatus = new HashMap<>();
+        localStatus.put("unit_qps_total", 100.0);
+        localStatus.put("unit_success_rate", 1.0);
+        localStatus.put("unit_cpu_pct", 20.0);
+        localStatus.put("unit_latency_p99_ms", 30.0);
+        service = new HealthFederationService();
+        ReflectionTestUtils.setField(service, "config", config);
+        ReflectionTestUtils.setField(service, "unitMetricsService", new UnitMetricsService() {
+            @Override
+            public Map<String, Object> getUnitStatus() {
+                return localStatus;
+            }
+        });
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "spanTracer", new SpanTracer());
+        ReflectionTestUtils.setField(service, "unitId", "U01");
+        service.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.stop();
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * 启动一个模拟单元，delays 依次为每次请求的延迟（毫秒），用完后沿用最后一个
+     */
+    private String startPeer(double qps, AtomicInteger requests, long... delays) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext(HealthFederationService.STATUS_PATH, exchange -> {
+            int n = requests.getAndIncrement();
+            try {
+                Thread.sleep(delays[Math.min(n, delays.length - 1)]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"unit_qps_total\":" + qps + ",\"unit_success_rate\":0.5,"
+                    + "\"unit_cpu_pct\":40.0,\"unit_latency_p99_ms\":80.0}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void addPeer(String id, String url) {
+        FederationConfig.Peer peer = new FederationConfig.Peer();
+        peer.setId(id);
+        peer.setUrls(Collections.singletonList(url));
+        config.getPeers().add(peer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> unit(Map<String, Object> view, String id) {
+        return (Map<String, Object>) ((Map<String, Object>) view.get("units")).get(id);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSlowPeerYieldsPartialResult() throws Exception {
+        addPeer("U02", startPeer(300, new AtomicInteger(), 0));
+        addPeer("U03", startPeer(300, new AtomicInteger(), 2000));
+
+        long start = System.currentTimeMillis();
+        Map<String, Object> view = service.getClusterView();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed < 1500, "fan-out should be bounded by the per-peer timeout, took " + elapsed);
+        assertEquals("UP", unit(view, "U01").get("status"));
+        assertEquals("UP", unit(view, "U02").get("status"));
+        assertEquals("TIMEOUT", unit(view, "U03").get("status"));
+
+        Map<String, Object> summary = (Map<String, Object>) view.get("summary");
+        assertEquals(3, summary.get("units_total"));
+        assertEquals(2, summary.get("units_up"));
+        assertEquals(true, summary.get("partial"));
+        assertEquals(400.0, summary.get("qps_total"));
+        // 成功率按QPS加权：(100 * 1.0 + 300 * 0.5) / 400
+        assertEquals(0.63, summary.get("success_rate"));
+        assertEquals(80.0, summary.get("latency_p99_ms_max"));
+    }
+
+    @Test
+    public void testHedgedRequestWinsOverSlowFirstAttempt() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        addPeer("U02", startPeer(10, requests, 2000, 0));
+
+        Map<String, Object> view = service.getClusterView();
+
+        assertEquals("UP", unit(view, "U02").get("status"));
+        assertEquals(true, unit(view, "U02").get("hedged"));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testUnreachablePeerIsMarkedDown() {
+        addPeer("U02", "http://127.0.0.1:1");
+
+        Map<String, Object> view = service.getClusterView();
+
+        assertEquals("DOWN", unit(view, "U02").get("status"));
+        assertNotNull(unit(view, "U02").get("error"));
+    }
+
+    @Test
+    public void testViewIsCachedWithinTtl() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        addPeer("U02", startPeer(10, requests, 0));
+
+        Map<String, Object> first = service.getClusterView();
+        Map<String, Object> second = service.getClusterView();
+
+        assertSame(first, second);
+        assertEquals(1, requests.get());
+    }
+}
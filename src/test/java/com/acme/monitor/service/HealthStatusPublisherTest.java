@@ -0,0 +1,103 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.controller.HealthController;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 预序列化健康状态与条件请求测试
+ */
+public class HealthStatusPublisherTest {
+
+    private UnitMetricsService unitMetricsService;
+    private HealthStatusPublisher publisher;
+    private HealthController controller;
+    private Map<String, Object> status;
+
+    @BeforeEach
+    public void setUp() {
+        unitMetricsService = mock(UnitMetricsService.class);
+        DependencyHealthProbe probe = mock(DependencyHealthProbe.class);
+        when(probe.getResults()).thenReturn(Collections.emptyMap());
+        status = new HashMap<>();
+        status.put("unit_up", 1);
+        status.put("unit_cpu_pct", 12.5);
+        when(unitMetricsService.getUnitStatus()).thenAnswer(invocation -> new HashMap<>(status));
+
+        publisher = new HealthStatusPublisher();
+        ReflectionTestUtils.setField(publisher, "unitMetricsService", unitMetricsService);
+        ReflectionTestUtils.setField(publisher, "dependencyHealthProbe", probe);
+        ReflectionTestUtils.setField(publisher, "objectMapper", new ObjectMapper());
+        publisher.regenerate();
+
+        controller = new HealthController();
+        ReflectionTestUtils.setField(controller, "healthStatusPublisher", publisher);
+    }
+
+    @Test
+    public void testUnchangedContentKeepsPayload() {
+        HealthStatusPublisher.Payload first = publisher.getPayload();
+        publisher.regenerate();
+
+        assertSame(first, publisher.getPayload());
+    }
+
+    @Test
+    public void testChangedContentChangesEtag() {
+        String etag = publisher.getPayload().getEtag();
+        status.put("unit_cpu_pct", 80.0);
+        publisher.regenerate();
+
+        assertNotEquals(etag, publisher.getPayload().getEtag());
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/health/status");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    @Test
+    public void testIfNoneMatchReturnsNotModified() {
+        ResponseEntity<byte[]> full = controller.status(request(null));
+        assertEquals(HttpStatus.OK, full.getStatusCode());
+        assertTrue(new String(full.getBody()).contains("\"unit_cpu_pct\":12.5"));
+        String etag = full.getHeaders().getETag();
+
+        ResponseEntity<byte[]> cached = controller.status(request(etag));
+        assertEquals(HttpStatus.NOT_MODIFIED, cached.getStatusCode());
+        assertNull(cached.getBody());
+        // 弱ETag和多个ETag的列表形式
+        assertEquals(HttpStatus.NOT_MODIFIED, controller.status(request("W/" + etag)).getStatusCode());
+        assertEquals(HttpStatus.NOT_MODIFIED, controller.status(request("\"stale\", " + etag)).getStatusCode());
+        assertEquals(HttpStatus.OK, controller.status(request("\"stale\"")).getStatusCode());
+    }
+
+    @Test
+    public void testStatusUnavailableBeforeFirstPayload() {
+        HealthController empty = new HealthController();
+        ReflectionTestUtils.setField(empty, "healthStatusPublisher", new HealthStatusPublisher());
+
+        ResponseEntity<byte[]> response = empty.status(request(null));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("{\"status\":\"DOWN\"}", new String(response.getBody()));
+    }
+}
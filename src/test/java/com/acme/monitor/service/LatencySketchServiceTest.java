@@ -0,0 +1,42 @@
+package com.acme.monitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 延迟草图服务测试，使用可控时钟验证分钟窗口的轮换和复用
+ */
+public class LatencySketchServiceTest {
+    private static final long MINUTE = LatencySketchService.WINDOW_MILLIS;
+
+    @Test
+    public void testWindowsRollAndExpire() {
+        AtomicLong now = new AtomicLong(100 * MINUTE);
+        LatencySketchService service = new LatencySketchService(now::get);
+        for (int i = 1; i <= 100; i++) {
+            service.record(LatencySketchService.SOURCE_HTTP, i);
+        }
+        now.addAndGet(MINUTE);
+        service.record(LatencySketchService.SOURCE_HTTP, 1000, 10);
+
+        List<LatencySketchService.Sample> windows = service.windows(LatencySketchService.SOURCE_HTTP, 5);
+        assertEquals(2, windows.size());
+        assertEquals(100 * MINUTE, windows.get(0).getStart());
+        assertEquals(100, windows.get(0).getSketch().getCount());
+        assertEquals(10, windows.get(1).getSketch().getCount());
+        assertEquals(110, service.merged(LatencySketchService.SOURCE_HTTP, 5).getCount());
+        assertEquals(10, service.merged(LatencySketchService.SOURCE_HTTP, 1).getCount());
+
+        // 同一个slot在WINDOW_COUNT分钟后复用，旧数据被清零
+        now.addAndGet((LatencySketchService.WINDOW_COUNT - 1) * MINUTE);
+        service.record(LatencySketchService.SOURCE_HTTP, 5);
+        List<LatencySketchService.Sample> reused = service.windows(LatencySketchService.SOURCE_HTTP, 1);
+        assertEquals(1, reused.size());
+        assertEquals(1, reused.get(0).getSketch().getCount());
+        assertTrue(service.windows("grpc", 5).isEmpty());
+    }
+}
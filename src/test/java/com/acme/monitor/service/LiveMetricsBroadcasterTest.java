@@ -0,0 +1,180 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.LiveStreamConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用内存中的 FrameSink 测试帧编码、共享、慢订阅者的帧合并和断开
+ */
+public class LiveMetricsBroadcasterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private LiveStreamConfig config;
+    private LiveMetricsBroadcaster broadcaster;
+    private final double[] values = new double[UnitMetricsService.METRIC_NAMES.length];
+    private long timestamp = 1_000;
+
+    @BeforeEach
+    public void setUp() {
+        config = new LiveStreamConfig();
+        config.setSnapshotEveryFrames(1000);
+        broadcaster = new LiveMetricsBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "config", config);
+        ReflectionTestUtils.setField(broadcaster, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(broadcaster, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(broadcaster, "unitId", "U01");
+        broadcaster.start();
+        values[0] = 1;
+        values[9] = 100;
+    }
+
+    private void publish(List<Map<String, Object>> alerts) {
+        broadcaster.publish(timestamp, values, alerts);
+        timestamp += 1000;
+    }
+
+    private void publish() {
+        publish(Collections.<Map<String, Object>>emptyList());
+    }
+
+    private static String event(byte[] frame) {
+        String text = new String(frame, StandardCharsets.UTF_8);
+        int start = text.indexOf("event: ") + 7;
+        return text.substring(start, text.indexOf('\n', start));
+    }
+
+    private JsonNode data(byte[] frame) throws IOException {
+        String text = new String(frame, StandardCharsets.UTF_8);
+        assertTrue(text.endsWith("\n\n"));
+        int start = text.indexOf("data: ") + 6;
+        return objectMapper.readTree(text.substring(start, text.length() - 2));
+    }
+
+    @Test
+    public void testSnapshotThenDeltasSharedByAllSubscribers() throws IOException {
+        FakeSink first = new FakeSink();
+        FakeSink second = new FakeSink();
+        assertNotNull(broadcaster.subscribe(first));
+        publish();
+        assertNotNull(broadcaster.subscribe(second));
+        // 后连接的订阅者立即收到最近的 snapshot
+        assertEquals(1, second.frames.size());
+        assertSame(first.frames.get(0), second.frames.get(0));
+        assertEquals(LiveMetricsBroadcaster.EVENT_SNAPSHOT, event(first.frames.get(0)));
+        assertEquals(UnitMetricsService.METRIC_NAMES.length, data(first.frames.get(0)).get("metrics").size());
+
+        values[9] = 120;
+        publish();
+        assertEquals(2, first.frames.size());
+        assertSame(first.frames.get(1), second.frames.get(1));
+        assertEquals(LiveMetricsBroadcaster.EVENT_DELTA, event(first.frames.get(1)));
+        JsonNode delta = data(first.frames.get(1));
+        assertEquals(1, delta.get("metrics").size());
+        assertEquals(120.0, delta.get("metrics").get("unit_qps_total").asDouble(), 0.0);
+        assertNull(delta.get("alerts"));
+
+        // 告警变化时 delta 包含告警列表
+        Map<String, Object> alert = Collections.<String, Object>singletonMap("name", "HighLatencyP99");
+        publish(Collections.singletonList(alert));
+        assertEquals("HighLatencyP99", data(first.frames.get(2)).get("alerts").get(0).get("name").asText());
+    }
+
+    @Test
+    public void testSlowSubscriberDropsIntermediateFrames() throws IOException {
+        FakeSink fast = new FakeSink();
+        FakeSink slow = new FakeSink();
+        broadcaster.subscribe(fast);
+        LiveMetricsBroadcaster.Subscriber slowSubscriber = broadcaster.subscribe(slow);
+        slow.ready = false;
+
+        for (int i = 0; i < 10; i++) {
+            values[9] = 100 + i;
+            publish();
+        }
+        assertEquals(10, fast.frames.size());
+        assertEquals(0, slow.frames.size());
+        assertEquals(9, slowSubscriber.getDropped());
+
+        // 恢复后只收到最新的一帧，而且是完整快照
+        slow.ready = true;
+        slowSubscriber.onWritable();
+        assertEquals(1, slow.frames.size());
+        assertEquals(LiveMetricsBroadcaster.EVENT_SNAPSHOT, event(slow.frames.get(0)));
+        assertEquals(109.0, data(slow.frames.get(0)).get("metrics").get("unit_qps_total").asDouble(), 0.0);
+
+        values[9] = 200;
+        publish();
+        assertEquals(2, slow.frames.size());
+        assertEquals(LiveMetricsBroadcaster.EVENT_DELTA, event(slow.frames.get(1)));
+    }
+
+    @Test
+    public void testStalledAndFailedSubscribersAreClosed() throws Exception {
+        config.setMaxStallMs(50);
+        FakeSink stalled = new FakeSink();
+        FakeSink broken = new FakeSink();
+        broadcaster.subscribe(stalled);
+        broadcaster.subscribe(broken);
+        stalled.ready = false;
+        broken.fail = true;
+        publish();
+        assertTrue(broken.closed);
+        assertEquals(1, broadcaster.getSubscriberCount());
+
+        Thread.sleep(100);
+        publish();
+        assertTrue(stalled.closed);
+        assertEquals(0, broadcaster.getSubscriberCount());
+    }
+
+    @Test
+    public void testMaxSubscribers() {
+        config.setMaxSubscribers(2);
+        assertNotNull(broadcaster.subscribe(new FakeSink()));
+        LiveMetricsBroadcaster.Subscriber second = broadcaster.subscribe(new FakeSink());
+        assertFalse(broadcaster.hasCapacity());
+        assertNull(broadcaster.subscribe(new FakeSink()));
+        second.close();
+        second.close();
+        assertTrue(broadcaster.hasCapacity());
+    }
+
+    private static final class FakeSink implements LiveMetricsBroadcaster.FrameSink {
+        private final List<byte[]> frames = new ArrayList<>();
+        private volatile boolean ready = true;
+        private volatile boolean fail;
+        private volatile boolean closed;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void write(byte[] frame) throws IOException {
+            if (fail) {
+                throw new IOException("broken pipe");
+            }
+            frames.add(frame);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.ContentionConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 锁竞争和死锁监控测试，直接调用 sample() 和 report()
+ */
+public class LockContentionMonitorTest {
+    private LockContentionMonitor monitor;
+
+    @BeforeEach
+    public void setUp() {
+        ContentionConfig config = new ContentionConfig();
+        config.setEnabled(false);
+        monitor = new LockContentionMonitor();
+        ReflectionTestUtils.setField(monitor, "config", config);
+        ReflectionTestUtils.setField(monitor, "meterRegistry", new SimpleMeterRegistry());
+        // 不启动监控线程
+        monitor.start();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testContendedMonitor() throws Exception {
+        Object lock = new Object();
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread owner = new Thread(() -> {
+            synchronized (lock) {
+                held.countDown();
+                awaitQuietly(release);
+            }
+        }, "lock-owner");
+        Thread waiter = new Thread(() -> {
+            synchronized (lock) {
+                lock.hashCode();
+            }
+        }, "lock-waiter");
+        owner.start();
+        held.await();
+        waiter.start();
+        waitForState(waiter, Thread.State.BLOCKED);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(monitor.sample() >= 1);
+            }
+            Map<String, Object> report = monitor.report(System.currentTimeMillis());
+            List<Map<String, Object>> locks = (List<Map<String, Object>>) report.get("locks");
+            Map<String, Object> entry = locks.stream()
+                    .filter(l -> "lock-owner".equals(l.get("owner")))
+                    .findFirst().orElseThrow(() -> new AssertionError("contended lock not reported: " + locks));
+            assertEquals("java.lang.Object", entry.get("class"));
+            assertEquals(3L, entry.get("blocked_samples"));
+            assertEquals(1, entry.get("max_waiters"));
+            Map<String, Integer> waitingAt = (Map<String, Integer>) entry.get("waiting_at");
+            assertTrue(waitingAt.keySet().iterator().next().contains("LockContentionMonitorTest"));
+            List<String> ownerStack = (List<String>) entry.get("owner_stack");
+            assertTrue(ownerStack.stream().anyMatch(f -> f.contains("awaitQuietly")));
+            assertTrue(((List<?>) report.get("deadlocks")).isEmpty());
+            assertSame(report, monitor.getLastReport());
+        } finally {
+            release.countDown();
+            owner.join();
+            waiter.join();
+        }
+
+        // 汇总后窗口清空
+        Map<String, Object> next = monitor.report(System.currentTimeMillis());
+        assertTrue(((List<?>) next.get("locks")).isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeadlock() throws Exception {
+        ReentrantLock first = new ReentrantLock();
+        ReentrantLock second = new ReentrantLock();
+        CountDownLatch locked = new CountDownLatch(2);
+        Thread a = new Thread(() -> lockBoth(first, second, locked), "deadlock-a");
+        Thread b = new Thread(() -> lockBoth(second, first, locked), "deadlock-b");
+        a.start();
+        b.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!first.hasQueuedThreads() || !second.hasQueuedThreads()) {
+                assertTrue(System.currentTimeMillis() < deadline, "threads did not deadlock");
+                Thread.sleep(10);
+            }
+            Map<String, Object> report = monitor.report(System.currentTimeMillis());
+            List<Map<String, Object>> deadlocks = (List<Map<String, Object>>) report.get("deadlocks");
+            assertEquals(2, deadlocks.size());
+            assertEquals(2, monitor.getDeadlockedThreads());
+            Map<String, Object> thread = deadlocks.get(0);
+            assertNotNull(thread.get("waiting_for"));
+            assertTrue(((String) thread.get("owner")).startsWith("deadlock-"));
+            assertFalse(((List<?>) thread.get("stack")).isEmpty());
+        } finally {
+            a.interrupt();
+            b.interrupt();
+            a.join();
+            b.join();
+        }
+        monitor.report(System.currentTimeMillis());
+        assertEquals(0, monitor.getDeadlockedThreads());
+    }
+
+    @Test
+    public void testPoolName() {
+        assertEquals("http-nio-8080-exec", LockContentionMonitor.poolName("http-nio-8080-exec-3"));
+        assertEquals("pool-2-thread", LockContentionMonitor.poolName("pool-2-thread-17"));
+        assertEquals("main", LockContentionMonitor.poolName("main"));
+        assertEquals("123", LockContentionMonitor.poolName("123"));
+    }
+
+    private static void lockBoth(ReentrantLock outer, ReentrantLock inner, CountDownLatch locked) {
+        try {
+            outer.lockInterruptibly();
+            try {
+                locked.countDown();
+                locked.await();
+                inner.lockInterruptibly();
+                inner.unlock();
+            } finally {
+                outer.unlock();
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static void waitForState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != state) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(thread.getName() + " did not reach " + state);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.acme.monitor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 指标倒排索引测试
+ */
+public class MeterIndexTest {
+
+    private MeterRegistry registry;
+    private MeterIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        // 索引绑定前已存在的指标
+        Counter.builder("cache.gets").tag("cache", "users").tag("result", "hit").register(registry);
+        index = new MeterIndex();
+        index.bind(registry);
+        for (String unit : Arrays.asList("U01", "U02")) {
+            for (int i = 0; i < 10; i++) {
+                Counter.builder("unit.rtt").tag("unit_id", unit).tag("method", "m" + i).register(registry);
+            }
+        }
+        Counter.builder("cache.gets").tag("cache", "orders").tag("result", "miss").register(registry);
+    }
+
+    private static Map<String, Collection<String>> tags(String... keyValues) {
+        Map<String, Collection<String>> tags = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            tags.put(keyValues[i], Arrays.asList(keyValues[i + 1].split(",")));
+        }
+        return tags;
+    }
+
+    @Test
+    public void testFind() {
+        assertEquals(22, index.size());
+        assertEquals(22, index.find(null, Collections.<String, Collection<String>>emptyMap()).size());
+        assertEquals(20, index.find("unit_", tags()).size());
+        assertEquals(2, index.find("cache_gets", tags()).size());
+        assertEquals(10, index.find(null, tags("unit_id", "U01")).size());
+        assertEquals(4, index.find("unit_rtt", tags("method", "m1,m2")).size());
+
+        List<Meter.Id> ids = index.find(null, tags("unit_id", "U02", "method", "m3"));
+        assertEquals(1, ids.size());
+        assertEquals("U02", ids.get(0).getTag("unit_id"));
+        assertEquals("m3", ids.get(0).getTag("method"));
+
+        assertEquals("users", index.find(null, tags("cache", "users")).get(0).getTag("cache"));
+        assertTrue(index.find("jvm_", tags()).isEmpty());
+        assertTrue(index.find(null, tags("unit_id", "U09")).isEmpty());
+        assertTrue(index.find("cache_", tags("unit_id", "U01")).isEmpty());
+    }
+
+    @Test
+    public void testRemovedMetersAreUnindexed() {
+        for (Meter.Id id : index.find(null, tags("unit_id", "U01"))) {
+            registry.remove(id);
+        }
+        assertEquals(12, index.size());
+        assertTrue(index.find(null, tags("unit_id", "U01")).isEmpty());
+        assertEquals(10, index.find("unit_", tags()).size());
+
+        Counter.builder("unit.rtt").tag("unit_id", "U01").tag("method", "m0").register(registry);
+        assertEquals(1, index.find("unit_rtt", tags("unit_id", "U01")).size());
+    }
+}
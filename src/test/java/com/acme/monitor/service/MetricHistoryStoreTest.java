@@ -0,0 +1,62 @@
+package com.acme.monitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多分辨率历史记录的汇总与环形覆盖测试
+ */
+public class MetricHistoryStoreTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    @Test
+    public void testRollupAcrossResolutions() {
+        MetricHistoryStore store = new MetricHistoryStore(2);
+        for (int i = 0; i < 20; i++) {
+            store.onSample(BASE + i * 1000L, new double[]{i, 100 - i});
+        }
+
+        MetricHistoryStore.Series seconds = store.query(0, BASE, BASE + 19_000, 1000);
+        assertEquals(1000, seconds.getStepMillis());
+        assertEquals(20, seconds.getTimestamps().length);
+        assertEquals(BASE + 5000, seconds.getTimestamps()[5]);
+        assertEquals(5, seconds.getAvg()[5], 0.0001);
+
+        MetricHistoryStore.Series tens = store.query(1, BASE, BASE + 19_000, 10_000);
+        assertEquals(10_000, tens.getStepMillis());
+        assertEquals(2, tens.getTimestamps().length);
+        assertEquals(91, tens.getMin()[0], 0.0001);
+        assertEquals(100, tens.getMax()[0], 0.0001);
+        assertEquals(95.5, tens.getAvg()[0], 0.0001);
+        assertEquals(81, tens.getMin()[1], 0.0001);
+    }
+
+    @Test
+    public void testOldSlotsAreOverwritten() {
+        MetricHistoryStore store = new MetricHistoryStore(1);
+        int slots = MetricHistoryStore.RESOLUTION_SLOTS[0];
+        for (int i = 0; i < slots + 10; i++) {
+            store.onSample(BASE + i * 1000L, new double[]{i});
+        }
+
+        MetricHistoryStore.Series all = store.query(0, BASE, BASE + (slots + 10) * 1000L, 1000);
+        assertEquals(slots, all.getTimestamps().length);
+        assertEquals(BASE + 10_000, all.getTimestamps()[0]);
+        assertEquals(10, all.getAvg()[0], 0.0001);
+    }
+
+    @Test
+    public void testAutoResolutionFallsBackToCoarserTier() {
+        MetricHistoryStore store = new MetricHistoryStore(1);
+        long end = BASE + 2 * 3600 * 1000L;
+        for (long t = BASE; t <= end; t += 1000) {
+            store.onSample(t, new double[]{1});
+        }
+
+        assertEquals(1000, store.query(0, end - 60_000, end, 0).getStepMillis());
+        assertEquals(10_000, store.query(0, end - 90 * 60_000L, end, 0).getStepMillis());
+        assertEquals(60_000, store.query(0, end - 7 * 3600_000L, end, 0).getStepMillis());
+    }
+}
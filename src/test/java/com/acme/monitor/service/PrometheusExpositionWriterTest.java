@@ -0,0 +1,215 @@
+package com.acme.monitor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 预编码Prometheus输出的正确性和性能测试
+ * 性能测试默认覆盖1万和10万条时间序列，-Dexposition.benchmark.large=true 时额外测试100万条
+ */
+public class PrometheusExpositionWriterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrometheusExpositionWriterTest.class);
+
+    private static Map<String, Double> parse(String text) {
+        Map<String, Double> samples = new HashMap<>();
+        for (String line : text.split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.lastIndexOf(' ');
+            // simpleclient 在标签末尾多写一个逗号，两种写法都符合文本格式
+            samples.put(line.substring(0, space).replace(",}", "}"), Double.parseDouble(line.substring(space + 1)));
+        }
+        return samples;
+    }
+
+    private static String scrape(PrometheusExpositionWriter writer, boolean gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(out, gzip);
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        if (gzip) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            text.write(buffer, 0, n);
+        }
+        return new String(text.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testOutputMatchesPrometheusRegistry() throws Exception {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().commonTags("unit_id", "U01");
+        PrometheusExpositionWriter writer = new PrometheusExpositionWriter();
+        writer.bind(registry);
+
+        Counter.builder("cache.gets").tag("result", "hit").register(registry).increment(3);
+        Counter.builder("cache.gets").tag("result", "say \"miss\"").register(registry).increment(0.25);
+        AtomicLong queue = new AtomicLong(42);
+        Gauge.builder("queue.size", queue, AtomicLong::get).description("Queue size").register(registry);
+        Timer timer = Timer.builder("rpc.latency").tag("method", "getUser").register(registry);
+        timer.record(120, TimeUnit.MILLISECONDS);
+        timer.record(30, TimeUnit.MILLISECONDS);
+        DistributionSummary.builder("payload").baseUnit("bytes").register(registry).record(1024);
+        FunctionCounter.builder("evictions", queue, q -> q.get() * 2).register(registry);
+        Timer paused = Timer.builder("gc.pause").tag("action", "end of minor GC").publishPercentileHistogram()
+                .register(registry);
+        paused.record(3, TimeUnit.MILLISECONDS);
+        paused.record(2, TimeUnit.SECONDS);
+        DistributionSummary.builder("request.allocated").baseUnit("bytes").publishPercentileHistogram()
+                .register(registry).record(64 * 1024);
+
+        Map<String, Double> expected = parse(registry.scrape());
+        assertEquals(expected, parse(scrape(writer, false)));
+        assertEquals(expected, parse(scrape(writer, true)));
+        // 开启直方图的指标与 /actuator/prometheus 的类型一致
+        String text = scrape(writer, false);
+        assertTrue(text.contains("# TYPE gc_pause_seconds histogram\n"));
+        assertTrue(text.contains("# TYPE request_allocated_bytes histogram\n"));
+        assertEquals(2.0, parse(text).get("gc_pause_seconds_bucket{action=\"end of minor GC\",unit_id=\"U01\",le=\"+Inf\"}"));
+
+        // 删除的指标不再输出，新增的指标立即输出
+        registry.remove(timer);
+        Counter.builder("late.counter").register(registry).increment();
+        Map<String, Double> updated = parse(scrape(writer, false));
+        assertEquals(parse(registry.scrape()), updated);
+        assertTrue(updated.containsKey("late_counter_total{unit_id=\"U01\"}"));
+    }
+
+    @Test
+    public void testFilteredOutput() throws Exception {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        PrometheusExpositionWriter writer = new PrometheusExpositionWriter();
+        writer.bind(registry);
+        MeterIndex index = new MeterIndex();
+        index.bind(registry);
+        for (String unit : new String[]{"U01", "U02"}) {
+            Counter.builder("cache.gets").tag("unit_id", unit).tag("result", "hit").register(registry).increment();
+            Timer.builder("rpc.latency").tag("unit_id", unit).register(registry).record(10, TimeUnit.MILLISECONDS);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(out, false, index.find(null, Collections.singletonMap("unit_id", Collections.singleton("U02"))));
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        Map<String, Double> expected = new HashMap<>();
+        for (Map.Entry<String, Double> sample : parse(registry.scrape()).entrySet()) {
+            if (sample.getKey().contains("unit_id=\"U02\"")) {
+                expected.put(sample.getKey(), sample.getValue());
+            }
+        }
+        assertEquals(expected, parse(text));
+        // 每个指标族的头部只输出一次
+        assertEquals(1, text.split("# TYPE rpc_latency_seconds summary", -1).length - 1);
+    }
+
+    @Test
+    public void testScrapeBenchmark() throws Exception {
+        benchmark(10_000);
+        benchmark(100_000);
+        if (Boolean.getBoolean("exposition.benchmark.large")) {
+            benchmark(1_000_000);
+        }
+    }
+
+    private void benchmark(int series) throws IOException {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().commonTags("unit_id", "U01");
+        registerSeries(registry, series);
+        PrometheusExpositionWriter writer = new PrometheusExpositionWriter();
+        writer.bind(registry);
+        assertEquals(series, writer.getSeriesCount());
+
+        CountingOutputStream out = new CountingOutputStream();
+        for (int i = 0; i < 3; i++) {
+            writer.write(out, false);
+            writer.write(out, true);
+        }
+        measure("writer", series, () -> writer.write(out.reset(), false), out);
+        measure("writer gzip", series, () -> writer.write(out.reset(), true), out);
+        if (series <= 100_000) {
+            registry.scrape();
+            measure("micrometer scrape", series, () -> out.reset().write(
+                    registry.scrape().getBytes(StandardCharsets.UTF_8)), out);
+        }
+    }
+
+    private static void registerSeries(MeterRegistry registry, int series) {
+        // 100个指标名，每个指标按method标签展开
+        int perName = series / 100;
+        for (int name = 0; name < 100; name++) {
+            for (int i = 0; i < perName; i++) {
+                Counter.builder("app.requests." + name)
+                        .tag("method", "com.acme.monitor.service.Service" + (i % 50) + ".method" + i)
+                        .register(registry)
+                        .increment(i);
+            }
+        }
+    }
+
+    private static void measure(String label, int series, Scrape scrape, CountingOutputStream out) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int runs = 5;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            scrape.run();
+        }
+        long nanos = (System.nanoTime() - start) / runs;
+        long allocated = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / runs;
+        logger.info("{} series, {}: {} ms/scrape, {} KB allocated/scrape, {} KB output",
+                series, label, nanos / 1_000_000, allocated / 1024, out.count / 1024);
+    }
+
+    private interface Scrape {
+        void run() throws IOException;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        CountingOutputStream reset() {
+            count = 0;
+            return this;
+        }
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.RemoteWriteConfig;
+import com.acme.monitor.util.Snappy;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用本地 HttpServer 作为 remote write 接收端，测试编码、分批、重试和队列满时丢弃
+ */
+public class RemoteWriteExporterTest {
+
+    private HttpServer server;
+    private final AtomicInteger status = new AtomicInteger(204);
+    private final List<Map<String, Double>> requests = new CopyOnWriteArrayList<>();
+    private final List<String> encodings = new CopyOnWriteArrayList<>();
+    private RemoteWriteConfig config;
+    private MeterRegistry registry;
+    private RemoteWriteExporter exporter;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v1/write", exchange -> {
+            int code = status.get();
+            if (code == 204) {
+                encodings.add(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+                requests.add(decode(Snappy.uncompress(readAll(exchange.getRequestBody()))));
+            }
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        });
+        server.start();
+
+        config = new RemoteWriteConfig();
+        config.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/write");
+        config.setIntervalMs(3_600_000);
+        config.setMaxSamplesPerBatch(5);
+        config.setMaxBatchDelayMs(3_600_000);
+        config.setMinBackoffMs(10);
+        config.setMaxBackoffMs(20);
+        registry = new SimpleMeterRegistry();
+        for (int i = 0; i < 12; i++) {
+            registry.counter("test_requests", "index", String.valueOf(i)).increment(i);
+        }
+        exporter = new RemoteWriteExporter();
+        ReflectionTestUtils.setField(exporter, "config", config);
+        ReflectionTestUtils.setField(exporter, "meterRegistry", registry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        exporter.stop();
+        server.stop(0);
+    }
+
+    @Test
+    public void testBatchesAreSizeAndTimeBounded() throws Exception {
+        exporter.start();
+        // 12个测试计数器加上导出器自身的3个计数器和1个队列长度
+        exporter.collect(1_000L);
+        waitFor(() -> requests.size() == 3);
+        Thread.sleep(100);
+        assertEquals(3, requests.size(), "only full batches are sent before the delay expires");
+
+        exporter.flushIfDue(System.currentTimeMillis() + config.getMaxBatchDelayMs());
+        waitFor(() -> registry.get("remote_write_samples_sent_total").counter().count() == 16);
+        assertEquals(4, requests.size());
+
+        Map<String, Double> samples = new TreeMap<>();
+        for (Map<String, Double> request : requests) {
+            assertTrue(request.size() <= 5);
+            samples.putAll(request);
+        }
+        assertEquals(16, samples.size());
+        assertEquals(7.0, samples.get("test_requests_total{index=\"7\"}@1000"), 0.0);
+        assertTrue(encodings.stream().allMatch("snappy"::equals));
+    }
+
+    @Test
+    public void testRetryAndDropOldest() throws Exception {
+        config.setQueueCapacity(2);
+        status.set(503);
+        exporter.start();
+        for (int i = 0; i < 5; i++) {
+            exporter.collect(1_000L + i);
+        }
+        waitFor(() -> registry.get("remote_write_samples_dropped_total").counter().count() > 0
+                && registry.get("remote_write_samples_failed_total").counter().count() > 0);
+        assertTrue(exporter.getQueueSize() <= 2);
+
+        status.set(204);
+        // 每次采集16个样本，共16个批次，最终每个样本要么发送成功要么被丢弃
+        waitFor(() -> registry.get("remote_write_samples_sent_total").counter().count()
+                + registry.get("remote_write_samples_dropped_total").counter().count() == 5 * 16);
+        assertEquals(0, exporter.getQueueSize());
+        double dropped = registry.get("remote_write_samples_dropped_total").counter().count();
+        assertTrue(dropped >= 5 * 16 - 3 * 5, "dropped " + dropped);
+        // 最新的批次被保留并发送
+        boolean latestSent = false;
+        for (Map<String, Double> request : requests) {
+            for (String key : request.keySet()) {
+                latestSent |= key.endsWith("@1004");
+            }
+        }
+        assertTrue(latestSent);
+    }
+
+    @Test
+    public void testRejectedBatchIsNotRetried() throws Exception {
+        status.set(400);
+        exporter.start();
+        exporter.collect(1_000L);
+        waitFor(() -> registry.get("remote_write_samples_dropped_total").counter().count() == 15);
+        assertEquals(0, exporter.getQueueSize());
+        assertEquals(15, registry.get("remote_write_samples_failed_total").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testSenderSurvivesUnexpectedException() throws Exception {
+        // 非法的请求头值让 HttpURLConnection 抛出 IllegalArgumentException
+        config.getHeaders().put("X-Test", "a\nb");
+        exporter.start();
+        exporter.collect(1_000L);
+        waitFor(() -> registry.get("remote_write_samples_failed_total").counter().count() > 0);
+
+        config.getHeaders().clear();
+        waitFor(() -> registry.get("remote_write_samples_sent_total").counter().count() == 15);
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    public void testStopFlushesPendingSamples() throws Exception {
+        exporter.start();
+        exporter.collect(1_000L);
+        waitFor(() -> requests.size() == 3);
+
+        // 未满的最后一个批次在关闭时发送
+        exporter.stop();
+        assertEquals(4, requests.size());
+        assertEquals(16, registry.get("remote_write_samples_sent_total").counter().count(), 0.0);
+        assertEquals(0, exporter.getQueueSize());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 5s");
+            Thread.sleep(10);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws java.io.IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解析 WriteRequest，返回 "名称{标签}@时间戳" 到值的映射（unit_id 等公共标签不在测试注册表中）
+     */
+    private static Map<String, Double> decode(byte[] data) {
+        Map<String, Double> samples = new TreeMap<>();
+        Reader request = new Reader(data, 0, data.length);
+        while (request.hasMore()) {
+            assertEquals((1 << 3) | 2, request.varint());
+            Reader series = request.nested();
+            TreeMap<String, String> labels = new TreeMap<>();
+            double value = Double.NaN;
+            long timestamp = 0;
+            while (series.hasMore()) {
+                int tag = (int) series.varint();
+                Reader message = series.nested();
+                if (tag == ((1 << 3) | 2)) {
+                    message.varint();
+                    String name = message.string();
+                    message.varint();
+                    labels.put(name, message.string());
+                } else {
+                    assertEquals((2 << 3) | 2, tag);
+                    assertEquals((1 << 3) | 1, message.varint());
+                    value = Double.longBitsToDouble(message.fixed64());
+                    assertEquals(2 << 3, message.varint());
+                    timestamp = message.varint();
+                }
+            }
+            StringBuilder key = new StringBuilder(labels.remove("__name__"));
+            if (!labels.isEmpty()) {
+                key.append('{');
+                for (Map.Entry<String, String> label : labels.entrySet()) {
+                    if (key.charAt(key.length() - 1) != '{') {
+                        key.append(',');
+                    }
+                    key.append(label.getKey()).append("=\"").append(label.getValue()).append('"');
+                }
+                key.append('}');
+            }
+            samples.put(key.append('@').append(timestamp).toString(), value);
+        }
+        return samples;
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+        private final int end;
+
+        Reader(byte[] data, int position, int end) {
+            this.data = data;
+            this.position = position;
+            this.end = end;
+        }
+
+        boolean hasMore() {
+            return position < end;
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = data[position++] & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        long fixed64() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value |= (long) (data[position++] & 0xFF) << (8 * i);
+            }
+            return value;
+        }
+
+        Reader nested() {
+            int length = (int) varint();
+            Reader reader = new Reader(data, position, position + length);
+            position += length;
+            return reader;
+        }
+
+        String string() {
+            int length = (int) varint();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.acme.monitor.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 接口分配量统计测试
+ */
+public class RequestAllocationServiceTest {
+    private RequestAllocationService service;
+    // 保存分配的数组，避免被逃逸分析优化掉
+    private byte[] sink;
+
+    @BeforeEach
+    public void setUp() {
+        service = new RequestAllocationService();
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        service.init();
+    }
+
+    @Test
+    public void testCurrentThreadAllocatedBytes() {
+        // 测试运行在HotSpot上
+        assertTrue(service.isSupported());
+        long before = service.currentThreadAllocatedBytes();
+        sink = new byte[1024 * 1024];
+        long allocated = service.currentThreadAllocatedBytes() - before;
+        assertTrue(allocated >= sink.length, "allocated " + allocated);
+    }
+
+    @Test
+    public void testEndpointAllocations() {
+        service.record("/api/monitor/beans/all", 4_000_000);
+        service.record("/api/monitor/beans/all", 2_000_000);
+        service.record("/api/cache/user/{id}", 10_000);
+        // 不支持时读数为-1，差值为负的请求不记录
+        service.record("/api/cache/user/{id}", -1);
+
+        List<Map<String, Object>> rows = service.getEndpointAllocations();
+        assertEquals(2, rows.size());
+        Map<String, Object> top = rows.get(0);
+        assertEquals("/api/monitor/beans/all", top.get("endpoint"));
+        assertEquals(2L, top.get("requests"));
+        assertEquals(6_000_000L, top.get("total_bytes"));
+        assertEquals(3_000_000L, top.get("mean_bytes"));
+        assertEquals(4_000_000L, top.get("max_bytes"));
+        assertEquals(1L, rows.get(1).get("requests"));
+    }
+
+    @Test
+    public void testDisabled() {
+        RequestAllocationService disabled = new RequestAllocationService();
+        disabled.init();
+        assertFalse(disabled.isSupported());
+        assertEquals(-1, disabled.currentThreadAllocatedBytes());
+    }
+}
@@ -0,0 +1,159 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.util.CgroupReader;
+import com.acme.monitor.util.ProcFileReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用与真实 /proc 格式一致的临时文件测试解析逻辑
+ */
+public class ResourceSamplerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReadCpuTimes() throws Exception {
+        ProcFileReader reader = reader("stat",
+                "cpu  100 5 50 800 20 1 2 3 0 0\n"
+                        + "cpu0 50 2 25 400 10 0 1 1 0 0\n"
+                        + "intr 12345\n");
+        long[] out = new long[2];
+
+        assertTrue(ResourceSampler.readCpuTimes(reader, out));
+        assertEquals(981, out[0]);
+        assertEquals(820, out[1]);
+    }
+
+    @Test
+    public void testReadMemInfo() throws Exception {
+        ProcFileReader reader = reader("meminfo",
+                "MemTotal:       16000000 kB\n"
+                        + "MemFree:         1000000 kB\n"
+                        + "MemAvailable:    4000000 kB\n");
+        long[] out = new long[2];
+
+        assertTrue(ResourceSampler.readMemInfo(reader, out));
+        assertEquals(16000000, out[0]);
+        assertEquals(4000000, out[1]);
+    }
+
+    @Test
+    public void testReadProcessIo() throws Exception {
+        ProcFileReader reader = reader("io",
+                "rchar: 3980\nwchar: 10\nsyscr: 9\nsyscw: 1\n"
+                        + "read_bytes: 4096\nwrite_bytes: 8192\ncancelled_write_bytes: 0\n");
+        long[] out = new long[2];
+
+        assertTrue(ResourceSampler.readProcessIo(reader, out));
+        assertEquals(4096, out[0]);
+        assertEquals(8192, out[1]);
+    }
+
+    @Test
+    public void testReadNetDevSkipsLoopback() throws Exception {
+        ProcFileReader reader = reader("dev",
+                "Inter-|   Receive                                                |  Transmit\n"
+                        + " face |bytes    packets errs drop fifo frame compressed multicast|bytes    packets errs drop fifo colls carrier compressed\n"
+                        + "    lo: 999999    1280    0    0    0     0          0         0 999999    1280    0    0    0     0       0          0\n"
+                        + "  eth0: 1000    10    0    0    0     0          0         0 2000    20    0    0    0     0       0          0\n"
+                        + "  eth1: 500    5    0    0    0     0          0         0 700    7    0    0    0     0       0          0\n");
+        long[] out = new long[2];
+
+        assertTrue(ResourceSampler.readNetDev(reader, out));
+        assertEquals(1500, out[0]);
+        assertEquals(2700, out[1]);
+    }
+
+    @Test
+    public void testReaderPicksUpChangedContent() throws Exception {
+        Path file = tempDir.resolve("io");
+        Files.write(file, "read_bytes: 1\nwrite_bytes: 2\n".getBytes(StandardCharsets.US_ASCII));
+        ProcFileReader reader = new ProcFileReader(file, 1024);
+        long[] out = new long[2];
+        assertTrue(ResourceSampler.readProcessIo(reader, out));
+        assertEquals(1, out[0]);
+
+        // 同一个通道重新读取时应得到新内容
+        Files.write(file, "read_bytes: 10\nwrite_bytes: 20\n".getBytes(StandardCharsets.US_ASCII));
+        assertTrue(ResourceSampler.readProcessIo(reader, out));
+        assertEquals(10, out[0]);
+        assertEquals(20, out[1]);
+        reader.close();
+    }
+
+    @Test
+    public void testMissingFile() {
+        ProcFileReader reader = new ProcFileReader(tempDir.resolve("missing"), 1024);
+        assertFalse(ResourceSampler.readCpuTimes(reader, new long[2]));
+    }
+
+    @Test
+    public void testContainerRates() {
+        long[] last = new long[CgroupReader.FIELDS];
+        long[] current = new long[CgroupReader.FIELDS];
+        Arrays.fill(last, -1);
+        Arrays.fill(current, -1);
+        current[CgroupReader.CPU_QUOTA_USEC] = 200000;
+        current[CgroupReader.CPU_PERIOD_USEC] = 100000;
+        current[CgroupReader.MEMORY_CURRENT] = 256L * 1024 * 1024;
+        current[CgroupReader.MEMORY_MAX] = 1024L * 1024 * 1024;
+        last[CgroupReader.CPU_USAGE_USEC] = 1000000;
+        current[CgroupReader.CPU_USAGE_USEC] = 2000000;
+        last[CgroupReader.CPU_NR_PERIODS] = 100;
+        current[CgroupReader.CPU_NR_PERIODS] = 120;
+        last[CgroupReader.CPU_NR_THROTTLED] = 10;
+        current[CgroupReader.CPU_NR_THROTTLED] = 15;
+        last[CgroupReader.CPU_THROTTLED_USEC] = 0;
+        current[CgroupReader.CPU_THROTTLED_USEC] = 400000;
+        last[CgroupReader.CPU_PRESSURE_SOME_USEC] = 0;
+        current[CgroupReader.CPU_PRESSURE_SOME_USEC] = 100000;
+
+        ResourceSampler.Container container = ResourceSampler.Container.of(2, current, last, 2.0, 0, 8);
+
+        assertEquals(2, container.getCpuLimitCores(), 1e-9);
+        assertEquals(2, container.getCpuQuotaCores(), 1e-9);
+        // 2秒内用了1秒CPU，配额2核
+        assertEquals(25, container.getCpuPct(), 1e-9);
+        assertEquals(25, container.getThrottledPct(), 1e-9);
+        assertEquals(200, container.getThrottledMsPerSec(), 1e-9);
+        assertEquals(25, container.getMemoryPct(), 1e-9);
+        assertEquals(5, container.getCpuPressurePct(), 1e-9);
+        // 没有读取到的字段
+        assertEquals(0, container.getIoPressurePct(), 1e-9);
+    }
+
+    @Test
+    public void testContainerWithoutLimits() {
+        long[] last = new long[CgroupReader.FIELDS];
+        long[] current = new long[CgroupReader.FIELDS];
+        Arrays.fill(last, -1);
+        Arrays.fill(current, -1);
+        current[CgroupReader.CPU_QUOTA_USEC] = CgroupReader.UNLIMITED;
+        current[CgroupReader.CPU_PERIOD_USEC] = 100000;
+        current[CgroupReader.MEMORY_CURRENT] = 512;
+        current[CgroupReader.MEMORY_MAX] = CgroupReader.UNLIMITED;
+
+        ResourceSampler.Container container = ResourceSampler.Container.of(2, current, last, 0, 2048, 4);
+
+        assertEquals(4, container.getCpuLimitCores(), 1e-9);
+        assertTrue(Double.isNaN(container.getCpuQuotaCores()));
+        assertTrue(Double.isNaN(container.getMemoryLimitBytes()));
+        assertEquals(25, container.getMemoryPct(), 1e-9);
+        assertEquals(0, container.getCpuPct(), 1e-9);
+    }
+
+    private ProcFileReader reader(String name, String content) throws Exception {
+        Path file = tempDir.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        return new ProcFileReader(file, 4096);
+    }
+}
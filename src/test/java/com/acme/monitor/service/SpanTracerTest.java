@@ -0,0 +1,126 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.TracingConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * span追踪的嵌套、跨线程传递和深度上限测试
+ */
+public class SpanTracerTest {
+
+    private SpanTracer tracer;
+
+    @BeforeEach
+    public void setUp() {
+        TracingConfig config = new TracingConfig();
+        config.setMaxDepth(4);
+        // 测试中由 snapshot() 读取，不依赖聚合线程
+        config.setDrainIntervalMs(60_000);
+        tracer = new SpanTracer();
+        ReflectionTestUtils.setField(tracer, "config", config);
+        ReflectionTestUtils.setField(tracer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tracer, "unitId", "U01");
+        tracer.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tracer.stop();
+    }
+
+    private String folded() {
+        StringBuilder out = new StringBuilder();
+        tracer.snapshot().writeFolded(out);
+        return out.toString();
+    }
+
+    @Test
+    public void testNestedSpansSplitSelfTime() throws Exception {
+        tracer.begin("Controller.get");
+        tracer.begin("Service.load");
+        tracer.begin("cache:users.get");
+        Thread.sleep(20);
+        tracer.end();
+        tracer.end();
+        tracer.end();
+
+        String folded = folded();
+        assertTrue(folded.contains("Controller.get;Service.load;cache:users.get "), folded);
+        // 子span的耗时不计入父span的自身耗时
+        for (String line : folded.split("\n")) {
+            long micros = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+            if (line.startsWith("Controller.get;Service.load;cache")) {
+                assertTrue(micros >= 19_000, line);
+            } else {
+                assertTrue(micros < 10_000, line);
+            }
+        }
+        assertEquals(3, tracer.getSpanCount());
+    }
+
+    @Test
+    public void testWrappedTaskInheritsCallPath() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            tracer.begin("Controller.cluster");
+            Runnable task = tracer.wrap(() -> {
+                tracer.begin("federation:U02");
+                tracer.end();
+            });
+            tracer.end();
+            executor.submit(task).get(5, TimeUnit.SECONDS);
+            // 工作线程上的路径在任务结束后清空
+            executor.submit(tracer.wrap(() -> {
+                tracer.begin("background");
+                tracer.end();
+            })).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        String folded = folded();
+        assertEquals(3, tracer.getSpanCount());
+        assertEquals(3, tracer.snapshot().getNodeCount(), folded);
+        assertFalse(folded.contains("Controller.cluster;background"), folded);
+    }
+
+    @Test
+    public void testDepthLimitAndUnbalancedEnd() {
+        tracer.end();
+        for (int i = 0; i < 6; i++) {
+            tracer.begin("f" + i);
+        }
+        for (int i = 0; i < 6; i++) {
+            tracer.end();
+        }
+        // 超过深度4的span不记录，且不影响外层span的结束
+        assertEquals(4, tracer.getSpanCount());
+        assertEquals(4, tracer.snapshot().getNodeCount());
+        assertEquals(0, tracer.getDroppedCount());
+    }
+
+    @Test
+    public void testDisabledTracerIsNoop() {
+        TracingConfig config = new TracingConfig();
+        config.setEnabled(false);
+        SpanTracer disabled = new SpanTracer();
+        ReflectionTestUtils.setField(disabled, "config", config);
+        disabled.start();
+        disabled.begin("a");
+        disabled.end();
+        Runnable task = () -> {
+        };
+        assertSame(task, disabled.wrap(task));
+        assertTrue(disabled.snapshot().isEmpty());
+    }
+}
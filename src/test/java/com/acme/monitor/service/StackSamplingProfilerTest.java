@@ -0,0 +1,164 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.ProfilerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 线程栈采样测试，直接调用 sample() 并使用指定的时间戳
+ */
+public class StackSamplingProfilerTest {
+    private static final long MINUTE = StackSamplingProfiler.WINDOW_MILLIS;
+
+    private StackSamplingProfiler profiler;
+    private ProfilerConfig config;
+    private volatile boolean running = true;
+    private Thread busy;
+    private Thread sleeping;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        config = new ProfilerConfig();
+        config.setEnabled(false);
+        config.setRetainMinutes(3);
+        profiler = new StackSamplingProfiler();
+        ReflectionTestUtils.setField(profiler, "config", config);
+        ReflectionTestUtils.setField(profiler, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(profiler, "unitId", "U01");
+        // 不启动采样线程，由测试调用 sample()
+        profiler.start();
+
+        CountDownLatch started = new CountDownLatch(2);
+        busy = new Thread(() -> spin(started), "busy-worker-7");
+        sleeping = new Thread(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException ignored) {
+            }
+        }, "sleeping-worker");
+        busy.start();
+        sleeping.start();
+        started.await();
+        // countDown之后线程仍可能短暂处于RUNNABLE，等它真正进入sleep
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sleeping.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(System.currentTimeMillis() < deadline, "sleeping-worker did not start sleeping");
+            Thread.sleep(1);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        running = false;
+        sleeping.interrupt();
+        busy.join();
+    }
+
+    private void spin(CountDownLatch started) {
+        started.countDown();
+        long x = 0;
+        while (running) {
+            x += System.nanoTime() % 7;
+        }
+        assertTrue(x >= 0);
+    }
+
+    @Test
+    public void testSamplesRunnableThreadsOnly() {
+        long now = 10 * MINUTE + 1000;
+        for (int i = 0; i < 20; i++) {
+            profiler.sample(now);
+        }
+        StackSamplingProfiler.Profile profile = profiler.profile(1, now);
+        assertEquals(1, profile.getWindows());
+        assertTrue(profile.getSamples() >= 20);
+
+        StringBuilder out = new StringBuilder();
+        profile.getTrie().writeFolded(out);
+        String folded = out.toString();
+        // 线程名称去掉编号，栈从根到栈顶
+        assertTrue(folded.contains("busy-worker-#;java.lang.Thread.run;"), folded);
+        assertTrue(folded.contains("StackSamplingProfilerTest.spin"), folded);
+        assertFalse(folded.contains("sleeping-worker"), folded);
+
+        List<Map<String, Object>> top = profile.getTrie().topFrames(50);
+        assertTrue(top.stream().anyMatch(row -> row.get("frame").toString().endsWith("StackSamplingProfilerTest.spin")));
+    }
+
+    @Test
+    public void testRollingWindows() {
+        long now = 10 * MINUTE;
+        for (int minute = 0; minute < 5; minute++) {
+            profiler.sample(now + minute * MINUTE);
+        }
+        long end = now + 4 * MINUTE + 30_000;
+        // 只保留最近3个窗口
+        assertEquals(3, profiler.profile(5, end).getWindows());
+        assertEquals(2, profiler.profile(2, end).getWindows());
+        StackSamplingProfiler.Profile older = profiler.profile(1, now + 2 * MINUTE + 5);
+        assertEquals(1, older.getWindows());
+        assertEquals(now + 2 * MINUTE, older.getFrom());
+        assertTrue(profiler.profile(1, now).getTrie().isEmpty());
+    }
+
+    @Test
+    public void testBudgetRaisesInterval() {
+        config.setIntervalMs(10);
+        config.setMaxIntervalMs(40);
+        config.setCpuBudgetPct(1);
+        profiler.start();
+        // 每次采样花费1ms，相当于10%的CPU
+        for (int i = 0; i < 5; i++) {
+            profiler.adjustInterval(1_000_000L);
+        }
+        assertEquals(40, profiler.getIntervalMs());
+        for (int i = 0; i < 50; i++) {
+            profiler.adjustInterval(1_000L);
+        }
+        assertEquals(10, profiler.getIntervalMs());
+    }
+
+    @Test
+    public void testBudgetLimitsThreadsAtMaxInterval() {
+        config.setIntervalMs(10);
+        config.setMaxIntervalMs(40);
+        config.setCpuBudgetPct(1);
+        profiler.start();
+        // 间隔到上限后仍超预算，改为每次只采样一部分线程
+        for (int i = 0; i < 10; i++) {
+            profiler.adjustInterval(1_000_000L);
+        }
+        assertEquals(40, profiler.getIntervalMs());
+        assertEquals(StackSamplingProfiler.MIN_THREADS_PER_SAMPLE, profiler.getThreadLimit());
+        // 先恢复采样全部线程，再恢复间隔
+        for (int i = 0; i < 50; i++) {
+            profiler.adjustInterval(1_000L);
+        }
+        assertEquals(0, profiler.getThreadLimit());
+        assertEquals(10, profiler.getIntervalMs());
+    }
+
+    @Test
+    public void testThreadSubsetRotates() {
+        ReflectionTestUtils.setField(profiler, "threadLimit", 1);
+        long now = 10 * MINUTE;
+        int threads = Thread.activeCount() * 4;
+        for (int i = 0; i < threads; i++) {
+            assertTrue(profiler.sample(now) <= 1);
+        }
+        // 轮流采样，所有线程都会被采到
+        StringBuilder out = new StringBuilder();
+        profiler.profile(1, now).getTrie().writeFolded(out);
+        assertTrue(out.toString().contains("StackSamplingProfilerTest.spin"), out.toString());
+    }
+}
@@ -0,0 +1,87 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.TsdbConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地时序存储的压缩率和吞吐量基准
+ * 写入一天的每秒采样（全部单元指标），输出每个点的存储字节数、写入和查询吞吐量
+ */
+public class TimeSeriesStorePerformanceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesStorePerformanceTest.class);
+
+    private static final long BASE = 1_700_000_000_000L;
+    private static final int SECONDS = 24 * 3600;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testCompressionAndThroughput() throws Exception {
+        TsdbConfig config = new TsdbConfig();
+        config.setDirectory(tempDir.toString());
+        String[] names = UnitMetricsService.METRIC_NAMES;
+        TimeSeriesStore store = new TimeSeriesStore(config, names);
+        store.open();
+
+        // 模拟真实指标：常量、缓慢变化的资源占用、带抖动的QPS和延迟
+        Random random = new Random(7);
+        double[] values = new double[names.length];
+        double cpu = 30;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < SECONDS; i++) {
+            cpu = Math.max(0, Math.min(100, cpu + random.nextGaussian()));
+            values[0] = 1;
+            values[1] = 12;
+            values[2] = 30;
+            values[3] = Math.round(cpu * 100) / 100.0;
+            values[4] = Math.round(cpu * 50) / 100.0;
+            values[5] = 62.5 + (i / 600) * 0.01;
+            values[6] = random.nextInt(10) == 0 ? random.nextDouble() : 0;
+            values[7] = 8000 + random.nextInt(2000);
+            values[8] = Math.round(cpu / 10 * 100) / 100.0;
+            values[9] = 200 + random.nextInt(50);
+            values[10] = 3.2;
+            values[11] = 45 + random.nextInt(5);
+            values[12] = 120;
+            values[13] = 0.999;
+            values[14] = 1234.56;
+            values[15] = 100 - values[3];
+            store.onSample(BASE + i * 1000L, values);
+        }
+        long ingestNanos = System.nanoTime() - startTime;
+
+        TimeSeriesStore.Stats stats = store.getStats();
+        long samples = (long) SECONDS * names.length;
+        assertEquals(samples, stats.getSamples());
+        logger.info("Stored {} samples in {} bytes ({} allocated), {} bytes/sample",
+                samples, stats.getStoredBytes(), stats.getAllocatedBytes(),
+                String.format("%.3f", stats.getBytesPerSample()));
+        logger.info("Ingest throughput: {} samples/s", samples * 1_000_000_000L / ingestNanos);
+
+        startTime = System.nanoTime();
+        long points = 0;
+        int queries = 200;
+        for (int i = 0; i < queries; i++) {
+            long from = BASE + random.nextInt(SECONDS - 3600) * 1000L;
+            points += store.query(names[i % names.length], from, from + 3600_000L).size();
+        }
+        long queryNanos = System.nanoTime() - startTime;
+        assertEquals(queries * 3601L, points);
+        logger.info("Query throughput: {} queries/s, {} points/s",
+                queries * 1_000_000_000L / queryNanos, points * 1_000_000_000L / queryNanos);
+
+        // 原始 (long, double) 每个点16字节，压缩后应明显更小
+        assertTrue(stats.getBytesPerSample() < 4, "bytes per sample: " + stats.getBytesPerSample());
+        store.close();
+    }
+}
@@ -0,0 +1,105 @@
+package com.acme.monitor.service;
+
+import com.acme.monitor.config.TsdbConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地时序存储的写入、重启加载、过期清理和合并测试
+ */
+public class TimeSeriesStoreTest {
+
+    private static final String[] SERIES = {"unit_cpu_pct", "unit_qps_total"};
+    private static final long BASE = 1_700_000_000_000L;
+    private static final long HOUR = 3600_000L;
+
+    @TempDir
+    Path tempDir;
+
+    private TsdbConfig config() {
+        TsdbConfig config = new TsdbConfig();
+        config.setDirectory(tempDir.toString());
+        config.setBlockSize(256);
+        config.setBlocksPerSegment(16);
+        config.setSegmentHours(6);
+        config.setRetentionHours(72);
+        config.setCompactAfterHours(24);
+        config.setCompactionResolutionSeconds(60);
+        return config;
+    }
+
+    private static void write(TimeSeriesStore store, long from, int seconds) {
+        double[] values = new double[SERIES.length];
+        for (int i = 0; i < seconds; i++) {
+            long timestamp = from + i * 1000L;
+            values[0] = (timestamp / 1000) % 100;
+            values[1] = 500;
+            store.onSample(timestamp, values);
+        }
+    }
+
+    @Test
+    public void testQuerySurvivesReopen() throws Exception {
+        TimeSeriesStore store = new TimeSeriesStore(config(), SERIES);
+        store.open();
+        write(store, BASE, 3600);
+
+        TimeSeriesStore.Result result = store.query("unit_cpu_pct", BASE + 10_000, BASE + 19_000);
+        assertEquals(10, result.size());
+        assertEquals(BASE + 10_000, result.getTimestamps()[0]);
+        assertEquals((BASE / 1000 + 10) % 100, result.getValues()[0], 0.0);
+        assertTrue(store.getStats().getSegments() > 1, "small segments should roll over");
+        store.close();
+
+        TimeSeriesStore reopened = new TimeSeriesStore(config(), SERIES);
+        reopened.open();
+        assertEquals(3600, reopened.query("unit_qps_total", BASE, BASE + HOUR).size());
+        write(reopened, BASE + HOUR, 60);
+        assertEquals(3660, reopened.query("unit_qps_total", BASE, BASE + 2 * HOUR).size());
+        assertEquals(0, reopened.query("unknown", BASE, BASE + 2 * HOUR).size());
+        reopened.close();
+    }
+
+    @Test
+    public void testCompactionDownsamplesOldSegments() throws Exception {
+        TimeSeriesStore store = new TimeSeriesStore(config(), SERIES);
+        store.open();
+        write(store, BASE, 3600);
+        // 新数据写入新分段，旧分段才会被合并
+        write(store, BASE + 30 * HOUR, 10);
+        long filesBefore = countFiles();
+
+        store.maintain(BASE + 30 * HOUR);
+
+        TimeSeriesStore.Result compacted = store.query("unit_cpu_pct", BASE, BASE + HOUR - 1);
+        assertEquals(60, compacted.size());
+        assertEquals(500, store.query("unit_qps_total", BASE, BASE + HOUR - 1).getValues()[7], 0.0);
+        assertEquals(10, store.query("unit_cpu_pct", BASE + 30 * HOUR, BASE + 31 * HOUR).size());
+        assertTrue(countFiles() < filesBefore);
+        store.close();
+    }
+
+    @Test
+    public void testRetentionDeletesExpiredSegments() throws Exception {
+        TimeSeriesStore store = new TimeSeriesStore(config(), SERIES);
+        store.open();
+        write(store, BASE, 600);
+        write(store, BASE + 100 * HOUR, 10);
+
+        store.maintain(BASE + 100 * HOUR);
+
+        assertEquals(0, store.query("unit_cpu_pct", BASE, BASE + HOUR).size());
+        assertEquals(10, store.query("unit_cpu_pct", BASE + 100 * HOUR, BASE + 101 * HOUR).size());
+        store.close();
+    }
+
+    private long countFiles() {
+        File[] files = tempDir.toFile().listFiles();
+        return files == null ? 0 : files.length;
+    }
+}
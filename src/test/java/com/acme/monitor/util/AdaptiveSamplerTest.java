@@ -0,0 +1,77 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自适应采样器测试，使用模拟的纳秒时间
+ */
+public class AdaptiveSamplerTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void testSamplesEverythingBelowTarget() {
+        AdaptiveSampler sampler = new AdaptiveSampler(100, SECOND, 0);
+        long now = 0;
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50; i++) {
+                now += SECOND / 50;
+                assertEquals(1, sampler.sample(now));
+            }
+        }
+        assertEquals(1.0, sampler.getProbability(), 0.0);
+    }
+
+    @Test
+    public void testProbabilityDropsAndWeightsStayUnbiased() {
+        AdaptiveSampler sampler = new AdaptiveSampler(100, SECOND, 0);
+        long now = 0;
+        // 第一秒全部采样，10000次/秒
+        for (int i = 0; i < 10000; i++) {
+            now += SECOND / 10000;
+            sampler.sample(now);
+        }
+        long calls = 0;
+        long samples = 0;
+        long weightSum = 0;
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 10000; i++) {
+                now += SECOND / 10000;
+                int weight = sampler.sample(now);
+                calls++;
+                if (weight > 0) {
+                    samples++;
+                    weightSum += weight;
+                }
+            }
+        }
+        // 10000/2^7 < 100，概率为 1/128
+        assertEquals(1.0 / 128, sampler.getProbability(), 0.0);
+        assertTrue(samples < 5 * 200, "samples=" + samples);
+        assertEquals(calls, weightSum, calls * 0.2);
+    }
+
+    @Test
+    public void testRecoversWhenTrafficDrops() {
+        AdaptiveSampler sampler = new AdaptiveSampler(10, SECOND, 0);
+        long now = 0;
+        for (int i = 0; i < 1000; i++) {
+            now += SECOND / 1000;
+            sampler.sample(now);
+        }
+        now += 1;
+        sampler.sample(now);
+        assertTrue(sampler.getProbability() < 1.0);
+
+        // 下一个周期只有两次调用
+        now += SECOND;
+        sampler.sample(now);
+        assertEquals(1.0, sampler.getProbability(), 0.0);
+    }
+
+    @Test
+    public void testInvalidTarget() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveSampler(0, SECOND, 0));
+    }
+}
@@ -0,0 +1,81 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 无锁草图记录器测试：结果与 DDSketch 一致，并发写入不丢计数
+ */
+public class AtomicDDSketchTest {
+
+    @Test
+    public void testMatchesDDSketch() {
+        AtomicDDSketch atomic = new AtomicDDSketch();
+        DDSketch plain = new DDSketch();
+        Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            double value = Math.exp(random.nextGaussian() * 2);
+            long weight = 1 + random.nextInt(3);
+            atomic.accept(value, weight);
+            plain.accept(value, weight);
+        }
+        atomic.accept(0, 5);
+        plain.accept(0, 5);
+
+        DDSketch converted = atomic.toSketch();
+        assertEquals(plain.getCount(), converted.getCount());
+        assertEquals(plain.getSum(), converted.getSum(), plain.getSum() * 1e-9);
+        assertEquals(plain.getMin(), converted.getMin(), 0);
+        assertEquals(plain.getMax(), converted.getMax(), 0);
+        for (double q : new double[]{0, 0.01, 0.5, 0.9, 0.99, 0.999, 1}) {
+            assertEquals(plain.getValueAtQuantile(q), converted.getValueAtQuantile(q), 1e-9, "q=" + q);
+        }
+        // 转换结果可以序列化后与普通草图合并
+        DDSketch restored = DDSketch.deserialize(converted.serialize());
+        restored.merge(plain);
+        assertEquals(plain.getCount() * 2, restored.getCount());
+    }
+
+    @Test
+    public void testOutOfRangeValuesClamp() {
+        AtomicDDSketch atomic = new AtomicDDSketch();
+        atomic.accept(AtomicDDSketch.MAX_VALUE * 100, 1);
+        atomic.accept(AtomicDDSketch.MIN_VALUE * 2, 1);
+        DDSketch sketch = atomic.toSketch();
+        assertEquals(2, sketch.getCount());
+        // 超过上限的值记入最高的桶，max仍是原值
+        assertEquals(AtomicDDSketch.MAX_VALUE * 100, sketch.getMax(), 0);
+        assertEquals(AtomicDDSketch.MAX_VALUE, sketch.getValueAtQuantile(1), AtomicDDSketch.MAX_VALUE * 0.02);
+
+        atomic.reset();
+        assertEquals(0, atomic.toSketch().getCount());
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        AtomicDDSketch atomic = new AtomicDDSketch();
+        int threads = 4;
+        int perThread = 100_000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < perThread; i++) {
+                    atomic.accept(1 + random.nextInt(1000), 1);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        DDSketch sketch = atomic.toSketch();
+        assertEquals((long) threads * perThread, sketch.getCount());
+        assertEquals(500, sketch.getValueAtQuantile(0.5), 500 * 0.05);
+        assertTrue(sketch.getMin() >= 1);
+        assertTrue(sketch.getMax() <= 1000);
+    }
+}
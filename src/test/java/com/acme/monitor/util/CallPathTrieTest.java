@@ -0,0 +1,121 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 调用路径树的聚合、节点上限和火焰图输出测试
+ */
+public class CallPathTrieTest {
+    private static final long MS = 1_000_000;
+
+    @Test
+    public void testFoldedUsesSelfTime() {
+        CallPathTrie trie = new CallPathTrie("U01", 100);
+        // controller(10ms) -> service(8ms) -> cache(3ms)
+        trie.addSpan(new String[]{"Controller.get", "Service.load", "cache:users.get"}, 3, 3 * MS, 3 * MS);
+        trie.addSpan(new String[]{"Controller.get", "Service.load"}, 2, 8 * MS, 5 * MS);
+        trie.addSpan(new String[]{"Controller.get"}, 1, 10 * MS, 2 * MS);
+        trie.addSpan(new String[]{"Controller.get"}, 1, 10 * MS, 10 * MS);
+
+        StringBuilder out = new StringBuilder();
+        trie.writeFolded(out);
+        String folded = out.toString();
+        assertTrue(folded.contains("Controller.get 12000\n"), folded);
+        assertTrue(folded.contains("Controller.get;Service.load 5000\n"), folded);
+        assertTrue(folded.contains("Controller.get;Service.load;cache:users.get 3000\n"), folded);
+        assertEquals(3, trie.getNodeCount());
+    }
+
+    @Test
+    public void testTreeWidthIncludesChildren() {
+        CallPathTrie trie = new CallPathTrie("U01", 100);
+        trie.addSpan(new String[]{"a", "b"}, 2, 4 * MS, 4 * MS);
+        trie.addSpan(new String[]{"a", "c"}, 2, MS, MS);
+        trie.addSpan(new String[]{"a"}, 1, 6 * MS, MS);
+
+        Map<String, Object> root = trie.toTree();
+        assertEquals("U01", root.get("name"));
+        assertEquals(6000L, root.get("value"));
+        Map<String, Object> a = child(root, 0);
+        assertEquals(6000L, a.get("value"));
+        assertEquals(1000L, a.get("self"));
+        assertEquals(1L, a.get("count"));
+        // 子节点按宽度降序
+        assertEquals("b", child(a, 0).get("name"));
+        assertEquals("c", child(a, 1).get("name"));
+
+        List<Map<String, Object>> levels = trie.toLevels();
+        assertEquals(4, levels.size());
+        assertEquals(0, levels.get(0).get("level"));
+        assertEquals("a", levels.get(1).get("label"));
+        assertEquals(2, levels.get(2).get("level"));
+        assertEquals("b", levels.get(2).get("label"));
+    }
+
+    @Test
+    public void testNodeLimitTruncates() {
+        CallPathTrie trie = new CallPathTrie("U01", 2);
+        trie.addSpan(new String[]{"a"}, 1, MS, MS);
+        trie.addSpan(new String[]{"a", "b"}, 2, MS, MS);
+        trie.addSpan(new String[]{"a", "c"}, 2, MS, MS);
+        trie.addSpan(new String[]{"a", "d", "e"}, 3, MS, MS);
+
+        StringBuilder out = new StringBuilder();
+        trie.writeFolded(out);
+        assertTrue(out.toString().contains("a;" + CallPathTrie.TRUNCATED + " 2000\n"), out.toString());
+        assertEquals(3, trie.getNodeCount());
+    }
+
+    @Test
+    public void testMerge() {
+        CallPathTrie first = new CallPathTrie("U01", 100);
+        first.addSpan(new String[]{"a", "b"}, 2, MS, MS);
+        CallPathTrie second = new CallPathTrie("U01", 100);
+        second.addSpan(new String[]{"a", "b"}, 2, 2 * MS, 2 * MS);
+        second.addSpan(new String[]{"x;y"}, 1, MS, MS);
+
+        CallPathTrie merged = new CallPathTrie("U01", 100);
+        merged.merge(first);
+        merged.merge(second);
+        StringBuilder out = new StringBuilder();
+        merged.writeFolded(out);
+        assertTrue(out.toString().contains("a;b 3000\n"), out.toString());
+        // 帧名称中的分号被替换
+        assertTrue(out.toString().contains("x:y 1000\n"), out.toString());
+        assertEquals(3, merged.getNodeCount());
+    }
+
+    @Test
+    public void testSamplesAndTopFrames() {
+        CallPathTrie trie = new CallPathTrie("U01", 100);
+        // 递归调用 a -> b -> a 的外层只计算一次
+        trie.addSample(new String[]{"main", "a", "b", "a"}, 4, 10 * MS);
+        trie.addSample(new String[]{"main", "a", "b"}, 3, 10 * MS);
+        trie.addSample(new String[]{"main", "c"}, 2, 20 * MS);
+
+        StringBuilder out = new StringBuilder();
+        trie.writeFolded(out);
+        assertTrue(out.toString().contains("main;a;b;a 10000\n"), out.toString());
+        assertEquals(40000L, trie.toTree().get("value"));
+
+        List<Map<String, Object>> top = trie.topFrames(10);
+        assertEquals("c", top.get(0).get("frame"));
+        assertEquals(20000L, top.get(0).get("self"));
+        assertEquals(50.0, top.get(0).get("self_pct"));
+        Map<String, Object> a = top.stream().filter(row -> "a".equals(row.get("frame"))).findFirst().get();
+        assertEquals(10000L, a.get("self"));
+        assertEquals(20000L, a.get("total"));
+        assertEquals(40000L, top.stream().filter(row -> "main".equals(row.get("frame"))).findFirst().get().get("total"));
+        assertEquals(2, trie.topFrames(2).size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> child(Map<String, Object> node, int index) {
+        return ((List<Map<String, Object>>) node.get("children")).get(index);
+    }
+}
@@ -0,0 +1,133 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在临时目录中模拟 cgroup v1/v2 的文件布局测试读取逻辑
+ */
+public class CgroupReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReadV2() throws Exception {
+        Path root = tempDir.resolve("cgroup");
+        Path dir = root.resolve("kubepods.slice/pod1");
+        write(root.resolve("cgroup.controllers"), "cpu io memory pids\n");
+        write(dir.resolve("cpu.max"), "150000 100000\n");
+        write(dir.resolve("cpu.stat"), "usage_usec 5000000\nuser_usec 4000000\nsystem_usec 1000000\n"
+                + "nr_periods 200\nnr_throttled 50\nthrottled_usec 250000\nnr_bursts 0\nburst_usec 0\n");
+        write(dir.resolve("memory.current"), "104857600\n");
+        write(dir.resolve("memory.max"), "max\n");
+        write(dir.resolve("cpu.pressure"), "some avg10=1.50 avg60=0.80 avg300=0.20 total=123456\n"
+                + "full avg10=0.00 avg60=0.00 avg300=0.00 total=0\n");
+        write(dir.resolve("memory.pressure"), "some avg10=0.00 avg60=0.00 avg300=0.00 total=77\n"
+                + "full avg10=0.00 avg60=0.00 avg300=0.00 total=33\n");
+        Path proc = write(tempDir.resolve("proc-cgroup"), "0::/kubepods.slice/pod1\n");
+
+        CgroupReader reader = new CgroupReader(root, proc);
+        long[] out = new long[CgroupReader.FIELDS];
+
+        assertEquals(2, reader.getVersion());
+        assertEquals(dir, reader.getCpuDir());
+        assertTrue(reader.read(out));
+        assertEquals(150000, out[CgroupReader.CPU_QUOTA_USEC]);
+        assertEquals(100000, out[CgroupReader.CPU_PERIOD_USEC]);
+        assertEquals(5000000, out[CgroupReader.CPU_USAGE_USEC]);
+        assertEquals(200, out[CgroupReader.CPU_NR_PERIODS]);
+        assertEquals(50, out[CgroupReader.CPU_NR_THROTTLED]);
+        assertEquals(250000, out[CgroupReader.CPU_THROTTLED_USEC]);
+        assertEquals(104857600, out[CgroupReader.MEMORY_CURRENT]);
+        assertEquals(CgroupReader.UNLIMITED, out[CgroupReader.MEMORY_MAX]);
+        assertEquals(123456, out[CgroupReader.CPU_PRESSURE_SOME_USEC]);
+        assertEquals(77, out[CgroupReader.MEMORY_PRESSURE_SOME_USEC]);
+        assertEquals(33, out[CgroupReader.MEMORY_PRESSURE_FULL_USEC]);
+        // 没有io.pressure文件
+        assertEquals(-1, out[CgroupReader.IO_PRESSURE_SOME_USEC]);
+
+        // 复用同一个通道读取更新后的内容
+        write(dir.resolve("cpu.max"), "max 100000\n");
+        write(dir.resolve("cpu.stat"), "usage_usec 6000000\nnr_periods 210\nnr_throttled 55\nthrottled_usec 300000\n");
+        assertTrue(reader.read(out));
+        assertEquals(CgroupReader.UNLIMITED, out[CgroupReader.CPU_QUOTA_USEC]);
+        assertEquals(100000, out[CgroupReader.CPU_PERIOD_USEC]);
+        assertEquals(55, out[CgroupReader.CPU_NR_THROTTLED]);
+        reader.close();
+    }
+
+    @Test
+    public void testV2NamespacedFallsBackToMountRoot() throws Exception {
+        // 容器内 /proc/self/cgroup 是宿主机视角的路径，但只挂载了自己的cgroup
+        Path root = tempDir.resolve("cgroup");
+        write(root.resolve("cgroup.controllers"), "cpu memory\n");
+        write(root.resolve("cpu.stat"), "usage_usec 10\n");
+        write(root.resolve("memory.max"), "536870912\n");
+        Path proc = write(tempDir.resolve("proc-cgroup"), "0::/kubepods.slice/pod1/container\n");
+
+        CgroupReader reader = new CgroupReader(root, proc);
+        long[] out = new long[CgroupReader.FIELDS];
+
+        assertEquals(root, reader.getCpuDir());
+        assertTrue(reader.read(out));
+        assertEquals(10, out[CgroupReader.CPU_USAGE_USEC]);
+        assertEquals(536870912, out[CgroupReader.MEMORY_MAX]);
+        assertEquals(-1, out[CgroupReader.CPU_QUOTA_USEC]);
+        reader.close();
+    }
+
+    @Test
+    public void testReadV1() throws Exception {
+        Path root = tempDir.resolve("cgroup");
+        Path cpu = root.resolve("cpu,cpuacct/docker/abc");
+        Path memory = root.resolve("memory/docker/abc");
+        write(cpu.resolve("cpu.cfs_quota_us"), "-1\n");
+        write(cpu.resolve("cpu.cfs_period_us"), "100000\n");
+        write(cpu.resolve("cpuacct.usage"), "2500000000\n");
+        write(cpu.resolve("cpu.stat"), "nr_periods 10\nnr_throttled 4\nthrottled_time 8000000\n");
+        write(memory.resolve("memory.usage_in_bytes"), "2048\n");
+        write(memory.resolve("memory.limit_in_bytes"), "9223372036854771712\n");
+        Path proc = write(tempDir.resolve("proc-cgroup"),
+                "12:pids:/docker/abc\n4:cpu,cpuacct:/docker/abc\n3:memory:/docker/abc\n1:name=systemd:/docker/abc\n");
+
+        CgroupReader reader = new CgroupReader(root, proc);
+        long[] out = new long[CgroupReader.FIELDS];
+
+        assertEquals(1, reader.getVersion());
+        assertEquals(cpu, reader.getCpuDir());
+        assertEquals(memory, reader.getMemoryDir());
+        assertTrue(reader.read(out));
+        assertEquals(CgroupReader.UNLIMITED, out[CgroupReader.CPU_QUOTA_USEC]);
+        assertEquals(100000, out[CgroupReader.CPU_PERIOD_USEC]);
+        assertEquals(2500000, out[CgroupReader.CPU_USAGE_USEC]);
+        assertEquals(4, out[CgroupReader.CPU_NR_THROTTLED]);
+        assertEquals(8000, out[CgroupReader.CPU_THROTTLED_USEC]);
+        assertEquals(2048, out[CgroupReader.MEMORY_CURRENT]);
+        assertEquals(CgroupReader.UNLIMITED, out[CgroupReader.MEMORY_MAX]);
+        assertEquals(-1, out[CgroupReader.CPU_PRESSURE_SOME_USEC]);
+        reader.close();
+    }
+
+    @Test
+    public void testNotInCgroup() {
+        CgroupReader reader = new CgroupReader(tempDir.resolve("missing"), tempDir.resolve("missing-proc"));
+        long[] out = new long[CgroupReader.FIELDS];
+
+        assertEquals(0, reader.getVersion());
+        assertFalse(reader.read(out));
+        assertEquals(-1, out[CgroupReader.MEMORY_CURRENT]);
+    }
+
+    private static Path write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+}
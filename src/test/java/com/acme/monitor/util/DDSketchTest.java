@@ -0,0 +1,140 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DDSketch 精度、合并和序列化测试
+ */
+public class DDSketchTest {
+
+    private static double exact(double[] sorted, double quantile) {
+        return sorted[(int) Math.floor(quantile * (sorted.length - 1))];
+    }
+
+    @Test
+    public void testQuantilesWithinRelativeAccuracy() {
+        DDSketch sketch = new DDSketch();
+        Random random = new Random(1);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // 对数正态分布，接近真实的延迟分布
+            values[i] = Math.exp(3 + random.nextGaussian());
+            sketch.accept(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            double expected = exact(values, q);
+            assertEquals(expected, sketch.getValueAtQuantile(q), expected * 0.01 + 1e-9, "q=" + q);
+        }
+        assertEquals(values.length, sketch.getCount());
+    }
+
+    @Test
+    public void testMergedSketchMatchesGlobalPercentiles() {
+        // 两个单元负载差异很大时，p99取平均的结果明显偏离全局p99
+        DDSketch fast = new DDSketch();
+        DDSketch slow = new DDSketch();
+        double[] all = new double[20_000];
+        Random random = new Random(2);
+        for (int i = 0; i < 10_000; i++) {
+            all[i] = 1 + random.nextDouble() * 9;
+            fast.accept(all[i]);
+            all[10_000 + i] = 100 + random.nextDouble() * 900;
+            slow.accept(all[10_000 + i]);
+        }
+        Arrays.sort(all);
+
+        DDSketch merged = new DDSketch();
+        merged.merge(fast);
+        merged.merge(slow);
+
+        double expected = exact(all, 0.5);
+        assertEquals(expected, merged.getValueAtQuantile(0.5), expected * 0.01);
+        assertEquals(20_000, merged.getCount());
+        assertEquals(1, merged.getMin(), 0.01);
+    }
+
+    @Test
+    public void testSerializeRoundTrip() {
+        DDSketch sketch = new DDSketch();
+        sketch.accept(0);
+        for (int i = 1; i <= 1000; i++) {
+            sketch.accept(i * 0.37);
+        }
+
+        byte[] data = sketch.serialize();
+        DDSketch restored = DDSketch.deserialize(data);
+
+        assertEquals(sketch.getCount(), restored.getCount());
+        assertEquals(sketch.getSum(), restored.getSum(), 1e-9);
+        for (double q : new double[]{0, 0.25, 0.5, 0.99, 1}) {
+            assertEquals(sketch.getValueAtQuantile(q), restored.getValueAtQuantile(q), 1e-9);
+        }
+        assertTrue(data.length < 1024, "serialized size " + data.length);
+        assertThrows(IllegalArgumentException.class, () -> DDSketch.deserialize(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    public void testBucketLimitCollapsesLowestBuckets() {
+        DDSketch sketch = new DDSketch(0.01, 100);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.accept(Math.pow(1.01, i % 1000) * 0.001);
+        }
+
+        double p99 = sketch.getValueAtQuantile(0.99);
+        double expected = Math.pow(1.01, 989) * 0.001;
+        assertEquals(expected, p99, expected * 0.02);
+        assertTrue(DDSketch.deserialize(sketch.serialize()).getCount() == 10_000);
+    }
+
+    @Test
+    public void testDeserializeRejectsUntrustedSizes() throws Exception {
+        // 数据中的桶数量上限很大，桶数量超过本地上限
+        assertThrows(IllegalArgumentException.class,
+                () -> DDSketch.deserialize(header(0.01, Integer.MAX_VALUE, 0, 5_000)));
+        // 桶数量接近2^31，不能按其分配数组
+        assertThrows(IllegalArgumentException.class,
+                () -> DDSketch.deserialize(header(0.01, Integer.MAX_VALUE, 0, Integer.MAX_VALUE)));
+        // 下标范围溢出
+        assertThrows(IllegalArgumentException.class,
+                () -> DDSketch.deserialize(header(0.01, 2048, Integer.MAX_VALUE, 2)));
+        // 相对误差不同的草图不能合并
+        DDSketch coarse = new DDSketch(0.05, 2048);
+        coarse.accept(10);
+        assertThrows(IllegalArgumentException.class, () -> DDSketch.deserialize(coarse.serialize()));
+        assertEquals(1, DDSketch.deserialize(coarse.serialize(), 0.05).getCount());
+        assertThrows(IllegalArgumentException.class, () -> new DDSketch(0.01, 0));
+    }
+
+    /**
+     * 构造只有头部和桶范围、没有桶计数的序列化数据
+     */
+    private static byte[] header(double accuracy, int maxBuckets, int firstIndex, long buckets) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x44445331);
+        out.writeDouble(accuracy);
+        out.writeInt(maxBuckets);
+        out.writeByte(1);
+        out.writeByte(0);
+        out.writeDouble(1);
+        out.writeDouble(1);
+        out.writeDouble(1);
+        out.writeInt(firstIndex);
+        while ((buckets & ~0x7FL) != 0) {
+            out.writeByte((int) ((buckets & 0x7F) | 0x80));
+            buckets >>>= 7;
+        }
+        out.writeByte((int) buckets);
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,76 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Gorilla 编解码往返测试
+ */
+public class GorillaCodecTest {
+
+    @Test
+    public void testRoundTripWithIrregularTimestampsAndValues() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        GorillaEncoder encoder = new GorillaEncoder(buffer, 16, 60 * 1024);
+        Random random = new Random(42);
+        int n = 2000;
+        long[] timestamps = new long[n];
+        double[] values = new double[n];
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < n; i++) {
+            // 覆盖各个差分区间，包括时钟回拨造成的负差分
+            timestamp += 1000 + (i % 7 == 0 ? random.nextInt(100_000) - 500 : random.nextInt(5));
+            timestamps[i] = timestamp;
+            values[i] = i % 5 == 0 ? random.nextGaussian() * 1e6 : (i % 3 == 0 ? values[Math.max(0, i - 1)] : i * 0.25);
+            assertTrue(encoder.append(timestamps[i], values[i]));
+        }
+
+        GorillaDecoder decoder = new GorillaDecoder(buffer, 16, encoder.getCount());
+        for (int i = 0; i < n; i++) {
+            assertTrue(decoder.next());
+            assertEquals(timestamps[i], decoder.getTimestamp());
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoder.getValue()));
+        }
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    public void testRegularSamplesCompressWell() {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        GorillaEncoder encoder = new GorillaEncoder(buffer, 0, 4096);
+        long timestamp = 1_700_000_000_000L;
+        int n = 0;
+        while (encoder.append(timestamp + n * 1000L, n % 60 == 0 ? 42.5 + n / 60 : 42.5 + (n - 1) / 60)) {
+            n++;
+        }
+
+        // 固定间隔、缓慢变化的数据每个点远小于1字节
+        assertTrue(n > 4096, "encoded " + n + " samples");
+        assertEquals(timestamp + (n - 1) * 1000L, encoder.getLastTimestamp());
+    }
+
+    @Test
+    public void testFullBlockRejectsAppend() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        GorillaEncoder encoder = new GorillaEncoder(buffer, 0, 64);
+        int n = 0;
+        while (encoder.append(n * 7919L, Math.sqrt(n + 2))) {
+            n++;
+        }
+        assertTrue(n > 0);
+        assertTrue(encoder.getBitLength() <= 64 * 8);
+
+        GorillaDecoder decoder = new GorillaDecoder(buffer, 0, encoder.getCount());
+        int decoded = 0;
+        while (decoder.next()) {
+            assertEquals(decoded * 7919L, decoder.getTimestamp());
+            assertEquals(Math.sqrt(decoded + 2), decoder.getValue(), 0.0);
+            decoded++;
+        }
+        assertEquals(n, decoded);
+    }
+}
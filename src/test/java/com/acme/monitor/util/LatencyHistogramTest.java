@@ -0,0 +1,131 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LatencyHistogram的测试类
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * 每个值都落在所属桶的范围内，且桶下标随值单调递增
+     */
+    @Test
+    public void testBucketBoundaries() {
+        int previous = -1;
+        for (long value = 0; value < 2_000_000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long lower = LatencyHistogram.bucketLowerBound(index);
+            assertTrue(value >= lower && value < lower + LatencyHistogram.bucketWidth(index));
+            assertTrue(index == previous || index == previous + 1);
+            previous = index;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    /**
+     * 1~1000ms均匀分布的分位数误差在3%以内
+     */
+    @Test
+    public void testPercentiles() {
+        AtomicLong now = new AtomicLong(100_000);
+        LatencyHistogram histogram = new LatencyHistogram(6, 10_000, 4, now::get);
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L, true);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(6);
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500, snapshot.getPercentileMillis(0.5), 500 * 0.03);
+        assertEquals(990, snapshot.getPercentileMillis(0.99), 990 * 0.03);
+        assertEquals(999, snapshot.getPercentileMillis(0.999), 999 * 0.03);
+        assertEquals(500.5, snapshot.getMeanMillis(), 0.01);
+    }
+
+    /**
+     * 复用缓冲区时先清空上一次的计数
+     */
+    @Test
+    public void testSnapshotIntoReusesBuffer() {
+        AtomicLong now = new AtomicLong(100_000);
+        LatencyHistogram histogram = new LatencyHistogram(6, 10_000, 4, now::get);
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L, true);
+        }
+        long[] buffer = LatencyHistogram.newBucketBuffer();
+        histogram.snapshotInto(6, buffer);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotInto(6, buffer);
+        LatencyHistogram.Snapshot fresh = histogram.snapshot(6);
+        assertEquals(fresh.getCount(), snapshot.getCount());
+        assertEquals(fresh.getPercentileMillis(0.5), snapshot.getPercentileMillis(0.5));
+        assertEquals(fresh.getPercentileMillis(0.999), snapshot.getPercentileMillis(0.999));
+    }
+
+    @Test
+    public void testQpsAndSuccessRate() {
+        AtomicLong now = new AtomicLong(100_000);
+        LatencyHistogram histogram = new LatencyHistogram(6, 10_000, 4, now::get);
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(1000, i % 10 != 0);
+        }
+        now.addAndGet(5_000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(1);
+        // 1000个请求分布在当前slot已经过的5秒内
+        assertEquals(200, snapshot.getQps(), 0.01);
+        assertEquals(90, snapshot.getSuccessRate(), 0.01);
+        assertEquals(100, snapshot.getErrors());
+    }
+
+    /**
+     * 超出窗口的slot不再计入统计，重新写入时被清零
+     */
+    @Test
+    public void testWindowRollover() {
+        AtomicLong now = new AtomicLong(100_000);
+        LatencyHistogram histogram = new LatencyHistogram(6, 10_000, 4, now::get);
+        histogram.record(1000, true);
+
+        now.addAndGet(30_000);
+        histogram.record(2000, true);
+        assertEquals(2, histogram.snapshot(6).getCount());
+        assertEquals(1, histogram.snapshot(1).getCount());
+
+        // 60秒后第一条记录所在的slot被复用
+        now.addAndGet(30_000);
+        histogram.record(3000, true);
+        assertEquals(2, histogram.snapshot(6).getCount());
+
+        now.addAndGet(100_000);
+        assertEquals(0, histogram.snapshot(6).getCount());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(6, 10_000, 8);
+        int threads = 8;
+        int perThread = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(1000, true);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals((long) threads * perThread, histogram.snapshot(6).getCount());
+    }
+}
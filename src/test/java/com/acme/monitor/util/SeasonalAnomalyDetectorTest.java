@@ -0,0 +1,102 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 在线异常检测测试
+ */
+public class SeasonalAnomalyDetectorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeasonalAnomalyDetectorTest.class);
+
+    @Test
+    public void testSpikeOnNoisySeries() {
+        SeasonalAnomalyDetector detector = new SeasonalAnomalyDetector(0.05, 0.05, 0.1, 1, 1000, 60, 4);
+        int series = detector.addSeries();
+        Random random = new Random(1);
+        int falsePositives = 0;
+        long t = 0;
+        for (int i = 0; i < 3600; i++, t += 1000) {
+            double score = detector.update(series, t, 100 + random.nextGaussian() * 5);
+            if (i >= 60 && Math.abs(score) > 5) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 5, "false positives: " + falsePositives);
+        assertEquals(100, detector.getExpected(series), 2);
+        assertEquals(5, detector.getStdDev(series), 1.5);
+
+        assertTrue(detector.update(series, t, 200) > 10);
+        // 尖刺被截断后更新基线，下一个正常值不受影响
+        t += 1000;
+        assertTrue(Math.abs(detector.update(series, t, 101)) < 3);
+        assertTrue(detector.update(series, t + 1000, 40) < -6);
+    }
+
+    @Test
+    public void testSeasonalBaseline() {
+        // 周期10秒，每个时间槽1秒：前5秒在1000附近，后5秒在100附近
+        SeasonalAnomalyDetector seasonal = new SeasonalAnomalyDetector(0.02, 0.02, 0.2, 10, 1000, 100, 4);
+        SeasonalAnomalyDetector flat = new SeasonalAnomalyDetector(0.02, 0.02, 0.2, 1, 1000, 100, 4);
+        int s = seasonal.addSeries();
+        int f = flat.addSeries();
+        Random random = new Random(2);
+        long t = 0;
+        for (int i = 0; i < 2000; i++, t += 1000) {
+            double value = ((t / 1000) % 10 < 5 ? 1000 : 100) + random.nextGaussian() * 10;
+            seasonal.update(s, t, value);
+            flat.update(f, t, value);
+        }
+        // t 对应的时间槽为0，按周期应该在1000附近
+        assertEquals(0, t / 1000 % 10);
+        assertTrue(Math.abs(seasonal.update(s, t, 1005)) < 3);
+        assertEquals(1000, seasonal.getExpected(s), 30);
+        // 在高峰时段出现低谷值，季节基线能识别
+        assertTrue(seasonal.update(s, t + 1000, 100) < -10);
+        assertTrue(seasonal.getSamples(s) > 2000);
+    }
+
+    @Test
+    public void testWarmupAndNaN() {
+        SeasonalAnomalyDetector detector = new SeasonalAnomalyDetector(0.1, 0.1, 0.1, 1, 1000, 10, 4);
+        int series = detector.addSeries();
+        for (int i = 0; i < 9; i++) {
+            assertEquals(0, detector.update(series, i * 1000L, i % 2 == 0 ? 1 : 1000), 0.0);
+        }
+        assertEquals(0, detector.update(series, 10_000, Double.NaN), 0.0);
+        assertEquals(9, detector.getSamples(series));
+    }
+
+    @Test
+    public void testThousandsOfSeriesPerSecond() {
+        int seriesCount = 10_000;
+        SeasonalAnomalyDetector detector = new SeasonalAnomalyDetector(0.05, 0.05, 0.1, 24, 3_600_000, 60, 4);
+        for (int i = 0; i < seriesCount; i++) {
+            assertEquals(i, detector.addSeries());
+        }
+        Random random = new Random(3);
+        double[] noise = new double[4096];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = random.nextGaussian();
+        }
+        int ticks = 120;
+        long start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < seriesCount; i++) {
+                detector.update(i, tick * 1000L, 50 + i % 100 + noise[(tick * 31 + i) & 4095]);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        double perTickMs = nanos / 1e6 / ticks;
+        logger.info("{} series: {} ms per tick, {} bytes per series", seriesCount,
+                String.format("%.3f", perTickMs), detector.bytesPerSeries());
+        // 每秒一次采样，单次更新全部序列只占很小一部分CPU
+        assertTrue(perTickMs < 100, "per tick " + perTickMs + " ms");
+    }
+}
@@ -0,0 +1,79 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 滑动窗口聚合测试，与每次重新扫描窗口的结果对比
+ */
+public class SlidingWindowAggregateTest {
+
+    @Test
+    public void testBasicAggregates() {
+        SlidingWindowAggregate window = new SlidingWindowAggregate(3000);
+        assertTrue(Double.isNaN(window.avg()));
+        window.add(1000, 5);
+        window.add(2000, 1);
+        window.add(3000, 9);
+        assertEquals(3, window.count());
+        assertEquals(5, window.avg(), 1e-9);
+        assertEquals(1, window.min(), 0.0);
+        assertEquals(9, window.max(), 0.0);
+        assertEquals(2, window.ratePerSecond(), 1e-9);
+
+        // 1000的样本滑出窗口
+        window.add(4000, 3);
+        assertEquals(3, window.count());
+        assertEquals(1, window.first(), 0.0);
+        assertEquals(3, window.last(), 0.0);
+
+        // 没有新样本时也会淘汰
+        window.evict(6500);
+        assertEquals(1, window.count());
+        assertEquals(3, window.min(), 0.0);
+        window.evict(10_000);
+        assertEquals(0, window.count());
+        assertTrue(Double.isNaN(window.max()));
+        assertTrue(Double.isNaN(window.ratePerSecond()));
+
+        window.add(11_000, Double.NaN);
+        assertEquals(0, window.count());
+    }
+
+    @Test
+    public void testMatchesRescan() {
+        Random random = new Random(7);
+        SlidingWindowAggregate window = new SlidingWindowAggregate(60_000);
+        Deque<long[]> reference = new ArrayDeque<>();
+        long now = 0;
+        for (int i = 0; i < 20_000; i++) {
+            // 间隔不均匀，窗口内样本数在几个到几千个之间变化，覆盖扩容
+            now += i % 5000 < 2500 ? 1 + random.nextInt(20) : 1 + random.nextInt(2000);
+            double value = random.nextInt(1000) / 10.0;
+            window.add(now, value);
+            reference.addLast(new long[]{now, Double.doubleToLongBits(value)});
+            while (reference.peekFirst()[0] <= now - 60_000) {
+                reference.pollFirst();
+            }
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (long[] sample : reference) {
+                double v = Double.longBitsToDouble(sample[1]);
+                sum += v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            assertEquals(reference.size(), window.count());
+            assertEquals(sum / reference.size(), window.avg(), 1e-6);
+            assertEquals(min, window.min(), 0.0);
+            assertEquals(max, window.max(), 0.0);
+            assertEquals(Double.longBitsToDouble(reference.peekFirst()[1]), window.first(), 0.0);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Snappy 块格式压缩测试
+ */
+public class SnappyTest {
+
+    private static byte[] roundTrip(byte[] data) {
+        byte[] compressed = Snappy.compress(data, 0, data.length);
+        assertTrue(compressed.length <= Snappy.maxCompressedLength(data.length));
+        byte[] restored = Snappy.uncompress(compressed);
+        assertArrayEquals(data, restored);
+        return compressed;
+    }
+
+    @Test
+    public void testKnownEncoding() {
+        byte[] compressed = Snappy.compress("abcdabcdabcd".getBytes(StandardCharsets.US_ASCII), 0, 12);
+        // 长度12，4字节字面量，偏移4长度8的回溯复制
+        assertArrayEquals(new byte[]{12, 0x0c, 'a', 'b', 'c', 'd', 0x11, 4}, compressed);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        assertEquals(1, roundTrip(new byte[0]).length);
+        roundTrip(new byte[]{1, 2, 3});
+
+        Random random = new Random(42);
+        byte[] noise = new byte[200_000];
+        random.nextBytes(noise);
+        roundTrip(noise);
+
+        // 跨越多个64KB分块的重复数据，包含长字面量和长回溯复制
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            sb.append("unit_rtt_ms_count{method=\"m").append(i % 50).append("\",unit_id=\"U01\"} ").append(i).append('\n');
+        }
+        byte[] text = sb.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = roundTrip(text);
+        assertTrue(compressed.length < text.length / 3, "compressed " + compressed.length + " of " + text.length);
+
+        byte[] zeros = new byte[100_000];
+        assertTrue(roundTrip(zeros).length < 5000);
+    }
+
+    @Test
+    public void testRejectsCorruptData() {
+        byte[] compressed = Snappy.compress("abcdabcdabcd".getBytes(StandardCharsets.US_ASCII), 0, 12);
+        compressed[7] = 9;
+        assertThrows(IllegalArgumentException.class, () -> Snappy.uncompress(compressed));
+        assertThrows(IllegalArgumentException.class, () -> Snappy.uncompress(new byte[]{20, 0x0c, 'a'}));
+    }
+}
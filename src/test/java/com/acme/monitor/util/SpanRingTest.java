@@ -0,0 +1,92 @@
+package com.acme.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * span环形缓冲区的读写、覆盖和并发写入测试
+ */
+public class SpanRingTest {
+
+    @Test
+    public void testPublishAndDrain() {
+        SpanRing ring = new SpanRing(5, 4);
+        assertEquals(8, ring.getCapacity());
+        ring.publish(new String[]{"a", "b", null}, 2, 100, 60);
+        ring.publish(new String[]{"a"}, 1, 200, 140);
+
+        List<String> seen = new ArrayList<>();
+        String[] scratch = new String[4];
+        int n = ring.drain(scratch, (frames, depth, total, self) ->
+                seen.add(String.join(";", Arrays.copyOf(frames, depth)) + " " + total + "/" + self));
+        assertEquals(2, n);
+        assertEquals("a;b 100/60", seen.get(0));
+        assertEquals("a 200/140", seen.get(1));
+        assertEquals(0, ring.drain(scratch, (frames, depth, total, self) -> fail("already drained")));
+    }
+
+    @Test
+    public void testDeepPathKeepsInnermostFrames() {
+        SpanRing ring = new SpanRing(4, 2);
+        ring.publish(new String[]{"a", "b", "c"}, 3, 1, 1);
+        String[] scratch = new String[2];
+        ring.drain(scratch, (frames, depth, total, self) -> {
+            assertEquals(2, depth);
+            assertEquals("b", frames[0]);
+            assertEquals("c", frames[1]);
+        });
+    }
+
+    @Test
+    public void testOverwriteCountsDropped() {
+        SpanRing ring = new SpanRing(4, 1);
+        for (int i = 0; i < 10; i++) {
+            ring.publish(new String[]{"s" + i}, 1, i, i);
+        }
+        List<Long> totals = new ArrayList<>();
+        ring.drain(new String[1], (frames, depth, total, self) -> totals.add(total));
+        // 只剩最新的一圈
+        assertEquals(4, totals.size());
+        assertEquals(6L, (long) totals.get(0));
+        assertEquals(6, ring.getDropped());
+        assertEquals(10, ring.getPublished());
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        SpanRing ring = new SpanRing(1 << 12, 2);
+        int threads = 4;
+        int perThread = 20000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            String name = "t" + t;
+            new Thread(() -> {
+                String[] frames = {"root", name};
+                for (int i = 0; i < perThread; i++) {
+                    ring.publish(frames, 2, 10, 10);
+                }
+                done.countDown();
+            }).start();
+        }
+        AtomicLong read = new AtomicLong();
+        String[] scratch = new String[2];
+        SpanRing.Visitor visitor = (frames, depth, total, self) -> {
+            assertEquals(2, depth);
+            assertEquals("root", frames[0]);
+            assertEquals(10, total);
+            read.incrementAndGet();
+        };
+        while (done.getCount() > 0) {
+            ring.drain(scratch, visitor);
+        }
+        ring.drain(scratch, visitor);
+        assertEquals((long) threads * perThread, read.get() + ring.getDropped());
+    }
+}